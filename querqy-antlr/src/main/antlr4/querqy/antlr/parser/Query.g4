@@ -1,5 +1,15 @@
 grammar Query;
 
+@parser::members {
+	/**
+	 * Called when the parser has predicted the operator of a booleanQuery, before its first clause is parsed.
+	 *
+	 * @param operator The token type of the operator (AND or OR)
+	 */
+	protected void booleanOperator(int operator) {
+	}
+}
+
 query: (booleanQuery | noopQuery)+ ;
 
 noopQuery:
@@ -8,9 +18,9 @@ noopQuery:
 	
 booleanQuery: 
     
-	clause (opAnd clause)+
+	{booleanOperator(AND);} clause (opAnd clause)+
 	|
-	clause (opOr clause)+
+	{booleanOperator(OR);} clause (opOr clause)+
 //	|
 //	booleanQuery (opAnd clause)+
 //	|
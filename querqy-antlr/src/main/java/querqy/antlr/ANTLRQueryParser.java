@@ -4,15 +4,41 @@
 package querqy.antlr;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
+import querqy.SimpleComparableCharSequence;
 import querqy.antlr.parser.QueryLexer;
 import querqy.antlr.parser.QueryParser;
-import querqy.antlr.parser.QueryParser.QueryContext;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
 import querqy.model.Query;
+import querqy.model.Term;
 import querqy.parser.QuerqyParser;
 
 /**
+ * <p>A {@link QuerqyParser} based on an ANTLR grammar.</p>
+ *
+ * <p>The lexer and parser are cheap to create per query, but ANTLR's adaptive prediction builds its DFA lazily
+ * from the first inputs that it sees. The DFA is held in static fields of the generated lexer and parser and
+ * thus shared by all instances of this class within a class loader. Use {@link #warmUp(Iterable)} to build it
+ * before the first query arrives.</p>
+ *
+ * <p>Parsing first tries the faster SLL prediction mode. Only if this fails or doesn't consume the whole input,
+ * the input is parsed again
+ * using full LL prediction, which also reports and recovers from syntax errors.</p>
+ *
+ * <p>The parser doesn't build a parse tree. The {@link Query} is created by a {@link QueryBuildingListener} while
+ * parsing. Queries that only consist of terms and '+'/'-' operators don't need ANTLR at all and are parsed by
+ * {@link #parseSimpleQuery(char[])}.</p>
+ *
  * @author rene
  *
  */
@@ -20,15 +46,240 @@ public class ANTLRQueryParser implements QuerqyParser {
 
    @Override
    public Query parse(String input) {
+      return parse(input, true);
+   }
+
+   /**
+    *
+    * @param input The query string
+    * @param reportErrors Iff true, syntax errors are printed to the console like by ANTLR's default error listener
+    * @return The query
+    */
+   Query parse(String input, boolean reportErrors) {
 
       char[] inputChars = input.toCharArray();
 
+      Query query = parseSimpleQuery(inputChars);
+      if (query != null) {
+         return query;
+      }
+
       QueryLexer lex = new QueryLexer(new ANTLRInputStream(inputChars, inputChars.length));
+      if (!reportErrors) {
+         lex.removeErrorListeners();
+      }
       CommonTokenStream tokens = new CommonTokenStream(lex);
-      QueryParser parser = new QueryParser(tokens);
+      StreamingQueryParser parser = new StreamingQueryParser(tokens);
+      parser.setBuildParseTree(false);
+
+      parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+      parser.removeErrorListeners();
+      parser.setErrorHandler(new BailErrorStrategy());
+      parser.setListener(new QueryBuildingListener(inputChars));
+
+      boolean sllFailed;
+      try {
+
+         parser.query();
+         // the grammar doesn't require EOF, SLL might have stopped at a different alternative
+         sllFailed = parser.getCurrentToken().getType() != Token.EOF;
+
+      } catch (ParseCancellationException e) {
+         sllFailed = true;
+      }
+
+      if (sllFailed) {
+
+         tokens.reset();
+         parser.reset();
+         if (reportErrors) {
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+         }
+         parser.setErrorHandler(new DefaultErrorStrategy());
+         parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+         parser.setListener(new QueryBuildingListener(inputChars));
+
+         parser.query();
+      }
+
+      return parser.listener.getQuery();
+   }
+
+   /**
+    * <p>Parse queries that only consist of terms, optionally prefixed by '+' or '-', without ANTLR.</p>
+    *
+    * <p>The terms must only contain characters that the grammar accepts in a term, other than '+', '-' and ':',
+    * and they must not be one of the operators AND and OR.</p>
+    *
+    * @param input The query string
+    * @return The query, which equals the query that the ANTLR-based parser creates, or null if the input is not a
+    *         simple query
+    */
+   static Query parseSimpleQuery(char[] input) {
+
+      int len = input.length;
+
+      // validate before we create any objects
+      int numTerms = 0;
+      int pos = 0;
+      while (pos < len) {
+         char ch = input[pos];
+         if (isWhitespace(ch)) {
+            pos++;
+            continue;
+         }
+         if (ch == '+' || ch == '-') {
+            pos++;
+         }
+         int start = pos;
+         while (pos < len && isTermChar(input[pos])) {
+            pos++;
+         }
+         if (pos == start || (pos < len && !isWhitespace(input[pos])) || isOperator(input, start, pos)) {
+            return null;
+         }
+         numTerms++;
+      }
+
+      if (numTerms == 0) {
+         return null;
+      }
+
+      Query query = new Query();
+
+      pos = 0;
+      while (pos < len) {
+         char ch = input[pos];
+         if (isWhitespace(ch)) {
+            pos++;
+            continue;
+         }
+         Occur occur = Occur.SHOULD;
+         if (ch == '+') {
+            occur = Occur.MUST;
+            pos++;
+         } else if (ch == '-') {
+            occur = Occur.MUST_NOT;
+            pos++;
+         }
+         int start = pos;
+         while (pos < len && !isWhitespace(input[pos])) {
+            pos++;
+         }
+         DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, occur, false);
+         dmq.addClause(new Term(dmq, new SimpleComparableCharSequence(input, start, pos - start)));
+         query.addClause(dmq);
+      }
+
+      return query;
+   }
+
+   /**
+    * WS in the grammar
+    */
+   static boolean isWhitespace(char ch) {
+      return ch == ' ' || ch == '\t';
+   }
+
+   /**
+    * STRING_CHAR and STRING_CHAR_EXT in the grammar
+    */
+   static boolean isTermChar(char ch) {
+      if (ch >= '\u0080') {
+         return true;
+      }
+      if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')) {
+         return true;
+      }
+      switch (ch) {
+      case '_': case '!': case '#': case '$': case '%': case '&': case '\'': case '*': case ',': case '.': case '/':
+      case ';': case '<': case '=': case '>': case '?': case '@': case '[': case '\\': case ']': case '^': case '`':
+      case '{': case '|': case '}': case '~':
+         return true;
+      default:
+         return false;
+      }
+   }
+
+   static boolean isOperator(char[] input, int start, int end) {
+      switch (end - start) {
+      case 2:
+         return input[start] == 'O' && input[start + 1] == 'R';
+      case 3:
+         return input[start] == 'A' && input[start + 1] == 'N' && input[start + 2] == 'D';
+      default:
+         return false;
+      }
+   }
+
+   /**
+    * Parse the sample queries to build the shared prediction DFA. Syntax errors in the sample queries are not
+    * reported.
+    *
+    * @param sampleQueries The query strings to parse
+    */
+   public static void warmUp(Iterable<String> sampleQueries) {
+      ANTLRQueryParser parser = new ANTLRQueryParser();
+      for (String query : sampleQueries) {
+         parser.parse(query, false);
+      }
+   }
+
+   /**
+    *
+    * @return The number of states in the shared prediction DFA of the parser
+    */
+   static int getDFAStateCount() {
+      int count = 0;
+      for (DFA dfa : getSharedDFA()) {
+         count += dfa.states.size();
+      }
+      return count;
+   }
+
+   /**
+    * Discard the shared prediction DFA of the parser, so that it will be rebuilt like after a restart. This is
+    * only meant to be used by tests and benchmarks while no other thread is parsing.
+    */
+   static void clearDFA() {
+      for (DFA dfa : getSharedDFA()) {
+         dfa.states.clear();
+         dfa.s0 = null;
+      }
+   }
+
+   /**
+    * A parser that forwards the predicted operator of a booleanQuery to a {@link QueryBuildingListener}
+    */
+   static class StreamingQueryParser extends QueryParser {
+
+      QueryBuildingListener listener = null;
+
+      public StreamingQueryParser(TokenStream input) {
+         super(input);
+      }
+
+      void setListener(QueryBuildingListener listener) {
+         if (this.listener != null) {
+            removeParseListener(this.listener);
+         }
+         this.listener = listener;
+         addParseListener(listener);
+      }
+
+      @Override
+      protected void booleanOperator(int operator) {
+         if (listener != null) {
+            listener.booleanOperator(operator);
+         }
+      }
+
+   }
 
-      QueryContext t = parser.query();
-      return (Query) t.accept(new QueryTransformerVisitor(inputChars));
+   private static DFA[] getSharedDFA() {
+      char[] empty = new char[0];
+      QueryParser parser = new QueryParser(new CommonTokenStream(new QueryLexer(new ANTLRInputStream(empty, 0))));
+      return parser.getInterpreter().decisionToDFA;
    }
 
 }
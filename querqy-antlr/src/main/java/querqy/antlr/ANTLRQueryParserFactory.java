@@ -3,18 +3,45 @@
  */
 package querqy.antlr;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import querqy.parser.QuerqyParser;
 import querqy.parser.QuerqyParserFactory;
 
 /**
+ * A {@link QuerqyParserFactory} for {@link ANTLRQueryParser}s. The factory warms up the parser's shared
+ * prediction DFA when it is created.
+ *
  * @author René Kriegler, @renekrie
  *
  */
 public class ANTLRQueryParserFactory implements QuerqyParserFactory {
 
+   /**
+    * Well-formed queries that cover the alternatives of the grammar. Queries that only consist of terms and '+'/'-'
+    * don't use ANTLR and thus don't need warming up.
+    */
+   public static final List<String> DEFAULT_WARM_UP_QUERIES = Collections.unmodifiableList(Arrays.asList(
+         "f1:a",
+         "f1:a f2:b +f3:c -f4:d",
+         "a AND b",
+         "a AND b AND c",
+         "a OR b",
+         "a OR b OR c",
+         "+a OR -b",
+         "(a b)",
+         "+(a b) -(c)",
+         "(a AND b) OR c",
+         "a AND (b OR c)",
+         "((a b) c)",
+         "a$b c-d e.f"
+         ));
+
    /*
     * (non-Javadoc)
-    * 
+    *
     * @see querqy.parser.QuerqyParserFactory#createParser()
     */
    @Override
@@ -22,4 +49,21 @@ public class ANTLRQueryParserFactory implements QuerqyParserFactory {
       return new ANTLRQueryParser();
    }
 
+   /**
+    * Create a factory and warm up the parser using the {@link #DEFAULT_WARM_UP_QUERIES}.
+    */
+   public ANTLRQueryParserFactory() {
+      this(DEFAULT_WARM_UP_QUERIES);
+   }
+
+   /**
+    * Create a factory and warm up the parser using the given queries.
+    *
+    * @param warmUpQueries Sample queries, ideally taken from the query log. Can be empty. Syntax errors in these
+    *                      queries are not reported.
+    */
+   public ANTLRQueryParserFactory(Iterable<String> warmUpQueries) {
+      ANTLRQueryParser.warmUp(warmUpQueries);
+   }
+
 }
@@ -0,0 +1,192 @@
+/**
+ *
+ */
+package querqy.antlr;
+
+import java.util.LinkedList;
+
+import org.antlr.v4.runtime.Token;
+
+import querqy.SimpleComparableCharSequence;
+import querqy.antlr.QueryTransformerVisitor.Operator;
+import querqy.antlr.parser.QueryBaseListener;
+import querqy.antlr.parser.QueryParser;
+import querqy.antlr.parser.QueryParser.BooleanQueryContext;
+import querqy.antlr.parser.QueryParser.ClauseContext;
+import querqy.antlr.parser.QueryParser.FieldNameContext;
+import querqy.antlr.parser.QueryParser.MustContext;
+import querqy.antlr.parser.QueryParser.MustNotContext;
+import querqy.antlr.parser.QueryParser.NoopQueryContext;
+import querqy.antlr.parser.QueryParser.QueryContext;
+import querqy.antlr.parser.QueryParser.TermContext;
+import querqy.antlr.parser.QueryParser.TermQueryContext;
+import querqy.model.BooleanQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+
+/**
+ * <p>Builds a {@link Query} from the events of a {@link QueryParser} while it is parsing, so that the parser does
+ * not have to build a parse tree. Register it using {@link QueryParser#addParseListener(
+ * org.antlr.v4.runtime.tree.ParseTreeListener)} and forward {@link QueryParser#booleanOperator(int)} to
+ * {@link #booleanOperator(int)}.</p>
+ *
+ * <p>The resulting query equals the query that {@link QueryTransformerVisitor} creates from the parse tree. A
+ * listener must only be used for a single parse.</p>
+ */
+public class QueryBuildingListener extends QueryBaseListener {
+
+   final LinkedList<BooleanQuery> booleanQueryStack = new LinkedList<>();
+   final LinkedList<Operator> operatorStack = new LinkedList<>();
+
+   final char[] input;
+
+   Occur occurBuffer = Occur.SHOULD;
+   Query query = null;
+
+   String fieldName = null;
+   Token termToken = null;
+
+   public QueryBuildingListener(char[] input) {
+      this.input = input;
+   }
+
+   /**
+    *
+    * @return The query or null if the parser hasn't started yet
+    */
+   public Query getQuery() {
+      return query;
+   }
+
+   /**
+    * Set the operator of the booleanQuery that is being parsed.
+    *
+    * @param operator The token type of the operator
+    */
+   public void booleanOperator(int operator) {
+      operatorStack.removeLast();
+      operatorStack.add(operator == QueryParser.AND ? Operator.AND : Operator.OR);
+   }
+
+   @Override
+   public void enterQuery(QueryContext ctx) {
+      query = new Query();
+      operatorStack.add(Operator.NONE);
+      booleanQueryStack.add(query);
+   }
+
+   @Override
+   public void exitQuery(QueryContext ctx) {
+      operatorStack.removeLast();
+      booleanQueryStack.removeLast();
+   }
+
+   @Override
+   public void enterClause(ClauseContext ctx) {
+      // the boolean prefix, if any, will be parsed next
+      occurBuffer = Occur.SHOULD;
+   }
+
+   @Override
+   public void exitClause(ClauseContext ctx) {
+      occurBuffer = Occur.SHOULD;
+   }
+
+   @Override
+   public void exitMust(MustContext ctx) {
+      occurBuffer = Occur.MUST;
+   }
+
+   @Override
+   public void exitMustNot(MustNotContext ctx) {
+      occurBuffer = Occur.MUST_NOT;
+   }
+
+   @Override
+   public void enterNoopQuery(NoopQueryContext ctx) {
+      BooleanQuery parent = booleanQueryStack.getLast();
+      if (parent != query) {
+         BooleanQuery bq = new BooleanQuery(parent, getOccur(), false);
+         parent.addClause(bq);
+
+         operatorStack.add(Operator.NONE);
+         booleanQueryStack.add(bq);
+      }
+   }
+
+   @Override
+   public void exitNoopQuery(NoopQueryContext ctx) {
+      // only nested noopQuerys are on the stack, the top-level one adds its clauses to the query
+      if (booleanQueryStack.size() > 1) {
+         operatorStack.removeLast();
+         booleanQueryStack.removeLast();
+      }
+   }
+
+   @Override
+   public void enterBooleanQuery(BooleanQueryContext ctx) {
+      BooleanQuery parent = booleanQueryStack.getLast();
+      BooleanQuery bq = new BooleanQuery(parent, getOccur(), false);
+      parent.addClause(bq);
+
+      // replaced in booleanOperator(int)
+      operatorStack.add(Operator.NONE);
+      booleanQueryStack.add(bq);
+   }
+
+   @Override
+   public void exitBooleanQuery(BooleanQueryContext ctx) {
+      operatorStack.removeLast();
+      booleanQueryStack.removeLast();
+   }
+
+   @Override
+   public void enterTermQuery(TermQueryContext ctx) {
+      fieldName = null;
+      termToken = null;
+   }
+
+   @Override
+   public void exitFieldName(FieldNameContext ctx) {
+      fieldName = ctx.getStart().getText();
+   }
+
+   @Override
+   public void exitTerm(TermContext ctx) {
+      termToken = ctx.getStart();
+   }
+
+   @Override
+   public void exitTermQuery(TermQueryContext ctx) {
+
+      if (termToken == null) {
+         // syntax error
+         return;
+      }
+
+      BooleanQuery parent = booleanQueryStack.getLast();
+
+      DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(parent, getOccur(), false);
+
+      SimpleComparableCharSequence value = new SimpleComparableCharSequence(input, termToken.getStartIndex(),
+            1 + termToken.getStopIndex() - termToken.getStartIndex());
+
+      dmq.addClause((fieldName != null) ? new Term(dmq, fieldName, value) : new Term(dmq, value));
+
+      parent.addClause(dmq);
+
+      fieldName = null;
+      termToken = null;
+   }
+
+   Occur getOccur() {
+      if (occurBuffer == Occur.SHOULD && operatorStack.getLast() == Operator.AND) {
+         return Occur.MUST;
+      } else {
+         return occurBuffer;
+      }
+   }
+
+}
@@ -78,7 +78,7 @@ public class QueryTransformerVisitor extends QueryBaseVisitor<Node> {
          parent.addClause(bq);
 
          operatorStack.add(Operator.NONE);
-         booleanQueryStack.add(query);
+         booleanQueryStack.add(bq);
       }
       super.visitNoopQuery(ctx);
       if (parent != this.query) {
@@ -0,0 +1,105 @@
+package querqy.antlr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>Measures the parse latency of the {@link ANTLRQueryParser} with a cold prediction DFA (like after a restart
+ * or core reload), after warming up the DFA with {@link ANTLRQueryParserFactory#DEFAULT_WARM_UP_QUERIES}, and in
+ * the steady state. This is not a unit test and it is not run by the build. Run it from the test classpath:</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=querqy.antlr.ANTLRQueryParserBenchmark \
+ *     -Dexec.classpathScope=test
+ * </pre>
+ *
+ * <p>The cold runs are simulated by discarding the shared DFA. As the JIT compiler has already seen the parser
+ * by then, the numbers show the cost of building the DFA, not the cost of loading and compiling the classes.</p>
+ */
+public class ANTLRQueryParserBenchmark {
+
+    static final int NUM_QUERIES = 2000;
+    static final int COLD_QUERIES = 200;
+    static final int ROUNDS = 50;
+
+    public static void main(final String[] args) {
+
+        final List<String> queries = createQueries(NUM_QUERIES, new Random(42L));
+        final ANTLRQueryParser parser = new ANTLRQueryParser();
+
+        long blackHole = 0;
+
+        // JIT warm-up
+        for (int i = 0; i < ROUNDS; i++) {
+            blackHole += run(parser, queries, queries.size());
+        }
+
+        long coldTime = 0;
+        long warmedUpTime = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+
+            ANTLRQueryParser.clearDFA();
+            long timeBefore = System.nanoTime();
+            blackHole += run(parser, queries, COLD_QUERIES);
+            coldTime += System.nanoTime() - timeBefore;
+
+            ANTLRQueryParser.clearDFA();
+            ANTLRQueryParser.warmUp(ANTLRQueryParserFactory.DEFAULT_WARM_UP_QUERIES);
+            timeBefore = System.nanoTime();
+            blackHole += run(parser, queries, COLD_QUERIES);
+            warmedUpTime += System.nanoTime() - timeBefore;
+        }
+
+        final long timeBefore = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            blackHole += run(parser, queries, queries.size());
+        }
+        final long steadyTime = System.nanoTime() - timeBefore;
+
+        final long coldQueries = (long) ROUNDS * COLD_QUERIES;
+
+        System.out.printf("cold        ns/query:      %d (first %d queries)%n", coldTime / coldQueries,
+                COLD_QUERIES);
+        System.out.printf("warmed up   ns/query:      %d (first %d queries)%n", warmedUpTime / coldQueries,
+                COLD_QUERIES);
+        System.out.printf("steady      ns/query:      %d%n", steadyTime / ((long) ROUNDS * queries.size()));
+        System.out.printf("DFA states:                %d%n", ANTLRQueryParser.getDFAStateCount());
+        System.out.printf("(%d)%n", blackHole);
+
+    }
+
+    static long run(final ANTLRQueryParser parser, final List<String> queries, final int count) {
+        long result = 0;
+        for (int i = 0; i < count; i++) {
+            result += parser.parse(queries.get(i)).getClauses().size();
+        }
+        return result;
+    }
+
+    static List<String> createQueries(final int count, final Random random) {
+        final String[] prefixes = {"", "", "", "+", "-"};
+        final String[] fields = {"", "", "", "f1:", "f2:"};
+        final List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int numClauses = 1 + random.nextInt(5);
+            final boolean bool = random.nextInt(4) == 0;
+            final String op = random.nextBoolean() ? " AND " : " OR ";
+            for (int j = 0; j < numClauses; j++) {
+                if (j > 0) {
+                    sb.append(bool ? op : " ");
+                }
+                sb.append(prefixes[random.nextInt(prefixes.length)]);
+                if (random.nextInt(8) == 0) {
+                    sb.append("(w").append(random.nextInt(100)).append(" w").append(random.nextInt(100)).append(')');
+                } else {
+                    sb.append(fields[random.nextInt(fields.length)]).append('w').append(random.nextInt(1000));
+                }
+            }
+            queries.add(sb.toString());
+        }
+        return queries;
+    }
+
+}
@@ -0,0 +1,166 @@
+package querqy.antlr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.must;
+import static querqy.QuerqyMatchers.term;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.Test;
+
+import querqy.antlr.parser.QueryLexer;
+import querqy.antlr.parser.QueryParser;
+import querqy.model.Query;
+
+public class ANTLRQueryParserTest {
+
+   @Test
+   public void testThatWarmUpBuildsTheSharedDFA() throws Exception {
+      ANTLRQueryParser.clearDFA();
+      assertEquals(0, ANTLRQueryParser.getDFAStateCount());
+
+      new ANTLRQueryParserFactory(Arrays.asList("f1:a b", "a AND b"));
+      int count = ANTLRQueryParser.getDFAStateCount();
+      assertTrue(count > 0);
+
+      // the DFA is shared, a new parser doesn't have to add states for the same input
+      new ANTLRQueryParser().parse("f1:a b");
+      assertEquals(count, ANTLRQueryParser.getDFAStateCount());
+
+      new ANTLRQueryParserFactory();
+      assertTrue(ANTLRQueryParser.getDFAStateCount() > count);
+   }
+
+   @Test
+   public void testThatResultEqualsFullLLPrediction() throws Exception {
+      ANTLRQueryParser.clearDFA();
+      for (String input : ANTLRQueryParserFactory.DEFAULT_WARM_UP_QUERIES) {
+         assertEquals(input, parseLL(input), new ANTLRQueryParser().parse(input));
+      }
+   }
+
+   @Test
+   public void testThatInputIsParsedAfterSLLFailure() throws Exception {
+      // syntax errors make SLL bail out, LL recovers
+      assertEquals(parseLL("a AND"), new ANTLRQueryParser().parse("a AND"));
+      assertEquals(parseLL("a AND OR b"), new ANTLRQueryParser().parse("a AND OR b"));
+   }
+
+   @Test
+   public void testThatWarmUpDoesNotReportSyntaxErrors() throws Exception {
+      PrintStream err = System.err;
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      System.setErr(new PrintStream(out, true, "UTF-8"));
+      try {
+         new ANTLRQueryParserFactory();
+         new ANTLRQueryParserFactory(Arrays.asList("(a b", "a AND", "a) b"));
+      } finally {
+         System.setErr(err);
+      }
+      assertEquals("", out.toString("UTF-8"));
+   }
+
+   @Test
+   public void testSimpleQueries() throws Exception {
+      for (String input : Arrays.asList("a", " a\tb ", "+a -b c", "-a$b +f\u00fc!r", "ANDroid ORacle")) {
+         Query query = ANTLRQueryParser.parseSimpleQuery(input.toCharArray());
+         assertNotNull(input, query);
+         assertEquals(input, parseLL(input), query);
+      }
+   }
+
+   @Test
+   public void testThatComplexQueriesAreNotParsedAsSimpleQueries() throws Exception {
+      for (String input : Arrays.asList("", " ", "a AND b", "OR", "f1:a", "(a)", "a+b", "a -", "+-a", "a \"b\"",
+            "a\nb")) {
+         assertNull(input, ANTLRQueryParser.parseSimpleQuery(input.toCharArray()));
+      }
+   }
+
+   @Test
+   public void testNestedNoopQuery() throws Exception {
+      Query q = new ANTLRQueryParser().parse("a AND (b c)");
+      assertThat(q,
+            bq(
+                  bq(
+                        dmq(must(), term("a")),
+                        bq(must(),
+                              dmq(term("b")),
+                              dmq(term("c"))
+                        )
+                  )
+            ));
+      assertEquals(q, parseLL("a AND (b c)"));
+   }
+
+   @Test
+   public void testThatStreamingParserEqualsParseTreeVisitor() throws Exception {
+
+      String[] tokens = {"a", "b", "f1:", "+", "-", "(", ")", " ", " ", " ", "AND", "OR", "\u00e9", "."};
+
+      Random random = new Random(4711L);
+      ANTLRQueryParser parser = new ANTLRQueryParser();
+
+      for (int i = 0; i < 500; i++) {
+         StringBuilder sb = new StringBuilder();
+         for (int j = 0, len = 1 + random.nextInt(12); j < len; j++) {
+            sb.append(tokens[random.nextInt(tokens.length)]);
+         }
+         String input = sb.toString();
+         if (hasSyntaxErrors(input)) {
+            continue;
+         }
+         assertEquals(input, parseLL(input), parser.parse(input));
+      }
+   }
+
+   Query parseLL(String input) {
+      char[] inputChars = input.toCharArray();
+      QueryParser parser = new QueryParser(new CommonTokenStream(
+            new QueryLexer(new ANTLRInputStream(inputChars, inputChars.length))));
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      return (Query) parser.query().accept(new QueryTransformerVisitor(inputChars));
+   }
+
+   boolean hasSyntaxErrors(String input) {
+      char[] inputChars = input.toCharArray();
+      QueryLexer lexer = new QueryLexer(new ANTLRInputStream(inputChars, inputChars.length));
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(new BailErrorListener());
+      QueryParser parser = new QueryParser(new CommonTokenStream(lexer));
+      parser.removeErrorListeners();
+      parser.setErrorHandler(new BailErrorStrategy());
+      try {
+         parser.query();
+         return false;
+      } catch (RuntimeException e) {
+         return true;
+      }
+   }
+
+   static class BailErrorListener extends BaseErrorListener {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+            int charPositionInLine, String msg, RecognitionException e) {
+         throw new ParseCancellationException(msg);
+      }
+   }
+
+}
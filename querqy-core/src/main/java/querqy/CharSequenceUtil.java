@@ -4,6 +4,8 @@
 package querqy;
 
 /**
+ * Helpers for implementing the contract of {@link ComparableCharSequence}.
+ * 
  * @author René Kriegler, @renekrie
  */
 public class CharSequenceUtil {
@@ -15,6 +17,13 @@ public class CharSequenceUtil {
         if (seq1 == null || obj == null)
             return false;
 
+        // fast paths that avoid a charAt() call per char
+        if (seq1 instanceof SimpleComparableCharSequence && obj instanceof SimpleComparableCharSequence)
+            return ((SimpleComparableCharSequence) seq1).equals((SimpleComparableCharSequence) obj);
+
+        if (seq1 instanceof String && obj instanceof String)
+            return seq1.equals(obj);
+
         if (!CharSequence.class.isAssignableFrom(obj.getClass()))
             return false;
 
@@ -48,8 +57,25 @@ public class CharSequenceUtil {
         return seq1.length() - seq2.length();
     }
 
+    /**
+     * Calculate the hash code of a CharSequence as defined for a {@link ComparableCharSequence}. The sequences
+     * of this package that cache their hash code return the cached value.
+     * 
+     * @param seq The sequence
+     * @return The hash code
+     */
     public static int hashCode(final CharSequence seq) {
 
+        if (seq instanceof SimpleComparableCharSequence || seq instanceof ComparableCharSequenceWrapper
+                || seq instanceof CompoundCharSequence) {
+            return seq.hashCode();
+        }
+
+        return calculateHashCode(seq);
+    }
+
+    static int calculateHashCode(final CharSequence seq) {
+
         final int prime = 31;
         int result = 1;
 
@@ -4,6 +4,9 @@
 package querqy;
 
 /**
+ * Wraps a {@link CharSequence} that doesn't implement {@link ComparableCharSequence}. The wrapped sequence must
+ * not change as the hash code is only calculated once.
+ * 
  * @author René Kriegler, @renekrie
  *
  */
@@ -13,6 +16,11 @@ public class ComparableCharSequenceWrapper implements ComparableCharSequence {
 
     final CharSequence sequence;
 
+    /**
+     * The hash code or 0 if it hasn't been calculated yet
+     */
+    int hash = 0;
+
     public ComparableCharSequenceWrapper(final CharSequence sequence) {
         this.sequence = sequence;
     }
@@ -58,13 +66,27 @@ public class ComparableCharSequenceWrapper implements ComparableCharSequence {
        return CharSequenceUtil.compare(this, other);
    }
 
+   /**
+    * Same as {@link CharSequenceUtil#hashCode(CharSequence)}, but only calculated once
+    */
    @Override
    public int hashCode() {
-      return CharSequenceUtil.hashCode(this);
+      int h = hash;
+      if (h == 0) {
+         h = CharSequenceUtil.calculateHashCode(sequence);
+         hash = h;
+      }
+      return h;
    }
 
    @Override
    public boolean equals(final Object obj) {
+       if (obj instanceof ComparableCharSequenceWrapper && obj != this) {
+           final ComparableCharSequenceWrapper other = (ComparableCharSequenceWrapper) obj;
+           if (hash != 0 && other.hash != 0 && hash != other.hash) {
+               return false;
+           }
+       }
        return CharSequenceUtil.equals(this, obj);
    }
 
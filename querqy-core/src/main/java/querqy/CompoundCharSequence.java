@@ -6,6 +6,9 @@ package querqy;
 import java.util.List;
 
 /**
+ * A {@link ComparableCharSequence} that is made of other {@link CharSequence}s, optionally joined by a separator.
+ * The parts must not change after they have been passed to the constructor. The offsets of the parts and the
+ * hash code are only calculated once.
  * 
  * @author rene
  *
@@ -13,6 +16,23 @@ import java.util.List;
 public class CompoundCharSequence implements ComparableCharSequence {
     
    final CharSequence[] parts;
+
+   /**
+    * offsets[i] is the index of the first char of parts[i], offsets[parts.length] is the length
+    */
+   final int[] offsets;
+
+   /**
+    * The index of the part that contained the last char that we looked up. charAt() is mostly called for
+    * ascending indexes, so that we can often avoid searching the part. This is only a hint that is validated
+    * before use, so it doesn't have to be synchronized.
+    */
+   int lastPart = 0;
+
+   /**
+    * The hash code or 0 if it hasn't been calculated yet
+    */
+   int hash = 0;
    
    public CompoundCharSequence(final List<? extends CharSequence> parts) {
        this(null, parts);
@@ -46,6 +66,11 @@ public class CompoundCharSequence implements ComparableCharSequence {
          }
       }
 
+      offsets = new int[this.parts.length + 1];
+      for (int i = 0; i < this.parts.length; i++) {
+         offsets[i + 1] = offsets[i] + this.parts[i].length();
+      }
+
    }
 
    /*
@@ -55,19 +80,7 @@ public class CompoundCharSequence implements ComparableCharSequence {
     */
    @Override
    public int length() {
-
-      int length = parts[0].length();
-
-      if (parts.length > 1) {
-
-         for (int i = 1; i < parts.length; i++) {
-            length += parts[i].length();
-         }
-
-      }
-
-      return length;
-
+      return offsets[parts.length];
    }
 
    /*
@@ -82,23 +95,38 @@ public class CompoundCharSequence implements ComparableCharSequence {
          return parts[0].charAt(index);
       }
 
-      final PartInfo partInfo = getPartInfoForCharIndex(index);
-      return parts[partInfo.partIndex].charAt(index - partInfo.globalStart);
+      int part = lastPart;
+      if (index < offsets[part] || index >= offsets[part + 1]) {
+         part = getPartIndexForCharIndex(index);
+         lastPart = part;
+      }
 
-   }
+      return parts[part].charAt(index - offsets[part]);
 
-   PartInfo getPartInfoForCharIndex(final int index) {
-      int globalEnd = 0;
-      for (int i = 0, last = parts.length - 1; i <= last; i++) {
+   }
 
-         int globalStart = globalEnd;
-         globalEnd = globalStart + parts[i].length();
-         if (globalEnd > index) {
-            return new PartInfo(i, globalStart);
+   /**
+    * Find the part that contains the char at the given index.
+    * 
+    * @param index The char index
+    * @return The index of the part
+    */
+   int getPartIndexForCharIndex(final int index) {
+      if (index < 0 || index >= length()) {
+         throw new ArrayIndexOutOfBoundsException(index);
+      }
+      // find the last part that starts at or before index - this skips empty parts
+      int low = 0;
+      int high = parts.length - 1;
+      while (low < high) {
+         final int mid = (low + high + 1) >>> 1;
+         if (offsets[mid] <= index) {
+            low = mid;
+         } else {
+            high = mid - 1;
          }
-
       }
-      throw new ArrayIndexOutOfBoundsException(index);
+      return low;
    }
 
    /*
@@ -122,48 +150,39 @@ public class CompoundCharSequence implements ComparableCharSequence {
           }
       }
 
-      final PartInfo partInfoStart = getPartInfoForCharIndex(start);
-      final PartInfo partInfoEnd = getPartInfoForCharIndex(end - 1); // end is exclusive
+      final int partStart = getPartIndexForCharIndex(start);
+      final int partEnd = getPartIndexForCharIndex(end - 1); // end is exclusive
 
-      if (partInfoStart.partIndex == partInfoEnd.partIndex) {
+      if (partStart == partEnd) {
        // TODO: do subsequence as view in wrapper
          return new ComparableCharSequenceWrapper(
-                 parts[partInfoStart.partIndex]
-                         .subSequence(start - partInfoStart.globalStart, end - partInfoStart.globalStart));
+                 parts[partStart].subSequence(start - offsets[partStart], end - offsets[partStart]));
       }
 
-      final CharSequence[] resParts = new CharSequence[partInfoEnd.partIndex - partInfoStart.partIndex + 1];
-      resParts[0] = parts[partInfoStart.partIndex]
-              .subSequence(start - partInfoStart.globalStart, parts[partInfoStart.partIndex].length());
+      final CharSequence[] resParts = new CharSequence[partEnd - partStart + 1];
+      resParts[0] = parts[partStart].subSequence(start - offsets[partStart], parts[partStart].length());
 
-      for (int i = partInfoStart.partIndex + 1, j = 1; i < partInfoEnd.partIndex; i++) {
+      for (int i = partStart + 1, j = 1; i < partEnd; i++) {
          resParts[j++] = parts[i];
       }
-      resParts[resParts.length - 1] = parts[partInfoEnd.partIndex].subSequence(0, end - partInfoEnd.globalStart);
+      resParts[resParts.length - 1] = parts[partEnd].subSequence(0, end - offsets[partEnd]);
 
       return new CompoundCharSequence(null, resParts);
    }
 
-   class PartInfo {
-       final int partIndex;
-       final int globalStart;
-
-       public PartInfo(final int partIndex, final int globalStart) {
-           this.partIndex = partIndex;
-           this.globalStart = globalStart;
-       }
-   }
-
     @Override
     public int compareTo(final CharSequence other) {
 
-        // TODO: avoid calls to this.charAt(i) to make comparison faster
         final int length = length();
-        for (int i = 0, len = Math.min(length, other.length()); i < len; i++) {
-            final char ch1 = charAt(i);
-            final char ch2 = other.charAt(i);
-            if (ch1 != ch2) {
-                return ch1 - ch2;
+        final int len = Math.min(length, other.length());
+        for (int p = 0, i = 0; i < len; p++) {
+            final CharSequence part = parts[p];
+            for (int j = 0, partLen = part.length(); j < partLen && i < len; j++, i++) {
+                final char ch1 = part.charAt(j);
+                final char ch2 = other.charAt(i);
+                if (ch1 != ch2) {
+                    return ch1 - ch2;
+                }
             }
         }
 
@@ -171,22 +190,63 @@ public class CompoundCharSequence implements ComparableCharSequence {
 
     }
 
+   /**
+    * Copy the chars of this sequence into a single array. Use this for sequences that will be compared or hashed
+    * many times, for example if they are used as a cache key.
+    * 
+    * @return A sequence that equals this sequence and that doesn't depend on the parts
+    */
+   public SimpleComparableCharSequence flatten() {
+      final char[] chars = new char[length()];
+      for (int p = 0; p < parts.length; p++) {
+         final CharSequence part = parts[p];
+         final int offset = offsets[p];
+         if (part instanceof String) {
+            ((String) part).getChars(0, part.length(), chars, offset);
+         } else {
+            for (int j = 0, len = part.length(); j < len; j++) {
+               chars[offset + j] = part.charAt(j);
+            }
+         }
+      }
+      return new SimpleComparableCharSequence(chars, 0, chars.length);
+   }
+
+   /**
+    * Same as {@link CharSequenceUtil#hashCode(CharSequence)}, but only calculated once
+    */
    @Override
    public int hashCode() {
-      return CharSequenceUtil.hashCode(this);
+      int h = hash;
+      if (h == 0) {
+         h = 1;
+         for (int p = 0; p < parts.length; p++) {
+            final CharSequence part = parts[p];
+            for (int j = 0, len = part.length(); j < len; j++) {
+               h = 31 * h + part.charAt(j);
+            }
+         }
+         hash = h;
+      }
+      return h;
    }
 
    @Override
    public boolean equals(final Object obj) {
+       if (obj instanceof CompoundCharSequence && obj != this) {
+           final CompoundCharSequence other = (CompoundCharSequence) obj;
+           if (hash != 0 && other.hash != 0 && hash != other.hash) {
+               return false;
+           }
+       }
        return CharSequenceUtil.equals(this, obj);
    }
 
    @Override
    public String toString() {
-       final StringBuilder buf = new StringBuilder();
+       final StringBuilder buf = new StringBuilder(length());
        for (int i = 0; i < parts.length; i++) {
-           buf.append(parts[i].toString());
-
+           buf.append(parts[i]);
        }
        return buf.toString();
    }
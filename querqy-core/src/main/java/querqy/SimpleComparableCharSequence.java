@@ -4,6 +4,9 @@
 package querqy;
 
 /**
+ * A {@link ComparableCharSequence} that is a slice of a char array. The chars in the slice must not be changed
+ * after the sequence has been created as the hash code is only calculated once.
+ * 
  * @author René Kriegler, @renekrie
  *
  */
@@ -13,6 +16,11 @@ public class SimpleComparableCharSequence implements ComparableCharSequence {
    final int start;
    final int length;
 
+   /**
+    * The hash code or 0 if it hasn't been calculated yet
+    */
+   int hash = 0;
+
    public SimpleComparableCharSequence(final char[] value, final int start, final int length) {
       if ((start + length) > value.length) {
          throw new ArrayIndexOutOfBoundsException(start + length);
@@ -65,20 +73,65 @@ public class SimpleComparableCharSequence implements ComparableCharSequence {
 
    @Override
    public int compareTo(final CharSequence other) {
+       if (other instanceof SimpleComparableCharSequence) {
+           final SimpleComparableCharSequence seq = (SimpleComparableCharSequence) other;
+           for (int i = 0, len = Math.min(length, seq.length); i < len; i++) {
+               final char ch1 = value[start + i];
+               final char ch2 = seq.value[seq.start + i];
+               if (ch1 != ch2) {
+                   return ch1 - ch2;
+               }
+           }
+           return length - seq.length;
+       }
        return CharSequenceUtil.compare(this, other);
    }
 
+   /**
+    * Same as {@link CharSequenceUtil#hashCode(CharSequence)}, but only calculated once
+    */
    @Override
    public int hashCode() {
-
-      return CharSequenceUtil.hashCode(this);
+      int h = hash;
+      if (h == 0) {
+         h = 1;
+         for (int i = start, end = start + length; i < end; i++) {
+            h = 31 * h + value[i];
+         }
+         hash = h;
+      }
+      return h;
    }
 
    @Override
    public boolean equals(final Object obj) {
+       if (obj instanceof SimpleComparableCharSequence) {
+           return equals((SimpleComparableCharSequence) obj);
+       }
        return CharSequenceUtil.equals(this, obj);
    }
 
+   boolean equals(final SimpleComparableCharSequence other) {
+       if (this == other) {
+           return true;
+       }
+       if (length != other.length) {
+           return false;
+       }
+       if (hash != 0 && other.hash != 0 && hash != other.hash) {
+           return false;
+       }
+       if (value == other.value && start == other.start) {
+           return true;
+       }
+       for (int i = 0; i < length; i++) {
+           if (value[start + i] != other.value[other.start + i]) {
+               return false;
+           }
+       }
+       return true;
+   }
+
    @Override
    public String toString() {
        return new String(value, start, length);
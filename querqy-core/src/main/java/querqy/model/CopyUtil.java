@@ -0,0 +1,82 @@
+/**
+ *
+ */
+package querqy.model;
+
+/**
+ * <p>Deep copies of query nodes that keep the generated flag of each node.</p>
+ *
+ * <p>The <code>clone(newParent, generated)</code> methods of the nodes set the given flag on all nodes of the
+ * copy, and {@link DisjunctionMaxQuery#clone(BooleanQuery)} passes its own flag down to its clauses. A
+ * non-generated {@link DisjunctionMaxQuery} that contains generated terms, like a synonym that was added by a
+ * parser, would thus lose the flag of these terms.</p>
+ */
+public class CopyUtil {
+
+    /**
+     * Copy a query.
+     *
+     * @param query The query to copy
+     * @return A copy in which each node has the same generated flag as in the original query
+     */
+    public static Query copy(final Query query) {
+        final Query copy = new Query();
+        for (final BooleanClause clause : query.getClauses()) {
+            copy.addClause(copyClause(clause, copy, false));
+        }
+        return copy;
+    }
+
+    /**
+     * Copy a clause of a {@link BooleanQuery}.
+     *
+     * @param clause The clause to copy
+     * @param newParent The parent of the copy
+     * @param generated Iff true, all nodes of the copy are marked as generated. Otherwise each node keeps its own flag.
+     * @return The copy
+     */
+    public static BooleanClause copyClause(final BooleanClause clause, final BooleanQuery newParent,
+                                           final boolean generated) {
+        if (clause instanceof DisjunctionMaxQuery) {
+            return copyDisjunctionMaxQuery((DisjunctionMaxQuery) clause, newParent, generated);
+        }
+        return copyBooleanQuery((BooleanQuery) clause, newParent, generated);
+    }
+
+    /**
+     * Copy a clause of a {@link DisjunctionMaxQuery}.
+     *
+     * @param clause The clause to copy
+     * @param newParent The parent of the copy
+     * @param generated Iff true, all nodes of the copy are marked as generated. Otherwise each node keeps its own flag.
+     * @return The copy
+     */
+    public static DisjunctionMaxClause copyClause(final DisjunctionMaxClause clause,
+                                                  final DisjunctionMaxQuery newParent, final boolean generated) {
+        if (clause instanceof Term) {
+            final Term term = (Term) clause;
+            return term.clone(newParent, generated || term.isGenerated());
+        }
+        return copyBooleanQuery((BooleanQuery) clause, newParent, generated);
+    }
+
+    static DisjunctionMaxQuery copyDisjunctionMaxQuery(final DisjunctionMaxQuery dmq, final BooleanQuery newParent,
+                                                       final boolean generated) {
+        final DisjunctionMaxQuery copy = new DisjunctionMaxQuery(newParent, dmq.getOccur(),
+                generated || dmq.isGenerated());
+        for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+            copy.addClause(copyClause(clause, copy, generated));
+        }
+        return copy;
+    }
+
+    static BooleanQuery copyBooleanQuery(final BooleanQuery bq, final BooleanParent newParent,
+                                         final boolean generated) {
+        final BooleanQuery copy = new BooleanQuery(newParent, bq.getOccur(), generated || bq.isGenerated());
+        for (final BooleanClause clause : bq.getClauses()) {
+            copy.addClause(copyClause(clause, copy, generated));
+        }
+        return copy;
+    }
+
+}
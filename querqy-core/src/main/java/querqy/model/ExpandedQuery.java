@@ -4,7 +4,7 @@
 package querqy.model;
 
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  *
@@ -43,7 +43,7 @@ public class ExpandedQuery {
 
    public void addFilterQuery(QuerqyQuery<?> filterQuery) {
       if (filterQueries == null) {
-         filterQueries = new LinkedList<>();
+         filterQueries = new ArrayList<>(4);
       }
       filterQueries.add(filterQuery);
    }
@@ -54,7 +54,7 @@ public class ExpandedQuery {
 
    public void addBoostUpQuery(BoostQuery boostUpQuery) {
       if (boostUpQueries == null) {
-         boostUpQueries = new LinkedList<>();
+         boostUpQueries = new ArrayList<>(4);
       }
       boostUpQueries.add(boostUpQuery);
    }
@@ -65,7 +65,7 @@ public class ExpandedQuery {
 
    public void addBoostDownQuery(BoostQuery boostDownQuery) {
       if (boostDownQueries == null) {
-         boostDownQueries = new LinkedList<>();
+         boostDownQueries = new ArrayList<>(4);
       }
       boostDownQueries.add(boostDownQuery);
    }
@@ -0,0 +1,354 @@
+/**
+ *
+ */
+package querqy.model;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <p>A 128-bit fingerprint of an {@link ExpandedQuery} and its decorations.</p>
+ *
+ * <p>The fingerprint is calculated from a canonical form of the query, which does not depend on the order of the
+ * clauses of a {@link DisjunctionMaxQuery} or on the order of the filter queries, boost queries and decorations.
+ * Expanded queries that only differ in this order, for example because the same rules were applied in a different
+ * order, get the same fingerprint. The clauses of a {@link BooleanQuery} keep their positional order, as the
+ * order of the query terms matters for phrase boosting: 'a b' and 'b a' get different fingerprints. The canonical
+ * form contains the field, value and generated flag of each term, the occur and generated flag of each sub-query,
+ * and the boost factor of each boost query. Duplicate clauses of a {@link DisjunctionMaxQuery} are ignored.</p>
+ *
+ * <p>The fingerprint only describes the expanded query. Request parameters that influence how the search engine
+ * builds and executes the query, like the query fields (qf), phrase fields (pf) or minimum should match (mm), are
+ * not part of the fingerprint. Callers that use the fingerprint as a cache key must add these parameters to the
+ * key themselves.</p>
+ *
+ * <p>The hash function is MurmurHash3 (x64, 128 bit) over the UTF-8 encoded canonical form.</p>
+ */
+public class Fingerprint {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final long high;
+    private final long low;
+
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Calculate the fingerprint of an expanded query without decorations.
+     *
+     * @param query The query
+     * @return The fingerprint
+     */
+    public static Fingerprint of(ExpandedQuery query) {
+        return of(query, null);
+    }
+
+    /**
+     * Calculate the fingerprint of an expanded query and its decorations.
+     *
+     * @param query The query
+     * @param decorations The decorations (see querqy.rewrite.commonrules.model.DecorateInstruction), can be null
+     * @return The fingerprint
+     */
+    public static Fingerprint of(ExpandedQuery query, Collection<?> decorations) {
+        final byte[] bytes = canonicalForm(query, decorations).getBytes(UTF8);
+        return murmur3(bytes, 0);
+    }
+
+    /**
+     * Create the canonical form from which the fingerprint is calculated.
+     *
+     * @param query The query
+     * @param decorations The decorations, can be null
+     * @return The canonical form
+     */
+    public static String canonicalForm(ExpandedQuery query, Collection<?> decorations) {
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("U").append(canonicalForm(query.getUserQuery()));
+
+        sb.append("|F");
+        appendSorted(canonicalForms(query.getFilterQueries()), sb);
+
+        sb.append("|B+");
+        appendSorted(canonicalBoostForms(query.getBoostUpQueries()), sb);
+
+        sb.append("|B-");
+        appendSorted(canonicalBoostForms(query.getBoostDownQueries()), sb);
+
+        sb.append("|D");
+        if (decorations != null) {
+            final List<String> forms = new ArrayList<>(decorations.size());
+            for (final Object decoration : decorations) {
+                forms.add(lengthPrefixed(String.valueOf(decoration)));
+            }
+            appendSorted(forms, sb);
+        } else {
+            sb.append("[]");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Create the canonical form of a single query node.
+     *
+     * @param node The node
+     * @return The canonical form
+     */
+    public static String canonicalForm(Node node) {
+
+        if (node instanceof Term) {
+            final Term term = (Term) node;
+            final StringBuilder sb = new StringBuilder();
+            sb.append('T').append(term.isGenerated() ? 'g' : 'u');
+            sb.append(term.getField() == null ? "*" : lengthPrefixed(term.getField()));
+            sb.append(lengthPrefixed(term.getValue().toString()));
+            return sb.toString();
+        }
+
+        if (node instanceof DisjunctionMaxQuery) {
+            final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) node;
+            final TreeSet<String> forms = new TreeSet<>();
+            for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+                forms.add(canonicalForm(clause));
+            }
+            final StringBuilder sb = new StringBuilder();
+            sb.append('D').append(occur(dmq.getOccur())).append(dmq.isGenerated() ? 'g' : 'u');
+            appendSorted(new ArrayList<>(forms), sb);
+            return sb.toString();
+        }
+
+        if (node instanceof BooleanQuery) {
+            final BooleanQuery bq = (BooleanQuery) node;
+            final List<String> forms = new ArrayList<>(bq.getClauseCount());
+            for (final BooleanClause clause : bq.getClauses()) {
+                forms.add(canonicalForm(clause));
+            }
+            final StringBuilder sb = new StringBuilder();
+            sb.append('B').append(occur(bq.getOccur())).append(bq.isGenerated() ? 'g' : 'u');
+            // keep the positional order
+            append(forms, sb);
+            return sb.toString();
+        }
+
+        if (node instanceof RawQuery) {
+            final RawQuery rawQuery = (RawQuery) node;
+            return "R" + occur(rawQuery.getOccur()) + (rawQuery.isGenerated() ? 'g' : 'u')
+                    + lengthPrefixed(rawQuery.getQueryString());
+        }
+
+        throw new IllegalArgumentException("Cannot create canonical form for " + node);
+    }
+
+    static List<String> canonicalForms(Collection<QuerqyQuery<?>> queries) {
+        if (queries == null) {
+            return Collections.emptyList();
+        }
+        final List<String> forms = new ArrayList<>(queries.size());
+        for (final QuerqyQuery<?> query : queries) {
+            forms.add(canonicalForm(query));
+        }
+        return forms;
+    }
+
+    static List<String> canonicalBoostForms(Collection<BoostQuery> boostQueries) {
+        if (boostQueries == null) {
+            return Collections.emptyList();
+        }
+        final List<String> forms = new ArrayList<>(boostQueries.size());
+        for (final BoostQuery boostQuery : boostQueries) {
+            forms.add(Float.toString(boostQuery.getBoost()) + canonicalForm(boostQuery.getQuery()));
+        }
+        return forms;
+    }
+
+    static void appendSorted(List<String> forms, StringBuilder sb) {
+        Collections.sort(forms);
+        append(forms, sb);
+    }
+
+    static void append(List<String> forms, StringBuilder sb) {
+        sb.append('[');
+        for (int i = 0, len = forms.size(); i < len; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(forms.get(i));
+        }
+        sb.append(']');
+    }
+
+    static char occur(Clause.Occur occur) {
+        switch (occur) {
+        case MUST: return '+';
+        case MUST_NOT: return '-';
+        default: return '~';
+        }
+    }
+
+    static String lengthPrefixed(String s) {
+        return s.length() + ":" + s;
+    }
+
+    /**
+     * MurmurHash3, x64 128-bit variant
+     */
+    static Fingerprint murmur3(byte[] data, int seed) {
+
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+
+        final int len = data.length;
+        final int nblocks = len / 16;
+
+        long h1 = seed & 0xffffffffL;
+        long h2 = seed & 0xffffffffL;
+
+        for (int i = 0; i < nblocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        final int tail = nblocks * 16;
+        long k1 = 0L;
+        long k2 = 0L;
+
+        switch (len & 15) {
+        case 15: k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+        case 14: k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+        case 13: k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+        case 12: k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+        case 11: k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+        case 10: k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+        case 9:
+            k2 ^= ((long) data[tail + 8] & 0xff);
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+        case 8: k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+        case 7: k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+        case 6: k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+        case 5: k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+        case 4: k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+        case 3: k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+        case 2: k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+        case 1:
+            k1 ^= ((long) data[tail] & 0xff);
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+        default:
+            break;
+        }
+
+        h1 ^= len;
+        h2 ^= len;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        return new Fingerprint(h1, h2);
+    }
+
+    static long getLong(byte[] data, int offset) {
+        return ((long) data[offset] & 0xff)
+                | (((long) data[offset + 1] & 0xff) << 8)
+                | (((long) data[offset + 2] & 0xff) << 16)
+                | (((long) data[offset + 3] & 0xff) << 24)
+                | (((long) data[offset + 4] & 0xff) << 32)
+                | (((long) data[offset + 5] & 0xff) << 40)
+                | (((long) data[offset + 6] & 0xff) << 48)
+                | (((long) data[offset + 7] & 0xff) << 56);
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     *
+     * @return The fingerprint as a 32 character hex string
+     */
+    public String toHexString() {
+        return toHex(high) + toHex(low);
+    }
+
+    static String toHex(long value) {
+        final String hex = Long.toHexString(value);
+        final StringBuilder sb = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Fingerprint other = (Fingerprint) obj;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public String toString() {
+        return toHexString();
+    }
+
+}
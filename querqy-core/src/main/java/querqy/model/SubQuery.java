@@ -3,7 +3,7 @@
  */
 package querqy.model;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -12,7 +12,7 @@ import java.util.List;
  */
 public abstract class SubQuery<P extends Node, C extends Node> extends Clause<P> {
 
-	protected final List<C> clauses = new LinkedList<>();
+	protected final List<C> clauses = new ArrayList<>(4);
 	
 	public SubQuery(P parentQuery, boolean generated) {
 		this(parentQuery, Occur.SHOULD, generated);
@@ -25,14 +25,57 @@ public abstract class SubQuery<P extends Node, C extends Node> extends Clause<P>
 	
 	@SuppressWarnings("unchecked")
 	public <T extends C> List<T> getClauses(Class<T> type) {
-		List<T> result = new LinkedList<>();
-		for (C clause: clauses) {
-			if (type.equals(clause.getClass())) {
-				result.add((T) clause);
+		final int size = clauses.size();
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (type.equals(clauses.get(i).getClass())) {
+				count++;
+			}
+		}
+		final List<T> result = new ArrayList<>(count);
+		if (count > 0) {
+			for (int i = 0; i < size; i++) {
+				final C clause = clauses.get(i);
+				if (type.equals(clause.getClass())) {
+					result.add((T) clause);
+				}
 			}
 		}
 		return result;
 	}
+
+	/**
+	 * Get the number of clauses of this query.
+	 * 
+	 * @return The number of clauses
+	 */
+	public int getClauseCount() {
+		return clauses.size();
+	}
+
+	/**
+	 * Get the clause at the given index. Together with {@link #getClauseCount()} this allows to iterate
+	 * over the clauses without allocating an iterator.
+	 * 
+	 * @param index The index of the clause
+	 * @return The clause at the given index
+	 */
+	public C getClause(int index) {
+		return clauses.get(index);
+	}
+
+	/**
+	 * Get the clause at the given index if it is of the given type.
+	 * 
+	 * @param index The index of the clause
+	 * @param type The required type of the clause
+	 * @return The clause at the given index or null if the clause is not of the given type.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends C> T getClause(int index, Class<T> type) {
+		final C clause = clauses.get(index);
+		return type.equals(clause.getClass()) ? (T) clause : null;
+	}
 	
 	public void addClause(C clause) {
 		if (clause.getParent() != this) {
@@ -41,12 +84,55 @@ public abstract class SubQuery<P extends Node, C extends Node> extends Clause<P>
 		clauses.add(clause);
 	}
 	
+	/**
+	 * Insert a clause at the given index.
+	 *
+	 * @param index The index at which the clause will be inserted
+	 * @param clause The clause
+	 */
+	public void addClause(int index, C clause) {
+		if (clause.getParent() != this) {
+			throw new IllegalArgumentException("This query is not a parent of " + clause);
+		}
+		clauses.add(index, clause);
+	}
+
 	public void removeClause(C clause) {
 	    if (clause.getParent() != this) {
             throw new IllegalArgumentException("This query is not a parent of " + clause);
         }
 	    clauses.remove(clause);
 	}
+
+	/**
+	 * Replace the clause at the given index.
+	 *
+	 * @param index The index of the clause to replace
+	 * @param clause The new clause
+	 * @return The clause that was replaced
+	 */
+	public C setClause(int index, C clause) {
+		if (clause.getParent() != this) {
+			throw new IllegalArgumentException("This query is not a parent of " + clause);
+		}
+		return clauses.set(index, clause);
+	}
+
+	/**
+	 * Find a clause by identity. Unlike {@link List#indexOf(Object)} on {@link #getClauses()}, this does not treat
+	 * equal clauses as the same clause.
+	 *
+	 * @param clause The clause
+	 * @return The index of the clause or -1 if it is not a clause of this query
+	 */
+	public int indexOfClause(C clause) {
+		for (int i = 0, size = clauses.size(); i < size; i++) {
+			if (clauses.get(i) == clause) {
+				return i;
+			}
+		}
+		return -1;
+	}
 	
 	public List<C> getClauses() {
 		return clauses;
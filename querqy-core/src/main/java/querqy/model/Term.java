@@ -19,6 +19,12 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
    protected final String field;
    protected final ComparableCharSequence value;
 
+   /**
+    * The hash code or 0 if it hasn't been calculated yet. Terms are used as keys in sets and maps of the rewriters
+    * and thus hashed many times.
+    */
+   private int hashCode = 0;
+
    public Term(final DisjunctionMaxQuery parentQuery, final String field, final CharSequence value, final boolean generated) {
       super(parentQuery, generated);
       this.field = field;
@@ -93,10 +99,14 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
 
    @Override
    public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((field == null) ? 0 : field.hashCode());
-      result = prime * result + ((value == null) ? 0 : CharSequenceUtil.hashCode(value));
+      int result = hashCode;
+      if (result == 0) {
+         final int prime = 31;
+         result = 1;
+         result = prime * result + ((field == null) ? 0 : field.hashCode());
+         result = prime * result + ((value == null) ? 0 : CharSequenceUtil.hashCode(value));
+         hashCode = result;
+      }
       return result;
    }
 
@@ -112,6 +122,9 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
          return false;
       }
       Term other = (Term) obj;
+      if (hashCode != 0 && other.hashCode != 0 && hashCode != other.hashCode) {
+         return false;
+      }
       if (field == null) {
          if (other.field != null) {
             return false;
@@ -123,7 +136,7 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
          if (other.value != null) {
             return false;
          }
-      } else if (! CharSequenceUtil.equals(this, value)) {
+      } else if (! CharSequenceUtil.equals(value, other.value)) {
          return false;
       }
       return true;
@@ -0,0 +1,72 @@
+/**
+ * 
+ */
+package querqy.parser;
+
+import querqy.model.CopyUtil;
+import querqy.model.Query;
+
+/**
+ * <p>A {@link QuerqyParserFactory} that decorates another factory with a {@link ParsedQueryCache}. Frequent
+ * queries are only parsed once, subsequent requests get a copy of the cached query.</p>
+ *
+ * <p>The decorated parser must always produce the same query for the same query string.</p>
+ */
+public class CachingQuerqyParserFactory implements QuerqyParserFactory {
+
+    protected final QuerqyParserFactory delegate;
+    protected final ParsedQueryCache cache;
+
+    /**
+     *
+     * @param delegate The factory for the parsers that parse the queries that are not in the cache yet
+     * @param maxSize The maximum number of cached queries
+     */
+    public CachingQuerqyParserFactory(final QuerqyParserFactory delegate, final int maxSize) {
+        this(delegate, new ParsedQueryCache(maxSize));
+    }
+
+    public CachingQuerqyParserFactory(final QuerqyParserFactory delegate, final ParsedQueryCache cache) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public QuerqyParser createParser() {
+        return new QuerqyParser() {
+            @Override
+            public Query parse(final String input) {
+                return CachingQuerqyParserFactory.parse(input, cache, delegate);
+            }
+        };
+    }
+
+    /**
+     * Get a copy of the cached query or parse the input with a new parser from the factory and cache the result.
+     *
+     * @param input The query string
+     * @param cache The cache
+     * @param factory Creates the parser if the query is not cached
+     * @return The parsed query, which the caller is free to change
+     */
+    public static Query parse(final String input, final ParsedQueryCache cache, final QuerqyParserFactory factory) {
+        Query query = cache.get(input);
+        if (query == null) {
+            final Query template = factory.createParser().parse(input);
+            query = CopyUtil.copy(template);
+            cache.put(input, template);
+        }
+        return query;
+    }
+
+    public ParsedQueryCache getCache() {
+        return cache;
+    }
+
+}
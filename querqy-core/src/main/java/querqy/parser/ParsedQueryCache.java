@@ -0,0 +1,112 @@
+/**
+ * 
+ */
+package querqy.parser;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import querqy.model.CopyUtil;
+import querqy.model.Query;
+
+/**
+ * <p>A bounded, concurrent cache of parsed queries by query string.</p>
+ *
+ * <p>The cached queries are templates that must never be changed. {@link #get(String)} returns a copy that the
+ * caller can rewrite. Copying only creates the query nodes, the term values are shared, which is much cheaper than
+ * parsing (and analysing) the query string again.</p>
+ *
+ * <p>If the cache is full, an arbitrary entry is evicted for each new entry. Frequent queries are thus likely to
+ * stay in the cache or to be added again soon, without the costs of maintaining an access order across threads.</p>
+ */
+public class ParsedQueryCache {
+
+    protected final int maxSize;
+    protected final ConcurrentHashMap<String, Query> templates;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+
+    /**
+     *
+     * @param maxSize The maximum number of cached queries
+     */
+    public ParsedQueryCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        this.maxSize = maxSize;
+        this.templates = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    /**
+     * Get a copy of the cached query for the query string.
+     *
+     * @param input The query string
+     * @return A copy of the cached query or null if the query is not cached
+     */
+    public Query get(final String input) {
+        final Query template = templates.get(input);
+        if (template == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return CopyUtil.copy(template);
+    }
+
+    /**
+     * Cache a parsed query. The cache takes ownership of the query, which must not be changed afterwards.
+     *
+     * @param input The query string
+     * @param query The parsed query
+     */
+    public void put(final String input, final Query query) {
+        if (templates.size() >= maxSize && !templates.containsKey(input)) {
+            final Iterator<String> iterator = templates.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        templates.put(input, query);
+    }
+
+    public void clear() {
+        templates.clear();
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     *
+     * @return The ratio of hits to lookups (0 if there were no lookups)
+     */
+    public double getHitRatio() {
+        final long h = hits.get();
+        final long lookups = h + misses.get();
+        return lookups == 0L ? 0.0 : (double) h / lookups;
+    }
+
+}
@@ -3,6 +3,8 @@
  */
 package querqy.parser;
 
+import querqy.ComparableCharSequence;
+import querqy.SimpleComparableCharSequence;
 import querqy.model.Clause.Occur;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.Query;
@@ -12,12 +14,25 @@ import querqy.model.Term;
  * A simple QuerqyParser that breaks a query string into clauses at whitespace.
  * Clauses are either terms or terms with a boolean operator prefix
  * (&quot;+&quot; &quot;-&quot;).
+ *
+ * The terms are backed by slices of a single char array that is copied from
+ * the input, so that parsing only allocates the query nodes. The parser is
+ * stateless and a single instance can be shared by all threads (see
+ * {@link #INSTANCE}).
  * 
  * @author René Kriegler, @renekrie
  * 
  */
 public class WhiteSpaceQuerqyParser implements QuerqyParser {
 
+    /**
+     * A shared instance
+     */
+    public static final WhiteSpaceQuerqyParser INSTANCE = new WhiteSpaceQuerqyParser();
+
+    static final ComparableCharSequence PLUS = new SimpleComparableCharSequence(new char[] {'+'}, 0, 1);
+    static final ComparableCharSequence MINUS = new SimpleComparableCharSequence(new char[] {'-'}, 0, 1);
+
     enum Status {
         DEFAULT, OP, TERM
     }
@@ -34,13 +49,14 @@ public class WhiteSpaceQuerqyParser implements QuerqyParser {
 
         if (input.length() > 0) {
 
+            final char[] chars = input.toCharArray();
             int start = -1;
             Status status = Status.DEFAULT;
             Occur occur = Occur.SHOULD;
 
-            for (int idx = 0, len = input.length(); idx < len; idx++) {
+            for (int idx = 0, len = chars.length; idx < len; idx++) {
 
-                char ch = input.charAt(idx);
+                char ch = chars[idx];
 
                 switch (ch) {
                 case ' ':
@@ -53,7 +69,7 @@ public class WhiteSpaceQuerqyParser implements QuerqyParser {
                         DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(
                                 query, occur, false);
                         query.addClause(dmq);
-                        Term term = new Term(dmq, input.substring(start, idx));
+                        Term term = new Term(dmq, null, chars, start, idx - start, false);
                         dmq.addClause(term);
                         status = Status.DEFAULT;
                         occur = Occur.SHOULD;
@@ -65,8 +81,7 @@ public class WhiteSpaceQuerqyParser implements QuerqyParser {
                         DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(
                                 query, Occur.SHOULD, false);
                         query.addClause(dmq);
-                        Term term = new Term(dmq, occur == Occur.MUST ? "+"
-                                : "-");
+                        Term term = new Term(dmq, occur == Occur.MUST ? PLUS : MINUS);
                         dmq.addClause(term);
                         status = Status.DEFAULT;
                         occur = Occur.SHOULD;
@@ -109,7 +124,7 @@ public class WhiteSpaceQuerqyParser implements QuerqyParser {
                 DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, occur,
                         false);
                 query.addClause(dmq);
-                Term term = new Term(dmq, input.substring(start));
+                Term term = new Term(dmq, null, chars, start, chars.length - start, false);
                 dmq.addClause(term);
             }
             break;
@@ -117,8 +132,7 @@ public class WhiteSpaceQuerqyParser implements QuerqyParser {
                 DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(
                         query, Occur.SHOULD, false);
                 query.addClause(dmq);
-                Term term = new Term(dmq, occur == Occur.MUST ? "+"
-                        : "-");
+                Term term = new Term(dmq, occur == Occur.MUST ? PLUS : MINUS);
                 dmq.addClause(term);
             }
             break;
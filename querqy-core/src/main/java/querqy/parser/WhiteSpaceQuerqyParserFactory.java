@@ -4,7 +4,8 @@
 package querqy.parser;
 
 /**
- * This factory creates a {@link WhiteSpaceQuerqyParser}.
+ * This factory provides a {@link WhiteSpaceQuerqyParser}. As the parser is
+ * stateless, the same instance is returned for every call.
  * 
  * @author René Kriegler, @renekrie
  *
@@ -18,7 +19,7 @@ public class WhiteSpaceQuerqyParserFactory implements QuerqyParserFactory {
     */
    @Override
    public QuerqyParser createParser() {
-      return new WhiteSpaceQuerqyParser();
+      return WhiteSpaceQuerqyParser.INSTANCE;
    }
 
 }
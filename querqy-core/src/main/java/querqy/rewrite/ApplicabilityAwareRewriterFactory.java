@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.Map;
+
+import querqy.model.ExpandedQuery;
+
+/**
+ * <p>A {@link RewriterFactory} that can tell cheaply whether its rewriter could change a query at all.</p>
+ *
+ * <p>The {@link RewriteChain} calls {@link #isApplicable(ExpandedQuery, Map)} before it creates the rewriter and
+ * skips the rewriter if this method returns false. Implementations should only look at the query terms and compare
+ * them to a summary of the rewriter's vocabulary (for example, the terms of rule inputs). The check must be
+ * conservative: returning true for a query that will not be changed is fine, returning false for a query that
+ * would be changed is a bug.</p>
+ */
+public interface ApplicabilityAwareRewriterFactory extends RewriterFactory {
+
+    /**
+     *
+     * @param query The query in its current state in the rewrite chain
+     * @param context The rewrite context
+     * @return false if the rewriter certainly cannot change the query, true otherwise
+     */
+    boolean isApplicable(ExpandedQuery query, Map<String, ?> context);
+
+}
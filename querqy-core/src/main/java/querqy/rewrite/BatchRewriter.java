@@ -0,0 +1,255 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import querqy.model.ExpandedQuery;
+import querqy.parser.QuerqyParser;
+import querqy.parser.QuerqyParserFactory;
+
+/**
+ * <p>Parses and rewrites a stream of query strings in parallel, for example to replay a query log after changing
+ * rules or to warm caches.</p>
+ *
+ * <p>The queries are split into chunks that are parsed and rewritten by the threads of an {@link ExecutorService}.
+ * Each chunk uses its own {@link QuerqyParser} and creates its own rewriters via the {@link RewriteChain}, so that
+ * no state is shared between the threads apart from the (thread-safe) rewriter factories. Results are handed to
+ * a {@link ResultHandler} in the calling thread and in the order of the input. At most
+ * {@link #getMaxPendingChunks()} chunks are processed at the same time, which keeps memory usage constant for
+ * arbitrarily long input streams.</p>
+ */
+public class BatchRewriter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    /**
+     * Receives the results of a batch rewrite. All methods are called from the thread that called
+     * {@link BatchRewriter#rewrite(Iterator, ResultHandler)} and in the order of the input queries.
+     */
+    public interface ResultHandler {
+
+        void handle(Result result) throws Exception;
+
+    }
+
+    /**
+     * The result of rewriting a single query.
+     */
+    public static class Result {
+
+        final long index;
+        final String input;
+        final ExpandedQuery query;
+        final Map<String, Object> context;
+        final RuntimeException error;
+
+        public Result(long index, String input, ExpandedQuery query, Map<String, Object> context,
+                      RuntimeException error) {
+            this.index = index;
+            this.input = input;
+            this.query = query;
+            this.context = context;
+            this.error = error;
+        }
+
+        /**
+         *
+         * @return The position of the query in the input, starting at 0
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        /**
+         *
+         * @return The rewritten query or null if the query could not be parsed or rewritten
+         */
+        public ExpandedQuery getQuery() {
+            return query;
+        }
+
+        /**
+         *
+         * @return The rewrite context, including the decorations that were added by the rewriters
+         */
+        public Map<String, Object> getContext() {
+            return context;
+        }
+
+        /**
+         *
+         * @return The exception that was thrown while parsing or rewriting the query or null
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+    }
+
+    protected final RewriteChain rewriteChain;
+    protected final QuerqyParserFactory parserFactory;
+    protected final ExecutorService executor;
+    protected final int chunkSize;
+    protected final int maxPendingChunks;
+
+    /**
+     *
+     * @param rewriteChain The rewrite chain
+     * @param parserFactory Creates the parsers for the query strings
+     * @param executor The executor that parses and rewrites the queries
+     * @param parallelism The number of threads of the executor
+     */
+    public BatchRewriter(RewriteChain rewriteChain, QuerqyParserFactory parserFactory, ExecutorService executor,
+                         int parallelism) {
+        this(rewriteChain, parserFactory, executor, DEFAULT_CHUNK_SIZE, 2 * parallelism);
+    }
+
+    /**
+     *
+     * @param rewriteChain The rewrite chain
+     * @param parserFactory Creates the parsers for the query strings
+     * @param executor The executor that parses and rewrites the queries
+     * @param chunkSize The number of queries per task
+     * @param maxPendingChunks The maximum number of tasks that are submitted to the executor at the same time.
+     */
+    public BatchRewriter(RewriteChain rewriteChain, QuerqyParserFactory parserFactory, ExecutorService executor,
+                         int chunkSize, int maxPendingChunks) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+        if (maxPendingChunks < 1) {
+            throw new IllegalArgumentException("maxPendingChunks must be > 0");
+        }
+        this.rewriteChain = rewriteChain;
+        this.parserFactory = parserFactory;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    /**
+     * Parse and rewrite all queries.
+     *
+     * @param queries The query strings
+     * @param handler Receives the results in the order of the input
+     * @return The number of queries
+     * @throws Exception if the handler throws an exception or if the current thread is interrupted
+     */
+    public long rewrite(Iterator<String> queries, ResultHandler handler) throws Exception {
+
+        final ArrayDeque<Future<List<Result>>> pending = new ArrayDeque<>(maxPendingChunks);
+
+        long index = 0;
+
+        try {
+
+            while (queries.hasNext()) {
+
+                final List<String> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && queries.hasNext()) {
+                    chunk.add(queries.next());
+                }
+
+                if (pending.size() == maxPendingChunks) {
+                    handle(pending.removeFirst(), handler);
+                }
+
+                pending.addLast(executor.submit(new ChunkTask(index, chunk)));
+                index += chunk.size();
+            }
+
+            while (!pending.isEmpty()) {
+                handle(pending.removeFirst(), handler);
+            }
+
+        } finally {
+            for (final Future<List<Result>> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        return index;
+    }
+
+    protected void handle(Future<List<Result>> future, ResultHandler handler) throws Exception {
+
+        final List<Result> results;
+        try {
+            results = future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+
+        for (final Result result : results) {
+            handler.handle(result);
+        }
+    }
+
+    /**
+     * Parse and rewrite a single query.
+     *
+     * @param parser The parser of the current thread
+     * @param index The position of the query in the input
+     * @param input The query string
+     * @return The result
+     */
+    protected Result rewrite(QuerqyParser parser, long index, String input) {
+        final Map<String, Object> context = new HashMap<>();
+        try {
+            final ExpandedQuery query = rewriteChain.rewrite(new ExpandedQuery(parser.parse(input)), context);
+            return new Result(index, input, query, context, null);
+        } catch (RuntimeException e) {
+            return new Result(index, input, null, context, e);
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMaxPendingChunks() {
+        return maxPendingChunks;
+    }
+
+    class ChunkTask implements Callable<List<Result>> {
+
+        final long offset;
+        final List<String> chunk;
+
+        ChunkTask(long offset, List<String> chunk) {
+            this.offset = offset;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public List<Result> call() throws Exception {
+            final QuerqyParser parser = parserFactory.createParser();
+            final List<Result> results = new ArrayList<>(chunk.size());
+            for (int i = 0, len = chunk.size(); i < len; i++) {
+                results.add(rewrite(parser, offset + i, chunk.get(i)));
+            }
+            return results;
+        }
+
+    }
+
+}
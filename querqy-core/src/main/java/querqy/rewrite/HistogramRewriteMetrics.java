@@ -0,0 +1,82 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link RewriteMetrics} that record latencies into one {@link LatencyHistogram} per rewriter and per phase.
+ */
+public class HistogramRewriteMetrics implements RewriteMetrics {
+
+    final LatencyHistogram[] rewriterLatencies;
+    final ConcurrentMap<String, LatencyHistogram> phaseLatencies = new ConcurrentHashMap<>();
+
+    /**
+     *
+     * @param numRewriters The number of rewriter factories in the {@link RewriteChain}
+     */
+    public HistogramRewriteMetrics(int numRewriters) {
+        rewriterLatencies = new LatencyHistogram[numRewriters];
+        for (int i = 0; i < numRewriters; i++) {
+            rewriterLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void recordRewriterLatency(int rewriterIndex, long nanos) {
+        rewriterLatencies[rewriterIndex].record(nanos);
+    }
+
+    @Override
+    public void recordPhaseLatency(String phase, long nanos) {
+        LatencyHistogram histogram = phaseLatencies.get(phase);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = phaseLatencies.putIfAbsent(phase, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    public int getNumRewriters() {
+        return rewriterLatencies.length;
+    }
+
+    public LatencyHistogram getRewriterLatency(int rewriterIndex) {
+        return rewriterLatencies[rewriterIndex];
+    }
+
+    /**
+     *
+     * @param phase The name of the phase
+     * @return The histogram or null if no latency was recorded for this phase
+     */
+    public LatencyHistogram getPhaseLatency(String phase) {
+        return phaseLatencies.get(phase);
+    }
+
+    /**
+     *
+     * @return The names of the phases for which latencies were recorded, in alphabetical order
+     */
+    public Set<String> getPhases() {
+        return new TreeSet<>(phaseLatencies.keySet());
+    }
+
+    public void reset() {
+        for (final LatencyHistogram histogram : rewriterLatencies) {
+            histogram.reset();
+        }
+        for (final LatencyHistogram histogram : phaseLatencies.values()) {
+            histogram.reset();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A histogram of latencies in nanoseconds that can be recorded to from many threads without locking.</p>
+ *
+ * <p>Like in HdrHistogram, values are counted in buckets whose width grows with the magnitude of the value: each
+ * power of two is split into {@link #SUB_BUCKETS} linear sub-buckets, which keeps the relative error of the
+ * reported percentiles below 1/{@link #SUB_BUCKETS} at a fixed memory footprint. Values from 2^{@link #MAX_EXPONENT}
+ * nanoseconds (about 39 hours) are counted in the last bucket.</p>
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 47;
+    static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos The latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        final long value = nanos < 0L ? 0L : nanos;
+        counts.incrementAndGet(bucketIndex(value));
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     *
+     * @param index The bucket index
+     * @return The highest value that is counted in the bucket
+     */
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1L;
+    }
+
+    /**
+     *
+     * @return The number of recorded values
+     */
+    public long getCount() {
+        long count = 0L;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @return The mean of the recorded values in nanoseconds or 0 if no value was recorded
+     */
+    public double getMean() {
+        final long count = getCount();
+        return count == 0L ? 0.0 : (double) sum.get() / count;
+    }
+
+    /**
+     *
+     * @return The highest recorded value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value at the given percentile. The result is the highest value of the bucket that contains the
+     * percentile, but not higher than {@link #getMax()}.
+     *
+     * @param percentile The percentile (0 - 100)
+     * @return The value in nanoseconds or 0 if no value was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be in [0, 100]: " + percentile);
+        }
+
+        final long[] snapshot = new long[NUM_BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0L;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(highestValueInBucket(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Remove all recorded values. Values that are recorded concurrently might be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        sum.set(0L);
+        max.set(0L);
+    }
+
+}
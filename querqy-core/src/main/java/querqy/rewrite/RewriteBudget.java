@@ -0,0 +1,281 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+
+/**
+ * <p>Limits for the expansion of a query in the {@link RewriteChain}. After each rewriter, the {@link RewriteChain}
+ * prunes the query so that it stays within the limits of the budget:</p>
+ * <ul>
+ *     <li>maxGeneratedTerms: the maximum number of generated terms in the user query. Generated clauses are
+ *     removed from {@link DisjunctionMaxQuery}s in query order (left to right, in the order of the clauses)
+ *     once the budget is used up. Non-generated terms are never removed, and neither is the last remaining
+ *     clause of a {@link DisjunctionMaxQuery}, so that pruning never leaves an empty DisjunctionMaxQuery
+ *     behind. The query can thus exceed this limit by the terms of such a clause.</li>
+ *     <li>maxBoostQueries: the maximum number of boost queries per direction (up/down). Boost queries that were
+ *     added last are removed first.</li>
+ *     <li>maxFilterQueries: the maximum number of filter queries. Filter queries that were added last are removed
+ *     first. Note that removing filter queries widens the result set.</li>
+ *     <li>maxTimeMillis: the maximum wall-clock time for the whole rewrite chain. This limit is checked between
+ *     rewriters. Once it is exceeded, the remaining rewriters are skipped.</li>
+ * </ul>
+ *
+ * <p>A negative value ({@link #UNLIMITED}) means that there is no limit.</p>
+ *
+ * <p>If a limit was hit, its name is added to the Set that is kept in the rewrite context under
+ * {@link #EXCEEDED_CONTEXT_KEY}.</p>
+ *
+ * <p>A RewriteBudget is immutable and can be shared between threads.</p>
+ */
+public class RewriteBudget {
+
+    /**
+     * If the rewrite context contains a RewriteBudget under this key, it will be used instead of the budget of the
+     * {@link RewriteChain}.
+     */
+    public static final String CONTEXT_KEY = "querqy.rewrite.budget";
+
+    /**
+     * Key of the Set&lt;String&gt; in the rewrite context that contains the names of the limits that were hit.
+     */
+    public static final String EXCEEDED_CONTEXT_KEY = "querqy.rewrite.budget.exceeded";
+
+    public static final String GENERATED_TERMS = "generatedTerms";
+    public static final String BOOST_QUERIES = "boostQueries";
+    public static final String FILTER_QUERIES = "filterQueries";
+    public static final String TIME = "time";
+
+    public static final int UNLIMITED = -1;
+
+    protected final int maxGeneratedTerms;
+    protected final int maxBoostQueries;
+    protected final int maxFilterQueries;
+    protected final long maxTimeMillis;
+
+    /**
+     *
+     * @param maxGeneratedTerms The maximum number of generated terms in the user query or {@link #UNLIMITED}
+     * @param maxBoostQueries The maximum number of boost queries per direction or {@link #UNLIMITED}
+     * @param maxFilterQueries The maximum number of filter queries or {@link #UNLIMITED}
+     * @param maxTimeMillis The maximum time in milliseconds for rewriting or {@link #UNLIMITED}
+     */
+    public RewriteBudget(int maxGeneratedTerms, int maxBoostQueries, int maxFilterQueries, long maxTimeMillis) {
+        this.maxGeneratedTerms = maxGeneratedTerms;
+        this.maxBoostQueries = maxBoostQueries;
+        this.maxFilterQueries = maxFilterQueries;
+        this.maxTimeMillis = maxTimeMillis;
+    }
+
+    /**
+     * Create a copy of this budget with a different limit for the number of generated terms.
+     *
+     * @param maxGeneratedTerms
+     * @return A copy of this budget
+     */
+    public RewriteBudget withMaxGeneratedTerms(int maxGeneratedTerms) {
+        return new RewriteBudget(maxGeneratedTerms, maxBoostQueries, maxFilterQueries, maxTimeMillis);
+    }
+
+    public int getMaxGeneratedTerms() {
+        return maxGeneratedTerms;
+    }
+
+    public int getMaxBoostQueries() {
+        return maxBoostQueries;
+    }
+
+    public int getMaxFilterQueries() {
+        return maxFilterQueries;
+    }
+
+    public long getMaxTimeMillis() {
+        return maxTimeMillis;
+    }
+
+    /**
+     *
+     * @param startNanos The start of rewriting as returned by {@link System#nanoTime()}
+     * @param context The rewrite context
+     * @return true iff the time limit is exceeded
+     */
+    public boolean isTimeExceeded(long startNanos, Map<String, Object> context) {
+        if (maxTimeMillis < 0 || (System.nanoTime() - startNanos) / 1000000L <= maxTimeMillis) {
+            return false;
+        }
+        markExceeded(context, TIME);
+        return true;
+    }
+
+    /**
+     * Prune the query so that it stays within the limits of this budget.
+     *
+     * @param query The query to prune
+     * @param context The rewrite context
+     * @return true iff the query had to be pruned
+     */
+    public boolean enforce(ExpandedQuery query, Map<String, Object> context) {
+
+        boolean pruned = false;
+
+        if (maxGeneratedTerms > UNLIMITED) {
+            Query userQuery = query.getUserQuery();
+            if (userQuery != null && pruneGeneratedTerms(userQuery, new int[] {maxGeneratedTerms})) {
+                markExceeded(context, GENERATED_TERMS);
+                pruned = true;
+            }
+        }
+
+        if (maxBoostQueries > UNLIMITED) {
+            boolean prunedUp = truncate(query.getBoostUpQueries(), maxBoostQueries);
+            boolean prunedDown = truncate(query.getBoostDownQueries(), maxBoostQueries);
+            if (prunedUp || prunedDown) {
+                markExceeded(context, BOOST_QUERIES);
+                pruned = true;
+            }
+        }
+
+        if (maxFilterQueries > UNLIMITED && truncate(query.getFilterQueries(), maxFilterQueries)) {
+            markExceeded(context, FILTER_QUERIES);
+            pruned = true;
+        }
+
+        return pruned;
+    }
+
+    /**
+     *
+     * @param booleanQuery
+     * @param remaining A single-element array holding the number of generated terms that can still be kept
+     * @return true iff any clause was removed
+     */
+    protected boolean pruneGeneratedTerms(BooleanQuery booleanQuery, int[] remaining) {
+
+        boolean pruned = false;
+
+        List<BooleanClause> clauses = booleanQuery.getClauses();
+
+        for (int i = 0; i < clauses.size(); i++) {
+
+            BooleanClause clause = clauses.get(i);
+
+            if (clause instanceof DisjunctionMaxQuery) {
+
+                pruned |= pruneGeneratedTerms((DisjunctionMaxQuery) clause, remaining);
+
+            } else if (clause instanceof BooleanQuery) {
+
+                pruned |= pruneGeneratedTerms((BooleanQuery) clause, remaining);
+
+            }
+        }
+
+        return pruned;
+    }
+
+    protected boolean pruneGeneratedTerms(DisjunctionMaxQuery dmq, int[] remaining) {
+
+        boolean pruned = false;
+
+        // we must not use removeClause() as it would remove the first equal() clause, which
+        // might be a non-generated term
+        List<DisjunctionMaxClause> clauses = dmq.getClauses();
+
+        for (int i = 0; i < clauses.size(); i++) {
+
+            DisjunctionMaxClause clause = clauses.get(i);
+
+            if (clause.isGenerated()) {
+
+                int cost = countTerms(clause);
+                if (cost > remaining[0]) {
+                    if (clauses.size() > 1) {
+                        clauses.remove(i);
+                        i--;
+                        pruned = true;
+                    } else {
+                        // keep the last clause, the DMQ must not become empty
+                        remaining[0] = 0;
+                    }
+                } else {
+                    remaining[0] -= cost;
+                }
+
+            } else if (clause instanceof BooleanQuery) {
+
+                pruned |= pruneGeneratedTerms((BooleanQuery) clause, remaining);
+
+            }
+        }
+
+        return pruned;
+
+    }
+
+    protected static int countTerms(DisjunctionMaxClause clause) {
+
+        if (clause instanceof Term) {
+            return 1;
+        }
+
+        int count = 0;
+        for (BooleanClause booleanClause : ((BooleanQuery) clause).getClauses()) {
+            if (booleanClause instanceof DisjunctionMaxQuery) {
+                for (DisjunctionMaxClause dmqClause : ((DisjunctionMaxQuery) booleanClause).getClauses()) {
+                    count += countTerms(dmqClause);
+                }
+            } else {
+                count += countTerms((BooleanQuery) booleanClause);
+            }
+        }
+        return count;
+    }
+
+    protected static boolean truncate(Collection<?> collection, int maxSize) {
+        if (collection == null || collection.size() <= maxSize) {
+            return false;
+        }
+        Iterator<?> it = collection.iterator();
+        for (int i = 0; i < maxSize; i++) {
+            it.next();
+        }
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        return true;
+    }
+
+    protected static void markExceeded(Map<String, Object> context, String limit) {
+        if (context != null) {
+            @SuppressWarnings("unchecked")
+            Set<String> exceeded = (Set<String>) context.get(EXCEEDED_CONTEXT_KEY);
+            if (exceeded == null) {
+                exceeded = new LinkedHashSet<>();
+                context.put(EXCEEDED_CONTEXT_KEY, exceeded);
+            }
+            exceeded.add(limit);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RewriteBudget [maxGeneratedTerms=" + maxGeneratedTerms + ", maxBoostQueries=" + maxBoostQueries
+                + ", maxFilterQueries=" + maxFilterQueries + ", maxTimeMillis=" + maxTimeMillis + "]";
+    }
+
+}
@@ -4,11 +4,15 @@
 package querqy.rewrite;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import querqy.model.ExpandedQuery;
 import querqy.model.Query;
+import querqy.parser.QuerqyParserFactory;
 
 /**
  * The chain of rewriters to manipulate a {@link Query}.
@@ -18,33 +22,203 @@ import querqy.model.Query;
  */
 public class RewriteChain {
 
+    /**
+     * If the rewrite context contains a long[] under this key, the chain adds the nanoseconds that each rewriter took
+     * to the array element at the index of the rewriter factory. This allows to collect the timings of a single
+     * request.
+     */
+    public static final String TIMINGS_CONTEXT_KEY = "querqy.rewrite.timings";
+
     final List<RewriterFactory> factories;
+    final RewriteBudget budget;
+    
+    /**
+     * Per rewriter: the number of applicability checks and the number of times that the rewriter was skipped
+     */
+    final AtomicLongArray applicabilityChecks;
+    final AtomicLongArray skips;
+    
+    /**
+     * Optional latency instrumentation, null if disabled
+     */
+    volatile RewriteMetrics metrics = null;
+    
+    /**
+     * Optional tracer, null if disabled
+     */
+    volatile RewriteTracer tracer = null;
 
     public RewriteChain() {
         this(Collections.<RewriterFactory> emptyList());
     }
 
     public RewriteChain(List<RewriterFactory> factories) {
+        this(factories, null);
+    }
+
+    /**
+     * 
+     * @param factories The factories of the rewriters in the order of rewriting
+     * @param budget The default budget that limits query expansion. Can be null for unlimited expansion.
+     */
+    public RewriteChain(List<RewriterFactory> factories, RewriteBudget budget) {
         this.factories = factories;
+        this.budget = budget;
+        this.applicabilityChecks = new AtomicLongArray(factories.size());
+        this.skips = new AtomicLongArray(factories.size());
     }
 
     public ExpandedQuery rewrite(ExpandedQuery query, Map<String, Object> context) {
       
+        RewriteBudget rewriteBudget = getBudget(context);
+        long startNanos = (rewriteBudget != null && rewriteBudget.getMaxTimeMillis() > RewriteBudget.UNLIMITED)
+                ? System.nanoTime() : 0L;
+      
         ExpandedQuery work = query;
+        
+        final RewriteMetrics rewriteMetrics = metrics;
+        final RewriteTracer rewriteTracer = tracer;
+        final Object contextTimings = context == null ? null : context.get(TIMINGS_CONTEXT_KEY);
+        final long[] timings = (contextTimings instanceof long[]) ? (long[]) contextTimings : null;
       
-        for (RewriterFactory factory : factories) {
+        for (int i = 0, len = factories.size(); i < len; i++) {
+         
+            if (rewriteBudget != null && rewriteBudget.isTimeExceeded(startNanos, context)) {
+                break;
+            }
+         
+            RewriterFactory factory = factories.get(i);
+         
+            if (factory instanceof ApplicabilityAwareRewriterFactory) {
+                applicabilityChecks.incrementAndGet(i);
+                if (!((ApplicabilityAwareRewriterFactory) factory).isApplicable(work, context)) {
+                    skips.incrementAndGet(i);
+                    continue;
+                }
+            }
+         
+            long rewriterStartNanos = (rewriteMetrics != null || timings != null) ? System.nanoTime() : 0L;
+            Object traceState = rewriteTracer != null ? rewriteTracer.beforeRewrite(i, factory, work, context) : null;
          
             QueryRewriter rewriter = factory.createRewriter(work, context);
          
             work = (rewriter instanceof ContextAwareQueryRewriter)
                  ? ((ContextAwareQueryRewriter) rewriter).rewrite(work, context)
                  : rewriter.rewrite(work);
+            
+            if (rewriteTracer != null) {
+                rewriteTracer.afterRewrite(traceState, i, factory, work, context);
+            }
+            if (rewriteMetrics != null || timings != null) {
+                long rewriterNanos = System.nanoTime() - rewriterStartNanos;
+                if (rewriteMetrics != null) {
+                    rewriteMetrics.recordRewriterLatency(i, rewriterNanos);
+                }
+                if (timings != null && i < timings.length) {
+                    timings[i] += rewriterNanos;
+                }
+            }
+         
+            if (rewriteBudget != null) {
+                rewriteBudget.enforce(work, context);
+            }
          
         }
         return work;
     }
     
+    /**
+     * Get the budget for a rewrite. A {@link RewriteBudget} in the context under {@link RewriteBudget#CONTEXT_KEY}
+     * takes precedence over the default budget of this chain.
+     * 
+     * @param context The rewrite context
+     * @return The budget or null if query expansion is unlimited
+     */
+    protected RewriteBudget getBudget(Map<String, Object> context) {
+        if (context != null) {
+            Object contextBudget = context.get(RewriteBudget.CONTEXT_KEY);
+            if (contextBudget instanceof RewriteBudget) {
+                return (RewriteBudget) contextBudget;
+            }
+        }
+        return budget;
+    }
+    
+    public RewriteBudget getBudget() {
+        return budget;
+    }
+    
+    /**
+     * Parse and rewrite a stream of query strings in parallel. See {@link BatchRewriter}.
+     * 
+     * @param queries The query strings
+     * @param parserFactory Creates the parsers for the query strings
+     * @param executor The executor that parses and rewrites the queries
+     * @param parallelism The number of threads of the executor
+     * @param handler Receives the rewritten queries in the order of the input
+     * @return The number of queries
+     * @throws Exception if the handler throws an exception or if the current thread is interrupted
+     */
+    public long rewriteBatch(Iterator<String> queries, QuerqyParserFactory parserFactory, ExecutorService executor,
+            int parallelism, BatchRewriter.ResultHandler handler) throws Exception {
+        return new BatchRewriter(this, parserFactory, executor, parallelism).rewrite(queries, handler);
+    }
+    
+    /**
+     * Enable or disable latency instrumentation. If metrics are set, the time for creating each rewriter and for
+     * rewriting the query with it is recorded. Rewriters that are skipped (see
+     * {@link ApplicabilityAwareRewriterFactory}) are not recorded.
+     * 
+     * @param metrics The metrics or null to disable instrumentation
+     */
+    public void setMetrics(RewriteMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * 
+     * @return The metrics or null if latency instrumentation is disabled
+     */
+    public RewriteMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Set a tracer that gets notified before and after each rewriter.
+     * 
+     * @param tracer The tracer or null to disable tracing
+     */
+    public void setTracer(RewriteTracer tracer) {
+        this.tracer = tracer;
+    }
+    
+    public RewriteTracer getTracer() {
+        return tracer;
+    }
+    
     public List<RewriterFactory> getRewriterFactories() {
         return factories;
     }
+    
+    /**
+     * Get the number of times the rewriter at the given position was skipped because its factory reported that it
+     * could not change the query. See {@link ApplicabilityAwareRewriterFactory}.
+     * 
+     * @param index The index of the rewriter factory in {@link #getRewriterFactories()}
+     * @return The number of skips
+     */
+    public long getSkipCount(int index) {
+        return skips.get(index);
+    }
+    
+    /**
+     * Get the ratio of skipped rewrites for the rewriter at the given position.
+     * 
+     * @param index The index of the rewriter factory in {@link #getRewriterFactories()}
+     * @return The ratio of skips to applicability checks or 0 if the rewriter was never checked
+     */
+    public double getSkipRatio(int index) {
+        long checks = applicabilityChecks.get(index);
+        return checks == 0L ? 0.0 : (double) skips.get(index) / checks;
+    }
 }
@@ -0,0 +1,30 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+/**
+ * <p>Receives latency measurements from the {@link RewriteChain} and from the query parsers that use it.</p>
+ *
+ * <p>Implementations are called for every query from many threads and must be thread-safe and cheap.</p>
+ */
+public interface RewriteMetrics {
+
+    /**
+     * Record the time it took to create a rewriter and to rewrite the query with it.
+     *
+     * @param rewriterIndex The index of the rewriter factory in {@link RewriteChain#getRewriterFactories()}
+     * @param nanos The latency in nanoseconds
+     */
+    void recordRewriterLatency(int rewriterIndex, long nanos);
+
+    /**
+     * Record the time of a processing phase outside the rewrite chain, for example query parsing or creating the
+     * Lucene query.
+     *
+     * @param phase The name of the phase
+     * @param nanos The latency in nanoseconds
+     */
+    void recordPhaseLatency(String phase, long nanos);
+
+}
@@ -0,0 +1,43 @@
+/**
+ *
+ */
+package querqy.rewrite;
+
+import java.util.Map;
+
+import querqy.model.ExpandedQuery;
+
+/**
+ * <p>Gets notified before and after each rewriter of a {@link RewriteChain}, for example to emit profiling events.</p>
+ *
+ * <p>Implementations are called for every query from many threads and must be thread-safe. They should be close
+ * to free if tracing is currently switched off.</p>
+ */
+public interface RewriteTracer {
+
+    /**
+     * Called before the rewriter is created.
+     *
+     * @param rewriterIndex The index of the rewriter factory in {@link RewriteChain#getRewriterFactories()}
+     * @param factory The rewriter factory
+     * @param query The query before rewriting
+     * @param context The rewrite context
+     * @return An object that will be passed to
+     * {@link #afterRewrite(Object, int, RewriterFactory, ExpandedQuery, Map)}, can be null
+     */
+    Object beforeRewrite(int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+            Map<String, Object> context);
+
+    /**
+     * Called after the query was rewritten.
+     *
+     * @param state The object that was returned by {@link #beforeRewrite(int, RewriterFactory, ExpandedQuery, Map)}
+     * @param rewriterIndex The index of the rewriter factory in {@link RewriteChain#getRewriterFactories()}
+     * @param factory The rewriter factory
+     * @param query The rewritten query
+     * @param context The rewrite context
+     */
+    void afterRewrite(Object state, int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+            Map<String, Object> context);
+
+}
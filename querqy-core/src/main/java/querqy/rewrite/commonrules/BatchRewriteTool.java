@@ -0,0 +1,292 @@
+/**
+ *
+ */
+package querqy.rewrite.commonrules;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.RawQuery;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.BatchRewriter;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
+
+/**
+ * <p>Command line tool that rewrites a file of queries (one query per line) using one or more common rules files
+ * and writes one line per query to stdout:</p>
+ * <pre>
+ * input TAB rewritten user query TAB boost/filter queries TAB decorations
+ * </pre>
+ * <p>Generated terms are marked by a trailing '*'. Usage:</p>
+ * <pre>
+ * java querqy.rewrite.commonrules.BatchRewriteTool -rules rules.txt [-rules more-rules.txt] [-threads n]
+ *      [-ignoreCase true|false] [queries.txt]
+ * </pre>
+ * <p>The queries are read from stdin if no query file is given. All files must be UTF-8 encoded.</p>
+ */
+public class BatchRewriteTool {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static void main(String[] args) throws Exception {
+
+        List<String> rulesFiles = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean ignoreCase = true;
+        String queriesFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-rules".equals(arg) && i < args.length - 1) {
+                rulesFiles.add(args[++i]);
+            } else if ("-threads".equals(arg) && i < args.length - 1) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-ignoreCase".equals(arg) && i < args.length - 1) {
+                ignoreCase = Boolean.parseBoolean(args[++i]);
+            } else if (!arg.startsWith("-") && queriesFile == null) {
+                queriesFile = arg;
+            } else {
+                usage();
+                return;
+            }
+        }
+
+        if (rulesFiles.isEmpty() || threads < 1) {
+            usage();
+            return;
+        }
+
+        WhiteSpaceQuerqyParserFactory parserFactory = new WhiteSpaceQuerqyParserFactory();
+
+        List<RewriterFactory> factories = new ArrayList<>(rulesFiles.size());
+        for (String rulesFile : rulesFiles) {
+            factories.add(new SimpleCommonRulesRewriterFactory(
+                    new InputStreamReader(new FileInputStream(rulesFile), UTF8), parserFactory, ignoreCase));
+        }
+        RewriteChain rewriteChain = new RewriteChain(factories);
+
+        InputStream in = queriesFile == null ? System.in : new FileInputStream(queriesFile);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF8));
+             final Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, UTF8))) {
+
+            long start = System.currentTimeMillis();
+
+            long count = rewriteChain.rewriteBatch(new LineIterator(reader), parserFactory, executor, threads,
+                    new BatchRewriter.ResultHandler() {
+
+                        final StringBuilder sb = new StringBuilder();
+
+                        @Override
+                        public void handle(BatchRewriter.Result result) throws IOException {
+                            sb.setLength(0);
+                            format(result, sb);
+                            sb.append('\n');
+                            writer.write(sb.toString());
+                        }
+                    });
+
+            writer.flush();
+
+            System.err.println("Rewrote " + count + " queries in " + (System.currentTimeMillis() - start) + " ms");
+
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+    }
+
+    static void usage() {
+        System.err.println("Usage: java " + BatchRewriteTool.class.getName()
+                + " -rules <rules file> [-rules <rules file>] [-threads <n>] [-ignoreCase true|false] [<queries file>]");
+    }
+
+    static void format(BatchRewriter.Result result, StringBuilder sb) {
+
+        sb.append(result.getInput()).append('\t');
+
+        if (result.getError() != null) {
+            sb.append("ERROR: ").append(result.getError());
+            return;
+        }
+
+        ExpandedQuery query = result.getQuery();
+        format(query.getUserQuery(), sb);
+        sb.append('\t');
+
+        boolean first = true;
+        Collection<BoostQuery> boostUpQueries = query.getBoostUpQueries();
+        if (boostUpQueries != null) {
+            for (BoostQuery boostQuery : boostUpQueries) {
+                first = separate(first, sb);
+                sb.append("UP(").append(boostQuery.getBoost()).append("):");
+                format(boostQuery.getQuery(), sb);
+            }
+        }
+        Collection<BoostQuery> boostDownQueries = query.getBoostDownQueries();
+        if (boostDownQueries != null) {
+            for (BoostQuery boostQuery : boostDownQueries) {
+                first = separate(first, sb);
+                sb.append("DOWN(").append(boostQuery.getBoost()).append("):");
+                format(boostQuery.getQuery(), sb);
+            }
+        }
+        Collection<QuerqyQuery<?>> filterQueries = query.getFilterQueries();
+        if (filterQueries != null) {
+            for (QuerqyQuery<?> filterQuery : filterQueries) {
+                first = separate(first, sb);
+                sb.append("FILTER:");
+                format(filterQuery, sb);
+            }
+        }
+
+        sb.append('\t');
+        Object decorations = result.getContext().get(DecorateInstruction.CONTEXT_KEY);
+        if (decorations != null) {
+            sb.append(decorations);
+        }
+    }
+
+    static boolean separate(boolean first, StringBuilder sb) {
+        if (!first) {
+            sb.append(", ");
+        }
+        return false;
+    }
+
+    static void format(QuerqyQuery<?> query, StringBuilder sb) {
+        if (query instanceof BooleanQuery) {
+            format((BooleanQuery) query, sb);
+        } else if (query instanceof RawQuery) {
+            sb.append(((RawQuery) query).getQueryString());
+        } else {
+            sb.append(query);
+        }
+    }
+
+    static void format(BooleanQuery bq, StringBuilder sb) {
+        List<BooleanClause> clauses = bq.getClauses();
+        for (int i = 0, len = clauses.size(); i < len; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            BooleanClause clause = clauses.get(i);
+            Occur occur = ((querqy.model.Clause<?>) clause).getOccur();
+            if (occur == Occur.MUST) {
+                sb.append('+');
+            } else if (occur == Occur.MUST_NOT) {
+                sb.append('-');
+            }
+            if (clause instanceof DisjunctionMaxQuery) {
+                List<DisjunctionMaxClause> dmqClauses = ((DisjunctionMaxQuery) clause).getClauses();
+                boolean parens = dmqClauses.size() != 1;
+                if (parens) {
+                    sb.append('(');
+                }
+                for (int j = 0, numClauses = dmqClauses.size(); j < numClauses; j++) {
+                    if (j > 0) {
+                        sb.append(" | ");
+                    }
+                    DisjunctionMaxClause dmqClause = dmqClauses.get(j);
+                    if (dmqClause instanceof Term) {
+                        format((Term) dmqClause, sb);
+                    } else {
+                        sb.append('[');
+                        format((BooleanQuery) dmqClause, sb);
+                        sb.append(']');
+                    }
+                }
+                if (parens) {
+                    sb.append(')');
+                }
+            } else {
+                sb.append('[');
+                format((BooleanQuery) clause, sb);
+                sb.append(']');
+            }
+        }
+    }
+
+    static void format(Term term, StringBuilder sb) {
+        if (term.getField() != null) {
+            sb.append(term.getField()).append(':');
+        }
+        sb.append(term.getValue());
+        if (term.isGenerated()) {
+            sb.append('*');
+        }
+    }
+
+    static class LineIterator implements Iterator<String> {
+
+        final BufferedReader reader;
+        String next;
+
+        LineIterator(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            advance();
+        }
+
+        final void advance() throws IOException {
+            do {
+                next = reader.readLine();
+            } while (next != null && next.trim().isEmpty());
+            if (next != null) {
+                next = next.trim();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -3,13 +3,16 @@
  */
 package querqy.rewrite.commonrules;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import querqy.model.AbstractNodeVisitor;
+import querqy.model.BooleanClause;
 import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
 import querqy.model.InputSequenceElement;
@@ -19,34 +22,78 @@ import querqy.model.Query;
 import querqy.model.Term;
 import querqy.rewrite.ContextAwareQueryRewriter;
 import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.ActionResolver;
+import querqy.rewrite.commonrules.model.ActionResolver.SequenceAction;
 import querqy.rewrite.commonrules.model.InputBoundary;
 import querqy.rewrite.commonrules.model.Instruction;
 import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.PositionSequence;
 import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.model.TermMatches;
 import querqy.rewrite.commonrules.model.InputBoundary.Type;
 
 /**
+ * <p>A query rewriter that applies the rules of a {@link RulesCollection}.</p>
+ *
+ * <p>This class is stateless and thread-safe: the state of a single rewrite is kept in a {@link RewriteFrame} that
+ * only lives for the duration of the {@link #rewrite(ExpandedQuery, Map)} call. The same instance can thus be
+ * returned for all requests by a {@link querqy.rewrite.RewriterFactory}.</p>
+ *
+ * <p>Up to querqy-core 3.1, this class extended {@link AbstractNodeVisitor} and kept the per-request state in the
+ * protected fields <code>sequencesStack</code>, <code>expandedQuery</code> and <code>context</code>. Subclasses that
+ * overrode the visit methods or used these fields must now extend {@link RewriteFrame} instead, which holds this
+ * state and has the visit methods, and return their frame from {@link #createFrame(ExpandedQuery, Map)}.</p>
+ *
  * @author rene
  *
  */
-public class CommonRulesRewriter extends AbstractNodeVisitor<Node> implements ContextAwareQueryRewriter {
+public class CommonRulesRewriter implements ContextAwareQueryRewriter {
     
     static final InputBoundary LEFT_BOUNDARY = new InputBoundary(Type.LEFT);
     static final InputBoundary RIGHT_BOUNDARY = new InputBoundary(Type.RIGHT);
 
+    /**
+     * If the rewrite context contains this key, the rewriter sets its value to the number of actions that it applied
+     * to the query (an {@link Integer}). The value is overwritten by each CommonRulesRewriter in the rewrite chain.
+     */
+    public static final String ACTIONS_CONTEXT_KEY = "querqy.commonrules.actions";
+
+    /**
+     * If the rewrite context contains a {@link Collection} of Strings under this key, the rewriter adds the ids of
+     * all rules that it applied to the query. Rules without an id are not reported.
+     */
+    public static final String MATCHED_RULES_CONTEXT_KEY = "querqy.commonrules.matchedRules";
+
+    /**
+     * The rewriter sets this key to {@link Boolean#TRUE} if it applied a rule that has the '@skipSearch' property.
+     * Search integrations can then return the decorations without executing the query.
+     */
+    public static final String SKIP_SEARCH_CONTEXT_KEY = "querqy.commonrules.skipSearch";
+
 
     protected final RulesCollection rules;
-    protected final LinkedList<PositionSequence<Term>> sequencesStack;
-    protected ExpandedQuery expandedQuery;
-    protected Map<String, Object> context;
+
+    /**
+     * If true, the {@link querqy.rewrite.commonrules.model.RuleStatistics} of a rule count the generated terms,
+     * boost queries and filter queries that the rule contributed. Otherwise only the matches are counted.
+     */
+    protected final boolean recordContributions;
 
    /**
      * 
      */
    public CommonRulesRewriter(RulesCollection rules) {
+      this(rules, false);
+   }
+
+   /**
+    *
+    * @param rules The rules
+    * @param recordContributions Iff true, count the generated terms, boost queries and filter queries per rule
+    */
+   public CommonRulesRewriter(RulesCollection rules, boolean recordContributions) {
       this.rules = rules;
-      sequencesStack = new LinkedList<>();
+      this.recordContributions = recordContributions;
    }
    
    @Override
@@ -60,45 +107,131 @@ public class CommonRulesRewriter extends AbstractNodeVisitor<Node> implements Co
       QuerqyQuery<?> userQuery = query.getUserQuery();
       
       if (userQuery instanceof Query) {
-          
-         this.expandedQuery = query;
-         this.context = context;
-         
-         sequencesStack.add(new PositionSequence<Term>());
-        
-         super.visit((BooleanQuery) query.getUserQuery());
-        
-         applySequence(sequencesStack.removeLast(), true);
-         
+          RewriteFrame frame = createFrame(query, context);
+          frame.rewrite((Query) userQuery);
+          if (context != null && context.containsKey(ACTIONS_CONTEXT_KEY)) {
+              context.put(ACTIONS_CONTEXT_KEY, frame.actions);
+          }
       }
       return query;
    }
 
-   @Override
-   public Node visit(BooleanQuery booleanQuery) {
-
-      sequencesStack.add(new PositionSequence<Term>());
-
-      super.visit(booleanQuery);
-
-      applySequence(sequencesStack.removeLast(), false);
-
-      return null;
+   /**
+    * Create the frame that holds the state of a single rewrite. Subclasses can override this method to use their
+    * own {@link RewriteFrame}.
+    */
+   protected RewriteFrame createFrame(ExpandedQuery query, Map<String, Object> context) {
+       return new RewriteFrame(query, context);
    }
-   
-   protected void applySequence(PositionSequence<Term> sequence, boolean addBoundaries) {
+
+   /**
+    * Look up the rules that match the sequence and pass the actions to the {@link ActionResolver} of the frame. The
+    * actions are applied in {@link #applyActions(RewriteFrame)} after all sequences of the query have been
+    * collected.
+    */
+   protected void collectActions(RewriteFrame frame, PositionSequence<Term> sequence, boolean addBoundaries) {
        
        PositionSequence<InputSequenceElement> sequenceForLookUp = addBoundaries ? addBoundaries(sequence) : termSequenceToInputSequence(sequence);
        
-       for (Action action : rules.getRewriteActions(sequenceForLookUp)) {
+       frame.actionResolver.collect(sequence, rules.getRewriteActions(sequenceForLookUp));
+   }
+   
+   protected void applyActions(RewriteFrame frame) {
+       
+       for (SequenceAction sequenceAction : frame.actionResolver.resolve()) {
+           
+           frame.actions++;
+           
+           Action action = sequenceAction.getAction();
+           TermMatches termMatches = action.getTermMatches();
+           
            for (Instructions instructions : action.getInstructions()) {
-              for (Instruction instruction : instructions) {
-                 instruction.apply(sequence, action.getTermMatches(), action.getStartPosition(),
-                       action.getEndPosition(), expandedQuery, context);
+              
+              if (!recordContributions) {
+                  
+                  applyInstructions(frame, sequenceAction, instructions);
+                  instructions.getStatistics().recordMatch();
+                  
+              } else {
+                  
+                  ExpandedQuery expandedQuery = frame.expandedQuery;
+                  int generatedTermsBefore = countGeneratedTerms(termMatches);
+                  int boostQueriesBefore = size(expandedQuery.getBoostUpQueries())
+                          + size(expandedQuery.getBoostDownQueries());
+                  int filterQueriesBefore = size(expandedQuery.getFilterQueries());
+                  
+                  applyInstructions(frame, sequenceAction, instructions);
+                  
+                  instructions.getStatistics().record(
+                          countGeneratedTerms(termMatches) - generatedTermsBefore,
+                          size(expandedQuery.getBoostUpQueries()) + size(expandedQuery.getBoostDownQueries())
+                              - boostQueriesBefore,
+                          size(expandedQuery.getFilterQueries()) - filterQueriesBefore);
               }
            }
         }
    }
+
+   protected void applyInstructions(RewriteFrame frame, SequenceAction sequenceAction, Instructions instructions) {
+       
+       Action action = sequenceAction.getAction();
+       
+       for (Instruction instruction : instructions) {
+           instruction.apply(sequenceAction.getSequence(), action.getTermMatches(), action.getStartPosition(),
+                   action.getEndPosition(), frame.expandedQuery, frame.context);
+       }
+       
+       if (instructions.isSkipSearch() && frame.context != null) {
+           frame.context.put(SKIP_SEARCH_CONTEXT_KEY, Boolean.TRUE);
+       }
+       
+       if (frame.matchedRuleIds != null) {
+           String id = instructions.getId();
+           if (id != null) {
+               frame.matchedRuleIds.add(id);
+           }
+       }
+   }
+
+   /**
+    * Count the generated terms in the DMQs of the matched query terms. These are the DMQs to which instructions
+    * add generated terms.
+    */
+   protected static int countGeneratedTerms(TermMatches termMatches) {
+       int count = 0;
+       DisjunctionMaxQuery previousDmq = null;
+       for (int i = 0, len = termMatches.size(); i < len; i++) {
+           DisjunctionMaxQuery dmq = termMatches.get(i).getQueryTerm().getParent();
+           if (dmq != previousDmq && dmq != null) {
+               count += countGeneratedTerms(dmq);
+               previousDmq = dmq;
+           }
+       }
+       return count;
+   }
+   
+   protected static int countGeneratedTerms(DisjunctionMaxQuery dmq) {
+       int count = 0;
+       for (int i = 0, len = dmq.getClauseCount(); i < len; i++) {
+           DisjunctionMaxClause clause = dmq.getClause(i);
+           if (clause instanceof Term) {
+               if (clause.isGenerated()) {
+                   count++;
+               }
+           } else {
+               for (BooleanClause booleanClause : ((BooleanQuery) clause).getClauses()) {
+                   if (booleanClause instanceof DisjunctionMaxQuery) {
+                       count += countGeneratedTerms((DisjunctionMaxQuery) booleanClause);
+                   }
+               }
+           }
+       }
+       return count;
+   }
+   
+   private static int size(Collection<?> collection) {
+       return collection == null ? 0 : collection.size();
+   }
    
    protected PositionSequence<InputSequenceElement> termSequenceToInputSequence(PositionSequence<Term> sequence) {
        PositionSequence<InputSequenceElement> result = new PositionSequence<>();
@@ -122,19 +255,61 @@ public class CommonRulesRewriter extends AbstractNodeVisitor<Node> implements Co
        return result;
    }
 
-   @Override
-   public Node visit(DisjunctionMaxQuery disjunctionMaxQuery) {
-      sequencesStack.getLast().nextPosition();
-      return super.visit(disjunctionMaxQuery);
-   }
+   /**
+    * The state of a single call to {@link CommonRulesRewriter#rewrite(ExpandedQuery, Map)}.
+    */
+   protected class RewriteFrame extends AbstractNodeVisitor<Node> {
+
+       protected final ArrayDeque<PositionSequence<Term>> sequencesStack = new ArrayDeque<>();
+       protected final ExpandedQuery expandedQuery;
+       protected final Map<String, Object> context;
+       protected final ActionResolver actionResolver = new ActionResolver();
+       protected int actions = 0;
+       protected final Collection<String> matchedRuleIds;
+
+       @SuppressWarnings("unchecked")
+       protected RewriteFrame(ExpandedQuery expandedQuery, Map<String, Object> context) {
+           this.expandedQuery = expandedQuery;
+           this.context = context;
+           Object contextRuleIds = context == null ? null : context.get(MATCHED_RULES_CONTEXT_KEY);
+           matchedRuleIds = (contextRuleIds instanceof Collection) ? (Collection<String>) contextRuleIds : null;
+       }
+
+       protected void rewrite(Query userQuery) {
+
+           sequencesStack.add(new PositionSequence<Term>());
+
+           super.visit((BooleanQuery) userQuery);
+
+           collectActions(this, sequencesStack.removeLast(), true);
+
+           applyActions(this);
+       }
+
+       @Override
+       public Node visit(BooleanQuery booleanQuery) {
+
+           sequencesStack.add(new PositionSequence<Term>());
+
+           super.visit(booleanQuery);
+
+           collectActions(this, sequencesStack.removeLast(), false);
+
+           return null;
+       }
+
+       @Override
+       public Node visit(DisjunctionMaxQuery disjunctionMaxQuery) {
+           sequencesStack.getLast().nextPosition();
+           return super.visit(disjunctionMaxQuery);
+       }
+
+       @Override
+       public Node visit(Term term) {
+           sequencesStack.getLast().addElement(term);
+           return super.visit(term);
+       }
 
-   @Override
-   public Node visit(Term term) {
-      sequencesStack.getLast().addElement(term);
-      return super.visit(term);
    }
-   
-  
-   
 
 }
@@ -6,6 +6,7 @@ package querqy.rewrite.commonrules;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
 import querqy.model.Clause.Occur;
 import querqy.model.RawQuery;
@@ -18,6 +19,7 @@ import querqy.rewrite.commonrules.model.DeleteInstruction;
 import querqy.rewrite.commonrules.model.FilterInstruction;
 import querqy.rewrite.commonrules.model.Input;
 import querqy.rewrite.commonrules.model.PrefixTerm;
+import querqy.rewrite.commonrules.model.ReplaceInstruction;
 import querqy.rewrite.commonrules.model.SynonymInstruction;
 import querqy.rewrite.commonrules.model.Term;
 
@@ -35,8 +37,11 @@ public class LineParser {
     public static final String INSTR_DECORATE = "decorate";
     public static final String INSTR_DELETE = "delete";
     public static final String INSTR_FILTER = "filter";
+    public static final String INSTR_REPLACE = "replace";
     public static final String INSTR_SYNONYM = "synonym";
     
+    public static final char PROPERTY = '@';
+
     static final char RAWQUERY = '*';
 	
 	public static Object parse(String line, Input previousInput, QuerqyParserFactory querqyParserFactory) {
@@ -53,7 +58,11 @@ public class LineParser {
 			return new ValidationError("Missing input for instruction");
 		}
 		
-		String lcLine = line.toLowerCase();
+		if (line.charAt(0) == PROPERTY) {
+		    return parseProperty(line);
+		}
+		
+		String lcLine = line.toLowerCase(Locale.ROOT);
 		
 		if (lcLine.startsWith(INSTR_DELETE)) {
 			
@@ -165,10 +174,51 @@ public class LineParser {
 		    return parseDecorateInstruction(line);
 		}
 		
+		if (lcLine.startsWith(INSTR_REPLACE)) {
+		    return parseReplaceInstruction(line);
+		}
+		
 		return new ValidationError("Cannot parse line: " + line);
 		
 	}
 	
+	public static Object parseProperty(String line) {
+	    
+	    int pos = line.indexOf(':');
+	    if (pos < 0) {
+	        return new ValidationError("Cannot parse line, ':' expected in " + line);
+	    }
+	    
+	    String name = line.substring(1, pos).trim().toLowerCase(Locale.ROOT);
+	    String value = line.substring(pos + 1).trim();
+	    if (value.length() == 0) {
+	        return new ValidationError("Missing value for rule property in line: " + line);
+	    }
+	    
+	    switch (name) {
+	    case RuleProperty.PRIORITY:
+	        try {
+	            return new RuleProperty(name, Integer.valueOf(value));
+	        } catch (NumberFormatException e) {
+	            return new ValidationError("Priority must be an integer: " + line);
+	        }
+	    case RuleProperty.GROUP:
+	    case RuleProperty.ID:
+	        return new RuleProperty(name, value);
+	    case RuleProperty.SKIP_SEARCH:
+	        if ("true".equalsIgnoreCase(value)) {
+	            return new RuleProperty(name, Boolean.TRUE);
+	        }
+	        if ("false".equalsIgnoreCase(value)) {
+	            return new RuleProperty(name, Boolean.FALSE);
+	        }
+	        return new ValidationError("skipSearch must be true or false: " + line);
+	    default:
+	        return new ValidationError("Unknown rule property '" + name + "' in line: " + line);
+	    }
+	    
+	}
+	
 	public static Object parseDecorateInstruction(String line) {
 	    if (line.length() == INSTR_DECORATE.length()) {
 	        return new ValidationError(INSTR_DECORATE + " requires a value");
@@ -188,6 +238,39 @@ public class LineParser {
 	    
 	}
 	
+	public static Object parseReplaceInstruction(String line) {
+	    if (line.length() == INSTR_REPLACE.length()) {
+	        return new ValidationError(INSTR_REPLACE + " requires a value");
+	    }
+	    
+	    String replaceString = line.substring(INSTR_REPLACE.length()).trim();
+	    if (replaceString.charAt(0) != ':') {
+	        return new ValidationError("Cannot parse line, ':' expected in " + line);
+	    }
+	    
+	    replaceString = replaceString.substring(1).trim();
+	    if (replaceString.length() == 0) {
+	        return new ValidationError(INSTR_REPLACE + " requires a value");
+	    }
+	    
+	    List<Term> replacementTerms = new LinkedList<>();
+	    for (String token: replaceString.split("\\s+")) {
+	        if (token.length() > 0) {
+	            Term term = parseTerm(token);
+	            if (term instanceof PrefixTerm) {
+	                return new ValidationError("Wildcards are not allowed in the replacement: " + line);
+	            }
+	            if (term.getMaxPlaceHolderRef() > 1) {
+	                return new ValidationError("Max. wild card reference is 1: " + line);
+	            }
+	            replacementTerms.add(term);
+	        }
+	    }
+	    
+	    return new ReplaceInstruction(replacementTerms);
+	    
+	}
+	
 	public static Object parseBoostInstruction(String line, String lcLine, int lengthPredicate, BoostDirection direction, QuerqyParserFactory querqyParserFactory) {
 	    
 	    if (lcLine.length() == lengthPredicate) {
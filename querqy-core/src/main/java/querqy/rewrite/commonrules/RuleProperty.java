@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package querqy.rewrite.commonrules;
+
+import querqy.rewrite.commonrules.model.Instructions;
+
+/**
+ * A property of a rule, like its priority or the exclusive group it belongs to. Properties are defined in lines
+ * starting with '@', for example:
+ *
+ * <pre>
+ * laptop =&gt;
+ *   SYNONYM: notebook
+ *   &#64;priority: 10
+ *   &#64;group: computers
+ *   &#64;id: laptop-synonyms
+ * </pre>
+ *
+ * <p>Property names are case-insensitive.</p>
+ */
+public class RuleProperty {
+
+    public static final String PRIORITY = "priority";
+    public static final String GROUP = "group";
+    public static final String ID = "id";
+    public static final String SKIP_SEARCH = "skipsearch";
+
+    final String name;
+    final Object value;
+
+    public RuleProperty(String name, Object value) {
+        if (name == null) {
+            throw new IllegalArgumentException("name must not be null");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        this.name = name;
+        this.value = value;
+    }
+
+    /**
+     * Set this property at the instructions of a rule
+     *
+     * @param instructions
+     */
+    public void applyTo(Instructions instructions) {
+        switch (name) {
+        case PRIORITY:
+            instructions.setPriority((Integer) value);
+            break;
+        case GROUP:
+            instructions.setGroup((String) value);
+            break;
+        case ID:
+            instructions.setId((String) value);
+            break;
+        case SKIP_SEARCH:
+            instructions.setSkipSearch((Boolean) value);
+            break;
+        default:
+            throw new IllegalStateException("Unknown rule property: " + name);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + name.hashCode();
+        result = prime * result + value.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RuleProperty other = (RuleProperty) obj;
+        return name.equals(other.name) && value.equals(other.value);
+    }
+
+    @Override
+    public String toString() {
+        return "RuleProperty [name=" + name + ", value=" + value + "]";
+    }
+
+}
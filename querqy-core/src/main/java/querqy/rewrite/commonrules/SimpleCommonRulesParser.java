@@ -6,6 +6,8 @@ package querqy.rewrite.commonrules;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.HashSet;
+import java.util.Set;
 
 import querqy.parser.QuerqyParserFactory;
 import querqy.rewrite.commonrules.model.Input;
@@ -31,7 +33,9 @@ public class SimpleCommonRulesParser {
    int lineNumber = 0;
    final RulesCollectionBuilder builder;
    Input input = null;
+   String inputString = null;
    Instructions instructions = null;
+   final Set<String> ruleIds = new HashSet<>();
 
    public SimpleCommonRulesParser(Reader in, QuerqyParserFactory querqyParserFactory, boolean ignoreCase) {
       this.reader = new BufferedReader(in);
@@ -64,6 +68,7 @@ public class SimpleCommonRulesParser {
          if (instructions.isEmpty()) {
             throw new RuleParseException(lineNumber, "Instruction expected");
          }
+         assignRuleId();
          builder.addRule(input, instructions);
          input = null;
        //  instructions = new Instructions();
@@ -77,9 +82,12 @@ public class SimpleCommonRulesParser {
          if (lineObject instanceof Input) {
             putRule();
             input = (Input) lineObject;
+            inputString = normalizeInput(line);
             instructions = new Instructions();
          } else if (lineObject instanceof ValidationError) {
             throw new RuleParseException(lineNumber, ((ValidationError) lineObject).getMessage());
+         } else if (lineObject instanceof RuleProperty) {
+            ((RuleProperty) lineObject).applyTo(instructions);
          } else {
             instructions.add((Instruction) lineObject);
          }
@@ -87,6 +95,32 @@ public class SimpleCommonRulesParser {
       }
    }
 
+   /**
+    * Make sure that the current rule has a unique id. If the id wasn't set explicitly using the '@id' property,
+    * the normalized input line will be used, followed by '#' and a sequence number if there is more than one rule
+    * for the same input. This keeps ids stable when other rules are added or removed.
+    * 
+    * @throws RuleParseException if an explicit id is used by another rule
+    */
+   void assignRuleId() throws RuleParseException {
+      String id = instructions.getId();
+      if (id != null) {
+         if (!ruleIds.add(id)) {
+            throw new RuleParseException(lineNumber, "Duplicate rule id: " + id);
+         }
+      } else {
+         id = inputString;
+         for (int i = 2; !ruleIds.add(id); i++) {
+            id = inputString + "#" + i;
+         }
+         instructions.setId(id);
+      }
+   }
+
+   static String normalizeInput(String line) {
+      return line.substring(0, line.length() - ARROW_OP.length()).trim().replaceAll("\\s+", " ");
+   }
+
    public String stripLine(String line) {
       line = line.trim();
       if (line.length() > 0) {
@@ -8,22 +8,28 @@ import java.io.Reader;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import querqy.model.ExpandedQuery;
+import querqy.model.Query;
 import querqy.model.Term;
 import querqy.parser.QuerqyParserFactory;
+import querqy.rewrite.ApplicabilityAwareRewriterFactory;
 import querqy.rewrite.QueryRewriter;
-import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.commonrules.model.Instruction;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.RuleStatistics;
 import querqy.rewrite.commonrules.model.RulesCollection;
 
 /**
  * @author René Kriegler, @renekrie
  *
  */
-public class SimpleCommonRulesRewriterFactory implements RewriterFactory {
+public class SimpleCommonRulesRewriterFactory implements ApplicabilityAwareRewriterFactory {
 
     final RulesCollection rules;
+    final CommonRulesRewriter rewriter;
+    final boolean recordRuleContributions;
 
     /**
      * 
@@ -33,6 +39,20 @@ public class SimpleCommonRulesRewriterFactory implements RewriterFactory {
      * @throws IOException
      */
     public SimpleCommonRulesRewriterFactory(Reader reader, QuerqyParserFactory querqyParserFactory, boolean ignoreCase) throws IOException {
+        this(reader, querqyParserFactory, ignoreCase, false);
+    }
+
+    /**
+     * 
+     * @param reader
+     * @param querqyParserFactory
+     * @param ignoreCase
+     * @param recordRuleContributions Iff true, the {@link RuleStatistics} also count the generated terms, boost
+     *                                queries and filter queries of each rule. Otherwise only matches are counted.
+     * @throws IOException
+     */
+    public SimpleCommonRulesRewriterFactory(Reader reader, QuerqyParserFactory querqyParserFactory, boolean ignoreCase,
+            boolean recordRuleContributions) throws IOException {
         try {
             rules = new SimpleCommonRulesParser(reader, querqyParserFactory, ignoreCase).parse();
         } catch (RuleParseException e) {
@@ -44,6 +64,9 @@ public class SimpleCommonRulesRewriterFactory implements RewriterFactory {
                 // TODO: log
             }
         }
+        // CommonRulesRewriter is stateless - we can use the same instance for all requests
+        this.recordRuleContributions = recordRuleContributions;
+        rewriter = new CommonRulesRewriter(rules, recordRuleContributions);
     }
 
     /*
@@ -55,7 +78,48 @@ public class SimpleCommonRulesRewriterFactory implements RewriterFactory {
      */
     @Override
     public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
-        return new CommonRulesRewriter(rules);
+        return rewriter;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see querqy.rewrite.ApplicabilityAwareRewriterFactory#isApplicable(querqy.model.ExpandedQuery, java.util.Map)
+     */
+    @Override
+    public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+        Query userQuery = query.getUserQuery();
+        return userQuery != null && rules.mightMatch(userQuery);
+    }
+
+    /**
+     * Get the statistics of all rules by rule id. See {@link RuleStatistics}.
+     * 
+     * @return The statistics, ordered by rule id
+     */
+    public Map<String, RuleStatistics> getRuleStatistics() {
+        Map<String, RuleStatistics> result = new TreeMap<>();
+        for (Instructions instructions : rules.getRules()) {
+            result.put(instructions.getId(), instructions.getStatistics());
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return true iff the {@link RuleStatistics} count the contributions of the rules and not only their matches
+     */
+    public boolean isRecordingRuleContributions() {
+        return recordRuleContributions;
+    }
+
+    /**
+     * Set the counters of all rules to 0.
+     */
+    public void resetRuleStatistics() {
+        for (Instructions instructions : rules.getRules()) {
+            instructions.getStatistics().reset();
+        }
     }
 
     @Override
@@ -0,0 +1,296 @@
+/**
+ *
+ */
+package querqy.rewrite.commonrules.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import querqy.model.Term;
+
+/**
+ * <p>Resolves conflicts and redundancies between the {@link Action}s that a {@link RulesCollection} found for
+ * a query before they are applied:</p>
+ * <ul>
+ *     <li>If more than one rule of an exclusive group matches, only the rule with the highest priority is kept.
+ *     If two rules of a group have the same priority, the rule that was found first wins.</li>
+ *     <li>Rules with a higher priority are applied before rules with a lower priority.</li>
+ *     <li>An instruction is only applied once to the same matched query terms, for example, if the same rule exists
+ *     twice in the rules collection.</li>
+ *     <li>Instructions that do not depend on the matched terms (filters, decorations, and boost queries without
+ *     placeholders) are only applied once per query.</li>
+ * </ul>
+ *
+ * <p>The actions of all position sequences of a query are first passed to {@link #collect(PositionSequence, List)}.
+ * {@link #resolve()} then resolves the groups and priorities across the whole query, so that a rule found in one
+ * sequence can win over a rule of the same group in a sequence that was collected earlier.</p>
+ *
+ * <p>An ActionResolver keeps track of the instructions and groups that it has passed on for application. It is
+ * meant to be used for the rewriting of a single query and it expects all actions that it returns to be applied.</p>
+ */
+public class ActionResolver {
+
+    static final Comparator<SequenceAction> PRIORITY_COMPARATOR = new Comparator<SequenceAction>() {
+
+        @Override
+        public int compare(final SequenceAction action1, final SequenceAction action2) {
+            final int priority1 = action1.getInstructions().getPriority();
+            final int priority2 = action2.getInstructions().getPriority();
+            return (priority1 < priority2) ? 1 : ((priority1 == priority2) ? 0 : -1);
+        }
+
+    };
+
+    protected final Set<Instruction> appliedQueryLevelInstructions = new HashSet<>();
+    protected final Set<AppliedInstruction> appliedInstructions = new HashSet<>();
+    protected final Set<String> appliedGroups = new HashSet<>();
+
+    protected List<SequenceAction> candidates = new ArrayList<>();
+    protected Map<String, SequenceAction> bestOfGroup = null;
+    protected boolean hasPriorities = false;
+
+    /**
+     * Add the actions that were found for a position sequence to the candidates for application.
+     *
+     * @param sequence The sequence of query terms that the actions were found in
+     * @param actions The actions as returned by {@link RulesCollection#getRewriteActions(PositionSequence)}
+     */
+    public void collect(final PositionSequence<Term> sequence, final List<Action> actions) {
+
+        for (final Action action : actions) {
+
+            // Split actions so that each candidate references a single rule
+            for (final Instructions instructions : action.getInstructions()) {
+
+                final Action singleRuleAction = (action.getInstructions().size() == 1)
+                        ? action
+                        : new Action(Collections.singletonList(instructions), action.getTermMatches(),
+                            action.getStartPosition(), action.getEndPosition());
+
+                final SequenceAction candidate = new SequenceAction(sequence, singleRuleAction);
+
+                hasPriorities |= instructions.getPriority() != Instructions.DEFAULT_PRIORITY;
+
+                final String group = instructions.getGroup();
+                if (group != null) {
+
+                    if (appliedGroups.contains(group)) {
+                        continue;
+                    }
+
+                    if (bestOfGroup == null) {
+                        bestOfGroup = new HashMap<>();
+                    }
+
+                    final SequenceAction best = bestOfGroup.get(group);
+                    if (best == null || best.getInstructions().getPriority() < instructions.getPriority()) {
+                        bestOfGroup.put(group, candidate);
+                    }
+
+                }
+
+                candidates.add(candidate);
+
+            }
+        }
+
+    }
+
+    /**
+     * Resolve the actions to apply from the candidates that were collected since the last call of this method.
+     *
+     * @return The actions to apply, in the order of application. Each action of the result will reference
+     *          exactly one {@link Instructions} object.
+     */
+    public List<SequenceAction> resolve() {
+
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (hasPriorities) {
+            // this is a stable sort
+            Collections.sort(candidates, PRIORITY_COMPARATOR);
+        }
+
+        final List<SequenceAction> result = new ArrayList<>(candidates.size());
+
+        for (final SequenceAction candidate : candidates) {
+
+            final Instructions instructions = candidate.getInstructions();
+
+            final String group = instructions.getGroup();
+            if (group != null) {
+                if (bestOfGroup.get(group) != candidate) {
+                    continue;
+                }
+                appliedGroups.add(group);
+            }
+
+            final Action action = candidate.getAction();
+
+            List<Instruction> toApply = null;
+
+            int i = 0;
+            for (final Instruction instruction : instructions) {
+
+                final boolean isNew = isQueryLevelInstruction(instruction)
+                        ? appliedQueryLevelInstructions.add(instruction)
+                        : appliedInstructions.add(new AppliedInstruction(instruction, action));
+
+                if (isNew) {
+                    if (toApply != null) {
+                        toApply.add(instruction);
+                    }
+                } else if (toApply == null) {
+                    // first redundant instruction - copy the instructions that we've seen so far
+                    toApply = new LinkedList<>(instructions.subList(0, i));
+                }
+
+                i++;
+
+            }
+
+            if (toApply == null) {
+                result.add(candidate);
+            } else if (!toApply.isEmpty()) {
+                result.add(new SequenceAction(candidate.getSequence(),
+                        new Action(Collections.singletonList(new Instructions(instructions, toApply)),
+                                action.getTermMatches(), action.getStartPosition(), action.getEndPosition())));
+            }
+
+        }
+
+        candidates = new ArrayList<>();
+        bestOfGroup = null;
+        hasPriorities = false;
+
+        return result;
+
+    }
+
+    /**
+     *
+     * @param instruction
+     * @return true iff the effect of the instruction doesn't depend on the query terms that matched the rule input
+     */
+    protected boolean isQueryLevelInstruction(final Instruction instruction) {
+        return (instruction instanceof FilterInstruction)
+                || (instruction instanceof DecorateInstruction)
+                || ((instruction instanceof BoostInstruction)
+                        && !((BoostInstruction) instruction).hasPlaceHolderInBoostQuery());
+    }
+
+    /**
+     * An {@link Action} that references a single {@link Instructions} object, together with the sequence of query
+     * terms that it was found in.
+     */
+    public static class SequenceAction {
+
+        final PositionSequence<Term> sequence;
+        final Action action;
+
+        public SequenceAction(final PositionSequence<Term> sequence, final Action action) {
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        public PositionSequence<Term> getSequence() {
+            return sequence;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public Instructions getInstructions() {
+            return action.getInstructions().get(0);
+        }
+
+        @Override
+        public String toString() {
+            return "SequenceAction [action=" + action + "]";
+        }
+
+    }
+
+    /**
+     * An instruction together with the query terms that it was applied to. Query terms are compared by identity.
+     */
+    static class AppliedInstruction {
+
+        final Instruction instruction;
+        final Object[] queryTerms;
+        final Object[] wildcardMatches;
+        final int startPosition;
+        final int endPosition;
+        final int hash;
+
+        AppliedInstruction(final Instruction instruction, final Action action) {
+            this.instruction = instruction;
+            this.startPosition = action.getStartPosition();
+            this.endPosition = action.getEndPosition();
+
+            final TermMatches termMatches = action.getTermMatches();
+            queryTerms = new Object[termMatches.size()];
+            wildcardMatches = new Object[termMatches.size()];
+
+            final int prime = 31;
+            int h = instruction.hashCode();
+            h = prime * h + startPosition;
+            h = prime * h + endPosition;
+
+            int i = 0;
+            for (final TermMatch termMatch : termMatches) {
+                queryTerms[i] = termMatch.getQueryTerm();
+                wildcardMatches[i] = termMatch.getWildcardMatch();
+                h = prime * h + System.identityHashCode(queryTerms[i]);
+                i++;
+            }
+
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            final AppliedInstruction other = (AppliedInstruction) obj;
+            if (hash != other.hash || startPosition != other.startPosition || endPosition != other.endPosition
+                    || queryTerms.length != other.queryTerms.length) {
+                return false;
+            }
+            for (int i = 0; i < queryTerms.length; i++) {
+                if (queryTerms[i] != other.queryTerms[i]) {
+                    return false;
+                }
+                if (wildcardMatches[i] == null) {
+                    if (other.wildcardMatches[i] != null) {
+                        return false;
+                    }
+                } else if (!wildcardMatches[i].equals(other.wildcardMatches[i])) {
+                    return false;
+                }
+            }
+            return instruction.equals(other.instruction);
+        }
+
+    }
+
+}
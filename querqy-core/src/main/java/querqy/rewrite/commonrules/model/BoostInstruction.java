@@ -236,8 +236,9 @@ public class BoostInstruction implements Instruction {
 
             if (hasPlaceHolderChild) {
 
-                for (final DisjunctionMaxClause clause : oldClauses) {
-                    disjunctionMaxQuery.removeClause(clause);
+                // oldClauses is the live list of the query - don't use an iterator while removing from it
+                for (int i = oldClauses.size() - 1; i >= 0; i--) {
+                    disjunctionMaxQuery.removeClause(oldClauses.get(i));
                 }
 
                 for (final DisjunctionMaxClause clause : newClauses) {
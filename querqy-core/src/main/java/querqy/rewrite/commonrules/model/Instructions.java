@@ -20,12 +20,95 @@ public class Instructions extends LinkedList<Instruction> {
      */
    private static final long serialVersionUID = 1L;
 
+   public static final int DEFAULT_PRIORITY = 0;
+
+   /**
+    * Rules with a higher priority are applied before rules with a lower priority. Within an exclusive group
+    * only the matching rule with the highest priority will be applied.
+    */
+   protected int priority = DEFAULT_PRIORITY;
+
+   /**
+    * The name of the exclusive group that this rule belongs to or null if the rule doesn't belong to a group.
+    */
+   protected String group = null;
+
+   /**
+    * The id of the rule. Rule ids are unique within a rules collection.
+    */
+   protected String id = null;
+
+   /**
+    * If true, the search should not be executed if this rule was applied, for example because the rule only
+    * decorates the query with a redirect.
+    */
+   protected boolean skipSearch = false;
+
+   /**
+    * The counters of this rule. Copies of the instructions share the statistics of the original.
+    */
+   protected final RuleStatistics statistics;
+
    public Instructions() {
       super();
+      statistics = new RuleStatistics();
    }
 
    public Instructions(Collection<Instruction> instructions) {
       super(instructions);
+      statistics = new RuleStatistics();
+   }
+
+   /**
+    * Create a copy of the given instructions that keeps the rule properties of the original but that only contains
+    * the given instruction elements.
+    *
+    * @param template The Instructions from which to take the rule properties
+    * @param instructions The instruction elements
+    */
+   public Instructions(Instructions template, Collection<Instruction> instructions) {
+      super(instructions);
+      this.priority = template.priority;
+      this.group = template.group;
+      this.id = template.id;
+      this.skipSearch = template.skipSearch;
+      this.statistics = template.statistics;
+   }
+
+   public int getPriority() {
+      return priority;
+   }
+
+   public void setPriority(int priority) {
+      this.priority = priority;
+   }
+
+   public String getGroup() {
+      return group;
+   }
+
+   public void setGroup(String group) {
+      this.group = group;
+   }
+
+   public String getId() {
+      return id;
+   }
+
+   public void setId(String id) {
+      this.id = id;
+   }
+
+   public boolean isSkipSearch() {
+      return skipSearch;
+   }
+
+   public void setSkipSearch(boolean skipSearch) {
+      this.skipSearch = skipSearch;
+   }
+
+   public RuleStatistics getStatistics() {
+      return statistics;
    }
 
 }
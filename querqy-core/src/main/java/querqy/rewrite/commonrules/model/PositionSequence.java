@@ -3,25 +3,31 @@
  */
 package querqy.rewrite.commonrules.model;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * @author rene
  *
  */
-public class PositionSequence<T> extends LinkedList<List<T>> {
+public class PositionSequence<T> extends ArrayList<List<T>> {
 
    /**
      * 
      */
    private static final long serialVersionUID = 1L;
 
+   /**
+    * The initial capacity of the list of elements at a position. Most positions only hold very few alternatives.
+    */
+   static final int INITIAL_POSITION_CAPACITY = 2;
+
    public PositionSequence() {
    }
 
    public void nextPosition() {
-      super.add(new LinkedList<T>());
+      super.add(new ArrayList<T>(INITIAL_POSITION_CAPACITY));
    }
 
    /**
@@ -34,4 +40,31 @@ public class PositionSequence<T> extends LinkedList<List<T>> {
       getLast().add(element);
    }
 
+   /**
+    * Get the elements at the first position
+    * 
+    * @return The elements at the first position
+    * @throws NoSuchElementException if this sequence is empty
+    */
+   public List<T> getFirst() {
+      if (isEmpty()) {
+         throw new NoSuchElementException();
+      }
+      return get(0);
+   }
+
+   /**
+    * Get the elements at the current (= last) position
+    * 
+    * @return The elements at the last position
+    * @throws NoSuchElementException if this sequence is empty
+    */
+   public List<T> getLast() {
+      final int size = size();
+      if (size == 0) {
+         throw new NoSuchElementException();
+      }
+      return get(size - 1);
+   }
+
 }
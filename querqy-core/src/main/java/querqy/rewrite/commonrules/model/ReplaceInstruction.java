@@ -0,0 +1,190 @@
+/**
+ * 
+ */
+package querqy.rewrite.commonrules.model;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import querqy.ComparableCharSequence;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+
+/**
+ * <p>Replaces the matched query terms with other terms.</p>
+ *
+ * <p>The i-th matched term is replaced in place by the i-th replacement term. The new term keeps the field (unless
+ * the replacement term specifies fields) and the generated flag of the term that it replaces, so that later
+ * rewriters treat it like the original term. Further clauses of the term's {@link DisjunctionMaxQuery}, like
+ * synonyms that were added before, are kept. If there are more replacement terms than matched terms, the remaining
+ * replacement terms are added as new {@link DisjunctionMaxQuery}s after the last matched term. If there are fewer,
+ * the remaining matched terms are removed.</p>
+ *
+ * <p>Compared to a combination of a SYNONYM and a DELETE instruction, this neither adds the replaced terms as
+ * generated terms nor needs another pass over the sequence to delete the input.</p>
+ */
+public class ReplaceInstruction implements Instruction {
+
+    protected final List<querqy.rewrite.commonrules.model.Term> replacement;
+
+    public ReplaceInstruction(final List<querqy.rewrite.commonrules.model.Term> replacement) {
+        if (replacement == null || replacement.isEmpty()) {
+            throw new IllegalArgumentException("Replacement required");
+        }
+        this.replacement = replacement;
+    }
+
+    public List<querqy.rewrite.commonrules.model.Term> getReplacement() {
+        return replacement;
+    }
+
+    /* (non-Javadoc)
+     * @see querqy.rewrite.commonrules.model.Instruction#apply(querqy.rewrite.commonrules.model.PositionSequence, querqy.rewrite.commonrules.model.TermMatches, int, int, querqy.model.ExpandedQuery, java.util.Map)
+     */
+    @Override
+    public void apply(final PositionSequence<Term> sequence, final TermMatches termMatches,
+                      final int startPosition, final int endPosition, final ExpandedQuery expandedQuery,
+                      final Map<String, Object> context) {
+
+        final int numMatches = termMatches.size();
+        if (numMatches == 0) {
+            throw new IllegalArgumentException("termMatches must not be empty");
+        }
+
+        final int numReplacements = replacement.size();
+
+        Term lastReplaced = null;
+
+        for (int i = 0; i < numMatches; i++) {
+
+            final Term queryTerm = termMatches.get(i).getQueryTerm();
+            final DisjunctionMaxQuery dmq = queryTerm.getParent();
+            final int index = dmq.indexOfClause(queryTerm);
+            if (index < 0) {
+                // the term was already replaced or deleted by another instruction
+                continue;
+            }
+
+            if (i < numReplacements) {
+
+                final querqy.rewrite.commonrules.model.Term replacementTerm = replacement.get(i);
+                final ComparableCharSequence value = replacementTerm.fillPlaceholders(termMatches);
+                final List<String> fieldNames = replacementTerm.getFieldNames();
+
+                if (fieldNames == null || fieldNames.isEmpty()) {
+                    dmq.setClause(index, new Term(dmq, queryTerm.getField(), value, queryTerm.isGenerated()));
+                } else {
+                    dmq.setClause(index, new Term(dmq, fieldNames.get(0), value, queryTerm.isGenerated()));
+                    for (int j = 1, len = fieldNames.size(); j < len; j++) {
+                        dmq.addClause(index + j, new Term(dmq, fieldNames.get(j), value, queryTerm.isGenerated()));
+                    }
+                }
+
+                lastReplaced = queryTerm;
+
+            } else {
+
+                removeTerm(queryTerm, index);
+
+            }
+        }
+
+        if (numReplacements > numMatches && lastReplaced != null) {
+
+            final DisjunctionMaxQuery lastDmq = lastReplaced.getParent();
+            final BooleanQuery bq = lastDmq.getParent();
+            int index = bq.indexOfClause(lastDmq);
+
+            for (int i = numMatches; i < numReplacements; i++) {
+
+                final querqy.rewrite.commonrules.model.Term replacementTerm = replacement.get(i);
+                final ComparableCharSequence value = replacementTerm.fillPlaceholders(termMatches);
+                final List<String> fieldNames = replacementTerm.getFieldNames();
+
+                final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(bq, lastDmq.getOccur(), lastDmq.isGenerated());
+                if (fieldNames == null || fieldNames.isEmpty()) {
+                    dmq.addClause(new Term(dmq, lastReplaced.getField(), value, lastReplaced.isGenerated()));
+                } else {
+                    for (final String fieldName : fieldNames) {
+                        dmq.addClause(new Term(dmq, fieldName, value, lastReplaced.isGenerated()));
+                    }
+                }
+
+                bq.addClause(++index, dmq);
+            }
+        }
+
+    }
+
+    /**
+     * Remove a term from its parent and remove the parent from the grand-parent if the term was its only clause,
+     * unless this would leave the grand-parent empty.
+     */
+    protected void removeTerm(final Term term, final int index) {
+        final DisjunctionMaxQuery parentQuery = term.getParent();
+        final List<DisjunctionMaxClause> clauses = parentQuery.getClauses();
+        if (clauses.size() > 1) {
+            clauses.remove(index);
+        } else {
+            final BooleanQuery grandParent = parentQuery.getParent();
+            final int parentIndex = grandParent.indexOfClause(parentQuery);
+            if (parentIndex > -1 && grandParent.getClauseCount() > 1) {
+                grandParent.getClauses().remove(parentIndex);
+            }
+        }
+    }
+
+    @Override
+    public Set<Term> getGenerableTerms() {
+        final Set<Term> result = new HashSet<>();
+        for (final querqy.rewrite.commonrules.model.Term term : replacement) {
+            if (!term.hasPlaceHolder()) {
+                final List<String> fieldNames = term.getFieldNames();
+                if (fieldNames == null || fieldNames.isEmpty()) {
+                    result.add(new Term(null, term, false));
+                } else {
+                    for (final String fieldName : fieldNames) {
+                        result.add(new Term(null, fieldName, term, false));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((replacement == null) ? 0 : replacement.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        final ReplaceInstruction other = (ReplaceInstruction) obj;
+        if (replacement == null) {
+            if (other.replacement != null)
+                return false;
+        } else if (!replacement.equals(other.replacement))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplaceInstruction [replacement=" + replacement + "]";
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ */
+package querqy.rewrite.commonrules.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Counts how often a rule was applied and what it contributed to the query: the number of generated terms,
+ * boost queries and filter queries. The contributions are only counted if the rewriter was created with
+ * contribution statistics enabled, as measuring them costs more than counting the matches.</p>
+ *
+ * <p>The counters are striped by thread so that threads that apply the same rule concurrently do not contend for
+ * the same cache line. The stripes are only allocated when the rule is applied for the first time, which keeps the
+ * memory footprint of rules that never match small.</p>
+ */
+public class RuleStatistics {
+
+    static final int MATCHES = 0;
+    static final int GENERATED_TERMS = 1;
+    static final int BOOST_QUERIES = 2;
+    static final int FILTER_QUERIES = 3;
+
+    /**
+     * The number of longs per stripe (= a 64 byte cache line)
+     */
+    static final int SLOTS = 8;
+
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private volatile AtomicLongArray cells = null;
+
+    static int stripes(int processors) {
+        int stripes = 1;
+        while (stripes < processors && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /**
+     * Record an application of the rule without its contributions.
+     */
+    public void recordMatch() {
+
+        AtomicLongArray c = cells;
+        if (c == null) {
+            c = initCells();
+        }
+
+        c.incrementAndGet((int) (Thread.currentThread().getId() & (STRIPES - 1)) * SLOTS + MATCHES);
+    }
+
+    /**
+     * Record an application of the rule together with its contributions.
+     *
+     * @param generatedTerms The number of terms that the rule added to the user query
+     * @param boostQueries The number of boost queries that the rule added
+     * @param filterQueries The number of filter queries that the rule added
+     */
+    public void record(int generatedTerms, int boostQueries, int filterQueries) {
+
+        AtomicLongArray c = cells;
+        if (c == null) {
+            c = initCells();
+        }
+
+        final int base = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * SLOTS;
+        c.incrementAndGet(base + MATCHES);
+        if (generatedTerms > 0) {
+            c.addAndGet(base + GENERATED_TERMS, generatedTerms);
+        }
+        if (boostQueries > 0) {
+            c.addAndGet(base + BOOST_QUERIES, boostQueries);
+        }
+        if (filterQueries > 0) {
+            c.addAndGet(base + FILTER_QUERIES, filterQueries);
+        }
+    }
+
+    private synchronized AtomicLongArray initCells() {
+        if (cells == null) {
+            cells = new AtomicLongArray(STRIPES * SLOTS);
+        }
+        return cells;
+    }
+
+    private long sum(int slot) {
+        final AtomicLongArray c = cells;
+        if (c == null) {
+            return 0L;
+        }
+        long sum = 0L;
+        for (int i = slot, len = c.length(); i < len; i += SLOTS) {
+            sum += c.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     *
+     * @return The number of times the rule was applied
+     */
+    public long getMatches() {
+        return sum(MATCHES);
+    }
+
+    /**
+     *
+     * @return The total number of terms that the rule added to the user query
+     */
+    public long getGeneratedTerms() {
+        return sum(GENERATED_TERMS);
+    }
+
+    /**
+     *
+     * @return The total number of boost queries that the rule added
+     */
+    public long getBoostQueries() {
+        return sum(BOOST_QUERIES);
+    }
+
+    /**
+     *
+     * @return The total number of filter queries that the rule added
+     */
+    public long getFilterQueries() {
+        return sum(FILTER_QUERIES);
+    }
+
+    /**
+     * Set all counters to 0. Applications of the rule that happen concurrently might get lost.
+     */
+    public synchronized void reset() {
+        cells = null;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleStatistics [matches=" + getMatches() + ", generatedTerms=" + getGeneratedTerms()
+                + ", boostQueries=" + getBoostQueries() + ", filterQueries=" + getFilterQueries() + "]";
+    }
+
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Set;
 
 import querqy.model.InputSequenceElement;
+import querqy.model.Query;
 
 public interface RulesCollection {
 
@@ -22,5 +23,21 @@ public interface RulesCollection {
      */
     Set<Instruction> getInstructions();
     
+    /**
+     * Get all rules of this RulesCollection. Each rule is represented by its {@link Instructions} object.
+     * 
+     * @return The rules
+     */
+    List<Instructions> getRules();
+    
+    /**
+     * Cheap check whether any rule of this collection could match the query. This must be conservative: it may
+     * return true although no rule matches, but it must not return false if a rule matches.
+     * 
+     * @param query
+     * @return false if no rule can match the query
+     */
+    boolean mightMatch(Query query);
+    
 
 }
\ No newline at end of file
@@ -8,9 +8,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import querqy.CharSequenceUtil;
 import querqy.ComparableCharSequence;
 import querqy.model.BooleanQuery;
 import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
 import querqy.model.Term;
@@ -96,14 +98,32 @@ public class SynonymInstruction implements Instruction {
         final List<String> fieldNames = synTerm.getFieldNames();
         final ComparableCharSequence charSequence = synTerm.fillPlaceholders(termMatches);
         if (fieldNames == null || fieldNames.isEmpty()) {
-            dmq.addClause(new Term(dmq, charSequence, true));
+            addTermIfAbsent(dmq, null, charSequence);
         } else {
             for (final String fieldName: fieldNames) {
-                dmq.addClause(new Term(dmq, fieldName, charSequence, true));
+                addTermIfAbsent(dmq, fieldName, charSequence);
             }
         }
     }
 
+    /**
+     * Adds a generated term to the DMQ unless the DMQ already contains a term with the same field and value. This
+     * avoids duplicate clauses if rules with the same synonym match overlapping input (like 'a' and 'a b').
+     */
+    protected void addTermIfAbsent(final DisjunctionMaxQuery dmq, final String fieldName,
+                                   final ComparableCharSequence charSequence) {
+        for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+            if (clause instanceof Term) {
+                final Term term = (Term) clause;
+                if ((fieldName == null ? term.getField() == null : fieldName.equals(term.getField()))
+                        && CharSequenceUtil.equals(charSequence, term.getValue())) {
+                    return;
+                }
+            }
+        }
+        dmq.addClause(new Term(dmq, fieldName, charSequence, true));
+    }
+
     @Override
     public Set<Term> getGenerableTerms() {
         final Set<Term> result = new HashSet<>();
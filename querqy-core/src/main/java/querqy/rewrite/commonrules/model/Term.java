@@ -18,6 +18,11 @@ public class Term implements ComparableCharSequence {
     protected final List<String> fieldNames;
     protected final LinkedList<PlaceHolder> placeHolders;
 
+    /**
+     * The hash code or 0 if it hasn't been calculated yet
+     */
+    private int hashCode = 0;
+
     public Term(char[] value, int start, int length, List<String> fieldNames) {
         if (start + length > value.length) {
             throw new ArrayIndexOutOfBoundsException("start + length > value.length");
@@ -142,17 +147,21 @@ public class Term implements ComparableCharSequence {
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
+        int result = hashCode;
+        if (result == 0) {
+            final int prime = 31;
+            result = 1;
 
-        result = prime * result
-                + ((fieldNames == null) ? 0 : fieldNames.hashCode());
-        result = prime * result + length;
+            result = prime * result
+                    + ((fieldNames == null) ? 0 : fieldNames.hashCode());
+            result = prime * result + length;
 
-        for (int i = 0; i < length; i++) {
-            result = prime * result + value[start + i];
-        }
+            for (int i = 0; i < length; i++) {
+                result = prime * result + value[start + i];
+            }
 
+            hashCode = result;
+        }
         return result;
     }
 
@@ -168,6 +177,9 @@ public class Term implements ComparableCharSequence {
 
         Term other = (Term) obj;
 
+        if (hashCode != 0 && other.hashCode != 0 && hashCode != other.hashCode)
+            return false;
+
         if (fieldNames == null) {
             if (other.fieldNames != null)
                 return false;
@@ -3,9 +3,9 @@
  */
 package querqy.rewrite.commonrules.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
 import querqy.ComparableCharSequence;
@@ -14,7 +14,7 @@ import querqy.ComparableCharSequence;
  * @author René Kriegler, @renekrie
  *
  */
-public class TermMatches extends LinkedList<TermMatch> {
+public class TermMatches extends ArrayList<TermMatch> {
 
     /**
      * 
@@ -28,14 +28,14 @@ public class TermMatches extends LinkedList<TermMatch> {
     }
     
     public TermMatches(final Collection<? extends TermMatch> c) {
-        super();
+        super(c.size() + 1);
         for (final TermMatch match: c) {
             add(match);
         }
     }
     
     public TermMatches(final TermMatch match) {
-        super();
+        super(1);
         add(match);
     }
     
@@ -64,7 +64,6 @@ public class TermMatches extends LinkedList<TermMatch> {
         throw new UnsupportedOperationException();
     }
     
-    @Override
     public void addFirst(final TermMatch match) {
         final Map<Integer, ComparableCharSequence> newReplacements = new HashMap<>();
         newReplacements.put(1, match.getWildcardMatch());
@@ -4,13 +4,19 @@
 package querqy.rewrite.commonrules.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
 import querqy.CompoundCharSequence;
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
 import querqy.model.InputSequenceElement;
+import querqy.model.Query;
 import querqy.model.Term;
 import querqy.trie.State;
 import querqy.trie.States;
@@ -25,15 +31,88 @@ public class TrieMapRulesCollection implements RulesCollection {
     public static final String BOUNDARY_WORD = "\u0002";
     
     final TrieMap<List<Instructions>> trieMap;
+    final TrieMap<Boolean> vocabulary;
     final boolean ignoreCase;
     
     public TrieMapRulesCollection(TrieMap<List<Instructions>> trieMap, boolean ignoreCase) {
+        this(trieMap, null, ignoreCase);
+    }
+    
+    /**
+     * 
+     * @param trieMap The rules
+     * @param vocabulary All terms of the rule inputs, or null if {@link #mightMatch(Query)} should never reject a
+     *                   query (for example, because there is a rule that matches an empty input)
+     * @param ignoreCase
+     */
+    public TrieMapRulesCollection(TrieMap<List<Instructions>> trieMap, TrieMap<Boolean> vocabulary,
+                                  boolean ignoreCase) {
         if (trieMap == null) {
             throw new IllegalArgumentException("trieMap must not be null");
         }
         this.trieMap = trieMap;
+        this.vocabulary = vocabulary;
         this.ignoreCase = ignoreCase;
     }
+    
+    /**
+     * A rule can only match if at least one of the query terms is a term (or starts with a prefix term) of a rule
+     * input.
+     * 
+     * @see querqy.rewrite.commonrules.model.RulesCollection#mightMatch(querqy.model.Query)
+     */
+    @Override
+    public boolean mightMatch(final Query query) {
+        return vocabulary == null || containsVocabularyTerm(query);
+    }
+    
+    protected boolean containsVocabularyTerm(final BooleanQuery booleanQuery) {
+        
+        for (int i = 0, len = booleanQuery.getClauseCount(); i < len; i++) {
+            
+            final BooleanClause clause = booleanQuery.getClause(i);
+            
+            if (clause instanceof DisjunctionMaxQuery) {
+                
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+                
+                for (int j = 0, numClauses = dmq.getClauseCount(); j < numClauses; j++) {
+                    final DisjunctionMaxClause dmqClause = dmq.getClause(j);
+                    if (dmqClause instanceof Term) {
+                        if (isVocabularyTerm((Term) dmqClause)) {
+                            return true;
+                        }
+                    } else if (containsVocabularyTerm((BooleanQuery) dmqClause)) {
+                        return true;
+                    }
+                }
+                
+            } else if (containsVocabularyTerm((BooleanQuery) clause)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    protected boolean isVocabularyTerm(final Term term) {
+        
+        final States<Boolean> states = vocabulary.get(term.toCharSequenceWithField(ignoreCase));
+        if (states.getStateForCompleteSequence().isFinal()) {
+            return true;
+        }
+        
+        final List<State<Boolean>> statesForPrefixes = states.getPrefixes();
+        if (statesForPrefixes != null) {
+            for (final State<Boolean> stateForPrefix : statesForPrefixes) {
+                if (stateForPrefix.isFinal()) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
 
     /* (non-Javadoc)
      * @see querqy.rewrite.commonrules.model.RulesCollection#getRewriteActions(querqy.rewrite.commonrules.model.PositionSequence)
@@ -78,8 +157,8 @@ public class TrieMapRulesCollection implements RulesCollection {
             }
         } else {
 
-            List<Prefix<List<Instructions>>> prefixes = new LinkedList<>();
-            List<Prefix<List<Instructions>>> newPrefixes = new LinkedList<>();
+            List<Prefix<List<Instructions>>> prefixes = new ArrayList<>();
+            List<Prefix<List<Instructions>>> newPrefixes = new ArrayList<>();
 
             int pos = 0;
 
@@ -183,8 +262,11 @@ public class TrieMapRulesCollection implements RulesCollection {
 
                 }
 
+                // swap and re-use the lists instead of allocating a new one per position
+                final List<Prefix<List<Instructions>>> tmp = prefixes;
                 prefixes = newPrefixes;
-                newPrefixes = new LinkedList<>();
+                newPrefixes = tmp;
+                newPrefixes.clear();
 
                 if (anyTermAtPosition) {
                     pos++;
@@ -210,29 +292,50 @@ public class TrieMapRulesCollection implements RulesCollection {
         return result;
     }
 
+    @Override
+    public List<Instructions> getRules() {
+        
+        // the same Instructions object is stored under more than one key if the rule has alternative inputs
+        final Set<Instructions> seen = Collections.newSetFromMap(new IdentityHashMap<Instructions, Boolean>());
+        final List<Instructions> result = new ArrayList<>();
+        
+        for (final List<Instructions> instructionsList: trieMap) {
+            for (final Instructions instructions: instructionsList) {
+                if (seen.add(instructions)) {
+                    result.add(instructions);
+                }
+            }
+        }
+        
+        return result;
+    }
+
     public static class Prefix<T> {
         final State<T> stateInfo;
         final List<TermMatch> matches;
 
         public Prefix(final Prefix<T> prefix, final TermMatch match, final State<T> stateInfo) {
-            matches = new LinkedList<>(prefix.matches);
+            matches = new ArrayList<>(prefix.matches.size() + 1);
+            matches.addAll(prefix.matches);
             addTerm(match);
             this.stateInfo = stateInfo;
         }
         
         public Prefix(final Prefix<T> prefix, final State<T> stateInfo) {
-            matches = new LinkedList<>(prefix.matches);
+            // reserve a slot for a term match that might be added via addTerm()
+            matches = new ArrayList<>(prefix.matches.size() + 1);
+            matches.addAll(prefix.matches);
             this.stateInfo = stateInfo;
         }
 
         public Prefix(final TermMatch match, final State<T> stateInfo) {
-            matches = new LinkedList<>();
+            matches = new ArrayList<>(2);
             matches.add(match);
             this.stateInfo = stateInfo;
         }
         
         public Prefix(final State<T> stateInfo) {
-            matches = new LinkedList<>();
+            matches = new ArrayList<>(1);
             this.stateInfo = stateInfo;
         }
 
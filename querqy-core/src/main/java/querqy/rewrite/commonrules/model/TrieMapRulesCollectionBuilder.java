@@ -20,6 +20,16 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
     
     final TrieMap<List<Instructions>> map = new TrieMap<>();
     
+    /**
+     * The terms of all rule inputs
+     */
+    final TrieMap<Boolean> vocabulary = new TrieMap<>();
+    
+    /**
+     * true if there is a rule that matches the empty input. Such a rule does not contain any term.
+     */
+    boolean hasEmptyInput = false;
+    
     final boolean ignoreCase;
     
     public TrieMapRulesCollectionBuilder(boolean ignoreCase) {
@@ -34,6 +44,8 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
         
         List<Term> inputTerms = input.getInputTerms();
         
+        addToVocabulary(inputTerms);
+        
         switch (inputTerms.size()) {
         
         case 0: {
@@ -41,6 +53,8 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
                 throw new IllegalArgumentException("Empty input!");
             }
             
+            hasEmptyInput = true;
+            
             ComparableCharSequence seq = new CompoundCharSequence(" ", TrieMapRulesCollection.BOUNDARY_WORD, TrieMapRulesCollection.BOUNDARY_WORD);
             States<List<Instructions>> states = map.get(seq);
             State<List<Instructions>> state = states.getStateForCompleteSequence();
@@ -151,6 +165,19 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
 
     }
     
+    void addToVocabulary(List<Term> inputTerms) {
+        for (Term term : inputTerms) {
+            boolean isPrefix = term instanceof PrefixTerm;
+            for (ComparableCharSequence seq : term.getCharSequences(ignoreCase)) {
+                if (isPrefix) {
+                    vocabulary.putPrefix(seq, Boolean.TRUE);
+                } else {
+                    vocabulary.put(seq, Boolean.TRUE);
+                }
+            }
+        }
+    }
+    
     ComparableCharSequence applyBoundaries(ComparableCharSequence seq, boolean requiresLeftBoundary, boolean requiresRightBoundary) {
         if (requiresLeftBoundary == requiresRightBoundary) {
             if (requiresLeftBoundary) {
@@ -171,7 +198,7 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
      */
     @Override
     public RulesCollection build() {
-        return new TrieMapRulesCollection(map, ignoreCase);
+        return new TrieMapRulesCollection(map, hasEmptyInput ? null : vocabulary, ignoreCase);
     }
 
 }
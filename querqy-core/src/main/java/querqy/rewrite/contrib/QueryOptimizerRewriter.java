@@ -0,0 +1,367 @@
+package querqy.rewrite.contrib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.CopyUtil;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Node;
+import querqy.model.QuerqyQuery;
+import querqy.model.RawQuery;
+import querqy.model.SubQuery;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+
+/**
+ * <p>A query rewriter that canonicalizes the query that was produced by the previous rewriters in the chain.
+ * It is meant to be configured as the last rewriter of the chain. It</p>
+ * <ul>
+ *     <li>removes duplicate clauses from {@link DisjunctionMaxQuery}s. If a non-generated and a generated
+ *     {@link Term} have the same field and value, the non-generated term is kept.</li>
+ *     <li>flattens {@link BooleanQuery}s that only have a single clause into their parent query.</li>
+ *     <li>removes duplicate filter queries.</li>
+ *     <li>merges identical boost queries into a single boost query, adding up their boost factors.</li>
+ * </ul>
+ *
+ * <p>Note that removing duplicate clauses from a DisjunctionMaxQuery changes the score if a tie
+ * breaker &gt; 0 is used.</p>
+ */
+public class QueryOptimizerRewriter implements QueryRewriter {
+
+    protected final QueryOptimizerRewriterFactory factory;
+
+    protected int duplicateClausesRemoved = 0;
+    protected int nestedQueriesFlattened = 0;
+    protected int filterQueriesRemoved = 0;
+    protected int boostQueriesMerged = 0;
+
+    public QueryOptimizerRewriter() {
+        this(null);
+    }
+
+    /**
+     *
+     * @param factory The factory to which the counters of this rewriter will be added after rewriting. Can be null.
+     */
+    public QueryOptimizerRewriter(final QueryOptimizerRewriterFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public ExpandedQuery rewrite(final ExpandedQuery query) {
+
+        optimize(query.getUserQuery());
+
+        final Collection<QuerqyQuery<?>> filterQueries = query.getFilterQueries();
+        if (filterQueries != null && !filterQueries.isEmpty()) {
+            optimizeFilterQueries(filterQueries);
+        }
+
+        final Collection<BoostQuery> boostUpQueries = query.getBoostUpQueries();
+        if (boostUpQueries != null && !boostUpQueries.isEmpty()) {
+            optimizeBoostQueries(boostUpQueries);
+        }
+
+        final Collection<BoostQuery> boostDownQueries = query.getBoostDownQueries();
+        if (boostDownQueries != null && !boostDownQueries.isEmpty()) {
+            optimizeBoostQueries(boostDownQueries);
+        }
+
+        if (factory != null) {
+            factory.collect(this);
+        }
+
+        return query;
+    }
+
+    protected void optimizeFilterQueries(final Collection<QuerqyQuery<?>> filterQueries) {
+
+        final List<QuerqyQuery<?>> kept = new ArrayList<>(filterQueries.size());
+
+        for (final QuerqyQuery<?> filterQuery : filterQueries) {
+
+            if (filterQuery instanceof BooleanQuery) {
+                optimize((BooleanQuery) filterQuery);
+            }
+
+            if (indexOfEquivalent(kept, filterQuery) > -1) {
+                filterQueriesRemoved++;
+            } else {
+                kept.add(filterQuery);
+            }
+        }
+
+        if (kept.size() < filterQueries.size()) {
+            filterQueries.clear();
+            filterQueries.addAll(kept);
+        }
+
+    }
+
+    protected void optimizeBoostQueries(final Collection<BoostQuery> boostQueries) {
+
+        final List<QuerqyQuery<?>> keptQueries = new ArrayList<>(boostQueries.size());
+        final List<BoostQuery> kept = new ArrayList<>(boostQueries.size());
+
+        for (final BoostQuery boostQuery : boostQueries) {
+
+            final QuerqyQuery<?> query = boostQuery.getQuery();
+            if (query instanceof BooleanQuery) {
+                optimize((BooleanQuery) query);
+            }
+
+            final int index = indexOfEquivalent(keptQueries, query);
+            if (index > -1) {
+                final BoostQuery existing = kept.get(index);
+                kept.set(index, new BoostQuery(existing.getQuery(), existing.getBoost() + boostQuery.getBoost()));
+                boostQueriesMerged++;
+            } else {
+                keptQueries.add(query);
+                kept.add(boostQuery);
+            }
+        }
+
+        if (kept.size() < boostQueries.size()) {
+            boostQueries.clear();
+            boostQueries.addAll(kept);
+        }
+
+    }
+
+    protected void optimize(final BooleanQuery booleanQuery) {
+
+        final List<BooleanClause> clauses = booleanQuery.getClauses();
+
+        for (int i = 0, len = clauses.size(); i < len; i++) {
+
+            final BooleanClause clause = clauses.get(i);
+
+            if (clause instanceof DisjunctionMaxQuery) {
+
+                optimize((DisjunctionMaxQuery) clause);
+
+            } else if (clause instanceof BooleanQuery) {
+
+                final BooleanQuery nested = (BooleanQuery) clause;
+                optimize(nested);
+
+                final BooleanClause flattened = flatten(booleanQuery, nested);
+                if (flattened != null) {
+                    clauses.set(i, flattened);
+                    nestedQueriesFlattened++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace a BooleanQuery that has a single clause with a copy of this clause that takes the occur value of the
+     * BooleanQuery. The nodes of the copy keep their generated flag, unless the BooleanQuery was generated.
+     *
+     * @param parent The new parent of the clause
+     * @param booleanQuery The single-clause query
+     * @return The copy of the single clause or null if the query cannot be flattened.
+     */
+    protected BooleanClause flatten(final BooleanQuery parent, final BooleanQuery booleanQuery) {
+
+        if (booleanQuery.getClauseCount() != 1) {
+            return null;
+        }
+
+        final BooleanClause single = booleanQuery.getClause(0);
+        final Occur singleOccur = ((SubQuery<?, ?>) single).getOccur();
+        if (singleOccur == Occur.MUST_NOT) {
+            // a purely negative query must stay nested
+            return null;
+        }
+
+        final Occur occur = booleanQuery.getOccur();
+        final boolean generated = booleanQuery.isGenerated();
+
+        if (single instanceof DisjunctionMaxQuery) {
+            final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) single;
+            final DisjunctionMaxQuery copy = new DisjunctionMaxQuery(parent, occur, dmq.isGenerated() || generated);
+            for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+                copy.addClause(CopyUtil.copyClause(clause, copy, generated));
+            }
+            return copy;
+        }
+
+        final BooleanQuery bq = (BooleanQuery) single;
+        final BooleanQuery copy = new BooleanQuery(parent, occur, bq.isGenerated() || generated);
+        for (final BooleanClause clause : bq.getClauses()) {
+            copy.addClause(CopyUtil.copyClause(clause, copy, generated));
+        }
+        return copy;
+
+    }
+
+    protected void optimize(final DisjunctionMaxQuery dmq) {
+
+        final List<DisjunctionMaxClause> clauses = dmq.getClauses();
+        final int size = clauses.size();
+        if (size == 0) {
+            return;
+        }
+
+        final List<DisjunctionMaxClause> kept = new ArrayList<>(size);
+        boolean changed = false;
+
+        for (final DisjunctionMaxClause clause : clauses) {
+
+            if (clause instanceof BooleanQuery) {
+
+                final BooleanQuery bq = (BooleanQuery) clause;
+                optimize(bq);
+
+                if (bq.getClauseCount() == 1 && bq.getClause(0) instanceof DisjunctionMaxQuery
+                        && ((DisjunctionMaxQuery) bq.getClause(0)).getOccur() != Occur.MUST_NOT) {
+                    // move the clauses of the nested DMQ up into this DMQ
+                    final DisjunctionMaxQuery nestedDmq = (DisjunctionMaxQuery) bq.getClause(0);
+                    final boolean generated = bq.isGenerated() || nestedDmq.isGenerated();
+                    for (final DisjunctionMaxClause nestedClause : nestedDmq.getClauses()) {
+                        addIfAbsent(kept, CopyUtil.copyClause(nestedClause, dmq, generated));
+                    }
+                    nestedQueriesFlattened++;
+                    changed = true;
+                    continue;
+                }
+            }
+
+            changed |= !addIfAbsent(kept, clause);
+
+        }
+
+        if (changed) {
+            // removeClause() uses equals() - remove all clauses before adding the kept ones back
+            for (int i = clauses.size() - 1; i >= 0; i--) {
+                dmq.removeClause(clauses.get(i));
+            }
+            for (final DisjunctionMaxClause clause : kept) {
+                dmq.addClause(clause);
+            }
+        }
+
+    }
+
+    /**
+     * Add a DMQ clause to the list of kept clauses unless the list already contains an equivalent clause. If the
+     * list contains an equivalent but generated Term and the new clause is a non-generated Term, the new term
+     * replaces the generated one.
+     *
+     * @param kept The clauses to keep
+     * @param clause The clause to add
+     * @return true iff the clause was added to the list
+     */
+    protected boolean addIfAbsent(final List<DisjunctionMaxClause> kept, final DisjunctionMaxClause clause) {
+
+        if (clause instanceof Term) {
+
+            final Term term = (Term) clause;
+
+            for (int i = 0, len = kept.size(); i < len; i++) {
+                final DisjunctionMaxClause existing = kept.get(i);
+                if (term.equals(existing)) {
+                    duplicateClausesRemoved++;
+                    if (existing.isGenerated() && !term.isGenerated()) {
+                        kept.set(i, term);
+                        return true;
+                    }
+                    return false;
+                }
+            }
+
+        } else if (indexOfEquivalent(kept, clause) > -1) {
+            duplicateClausesRemoved++;
+            return false;
+        }
+
+        kept.add(clause);
+        return true;
+
+    }
+
+    protected static int indexOfEquivalent(final List<? extends Node> nodes, final Node node) {
+        for (int i = 0, len = nodes.size(); i < len; i++) {
+            if (isEquivalent(nodes.get(i), node)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare two nodes structurally, ignoring their parents. This is different from {@link Object#equals(Object)},
+     * which ignores the occur value of {@link SubQuery}s.
+     *
+     * @param node1
+     * @param node2
+     * @return true iff both nodes are equivalent
+     */
+    public static boolean isEquivalent(final Node node1, final Node node2) {
+
+        if (node1 == node2) {
+            return true;
+        }
+
+        if (node1 == null || node2 == null || node1.getClass() != node2.getClass()
+                || node1.isGenerated() != node2.isGenerated()) {
+            return false;
+        }
+
+        if (node1 instanceof Term) {
+            return node1.equals(node2);
+        }
+
+        if (node1 instanceof RawQuery) {
+            final RawQuery raw1 = (RawQuery) node1;
+            final RawQuery raw2 = (RawQuery) node2;
+            return raw1.getOccur() == raw2.getOccur() && raw1.getQueryString().equals(raw2.getQueryString());
+        }
+
+        if (node1 instanceof SubQuery) {
+
+            final SubQuery<?, ?> query1 = (SubQuery<?, ?>) node1;
+            final SubQuery<?, ?> query2 = (SubQuery<?, ?>) node2;
+
+            final int count = query1.getClauseCount();
+            if (query1.getOccur() != query2.getOccur() || count != query2.getClauseCount()) {
+                return false;
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (!isEquivalent(query1.getClause(i), query2.getClause(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return node1.equals(node2);
+    }
+
+    public int getDuplicateClausesRemoved() {
+        return duplicateClausesRemoved;
+    }
+
+    public int getNestedQueriesFlattened() {
+        return nestedQueriesFlattened;
+    }
+
+    public int getFilterQueriesRemoved() {
+        return filterQueriesRemoved;
+    }
+
+    public int getBoostQueriesMerged() {
+        return boostQueriesMerged;
+    }
+
+}
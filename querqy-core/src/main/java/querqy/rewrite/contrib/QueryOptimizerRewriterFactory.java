@@ -0,0 +1,77 @@
+package querqy.rewrite.contrib;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.RewriterFactory;
+
+/**
+ * Factory for {@link QueryOptimizerRewriter}. The factory sums up the counters of all rewriters that it created.
+ */
+public class QueryOptimizerRewriterFactory implements RewriterFactory {
+
+    protected final AtomicLong duplicateClausesRemoved = new AtomicLong();
+    protected final AtomicLong nestedQueriesFlattened = new AtomicLong();
+    protected final AtomicLong filterQueriesRemoved = new AtomicLong();
+    protected final AtomicLong boostQueriesMerged = new AtomicLong();
+
+    @Override
+    public QueryRewriter createRewriter(final ExpandedQuery input, final Map<String, ?> context) {
+        return new QueryOptimizerRewriter(this);
+    }
+
+    @Override
+    public Set<Term> getGenerableTerms() {
+        return QueryRewriter.EMPTY_GENERABLE_TERMS;
+    }
+
+    void collect(final QueryOptimizerRewriter rewriter) {
+        add(duplicateClausesRemoved, rewriter.getDuplicateClausesRemoved());
+        add(nestedQueriesFlattened, rewriter.getNestedQueriesFlattened());
+        add(filterQueriesRemoved, rewriter.getFilterQueriesRemoved());
+        add(boostQueriesMerged, rewriter.getBoostQueriesMerged());
+    }
+
+    private static void add(final AtomicLong counter, final int delta) {
+        if (delta != 0) {
+            counter.addAndGet(delta);
+        }
+    }
+
+    /**
+     *
+     * @return The total number of clauses that were removed from DisjunctionMaxQuerys as duplicates.
+     */
+    public long getDuplicateClausesRemoved() {
+        return duplicateClausesRemoved.get();
+    }
+
+    /**
+     *
+     * @return The total number of single-clause BooleanQuerys that were flattened into their parent.
+     */
+    public long getNestedQueriesFlattened() {
+        return nestedQueriesFlattened.get();
+    }
+
+    /**
+     *
+     * @return The total number of duplicate filter queries that were removed.
+     */
+    public long getFilterQueriesRemoved() {
+        return filterQueriesRemoved.get();
+    }
+
+    /**
+     *
+     * @return The total number of boost queries that were merged into an identical boost query.
+     */
+    public long getBoostQueriesMerged() {
+        return boostQueriesMerged.get();
+    }
+
+}
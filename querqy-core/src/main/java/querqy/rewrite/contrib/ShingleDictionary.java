@@ -0,0 +1,18 @@
+package querqy.rewrite.contrib;
+
+/**
+ * <p>Tells the {@link ShingleRewriter} which shingles can match. Only shingles that are contained in the dictionary
+ * are added to the query.</p>
+ *
+ * <p>A dictionary can be used by many threads concurrently unless it is created per request.</p>
+ */
+public interface ShingleDictionary {
+
+    /**
+     *
+     * @param shingle The joined term values
+     * @return true if the shingle should be added to the query
+     */
+    boolean contains(CharSequence shingle);
+
+}
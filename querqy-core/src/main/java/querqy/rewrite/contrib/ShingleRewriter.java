@@ -4,7 +4,8 @@ import querqy.CompoundCharSequence;
 import querqy.model.*;
 import querqy.rewrite.QueryRewriter;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,109 +15,187 @@ import java.util.List;
  (A OR AB) (B OR AB OR BC) (C OR BC)
  </pre>
  * <p>The resulting structure has the same number of clauses like the original query.<P>
+ *
+ * <p>Optionally, the rewriter creates shingles of more than two terms (for example, A B C becomes ABC in addition
+ * to AB and BC if the maximum shingle size is 3). Each shingle is added to the DMQs of all the terms that it was
+ * joined from. If a {@link ShingleDictionary} is set, only shingles that are contained in the dictionary are added,
+ * which avoids clauses that cannot match anything.</p>
  * 
  * @author muellenborn
  * @author René Kriegler, @renekrie
  */
-public class ShingleRewriter extends AbstractNodeVisitor<Node> implements QueryRewriter {
+public class ShingleRewriter implements QueryRewriter {
+
+    public static final int DEFAULT_MIN_SHINGLE_SIZE = 2;
+    public static final int DEFAULT_MAX_SHINGLE_SIZE = 2;
 
-    Term previousTerm = null;
-    List<Term> termsToAdd = null;
     final boolean acceptGeneratedTerms;
+    final int minShingleSize;
+    final int maxShingleSize;
+    final ShingleDictionary dictionary;
 
     public ShingleRewriter(){
         this(false);
     }
 
     public ShingleRewriter(boolean acceptGeneratedTerms) {
+        this(acceptGeneratedTerms, DEFAULT_MIN_SHINGLE_SIZE, DEFAULT_MAX_SHINGLE_SIZE, null);
+    }
+
+    /**
+     *
+     * @param acceptGeneratedTerms If true, generated terms will be joined into shingles
+     * @param minShingleSize The minimum number of terms in a shingle (at least 2)
+     * @param maxShingleSize The maximum number of terms in a shingle (at least minShingleSize)
+     * @param dictionary If not null, only shingles that are contained in this dictionary are added to the query
+     */
+    public ShingleRewriter(boolean acceptGeneratedTerms, int minShingleSize, int maxShingleSize,
+            ShingleDictionary dictionary) {
+        if (minShingleSize < 2) {
+            throw new IllegalArgumentException("minShingleSize must be >= 2");
+        }
+        if (maxShingleSize < minShingleSize) {
+            throw new IllegalArgumentException("maxShingleSize must be >= minShingleSize");
+        }
         this.acceptGeneratedTerms = acceptGeneratedTerms;
+        this.minShingleSize = minShingleSize;
+        this.maxShingleSize = maxShingleSize;
+        this.dictionary = dictionary;
     }
 
+    /**
+     * This rewriter is stateless and can be used by multiple threads concurrently.
+     */
     @Override
     public ExpandedQuery rewrite(ExpandedQuery query) {
         Query userQuery = query.getUserQuery();
         if (userQuery != null){
-            previousTerm = null;
-            termsToAdd = new LinkedList<>();
+            new Shingler().shingle(userQuery);
+        }
+        return query;
+    }
+
+    /**
+     * The state of a single call to {@link ShingleRewriter#rewrite(ExpandedQuery)}
+     */
+    class Shingler extends AbstractNodeVisitor<Node> {
+
+        /**
+         * The last terms that can be joined into a shingle, at most maxShingleSize
+         */
+        final ArrayDeque<Term> window = new ArrayDeque<>(maxShingleSize);
+        final List<Term> termsToAdd = new ArrayList<>();
+
+        void shingle(Query userQuery) {
             visit(userQuery);
             for (Term term : termsToAdd) {
                 term.getParent().addClause(term);
             }
         }
-        return query;
-    }
 
-    @Override
-    public Node visit(DisjunctionMaxQuery dmq) {
-        
-        List<DisjunctionMaxClause> clauses = dmq.getClauses();
-        
-        if (clauses != null) {
-            
-            switch (clauses.size()) {
-            
-            case 0: break;
-            
-            case 1: super.visit(dmq); break;
-            
-            default:
-                
-                if (acceptGeneratedTerms) {
-                    
-                    throw new IllegalArgumentException("cannot handle more then one DMQ clause");
-                    
-                } else {
-                    
-                    DisjunctionMaxClause nonGeneratedClause = null;
-                    
-                    for (DisjunctionMaxClause clause: clauses) {
-                        
-                        if (!clause.isGenerated()) {
-                            // second non-generated clause - cannot handle this
-                            if (nonGeneratedClause != null) {
-                                throw new IllegalArgumentException("cannot handle more then one non-generated DMQ clause");
+        @Override
+        public Node visit(DisjunctionMaxQuery dmq) {
+
+            List<DisjunctionMaxClause> clauses = dmq.getClauses();
+
+            if (clauses != null) {
+
+                switch (clauses.size()) {
+
+                case 0: break;
+
+                case 1: super.visit(dmq); break;
+
+                default:
+
+                    if (acceptGeneratedTerms) {
+
+                        throw new IllegalArgumentException("cannot handle more then one DMQ clause");
+
+                    } else {
+
+                        DisjunctionMaxClause nonGeneratedClause = null;
+
+                        for (DisjunctionMaxClause clause: clauses) {
+
+                            if (!clause.isGenerated()) {
+                                // second non-generated clause - cannot handle this
+                                if (nonGeneratedClause != null) {
+                                    throw new IllegalArgumentException("cannot handle more then one non-generated DMQ clause");
+                                }
+                                nonGeneratedClause = clause;
                             }
-                            nonGeneratedClause = clause;
                         }
+                        nonGeneratedClause.accept(this);
                     }
-                    nonGeneratedClause.accept(this);
+
                 }
-            
+
+
             }
-        
-           
+
+            return null;
+
         }
-        
-        return null;
-        
-    }
 
-    @Override
-    public Node visit(Term term) {
-        if (previousTerm != null
-                && eq(previousTerm.getField(), term.getField())
-                && (term.isGenerated() == acceptGeneratedTerms || !term.isGenerated())
-                && (previousTerm.isGenerated() == acceptGeneratedTerms || !previousTerm.isGenerated())) {
-            CharSequence seq = new CompoundCharSequence(null, previousTerm, term);
-            termsToAdd.add(buildShingle(previousTerm, seq));
-            termsToAdd.add(buildShingle(term, seq));
+        @Override
+        public Node visit(Term term) {
+
+            if (term.isGenerated() && !acceptGeneratedTerms) {
+                window.clear();
+                return term;
+            }
+
+            if (!window.isEmpty() && !eq(window.getLast().getField(), term.getField())) {
+                window.clear();
+            }
+
+            if (window.size() == maxShingleSize) {
+                window.removeFirst();
+            }
+            window.addLast(term);
+
+            int size = window.size();
+            if (size >= minShingleSize) {
+                Term[] terms = window.toArray(new Term[size]);
+                for (int n = minShingleSize; n <= size; n++) {
+                    addShingle(terms, size - n, size);
+                }
+            }
+
+            return term;
+        }
+
+        /**
+         * Join terms[start] to terms[end - 1] and add the shingle to the DMQs of these terms
+         */
+        void addShingle(Term[] terms, int start, int end) {
+            CharSequence[] values = new CharSequence[end - start];
+            for (int i = start; i < end; i++) {
+                values[i - start] = terms[i].getValue();
+            }
+            CharSequence seq = new CompoundCharSequence(null, values);
+            if (dictionary == null || dictionary.contains(seq)) {
+                for (int i = start; i < end; i++) {
+                    termsToAdd.add(buildShingle(terms[i], seq));
+                }
+            }
+        }
+
+        @Override
+        public Node visit(BooleanQuery bq) {
+            window.clear();
+            return super.visit(bq);
         }
-        previousTerm = term;
-        return term;
     }
 
     private static <T> boolean eq(T value1, T value2) {
         return value1 == null && value2 == null || value1 != null && value1.equals(value2);
     }
 
-    private Term buildShingle(Term term, CharSequence seq) {
+    private static Term buildShingle(Term term, CharSequence seq) {
 
         return new Term(term.getParent(), term.getField(), seq, true);
     }
 
-    @Override
-    public Node visit(BooleanQuery bq) {
-        previousTerm = null;
-        return super.visit(bq);
-    }
 }
@@ -1,9 +1,13 @@
 package querqy.rewrite.contrib;
 
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
+import querqy.model.Query;
 import querqy.model.Term;
+import querqy.rewrite.ApplicabilityAwareRewriterFactory;
 import querqy.rewrite.QueryRewriter;
-import querqy.rewrite.RewriterFactory;
 
 import java.util.Map;
 import java.util.Set;
@@ -11,21 +15,65 @@ import java.util.Set;
 /**
  * Factory for {@link ShingleRewriter}
  */
-public class ShingleRewriterFactory implements RewriterFactory {
+public class ShingleRewriterFactory implements ApplicabilityAwareRewriterFactory {
     
     protected final boolean acceptGeneratedTerms;
+    protected final int minShingleSize;
+    protected final int maxShingleSize;
+    protected final ShingleRewriter rewriter;
 
     public ShingleRewriterFactory() {
         this(false);
     }
 
     public ShingleRewriterFactory(boolean acceptGeneratedTerms){
+        this(acceptGeneratedTerms, ShingleRewriter.DEFAULT_MIN_SHINGLE_SIZE, ShingleRewriter.DEFAULT_MAX_SHINGLE_SIZE,
+                null);
+    }
+
+    /**
+     * @see ShingleRewriter#ShingleRewriter(boolean, int, int, ShingleDictionary)
+     */
+    public ShingleRewriterFactory(boolean acceptGeneratedTerms, int minShingleSize, int maxShingleSize,
+            ShingleDictionary dictionary) {
         this.acceptGeneratedTerms = acceptGeneratedTerms;
+        this.minShingleSize = minShingleSize;
+        this.maxShingleSize = maxShingleSize;
+        this.rewriter = new ShingleRewriter(acceptGeneratedTerms, minShingleSize, maxShingleSize, dictionary);
     }
 
     @Override
     public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
-        return new ShingleRewriter(acceptGeneratedTerms);
+        return rewriter;
+    }
+
+    /**
+     * Shingles are only created for adjacent clauses of the same BooleanQuery. The rewriter cannot change a query
+     * that consists of a single DisjunctionMaxQuery without nested BooleanQuerys.
+     */
+    @Override
+    public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+        Query userQuery = query.getUserQuery();
+        return userQuery != null && hasShingleCandidates(userQuery);
+    }
+
+    static boolean hasShingleCandidates(BooleanQuery bq) {
+        if (bq.getClauseCount() > 1) {
+            return true;
+        }
+        if (bq.getClauseCount() == 1) {
+            if (bq.getClause(0) instanceof BooleanQuery) {
+                return hasShingleCandidates((BooleanQuery) bq.getClause(0));
+            }
+            DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) bq.getClause(0);
+            for (int i = 0, len = dmq.getClauseCount(); i < len; i++) {
+                DisjunctionMaxClause clause = dmq.getClause(i);
+                if (clause instanceof BooleanQuery && hasShingleCandidates((BooleanQuery) clause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     @Override
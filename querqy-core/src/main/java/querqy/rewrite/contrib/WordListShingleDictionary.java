@@ -0,0 +1,54 @@
+package querqy.rewrite.contrib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link ShingleDictionary} that contains a fixed list of words. The dictionary is immutable and thread-safe.
+ */
+public class WordListShingleDictionary implements ShingleDictionary {
+
+    protected final Set<String> words;
+
+    public WordListShingleDictionary(Collection<? extends CharSequence> words) {
+        this.words = new HashSet<>(words.size());
+        for (CharSequence word : words) {
+            this.words.add(word.toString());
+        }
+    }
+
+    /**
+     * Read the words from a reader, one word per line. Empty lines and lines starting with '#' are ignored.
+     *
+     * @param reader The reader. It will be closed by this method.
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static WordListShingleDictionary read(Reader reader) throws IOException {
+        Set<String> words = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(reader)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && line.charAt(0) != '#') {
+                    words.add(line);
+                }
+            }
+        }
+        return new WordListShingleDictionary(words);
+    }
+
+    @Override
+    public boolean contains(CharSequence shingle) {
+        return words.contains(shingle.toString());
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+}
@@ -46,4 +46,23 @@ public class CharSequenceUtilTest {
         
     }
 
+    @Test
+    public void testHashCodeIsTheSameForAllImplementations() throws Exception {
+        int expected = CharSequenceUtil.calculateHashCode("ab cd");
+        assertEquals(expected, CharSequenceUtil.hashCode("ab cd"));
+        assertEquals(expected, CharSequenceUtil.hashCode(new StringBuilder("ab cd")));
+        assertEquals(expected, CharSequenceUtil.hashCode(
+                new SimpleComparableCharSequence("ab cd".toCharArray(), 0, 5)));
+        assertEquals(expected, CharSequenceUtil.hashCode(new ComparableCharSequenceWrapper("ab cd")));
+        assertEquals(expected, CharSequenceUtil.hashCode(new CompoundCharSequence(" ", "ab", "cd")));
+        assertEquals(expected, CharSequenceUtil.hashCode(new LowerCaseCharSequence("AB CD")));
+
+        // cached
+        ComparableCharSequenceWrapper wrapper = new ComparableCharSequenceWrapper("ab cd");
+        assertEquals(wrapper.hashCode(), wrapper.hashCode());
+        assertEquals(expected, wrapper.hashCode());
+        assertEquals(wrapper, new ComparableCharSequenceWrapper("ab cd"));
+        assertNotEquals(wrapper, new ComparableCharSequenceWrapper("ab ce"));
+    }
+
 }
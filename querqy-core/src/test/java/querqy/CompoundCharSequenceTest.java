@@ -38,4 +38,68 @@ public class CompoundCharSequenceTest {
         assertEquals("", seq.subSequence(4, 4).toString());
     }
 
+    @Test
+    public void testCharAtWithEmptyPartsAndRandomAccess() throws Exception {
+        CompoundCharSequence seq = new CompoundCharSequence(null, "", "ab", "", "", "c", "de", "");
+        String expected = "abcde";
+        assertEquals(expected.length(), seq.length());
+        for (int i : new int[] {4, 0, 2, 3, 1, 2, 4, 0}) {
+            assertEquals(expected.charAt(i), seq.charAt(i));
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testCharAtAfterEnd() throws Exception {
+        new CompoundCharSequence(" ", "ab", "cd").charAt(5);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testCharAtBeforeStart() throws Exception {
+        new CompoundCharSequence(" ", "ab", "cd").charAt(-1);
+    }
+
+    @Test
+    public void testSubSequenceAcrossSeparators() throws Exception {
+        CompoundCharSequence seq = new CompoundCharSequence(" ", "ab", "cd", "ef");
+        assertEquals("b cd e", seq.subSequence(1, 7).toString());
+        assertEquals("cd", seq.subSequence(3, 5).toString());
+        assertEquals(" ", seq.subSequence(2, 3).toString());
+    }
+
+    @Test
+    public void testHashCodeAndEquals() throws Exception {
+        CompoundCharSequence seq1 = new CompoundCharSequence(" ", "ab", "cd");
+        CompoundCharSequence seq2 = new CompoundCharSequence(null, "a", "b c", "d");
+        CompoundCharSequence seq3 = new CompoundCharSequence(" ", "ab", "ce");
+
+        assertEquals(CharSequenceUtil.hashCode("ab cd"), seq1.hashCode());
+        assertEquals(seq1.hashCode(), seq1.hashCode());
+        assertEquals(seq1.hashCode(), seq2.hashCode());
+        assertEquals(seq1, seq2);
+        assertTrue(seq1.equals("ab cd"));
+
+        assertNotEquals(seq1.hashCode(), seq3.hashCode());
+        assertNotEquals(seq1, seq3);
+    }
+
+    @Test
+    public void testCompareTo() throws Exception {
+        CompoundCharSequence seq = new CompoundCharSequence(" ", "", "ab", "cd");
+        assertEquals(0, seq.compareTo(" ab cd"));
+        assertTrue(seq.compareTo(" ab ce") < 0);
+        assertTrue(seq.compareTo(" ab c") > 0);
+        assertTrue(seq.compareTo(" ab cd e") < 0);
+        assertTrue(seq.compareTo("") > 0);
+    }
+
+    @Test
+    public void testFlatten() throws Exception {
+        CompoundCharSequence seq = new CompoundCharSequence(":", "f1",
+                new SimpleComparableCharSequence("xabcx".toCharArray(), 1, 3));
+        SimpleComparableCharSequence flat = seq.flatten();
+        assertEquals("f1:abc", flat.toString());
+        assertEquals(seq, flat);
+        assertEquals(seq.hashCode(), flat.hashCode());
+    }
+
 }
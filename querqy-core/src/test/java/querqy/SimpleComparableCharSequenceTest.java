@@ -29,4 +29,34 @@ public class SimpleComparableCharSequenceTest {
         assertEquals("", seq.subSequence(4, 4).toString());
     }
 
+    @Test
+    public void testEqualsAndHashCodeOfSlicesOfDifferentArrays() throws Exception {
+        SimpleComparableCharSequence seq1 = new SimpleComparableCharSequence("xabc".toCharArray(), 1, 3);
+        SimpleComparableCharSequence seq2 = new SimpleComparableCharSequence("abcy".toCharArray(), 0, 3);
+        SimpleComparableCharSequence seq3 = new SimpleComparableCharSequence("abd".toCharArray(), 0, 3);
+
+        assertEquals(seq1, seq2);
+        assertEquals(seq1.hashCode(), seq2.hashCode());
+        assertEquals(CharSequenceUtil.calculateHashCode("abc"), seq1.hashCode());
+        assertTrue(seq1.equals("abc"));
+        assertTrue(CharSequenceUtil.equals(seq1, seq2));
+
+        // with and without cached hash codes
+        assertFalse(seq1.equals(seq3));
+        assertNotEquals(seq1.hashCode(), seq3.hashCode());
+        assertFalse(seq1.equals(seq3));
+        assertFalse(CharSequenceUtil.equals(seq3, seq1));
+    }
+
+    @Test
+    public void testCompareTo() throws Exception {
+        SimpleComparableCharSequence seq = new SimpleComparableCharSequence("xabc".toCharArray(), 1, 3);
+        assertEquals(0, seq.compareTo(new SimpleComparableCharSequence("abc".toCharArray(), 0, 3)));
+        assertTrue(seq.compareTo(new SimpleComparableCharSequence("abd".toCharArray(), 0, 3)) < 0);
+        assertTrue(seq.compareTo(new SimpleComparableCharSequence("abcd".toCharArray(), 0, 4)) < 0);
+        assertTrue(seq.compareTo(new SimpleComparableCharSequence("ab".toCharArray(), 0, 2)) > 0);
+        assertEquals(0, seq.compareTo("abc"));
+        assertTrue(seq.compareTo("abb") > 0);
+    }
+
 }
@@ -0,0 +1,139 @@
+package querqy.model;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import querqy.model.Clause.Occur;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+import querqy.rewrite.commonrules.model.Input;
+import querqy.rewrite.commonrules.model.Instruction;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.RulesCollectionBuilder;
+import querqy.rewrite.commonrules.model.SynonymInstruction;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollectionBuilder;
+
+public class FingerprintTest {
+
+    @Test
+    public void testMurmurHashOfKnownValues() throws Exception {
+        assertEquals(new Fingerprint(0L, 0L), Fingerprint.murmur3(new byte[0], 0));
+        assertEquals(new Fingerprint(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L),
+                Fingerprint.murmur3("hello".getBytes(Fingerprint.UTF8), 0));
+    }
+
+    @Test
+    public void testThatFingerprintIs32CharHexString() throws Exception {
+        Fingerprint fingerprint = Fingerprint.of(makeQuery("a"));
+        assertEquals(32, fingerprint.toHexString().length());
+        assertThat(fingerprint.toHexString().matches("[0-9a-f]{32}"), equalTo(true));
+        assertEquals("0000000000000001000000000000000a", new Fingerprint(1L, 10L).toHexString());
+    }
+
+    @Test
+    public void testThatTermOrderMatters() throws Exception {
+        assertEquals(Fingerprint.of(makeQuery("a b c")), Fingerprint.of(makeQuery("a b c")));
+        assertThat(Fingerprint.of(makeQuery("a b c")), not(equalTo(Fingerprint.of(makeQuery("c a b")))));
+        assertThat(Fingerprint.of(makeQuery("a b c")), not(equalTo(Fingerprint.of(makeQuery("a b")))));
+        assertThat(Fingerprint.of(makeQuery("a b")), not(equalTo(Fingerprint.of(makeQuery("a b b")))));
+    }
+
+    @Test
+    public void testThatFieldOccurAndGeneratedFlagMatter() throws Exception {
+        assertThat(Fingerprint.of(makeQuery("a")), not(equalTo(Fingerprint.of(makeQuery("f1:a")))));
+        assertThat(Fingerprint.of(makeQuery("a")), not(equalTo(Fingerprint.of(makeQuery("+a")))));
+        assertThat(Fingerprint.of(makeQuery("-a")), not(equalTo(Fingerprint.of(makeQuery("+a")))));
+
+        ExpandedQuery generated = makeQuery("a");
+        DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) generated.getUserQuery().getClauses().get(0);
+        dmq.addClause(new Term(dmq, "b", true));
+
+        ExpandedQuery notGenerated = makeQuery("a");
+        dmq = (DisjunctionMaxQuery) notGenerated.getUserQuery().getClauses().get(0);
+        dmq.addClause(new Term(dmq, "b", false));
+
+        assertThat(Fingerprint.of(generated), not(equalTo(Fingerprint.of(notGenerated))));
+    }
+
+    @Test
+    public void testThatRuleOrderDoesNotMatter() throws Exception {
+
+        RulesCollectionBuilder builder1 = new TrieMapRulesCollectionBuilder(false);
+        addSynonym(builder1, "a", "s1");
+        addSynonym(builder1, "a", "s2");
+        addSynonym(builder1, "b", "s3");
+
+        RulesCollectionBuilder builder2 = new TrieMapRulesCollectionBuilder(false);
+        addSynonym(builder2, "b", "s3");
+        addSynonym(builder2, "a", "s2");
+        addSynonym(builder2, "a", "s1");
+
+        ExpandedQuery rewritten1 = new CommonRulesRewriter(builder1.build())
+                .rewrite(makeQuery("a b"), Collections.<String, Object>emptyMap());
+        ExpandedQuery rewritten2 = new CommonRulesRewriter(builder2.build())
+                .rewrite(makeQuery("a b"), Collections.<String, Object>emptyMap());
+
+        assertEquals(Fingerprint.of(rewritten1), Fingerprint.of(rewritten2));
+
+    }
+
+    @Test
+    public void testThatFiltersBoostsAndDecorationsAreIncluded() throws Exception {
+
+        ExpandedQuery query1 = makeQuery("a");
+        query1.addFilterQuery(new RawQuery(null, "f:1", Occur.MUST, true));
+        query1.addFilterQuery(new RawQuery(null, "f:2", Occur.MUST, true));
+        query1.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:1", Occur.SHOULD, true), 2f));
+        query1.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:2", Occur.SHOULD, true), 3f));
+
+        ExpandedQuery query2 = makeQuery("a");
+        query2.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:2", Occur.SHOULD, true), 3f));
+        query2.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:1", Occur.SHOULD, true), 2f));
+        query2.addFilterQuery(new RawQuery(null, "f:2", Occur.MUST, true));
+        query2.addFilterQuery(new RawQuery(null, "f:1", Occur.MUST, true));
+
+        assertEquals(Fingerprint.of(query1), Fingerprint.of(query2));
+        assertEquals(Fingerprint.of(query1, Arrays.asList("d1", "d2")),
+                Fingerprint.of(query2, new HashSet<Object>(Arrays.asList("d2", "d1"))));
+        assertThat(Fingerprint.of(query1), not(equalTo(Fingerprint.of(query1, Arrays.asList("d1")))));
+
+        ExpandedQuery otherBoost = makeQuery("a");
+        otherBoost.addFilterQuery(new RawQuery(null, "f:1", Occur.MUST, true));
+        otherBoost.addFilterQuery(new RawQuery(null, "f:2", Occur.MUST, true));
+        otherBoost.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:1", Occur.SHOULD, true), 2f));
+        otherBoost.addBoostUpQuery(new BoostQuery(new RawQuery(null, "g:2", Occur.SHOULD, true), 4f));
+
+        assertThat(Fingerprint.of(query1), not(equalTo(Fingerprint.of(otherBoost))));
+
+        ExpandedQuery boostDown = makeQuery("a");
+        boostDown.addFilterQuery(new RawQuery(null, "f:1", Occur.MUST, true));
+        boostDown.addFilterQuery(new RawQuery(null, "f:2", Occur.MUST, true));
+        boostDown.addBoostDownQuery(new BoostQuery(new RawQuery(null, "g:1", Occur.SHOULD, true), 2f));
+        boostDown.addBoostDownQuery(new BoostQuery(new RawQuery(null, "g:2", Occur.SHOULD, true), 3f));
+
+        assertThat(Fingerprint.of(query1), not(equalTo(Fingerprint.of(boostDown))));
+
+    }
+
+    ExpandedQuery makeQuery(String input) {
+        return new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(input));
+    }
+
+    void addSynonym(RulesCollectionBuilder builder, String input, String synonym) {
+        builder.addRule(new Input(Arrays.asList(mkTerm(input))),
+                new Instructions(Arrays.asList((Instruction) new SynonymInstruction(Arrays.asList(mkTerm(synonym))))));
+    }
+
+    querqy.rewrite.commonrules.model.Term mkTerm(String s) {
+        return new querqy.rewrite.commonrules.model.Term(s.toCharArray(), 0, s.length(), null);
+    }
+
+}
@@ -0,0 +1,32 @@
+package querqy.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import querqy.CompoundCharSequence;
+
+public class TermTest {
+
+    @Test
+    public void testEqualsAndCachedHashCode() throws Exception {
+        Term term1 = new Term(null, "f1", "abc".toCharArray(), 0, 3, false);
+        Term term2 = new Term(null, "f1", "abc");
+        Term term3 = new Term(null, "f1", new CompoundCharSequence(null, "a", "bc"));
+        Term term4 = new Term(null, "f2", "abc");
+        Term term5 = new Term(null, "f1", "abd");
+
+        assertEquals(term1.hashCode(), term1.hashCode());
+        assertEquals(term1.hashCode(), term2.hashCode());
+        assertEquals(term1.hashCode(), term3.hashCode());
+        assertEquals(term1, term2);
+        assertEquals(term2, term3);
+        assertEquals(term3, term1);
+
+        assertNotEquals(term1, term4);
+        assertNotEquals(term1.hashCode(), term5.hashCode());
+        assertNotEquals(term1, term5);
+    }
+
+}
@@ -0,0 +1,133 @@
+package querqy.parser;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.must;
+import static querqy.QuerqyMatchers.term;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+
+public class CachingQuerqyParserFactoryTest {
+
+    static class CountingParserFactory implements QuerqyParserFactory {
+
+        final AtomicInteger parseCount = new AtomicInteger();
+
+        @Override
+        public QuerqyParser createParser() {
+            return new QuerqyParser() {
+                @Override
+                public Query parse(String input) {
+                    parseCount.incrementAndGet();
+                    return new WhiteSpaceQuerqyParser().parse(input);
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testThatQueryIsParsedOnlyOnce() throws Exception {
+        CountingParserFactory delegate = new CountingParserFactory();
+        CachingQuerqyParserFactory factory = new CachingQuerqyParserFactory(delegate, 10);
+
+        Query query1 = factory.createParser().parse("a +b");
+        Query query2 = factory.createParser().parse("a +b");
+
+        assertEquals(1, delegate.parseCount.get());
+        assertNotSame(query1, query2);
+        assertThat(query2,
+                bq(
+                        dmq(term("a")),
+                        dmq(must(), term("b"))
+                ));
+
+        ParsedQueryCache cache = factory.getCache();
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.getHits());
+        assertEquals(1L, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testThatChangesToCopiesDoNotAffectTheCache() throws Exception {
+        CachingQuerqyParserFactory factory = new CachingQuerqyParserFactory(new WhiteSpaceQuerqyParserFactory(), 10);
+
+        for (int i = 0; i < 3; i++) {
+            Query query = factory.createParser().parse("a b");
+            DisjunctionMaxQuery dmq = query.getClauses(DisjunctionMaxQuery.class).get(0);
+            dmq.addClause(new Term(dmq, "s", true));
+            query.removeClause(query.getClauses(DisjunctionMaxQuery.class).get(1));
+        }
+
+        assertThat(factory.createParser().parse("a b"),
+                bq(
+                        dmq(term("a")),
+                        dmq(term("b"))
+                ));
+    }
+
+    @Test
+    public void testThatGeneratedFlagsAreKept() throws Exception {
+        QuerqyParserFactory delegate = new QuerqyParserFactory() {
+            @Override
+            public QuerqyParser createParser() {
+                return new QuerqyParser() {
+                    @Override
+                    public Query parse(String input) {
+                        // like a parser that adds a synonym to the DMQ of a user term
+                        Query query = new WhiteSpaceQuerqyParser().parse(input);
+                        DisjunctionMaxQuery dmq = query.getClauses(DisjunctionMaxQuery.class).get(0);
+                        dmq.addClause(new Term(dmq, "s", true));
+                        return query;
+                    }
+                };
+            }
+        };
+        CachingQuerqyParserFactory factory = new CachingQuerqyParserFactory(delegate, 10);
+
+        for (int i = 0; i < 2; i++) {
+            // cache miss and hit
+            Query query = factory.createParser().parse("a");
+            assertThat(query,
+                    bq(
+                            dmq(term("a", false), term("s", true))
+                    ));
+            assertFalse(query.getClauses(DisjunctionMaxQuery.class).get(0).isGenerated());
+        }
+    }
+
+    @Test
+    public void testThatCacheIsBounded() throws Exception {
+        ParsedQueryCache cache = new ParsedQueryCache(2);
+        WhiteSpaceQuerqyParserFactory delegate = new WhiteSpaceQuerqyParserFactory();
+
+        CachingQuerqyParserFactory.parse("a", cache, delegate);
+        CachingQuerqyParserFactory.parse("b", cache, delegate);
+        CachingQuerqyParserFactory.parse("b", cache, delegate);
+        assertEquals(0L, cache.getEvictions());
+
+        CachingQuerqyParserFactory.parse("c", cache, delegate);
+        assertEquals(2, cache.size());
+        assertEquals(1L, cache.getEvictions());
+
+        cache.clear();
+        assertNull(cache.get("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxSizeMustBePositive() throws Exception {
+        new ParsedQueryCache(0);
+    }
+
+}
@@ -7,8 +7,16 @@ import static querqy.QuerqyMatchers.must;
 import static querqy.QuerqyMatchers.mustNot;
 import static querqy.QuerqyMatchers.term;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
+import querqy.SimpleComparableCharSequence;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Term;
+
 import querqy.model.Query;
 import querqy.parser.WhiteSpaceQuerqyParser;
 
@@ -218,4 +226,27 @@ public class WhiteSpaceQuerqyParserTest {
         System.out.println(t2 - t1);
         
     }*/
+    @Test
+    public void testThatTermsAreSlicesOfTheInput() throws Exception {
+        Query query = WhiteSpaceQuerqyParser.INSTANCE.parse("ab +cde -");
+        assertThat(query,
+                bq(
+                        dmq(term("ab")),
+                        dmq(must(), term("cde")),
+                        dmq(term("-"))
+                ));
+
+        Term term1 = query.getClauses(DisjunctionMaxQuery.class).get(0).getClauses(Term.class).get(0);
+        Term term2 = query.getClauses(DisjunctionMaxQuery.class).get(1).getClauses(Term.class).get(0);
+        assertTrue(term1.getValue() instanceof SimpleComparableCharSequence);
+        assertTrue(term2.getValue() instanceof SimpleComparableCharSequence);
+        assertEquals("cde", term2.getValue().toString());
+    }
+
+    @Test
+    public void testThatFactoryReturnsSharedInstance() throws Exception {
+        WhiteSpaceQuerqyParserFactory factory = new WhiteSpaceQuerqyParserFactory();
+        assertSame(factory.createParser(), factory.createParser());
+    }
+
 }
@@ -0,0 +1,105 @@
+package querqy.rewrite;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static querqy.QuerqyMatchers.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
+
+/**
+ * Test for BatchRewriter.
+ */
+public class BatchRewriterTest {
+
+    ExecutorService executor;
+    RewriteChain rewriteChain;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        rewriteChain = new RewriteChain(Arrays.<RewriterFactory> asList(
+                new SimpleCommonRulesRewriterFactory(new StringReader("a =>\n SYNONYM: b\n DECORATE: deco"),
+                        new WhiteSpaceQuerqyParserFactory(), true)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThatResultsAreInInputOrder() throws Exception {
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            queries.add((i % 3 == 0) ? "a q" + i : "q" + i);
+        }
+
+        final List<BatchRewriter.Result> results = new ArrayList<>();
+
+        BatchRewriter batchRewriter = new BatchRewriter(rewriteChain, new WhiteSpaceQuerqyParserFactory(), executor,
+                7, 3);
+        long count = batchRewriter.rewrite(queries.iterator(), new BatchRewriter.ResultHandler() {
+            @Override
+            public void handle(BatchRewriter.Result result) {
+                results.add(result);
+            }
+        });
+
+        assertEquals(queries.size(), count);
+        assertEquals(queries.size(), results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+
+            BatchRewriter.Result result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(queries.get(i), result.getInput());
+            assertNull(result.getError());
+
+            if (i % 3 == 0) {
+                assertThat(result.getQuery().getUserQuery(),
+                        bq(
+                                dmq(term("a", false), term("b", true)),
+                                dmq(term("q" + i, false))
+                        ));
+                assertEquals(Collections.singleton("deco"), result.getContext().get(DecorateInstruction.CONTEXT_KEY));
+            } else {
+                assertThat(result.getQuery().getUserQuery(), bq(dmq(term("q" + i, false))));
+                assertNull(result.getContext().get(DecorateInstruction.CONTEXT_KEY));
+            }
+        }
+    }
+
+    @Test
+    public void testRewriteBatchOnRewriteChain() throws Exception {
+
+        final List<String> inputs = new ArrayList<>();
+
+        long count = rewriteChain.rewriteBatch(Arrays.asList("x", "a", "y").iterator(),
+                new WhiteSpaceQuerqyParserFactory(), executor, 4, new BatchRewriter.ResultHandler() {
+                    @Override
+                    public void handle(BatchRewriter.Result result) {
+                        inputs.add(result.getInput());
+                    }
+                });
+
+        assertEquals(3, count);
+        assertEquals(Arrays.asList("x", "a", "y"), inputs);
+    }
+
+}
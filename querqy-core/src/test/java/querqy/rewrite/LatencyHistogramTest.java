@@ -0,0 +1,63 @@
+package querqy.rewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testThatSmallValuesAreExact() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10L, histogram.getCount());
+        assertEquals(5L, histogram.getValueAtPercentile(50.0));
+        assertEquals(10L, histogram.getValueAtPercentile(100.0));
+        assertEquals(10L, histogram.getMax());
+        assertEquals(5.5, histogram.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testThatPercentilesAreWithinPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(10000L, histogram.getCount());
+        assertWithinPrecision(5000000L, histogram.getValueAtPercentile(50.0));
+        assertWithinPrecision(9900000L, histogram.getValueAtPercentile(99.0));
+        assertEquals(10000000L, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void testBucketBoundaries() throws Exception {
+        for (long value : new long[] {0L, 15L, 16L, 17L, 31L, 32L, 1000L, 123456789L, 1L << 40}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.highestValueInBucket(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueInBucket(index - 1));
+        }
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100L);
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0L, histogram.getValueAtPercentile(99.0));
+    }
+
+    void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected ~" + expected + " but was " + actual,
+                Math.abs(expected - actual) <= expected / LatencyHistogram.SUB_BUCKETS);
+    }
+
+}
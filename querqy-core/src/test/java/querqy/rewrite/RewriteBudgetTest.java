@@ -0,0 +1,196 @@
+package querqy.rewrite;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import querqy.model.BoostQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+
+/**
+ * Test for RewriteBudget.
+ */
+public class RewriteBudgetTest {
+
+    @Test
+    public void testThatGeneratedTermsArePrunedInQueryOrder() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq1 = addDmq(query);
+        dmq1.addClause(new Term(dmq1, "a"));
+        dmq1.addClause(new Term(dmq1, "s1", true));
+        dmq1.addClause(new Term(dmq1, "s2", true));
+        DisjunctionMaxQuery dmq2 = addDmq(query);
+        dmq2.addClause(new Term(dmq2, "s3", true));
+        dmq2.addClause(new Term(dmq2, "b"));
+
+        Map<String, Object> context = new HashMap<>();
+        RewriteBudget budget = new RewriteBudget(1, -1, -1, -1);
+        assertTrue(budget.enforce(new ExpandedQuery(query), context));
+
+        assertThat(query,
+                bq(
+                        dmq(term("a", false), term("s1", true)),
+                        dmq(term("b", false))
+                ));
+
+        assertThat(exceeded(context), contains(RewriteBudget.GENERATED_TERMS));
+    }
+
+    @Test
+    public void testThatEqualNonGeneratedTermIsKept() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query);
+        dmq.addClause(new Term(dmq, "a", true));
+        dmq.addClause(new Term(dmq, "a"));
+
+        new RewriteBudget(0, -1, -1, -1).enforce(new ExpandedQuery(query), null);
+
+        assertThat(query, bq(dmq(term("a", false))));
+    }
+
+    @Test
+    public void testThatLastClauseOfDmqIsKept() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query);
+        dmq.addClause(new Term(dmq, "s1", true));
+        dmq.addClause(new Term(dmq, "s2", true));
+
+        Map<String, Object> context = new HashMap<>();
+        assertTrue(new RewriteBudget(0, -1, -1, -1).enforce(new ExpandedQuery(query), context));
+
+        assertThat(query, bq(dmq(term("s2", true))));
+        assertThat(exceeded(context), contains(RewriteBudget.GENERATED_TERMS));
+    }
+
+    @Test
+    public void testThatQueryWithinBudgetIsNotChanged() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query);
+        dmq.addClause(new Term(dmq, "a"));
+        dmq.addClause(new Term(dmq, "s1", true));
+
+        ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("b1"), 1f));
+
+        Map<String, Object> context = new HashMap<>();
+        assertFalse(new RewriteBudget(1, 1, 1, -1).enforce(expandedQuery, context));
+
+        assertThat(query, bq(dmq(term("a", false), term("s1", true))));
+        assertEquals(1, expandedQuery.getBoostUpQueries().size());
+        assertNull(context.get(RewriteBudget.EXCEEDED_CONTEXT_KEY));
+    }
+
+    @Test
+    public void testThatBoostAndFilterQueriesAreTruncated() throws Exception {
+
+        ExpandedQuery expandedQuery = new ExpandedQuery(new Query());
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("u1"), 1f));
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("u2"), 1f));
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("u3"), 1f));
+        expandedQuery.addBoostDownQuery(new BoostQuery(makeQuery("d1"), 1f));
+        expandedQuery.addFilterQuery(makeQuery("f1"));
+        expandedQuery.addFilterQuery(makeQuery("f2"));
+
+        Map<String, Object> context = new HashMap<>();
+        assertTrue(new RewriteBudget(-1, 2, 1, -1).enforce(expandedQuery, context));
+
+        assertThat(expandedQuery.getBoostUpQueries(), contains(
+                boostQ(bq(dmq(term("u1"))), 1f),
+                boostQ(bq(dmq(term("u2"))), 1f)
+        ));
+        assertEquals(1, expandedQuery.getBoostDownQueries().size());
+        assertEquals(1, expandedQuery.getFilterQueries().size());
+
+        assertThat(exceeded(context), contains(RewriteBudget.BOOST_QUERIES, RewriteBudget.FILTER_QUERIES));
+    }
+
+    @Test
+    public void testThatChainStopsWhenTimeIsExceeded() throws Exception {
+
+        final int[] calls = new int[1];
+
+        RewriterFactory slowFactory = new RewriterFactory() {
+
+            @Override
+            public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+                return new QueryRewriter() {
+                    @Override
+                    public ExpandedQuery rewrite(ExpandedQuery query) {
+                        calls[0]++;
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return query;
+                    }
+                };
+            }
+
+            @Override
+            public Set<querqy.model.Term> getGenerableTerms() {
+                return QueryRewriter.EMPTY_GENERABLE_TERMS;
+            }
+        };
+
+        RewriteChain chain = new RewriteChain(Arrays.asList(slowFactory, slowFactory, slowFactory),
+                new RewriteBudget(-1, -1, -1, 5));
+
+        Map<String, Object> context = new HashMap<>();
+        chain.rewrite(new ExpandedQuery(makeQuery("a")), context);
+
+        assertEquals(1, calls[0]);
+        assertThat(exceeded(context), contains(RewriteBudget.TIME));
+    }
+
+    @Test
+    public void testThatBudgetInContextOverridesChainBudget() throws Exception {
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory> asList(), new RewriteBudget(0, 0, 0, -1));
+        RewriteBudget contextBudget = new RewriteBudget(5, 5, 5, -1);
+
+        Map<String, Object> context = new HashMap<>();
+        context.put(RewriteBudget.CONTEXT_KEY, contextBudget);
+
+        assertTrue(contextBudget == chain.getBudget(context));
+        assertTrue(chain.getBudget() == chain.getBudget(new HashMap<String, Object>()));
+    }
+
+    @SuppressWarnings("unchecked")
+    Set<String> exceeded(Map<String, Object> context) {
+        return (Set<String>) context.get(RewriteBudget.EXCEEDED_CONTEXT_KEY);
+    }
+
+    Query makeQuery(String value) {
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query);
+        dmq.addClause(new Term(dmq, value, true));
+        return query;
+    }
+
+    DisjunctionMaxQuery addDmq(Query query) {
+        DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq);
+        return dmq;
+    }
+
+}
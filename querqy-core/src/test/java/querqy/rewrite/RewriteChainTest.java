@@ -0,0 +1,157 @@
+package querqy.rewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+/**
+ * Test for RewriteChain.
+ */
+public class RewriteChainTest {
+
+    @Test
+    public void testThatNonApplicableRewriterIsSkipped() throws Exception {
+
+        CountingRewriterFactory factory1 = new CountingRewriterFactory("a");
+        CountingRewriterFactory factory2 = new CountingRewriterFactory("b");
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory> asList(factory1, factory2));
+
+        chain.rewrite(makeQuery("a x"), new HashMap<String, Object>());
+        chain.rewrite(makeQuery("a b"), new HashMap<String, Object>());
+        chain.rewrite(makeQuery("x y"), new HashMap<String, Object>());
+        chain.rewrite(makeQuery("y a"), new HashMap<String, Object>());
+
+        assertEquals(3, factory1.rewrites);
+        assertEquals(1, factory2.rewrites);
+
+        assertEquals(1L, chain.getSkipCount(0));
+        assertEquals(3L, chain.getSkipCount(1));
+        assertEquals(0.25, chain.getSkipRatio(0), 0.0001);
+        assertEquals(0.75, chain.getSkipRatio(1), 0.0001);
+    }
+
+    @Test
+    public void testThatRewriterLatencyIsRecorded() throws Exception {
+
+        CountingRewriterFactory factory1 = new CountingRewriterFactory("a");
+        CountingRewriterFactory factory2 = new CountingRewriterFactory("b");
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory> asList(factory1, factory2));
+        HistogramRewriteMetrics metrics = new HistogramRewriteMetrics(2);
+        chain.setMetrics(metrics);
+
+        chain.rewrite(makeQuery("a x"), new HashMap<String, Object>());
+        chain.rewrite(makeQuery("a b"), new HashMap<String, Object>());
+
+        assertEquals(2L, metrics.getRewriterLatency(0).getCount());
+        // skipped rewrites are not recorded
+        assertEquals(1L, metrics.getRewriterLatency(1).getCount());
+
+        chain.setMetrics(null);
+        chain.rewrite(makeQuery("a b"), new HashMap<String, Object>());
+        assertEquals(2L, metrics.getRewriterLatency(0).getCount());
+    }
+
+    @Test
+    public void testThatTracerIsCalledForAppliedRewriters() throws Exception {
+
+        CountingRewriterFactory factory1 = new CountingRewriterFactory("a");
+        CountingRewriterFactory factory2 = new CountingRewriterFactory("b");
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory> asList(factory1, factory2));
+
+        final StringBuilder trace = new StringBuilder();
+        chain.setTracer(new RewriteTracer() {
+
+            @Override
+            public Object beforeRewrite(int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+                    Map<String, Object> context) {
+                trace.append("before").append(rewriterIndex).append(' ');
+                return rewriterIndex;
+            }
+
+            @Override
+            public void afterRewrite(Object state, int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+                    Map<String, Object> context) {
+                assertEquals(rewriterIndex, state);
+                trace.append("after").append(rewriterIndex).append(' ');
+            }
+        });
+
+        chain.rewrite(makeQuery("a x"), new HashMap<String, Object>());
+
+        assertEquals("before0 after0 ", trace.toString());
+    }
+
+    @Test
+    public void testThatTimingsAreCollectedOnRequest() throws Exception {
+
+        CountingRewriterFactory factory1 = new CountingRewriterFactory("a");
+        CountingRewriterFactory factory2 = new CountingRewriterFactory("b");
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory> asList(factory1, factory2));
+
+        long[] timings = new long[2];
+        Map<String, Object> context = new HashMap<>();
+        context.put(RewriteChain.TIMINGS_CONTEXT_KEY, timings);
+        chain.rewrite(makeQuery("a x"), context);
+
+        assertTrue(timings[0] > 0L);
+        assertEquals(0L, timings[1]);
+    }
+
+    ExpandedQuery makeQuery(String input) {
+        return new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(input));
+    }
+
+    static class CountingRewriterFactory implements ApplicabilityAwareRewriterFactory {
+
+        final String trigger;
+        int rewrites = 0;
+
+        CountingRewriterFactory(String trigger) {
+            this.trigger = trigger;
+        }
+
+        @Override
+        public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+            return new QueryRewriter() {
+                @Override
+                public ExpandedQuery rewrite(ExpandedQuery query) {
+                    rewrites++;
+                    return query;
+                }
+            };
+        }
+
+        @Override
+        public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+            for (DisjunctionMaxQuery dmq : query.getUserQuery().getClauses(DisjunctionMaxQuery.class)) {
+                for (Term term : dmq.getClauses(Term.class)) {
+                    if (term.getValue().toString().equals(trigger)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Set<Term> getGenerableTerms() {
+            return QueryRewriter.EMPTY_GENERABLE_TERMS;
+        }
+    }
+
+}
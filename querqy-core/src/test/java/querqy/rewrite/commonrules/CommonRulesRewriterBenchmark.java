@@ -0,0 +1,129 @@
+package querqy.rewrite.commonrules;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+
+/**
+ * <p>Measures time and heap allocation per query for parsing and rewriting queries with a
+ * {@link SimpleCommonRulesRewriterFactory}. This is not a unit test and it is not run by the build. Run it from
+ * the test classpath:</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=querqy.rewrite.commonrules.CommonRulesRewriterBenchmark \
+ *     -Dexec.classpathScope=test
+ * </pre>
+ *
+ * <p>Allocation is measured using com.sun.management.ThreadMXBean and thus requires a HotSpot-based JVM.</p>
+ */
+public class CommonRulesRewriterBenchmark {
+
+    static final int NUM_RULES = 2000;
+    static final int WARM_UP_ROUNDS = 20000;
+    static final int ROUNDS = 50000;
+
+    static final String[] QUERIES = {
+        "w1 w2 w3",
+        "w10 w11 w12 w13 w14 w15",
+        "w100 x1 w101 x2",
+        "a b c d e f g h",
+        "w5 w6",
+        "w7",
+        "notinrules alsonot w1999 w1998 w1997"
+    };
+
+    public static void main(final String[] args) throws IOException {
+
+        final RewriteChain chain = new RewriteChain(
+                Collections.<RewriterFactory>singletonList(createFactory(NUM_RULES)));
+
+        final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long blackHole = run(chain, parser, WARM_UP_ROUNDS, false);
+
+        long bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long timeBefore = System.nanoTime();
+        blackHole += run(chain, parser, ROUNDS, false);
+        final long parseBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        final long parseTime = System.nanoTime() - timeBefore;
+
+        bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        timeBefore = System.nanoTime();
+        blackHole += run(chain, parser, ROUNDS, true);
+        final long totalBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        final long totalTime = System.nanoTime() - timeBefore;
+
+        final long numQueries = (long) ROUNDS * QUERIES.length;
+
+        System.out.printf("queries:                   %d (%d rules)%n", numQueries, NUM_RULES);
+        System.out.printf("parse       bytes/query:   %d%n", parseBytes / numQueries);
+        System.out.printf("parse       ns/query:      %d%n", parseTime / numQueries);
+        System.out.printf("rewrite     bytes/query:   %d%n", (totalBytes - parseBytes) / numQueries);
+        System.out.printf("rewrite     ns/query:      %d%n", (totalTime - parseTime) / numQueries);
+        System.out.printf("(%d)%n", blackHole);
+
+    }
+
+    static long run(final RewriteChain chain, final WhiteSpaceQuerqyParser parser, final int rounds,
+                    final boolean rewrite) {
+        long result = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (final String query : QUERIES) {
+                ExpandedQuery expandedQuery = new ExpandedQuery(parser.parse(query));
+                if (rewrite) {
+                    final Map<String, Object> context = new HashMap<>();
+                    expandedQuery = chain.rewrite(expandedQuery, context);
+                }
+                result += expandedQuery.getUserQuery().getClauses().size();
+            }
+        }
+        return result;
+    }
+
+    static RewriterFactory createFactory(final int numRules) throws IOException {
+
+        final StringBuilder rules = new StringBuilder();
+        for (int i = 0; i < numRules; i++) {
+            rules.append("w").append(i).append(" =>\n")
+                .append("  SYNONYM: s").append(i).append('\n');
+            if (i % 2 == 0) {
+                rules.append("w").append(i).append(" w").append(i + 1).append(" =>\n")
+                    .append("  SYNONYM: s").append(i).append(" s").append(i + 1).append('\n')
+                    .append("  UP(10): b").append(i).append('\n');
+            }
+            if (i % 10 == 0) {
+                rules.append("x").append(i / 10).append(" =>\n")
+                    .append("  DOWN(20): d").append(i).append('\n')
+                    .append("  DELETE\n");
+            }
+        }
+
+        final List<String> singleLetters = new ArrayList<>();
+        for (char ch = 'a'; ch <= 'h'; ch++) {
+            singleLetters.add(String.valueOf(ch));
+        }
+        for (int i = 0; i < singleLetters.size() - 1; i++) {
+            rules.append(singleLetters.get(i)).append(' ').append(singleLetters.get(i + 1)).append(" =>\n")
+                .append("  SYNONYM: ").append(singleLetters.get(i)).append(singleLetters.get(i + 1)).append('\n');
+        }
+
+        return new SimpleCommonRulesRewriterFactory(new StringReader(rules.toString()),
+                new WhiteSpaceQuerqyParserFactory(), true);
+    }
+
+}
@@ -276,4 +276,66 @@ public class LineParserTest {
     }
 
 
+    @Test
+    public void testParsePriorityProperty() throws Exception {
+        Input input = (Input) LineParser.parseInput("a");
+        assertEquals(new RuleProperty(RuleProperty.PRIORITY, 12), LineParser.parse("@priority: 12", input, null));
+        assertEquals(new RuleProperty(RuleProperty.PRIORITY, -1), LineParser.parse("@ Priority : -1", input, null));
+    }
+
+    @Test
+    public void testParseGroupProperty() throws Exception {
+        Input input = (Input) LineParser.parseInput("a");
+        assertEquals(new RuleProperty(RuleProperty.GROUP, "redirects"), LineParser.parse("@group: redirects", input, null));
+    }
+
+    @Test
+    public void testParseIdProperty() throws Exception {
+        Input input = (Input) LineParser.parseInput("a");
+        assertEquals(new RuleProperty(RuleProperty.ID, "rule-1"), LineParser.parse("@id: rule-1", input, null));
+    }
+
+    @Test
+    public void testParseSkipSearchProperty() throws Exception {
+        Input input = (Input) LineParser.parseInput("a");
+        assertEquals(new RuleProperty(RuleProperty.SKIP_SEARCH, true), LineParser.parse("@skipSearch: true", input, null));
+        assertEquals(new RuleProperty(RuleProperty.SKIP_SEARCH, false), LineParser.parse("@skipsearch: FALSE", input, null));
+        assertTrue(LineParser.parse("@skipSearch: yes", input, null) instanceof ValidationError);
+    }
+
+    @Test
+    public void testThatInvalidPropertiesAreRejected() throws Exception {
+        Input input = (Input) LineParser.parseInput("a");
+        assertTrue(LineParser.parse("@priority: high", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("@priority:", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("@priority 1", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("@color: red", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("@group: g1", null, null) instanceof ValidationError);
+    }
+
+    @Test
+    public void testParseReplaceInstruction() throws Exception {
+        Input input = (Input) LineParser.parseInput("a b");
+        assertEquals(new ReplaceInstruction(Arrays.asList(new Term("c".toCharArray(), 0, 1, null),
+                new Term("d".toCharArray(), 0, 1, Arrays.asList("f1")))),
+                LineParser.parse("REPLACE: c f1:d", input, null));
+        assertTrue(LineParser.parse("replace:", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("replace c", input, null) instanceof ValidationError);
+        assertTrue(LineParser.parse("replace: c*", input, null) instanceof ValidationError);
+    }
+
+    @Test
+    public void testThatInstructionNamesAreParsedIndependentlyOfTheDefaultLocale() throws Exception {
+        java.util.Locale defaultLocale = java.util.Locale.getDefault();
+        try {
+            // in Turkish, 'I'.toLowerCase() is not 'i'
+            java.util.Locale.setDefault(new java.util.Locale("tr", "TR"));
+            Input input = (Input) LineParser.parseInput("a");
+            assertTrue(LineParser.parse("FILTER: *f:x", input, null) instanceof FilterInstruction);
+            assertEquals(new RuleProperty(RuleProperty.PRIORITY, 2), LineParser.parse("@PRIORITY: 2", input, null));
+        } finally {
+            java.util.Locale.setDefault(defaultLocale);
+        }
+    }
+
 }
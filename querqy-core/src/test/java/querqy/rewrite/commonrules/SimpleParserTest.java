@@ -8,7 +8,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.After;
@@ -598,4 +600,28 @@ ts6 =>
     
 
 
+    @Test
+    public void testThatRulesGetStableIds() throws Exception {
+        reader = new StringReader("a  b =>\n SYNONYM: c\n\nx =>\n SYNONYM: y\n @id: my-rule\n\na b =>\n UP(10): d");
+        RulesCollection rules = new SimpleCommonRulesParser(reader, querqyParserFactory, false).parse();
+
+        List<String> ids = new ArrayList<>();
+        for (Instructions instructions : rules.getRules()) {
+            ids.add(instructions.getId());
+        }
+        Collections.sort(ids);
+        assertEquals(Arrays.asList("a b", "a b#2", "my-rule"), ids);
+    }
+
+    @Test
+    public void testThatDuplicateExplicitRuleIdIsRejected() throws Exception {
+        reader = new StringReader("a =>\n SYNONYM: c\n @id: r1\n\nb =>\n SYNONYM: d\n @id: r1");
+        try {
+            new SimpleCommonRulesParser(reader, querqyParserFactory, false).parse();
+            fail();
+        } catch (RuleParseException e) {
+            assertEquals("Line 7: Duplicate rule id: r1", e.getMessage());
+        }
+    }
+
 }
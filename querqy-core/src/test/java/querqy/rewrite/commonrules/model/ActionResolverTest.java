@@ -0,0 +1,162 @@
+package querqy.rewrite.commonrules.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.term;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.ActionResolver.SequenceAction;
+import querqy.rewrite.commonrules.AbstractCommonRulesTest;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+import querqy.rewrite.commonrules.RuleParseException;
+import querqy.rewrite.commonrules.SimpleCommonRulesParser;
+
+public class ActionResolverTest extends AbstractCommonRulesTest {
+
+    RulesCollection parseRules(String rules) throws IOException, RuleParseException {
+        return new SimpleCommonRulesParser(new StringReader(rules), new WhiteSpaceQuerqyParserFactory(), false)
+                .parse();
+    }
+
+    ExpandedQuery rewrite(RulesCollection rules, String queryString, Map<String, Object> context) {
+        return new CommonRulesRewriter(rules).rewrite(makeQuery(queryString), context);
+    }
+
+    @Test
+    public void testThatDuplicateRuleIsAppliedOnlyOnce() throws Exception {
+        RulesCollection rules = parseRules(
+                "a =>\n SYNONYM: s1\n" +
+                "a =>\n SYNONYM: s1\n");
+
+        Query rewritten = rewrite(rules, "a", new HashMap<String, Object>()).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("s1", true)
+                        )
+                ));
+    }
+
+    @Test
+    public void testThatSameSynonymForOverlappingInputsIsAddedOnlyOnce() throws Exception {
+        RulesCollection rules = parseRules(
+                "a =>\n SYNONYM: s1\n" +
+                "a b =>\n SYNONYM: s1\n");
+
+        Query rewritten = rewrite(rules, "a b", new HashMap<String, Object>()).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("s1", true)
+                        ),
+                        dmq(
+                                term("b", false),
+                                term("s1", true)
+                        )
+                ));
+    }
+
+    @Test
+    public void testThatBoostQueryIsAppliedOnlyOncePerQuery() throws Exception {
+        RulesCollection rules = parseRules(
+                "a =>\n UP(10): x\n FILTER: f\n" +
+                "b =>\n UP(10): x\n FILTER: f\n UP(10): y\n");
+
+        ExpandedQuery rewritten = rewrite(rules, "a b", new HashMap<String, Object>());
+
+        assertThat(rewritten.getBoostUpQueries(), hasSize(2));
+        assertThat(rewritten.getFilterQueries(), hasSize(1));
+    }
+
+    @Test
+    public void testThatOnlyTheRuleWithTheHighestPriorityIsAppliedInAGroup() throws Exception {
+        RulesCollection rules = parseRules(
+                "a =>\n SYNONYM: s1\n @group: g1\n @priority: 1\n" +
+                "b =>\n SYNONYM: s2\n @priority: 5\n @group: g1\n" +
+                "c =>\n SYNONYM: s3\n @group: g1\n @priority: 5\n" +
+                "d =>\n SYNONYM: s4\n");
+
+        Query rewritten = rewrite(rules, "a b c d", new HashMap<String, Object>()).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(
+                                term("a", false)
+                        ),
+                        dmq(
+                                term("b", false),
+                                term("s2", true)
+                        ),
+                        dmq(
+                                term("c", false)
+                        ),
+                        dmq(
+                                term("d", false),
+                                term("s4", true)
+                        )
+                ));
+    }
+
+    @Test
+    public void testThatDecorationFromGroupIsOnlyAddedForTheWinningRule() throws Exception {
+        RulesCollection rules = parseRules(
+                "a =>\n DECORATE: deco1\n @group: redirect\n" +
+                "a b =>\n DECORATE: deco2\n @group: redirect\n @priority: 2\n");
+
+        Map<String, Object> context = new HashMap<>();
+        rewrite(rules, "a b", context);
+
+        @SuppressWarnings("unchecked")
+        Set<Object> decorations = (Set<Object>) context.get(DecorateInstruction.CONTEXT_KEY);
+        assertThat(decorations, hasSize(1));
+        assertEquals("deco2", decorations.iterator().next());
+    }
+
+    @Test
+    public void testThatGroupIsResolvedByPriorityAcrossSequences() throws Exception {
+
+        Instructions lowPriority = new Instructions(Arrays.<Instruction>asList(new DecorateInstruction("low")));
+        lowPriority.setGroup("g1");
+        lowPriority.setPriority(1);
+
+        Instructions highPriority = new Instructions(Arrays.<Instruction>asList(new DecorateInstruction("high")));
+        highPriority.setGroup("g1");
+        highPriority.setPriority(2);
+
+        PositionSequence<querqy.model.Term> sequence1 = new PositionSequence<>();
+        PositionSequence<querqy.model.Term> sequence2 = new PositionSequence<>();
+
+        ActionResolver resolver = new ActionResolver();
+        // the sequence with the lower priority rule is collected first, like a nested BooleanQuery
+        resolver.collect(sequence1, Arrays.asList(
+                new Action(Arrays.asList(lowPriority), new TermMatches(), 0, 1)));
+        resolver.collect(sequence2, Arrays.asList(
+                new Action(Arrays.asList(highPriority), new TermMatches(), 0, 1)));
+
+        List<SequenceAction> resolved = resolver.resolve();
+        assertThat(resolved, hasSize(1));
+        assertSame(highPriority, resolved.get(0).getInstructions());
+        assertSame(sequence2, resolved.get(0).getSequence());
+    }
+
+}
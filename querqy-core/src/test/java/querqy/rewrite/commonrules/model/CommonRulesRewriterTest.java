@@ -1,25 +1,152 @@
 package querqy.rewrite.commonrules.model;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static querqy.QuerqyMatchers.bq;
 import static querqy.QuerqyMatchers.dmq;
 import static querqy.QuerqyMatchers.term;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hamcrest.Matcher;
 import org.junit.Test;
 
 import querqy.model.ExpandedQuery;
 import querqy.model.Query;
 import querqy.rewrite.commonrules.AbstractCommonRulesTest;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
 import querqy.rewrite.commonrules.CommonRulesRewriter;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostDirection;
 
 public class CommonRulesRewriterTest extends AbstractCommonRulesTest {
 
     final static Map<String, Object> EMPTY_CONTEXT = Collections.emptyMap();
     
+    @Test
+    public void testThatRuleStatisticsAreRecorded() throws Exception {
+
+        SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory(new StringReader(
+                "a =>\n SYNONYM: s1\n SYNONYM: s2 s3\n UP(10): u\n\nb =>\n FILTER: f\n\nnever =>\n SYNONYM: x"),
+                new WhiteSpaceQuerqyParserFactory(), false, true);
+
+        for (int i = 0; i < 2; i++) {
+            CommonRulesRewriter rewriter = (CommonRulesRewriter) factory.createRewriter(null, EMPTY_CONTEXT);
+            rewriter.rewrite(makeQuery("a b"), new HashMap<String, Object>());
+        }
+
+        Map<String, RuleStatistics> statistics = factory.getRuleStatistics();
+        assertEquals(Arrays.asList("a", "b", "never"), new ArrayList<>(statistics.keySet()));
+
+        RuleStatistics statsA = statistics.get("a");
+        assertEquals(2L, statsA.getMatches());
+        assertEquals(6L, statsA.getGeneratedTerms());
+        assertEquals(2L, statsA.getBoostQueries());
+        assertEquals(0L, statsA.getFilterQueries());
+
+        RuleStatistics statsB = statistics.get("b");
+        assertEquals(2L, statsB.getMatches());
+        assertEquals(0L, statsB.getGeneratedTerms());
+        assertEquals(2L, statsB.getFilterQueries());
+
+        assertEquals(0L, statistics.get("never").getMatches());
+
+        factory.resetRuleStatistics();
+        assertEquals(0L, statsA.getMatches());
+    }
+
+    @Test
+    public void testThatOnlyMatchesAreRecordedByDefault() throws Exception {
+
+        SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory(new StringReader(
+                "a =>\n SYNONYM: s1\n UP(10): u\n FILTER: f"),
+                new WhiteSpaceQuerqyParserFactory(), false);
+
+        CommonRulesRewriter rewriter = (CommonRulesRewriter) factory.createRewriter(null, EMPTY_CONTEXT);
+        rewriter.rewrite(makeQuery("a"), new HashMap<String, Object>());
+
+        RuleStatistics statsA = factory.getRuleStatistics().get("a");
+        assertEquals(1L, statsA.getMatches());
+        assertEquals(0L, statsA.getGeneratedTerms());
+        assertEquals(0L, statsA.getBoostQueries());
+        assertEquals(0L, statsA.getFilterQueries());
+    }
+
+    @Test
+    public void testThatNumberOfActionsIsReportedOnRequest() throws Exception {
+
+        SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory(new StringReader(
+                "a =>\n SYNONYM: s1\n\nb =>\n FILTER: f"), new WhiteSpaceQuerqyParserFactory(), false);
+        CommonRulesRewriter rewriter = (CommonRulesRewriter) factory.createRewriter(null, EMPTY_CONTEXT);
+
+        Map<String, Object> context = new HashMap<>();
+        rewriter.rewrite(makeQuery("a b c"), context);
+        assertFalse(context.containsKey(CommonRulesRewriter.ACTIONS_CONTEXT_KEY));
+
+        context.put(CommonRulesRewriter.ACTIONS_CONTEXT_KEY, -1);
+        rewriter.rewrite(makeQuery("a b c"), context);
+        assertEquals(2, context.get(CommonRulesRewriter.ACTIONS_CONTEXT_KEY));
+    }
+
+    @Test
+    public void testThatMatchedRuleIdsAreReportedOnRequest() throws Exception {
+
+        SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory(new StringReader(
+                "a =>\n SYNONYM: s1\n @id: rule-a\n\nb =>\n FILTER: f\n\nc =>\n FILTER: g"),
+                new WhiteSpaceQuerqyParserFactory(), false);
+        CommonRulesRewriter rewriter = (CommonRulesRewriter) factory.createRewriter(null, EMPTY_CONTEXT);
+
+        Map<String, Object> context = new HashMap<>();
+        List<String> ruleIds = new ArrayList<>();
+        context.put(CommonRulesRewriter.MATCHED_RULES_CONTEXT_KEY, ruleIds);
+        rewriter.rewrite(makeQuery("a b x"), context);
+
+        Collections.sort(ruleIds);
+        assertEquals(Arrays.asList("b", "rule-a"), ruleIds);
+    }
+
+    @Test
+    public void testThatRulesWithoutIdAreNotReported() throws Exception {
+
+        RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+        builder.addRule(new Input(Arrays.asList(mkTerm("a"))),
+                new Instructions(Collections.singletonList((Instruction) new DecorateInstruction("d"))));
+        CommonRulesRewriter rewriter = new CommonRulesRewriter(builder.build());
+
+        Map<String, Object> context = new HashMap<>();
+        List<String> ruleIds = new ArrayList<>();
+        context.put(CommonRulesRewriter.MATCHED_RULES_CONTEXT_KEY, ruleIds);
+        rewriter.rewrite(makeQuery("a"), context);
+
+        assertEquals(Collections.<Object>singleton("d"), context.get(DecorateInstruction.CONTEXT_KEY));
+        assertEquals(Collections.<String>emptyList(), ruleIds);
+    }
+
+    @Test
+    public void testThatSkipSearchIsReportedInContext() throws Exception {
+
+        SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory(new StringReader(
+                "faq =>\n DECORATE: redirect, /faq\n @skipSearch: true\n\nhelp =>\n DECORATE: help"),
+                new WhiteSpaceQuerqyParserFactory(), false);
+        CommonRulesRewriter rewriter = (CommonRulesRewriter) factory.createRewriter(null, EMPTY_CONTEXT);
+
+        Map<String, Object> context = new HashMap<>();
+        rewriter.rewrite(makeQuery("help"), context);
+        assertFalse(context.containsKey(CommonRulesRewriter.SKIP_SEARCH_CONTEXT_KEY));
+
+        rewriter.rewrite(makeQuery("faq"), context);
+        assertEquals(Boolean.TRUE, context.get(CommonRulesRewriter.SKIP_SEARCH_CONTEXT_KEY));
+    }
+
     @Test
     public void testInputBoundaryOnBothSides() {
         RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
@@ -243,4 +370,55 @@ public class CommonRulesRewriterTest extends AbstractCommonRulesTest {
                      
           ));    
     }
+    
+    @Test
+    public void testThatSharedRewriterCanBeUsedConcurrently() throws Exception {
+        RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+        SynonymInstruction synInstruction = new SynonymInstruction(Arrays.asList(mkTerm("s1")));
+        BoostInstruction boostInstruction = new BoostInstruction(makeQuery("b1").getUserQuery(),
+                BoostDirection.UP, 10f);
+        builder.addRule(new Input(Arrays.asList(mkTerm("a")), false, false),
+                new Instructions(Arrays.asList((Instruction) synInstruction, boostInstruction)));
+        RulesCollection rules = builder.build();
+        final CommonRulesRewriter rewriter = new CommonRulesRewriter(rules);
+
+        final int numThreads = 4;
+        final int numQueries = 500;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Matcher<?> expected = bq(dmq(term("x", false)), dmq(term("a", false), term("s1", true)),
+                dmq(term("y", false)));
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < numQueries; j++) {
+                            ExpandedQuery query = rewriter.rewrite(makeQuery("x a y"),
+                                    new HashMap<String, Object>());
+                            if (!expected.matches(query.getUserQuery())
+                                    || query.getBoostUpQueries() == null
+                                    || query.getBoostUpQueries().size() != 1) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+    }
 }
@@ -0,0 +1,135 @@
+package querqy.rewrite.commonrules.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static querqy.QuerqyMatchers.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.rewrite.commonrules.AbstractCommonRulesTest;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+
+public class ReplaceInstructionTest extends AbstractCommonRulesTest {
+
+    CommonRulesRewriter rewriter(Input input, Instruction... instructions) {
+        RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+        builder.addRule(input, new Instructions(Arrays.asList(instructions)));
+        return new CommonRulesRewriter(builder.build());
+    }
+
+    @Test
+    public void testSingleTermReplacement() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("lpatop")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("laptop"))));
+
+        Query rewritten = rewriter.rewrite(makeQuery("x lpatop y"), EMPTY_CONTEXT).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(term("x", false)),
+                        dmq(term("laptop", false)),
+                        dmq(term("y", false))
+                ));
+    }
+
+    @Test
+    public void testThatOtherClausesOfTheDmqAreKept() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("a")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("b"))));
+
+        ExpandedQuery expandedQuery = makeQuery("a");
+        DisjunctionMaxQuery dmq = expandedQuery.getUserQuery().getClauses(DisjunctionMaxQuery.class).get(0);
+        dmq.addClause(new querqy.model.Term(dmq, null, "s", true));
+
+        assertThat(rewriter.rewrite(expandedQuery, EMPTY_CONTEXT).getUserQuery(),
+                bq(
+                        dmq(term("b", false), term("s", true))
+                ));
+    }
+
+    @Test
+    public void testMultiTermInputToSingleTerm() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("note"), mkTerm("book")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("notebook"))));
+
+        Query rewritten = rewriter.rewrite(makeQuery("note book bag"), EMPTY_CONTEXT).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(term("notebook", false)),
+                        dmq(term("bag", false))
+                ));
+    }
+
+    @Test
+    public void testSingleTermToMultiTermOutput() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("tshirt")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("t"), mkTerm("shirt"))));
+
+        Query rewritten = rewriter.rewrite(makeQuery("red tshirt xl"), EMPTY_CONTEXT).getUserQuery();
+
+        assertThat(rewritten,
+                bq(
+                        dmq(term("red", false)),
+                        dmq(term("t", false)),
+                        dmq(term("shirt", false)),
+                        dmq(term("xl", false))
+                ));
+    }
+
+    @Test
+    public void testReplacementWithFieldNames() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("a")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("b", "f1", "f2"))));
+
+        assertThat(rewriter.rewrite(makeQuery("a"), EMPTY_CONTEXT).getUserQuery(),
+                bq(
+                        dmq(term("f1", "b", false), term("f2", "b", false))
+                ));
+    }
+
+    @Test
+    public void testReplacementWithPlaceholder() {
+        CommonRulesRewriter rewriter = rewriter(
+                new Input(Arrays.asList((Term) new PrefixTerm("lap".toCharArray(), 0, 3, null)), false, false),
+                new ReplaceInstruction(Arrays.asList(new Term("note$1".toCharArray(), 0, 6, null))));
+
+        assertThat(rewriter.rewrite(makeQuery("laptops"), EMPTY_CONTEXT).getUserQuery(),
+                bq(
+                        dmq(term("notetops", false))
+                ));
+    }
+
+    @Test
+    public void testThatReplacementIsCombinedWithSynonym() {
+        CommonRulesRewriter rewriter = rewriter(new Input(Arrays.asList(mkTerm("a")), false, false),
+                new ReplaceInstruction(Arrays.asList(mkTerm("b"))),
+                new SynonymInstruction(Arrays.asList(mkTerm("c"))));
+
+        assertThat(rewriter.rewrite(makeQuery("a"), EMPTY_CONTEXT).getUserQuery(),
+                bq(
+                        dmq(term("b", false), term("c", true))
+                ));
+    }
+
+    @Test
+    public void testGenerableTerms() {
+        ReplaceInstruction instruction = new ReplaceInstruction(Arrays.asList(mkTerm("a"), mkTerm("b", "f1"),
+                new Term("c$1".toCharArray(), 0, 3, null)));
+        assertEquals(new HashSet<>(Arrays.asList(new querqy.model.Term(null, "a"),
+                new querqy.model.Term(null, "f1", "b"))), instruction.getGenerableTerms());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatReplacementIsRequired() {
+        new ReplaceInstruction(Collections.<Term>emptyList());
+    }
+
+}
@@ -2,9 +2,11 @@ package querqy.rewrite.commonrules.model;
 
 import static org.hamcrest.Matchers.contains;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +15,13 @@ import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
 import querqy.model.InputSequenceElement;
+import querqy.model.Query;
 import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
 import querqy.rewrite.QueryRewriter;
 
 public class RulesCollectionTest {
@@ -316,6 +322,46 @@ public class RulesCollectionTest {
 
    }
 
+   @Test
+   public void testMightMatch() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(true);
+      builder.addRule(new Input(inputTerms(null, "a", "b"), false, false), instructions("instruction1"));
+      builder.addRule(new Input(inputTerms(Arrays.asList("f1"), "c"), true, false), instructions("instruction2"));
+      builder.addRule(new Input(Arrays.asList((querqy.rewrite.commonrules.model.Term) new PrefixTerm("pre".toCharArray(), 0, 3, null)), false, false),
+            instructions("instruction3"));
+
+      RulesCollection rulesCollection = builder.build();
+
+      assertTrue(rulesCollection.mightMatch(parse("x B")));
+      assertTrue(rulesCollection.mightMatch(parse("x prefix")));
+      assertFalse(rulesCollection.mightMatch(parse("c x")));
+
+      Query fieldQuery = new Query();
+      DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(fieldQuery, Occur.SHOULD, false);
+      fieldQuery.addClause(dmq);
+      dmq.addClause(new Term(dmq, "f1", "c"));
+      assertTrue(rulesCollection.mightMatch(fieldQuery));
+      assertFalse(rulesCollection.mightMatch(parse("x y z")));
+
+   }
+
+   @Test
+   public void testThatEmptyInputRuleMightAlwaysMatch() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+      builder.addRule(new Input(inputTerms(null, "a"), false, false), instructions("instruction1"));
+      builder.addRule(new Input(Collections.<querqy.rewrite.commonrules.model.Term>emptyList(), true, true),
+            instructions("instruction2"));
+
+      assertTrue(builder.build().mightMatch(parse("x")));
+
+   }
+
+   Query parse(String input) {
+      return new WhiteSpaceQuerqyParser().parse(input);
+   }
+
    List<querqy.rewrite.commonrules.model.Term> inputTerms(List<String> fieldNames, String... values) {
       List<querqy.rewrite.commonrules.model.Term> result = new LinkedList<>();
       for (String value : values) {
@@ -3,6 +3,8 @@ package querqy.rewrite.commonrules.model;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import querqy.CharSequenceUtil;
@@ -165,4 +167,18 @@ public class TermTest {
        
     }
 
+    @Test
+    public void testEqualsAndCachedHashCode() throws Exception {
+        Term term1 = new Term("xabc".toCharArray(), 1, 3, Arrays.asList("f1"));
+        Term term2 = new Term("abc".toCharArray(), 0, 3, Arrays.asList("f1"));
+        Term term3 = new Term("abc".toCharArray(), 0, 3, Arrays.asList("f2"));
+
+        assertEquals(term1.hashCode(), term1.hashCode());
+        assertEquals(term1.hashCode(), term2.hashCode());
+        assertEquals(term1, term2);
+
+        assertNotEquals(term1.hashCode(), term3.hashCode());
+        assertNotEquals(term1, term3);
+    }
+
 }
@@ -0,0 +1,243 @@
+package querqy.rewrite.contrib;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static querqy.QuerqyMatchers.*;
+
+import org.junit.Test;
+
+import querqy.model.BooleanQuery;
+import querqy.model.BoostQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.RawQuery;
+import querqy.model.Term;
+
+/**
+ * Test for QueryOptimizerRewriter.
+ */
+public class QueryOptimizerRewriterTest {
+
+    @Test
+    public void testThatDuplicateTermsAreRemovedAndNonGeneratedTermIsKept() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query, Occur.SHOULD);
+        dmq.addClause(new Term(dmq, "f1", "a", true));
+        dmq.addClause(new Term(dmq, "f1", "b", true));
+        dmq.addClause(new Term(dmq, "f1", "a", false));
+        dmq.addClause(new Term(dmq, "f2", "a", true));
+        dmq.addClause(new Term(dmq, "f1", "b", true));
+
+        QueryOptimizerRewriterFactory factory = new QueryOptimizerRewriterFactory();
+        QueryOptimizerRewriter rewriter = (QueryOptimizerRewriter) factory.createRewriter(null, null);
+        rewriter.rewrite(new ExpandedQuery(query));
+
+        assertThat(query,
+                bq(
+                        dmq(
+                                term("f1", "a", false),
+                                term("f1", "b", true),
+                                term("f2", "a", true)
+                        )
+                ));
+
+        assertEquals(2, rewriter.getDuplicateClausesRemoved());
+        assertEquals(2L, factory.getDuplicateClausesRemoved());
+    }
+
+    @Test
+    public void testThatSingleClauseBooleanQueryInDmqIsFlattened() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query, Occur.SHOULD);
+        dmq.addClause(new Term(dmq, "a"));
+
+        BooleanQuery bq = new BooleanQuery(dmq, Occur.SHOULD, true);
+        dmq.addClause(bq);
+        DisjunctionMaxQuery nestedDmq = new DisjunctionMaxQuery(bq, Occur.MUST, true);
+        bq.addClause(nestedDmq);
+        nestedDmq.addClause(new Term(nestedDmq, "b", true));
+        nestedDmq.addClause(new Term(nestedDmq, "a", true));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(new ExpandedQuery(query));
+
+        assertThat(query,
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("b", true)
+                        )
+                ));
+
+        assertEquals(1, rewriter.getNestedQueriesFlattened());
+        assertEquals(1, rewriter.getDuplicateClausesRemoved());
+    }
+
+    @Test
+    public void testThatSingleClauseBooleanQueryTakesOccurOfNestedQuery() throws Exception {
+
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query, Occur.SHOULD);
+        dmq.addClause(new Term(dmq, "a"));
+
+        BooleanQuery bq = new BooleanQuery(query, Occur.MUST_NOT, false);
+        query.addClause(bq);
+        DisjunctionMaxQuery nestedDmq = new DisjunctionMaxQuery(bq, Occur.SHOULD, false);
+        bq.addClause(nestedDmq);
+        nestedDmq.addClause(new Term(nestedDmq, "b"));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(new ExpandedQuery(query));
+
+        assertThat(query,
+                bq(
+                        dmq(should(), term("a")),
+                        dmq(mustNot(), term("b"))
+                ));
+
+        assertEquals(1, rewriter.getNestedQueriesFlattened());
+    }
+
+    @Test
+    public void testThatFlatteningKeepsGeneratedFlagsOfNestedTerms() throws Exception {
+
+        // like '((a b))' after a synonym rewrite
+        Query query = new Query();
+        BooleanQuery bq = new BooleanQuery(query, Occur.SHOULD, false);
+        query.addClause(bq);
+        BooleanQuery nestedBq = new BooleanQuery(bq, Occur.SHOULD, false);
+        bq.addClause(nestedBq);
+        DisjunctionMaxQuery dmqA = new DisjunctionMaxQuery(nestedBq, Occur.SHOULD, false);
+        nestedBq.addClause(dmqA);
+        dmqA.addClause(new Term(dmqA, "a"));
+        dmqA.addClause(new Term(dmqA, "s1", true));
+        DisjunctionMaxQuery dmqB = new DisjunctionMaxQuery(nestedBq, Occur.SHOULD, false);
+        nestedBq.addClause(dmqB);
+        dmqB.addClause(new Term(dmqB, "b"));
+
+        // a single-clause BooleanQuery in a DMQ
+        DisjunctionMaxQuery dmqC = addDmq(query, Occur.SHOULD);
+        dmqC.addClause(new Term(dmqC, "c"));
+        BooleanQuery bqInDmq = new BooleanQuery(dmqC, Occur.SHOULD, false);
+        dmqC.addClause(bqInDmq);
+        DisjunctionMaxQuery nestedDmq = new DisjunctionMaxQuery(bqInDmq, Occur.SHOULD, false);
+        bqInDmq.addClause(nestedDmq);
+        nestedDmq.addClause(new Term(nestedDmq, "d"));
+        nestedDmq.addClause(new Term(nestedDmq, "s2", true));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(new ExpandedQuery(query));
+
+        assertThat(query,
+                bq(
+                        bq(
+                                dmq(term("a", false), term("s1", true)),
+                                dmq(term("b", false))
+                        ),
+                        dmq(
+                                term("c", false),
+                                term("d", false),
+                                term("s2", true)
+                        )
+                ));
+
+        assertEquals(2, rewriter.getNestedQueriesFlattened());
+    }
+
+    @Test
+    public void testThatPurelyNegativeNestedQueryIsNotFlattened() throws Exception {
+
+        Query query = new Query();
+        BooleanQuery bq = new BooleanQuery(query, Occur.SHOULD, false);
+        query.addClause(bq);
+        DisjunctionMaxQuery nestedDmq = new DisjunctionMaxQuery(bq, Occur.MUST_NOT, false);
+        bq.addClause(nestedDmq);
+        nestedDmq.addClause(new Term(nestedDmq, "b"));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(new ExpandedQuery(query));
+
+        assertThat(query,
+                bq(
+                        bq(should(), dmq(mustNot(), term("b")))
+                ));
+
+        assertEquals(0, rewriter.getNestedQueriesFlattened());
+    }
+
+    @Test
+    public void testThatIdenticalBoostQueriesAreMerged() throws Exception {
+
+        ExpandedQuery expandedQuery = new ExpandedQuery(new Query());
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("b1"), 10f));
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("b2"), 10f));
+        expandedQuery.addBoostUpQuery(new BoostQuery(makeQuery("b1"), 5f));
+        expandedQuery.addBoostDownQuery(new BoostQuery(makeQuery("b1"), 7f));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(expandedQuery);
+
+        assertThat(expandedQuery.getBoostUpQueries(), contains(
+                boostQ(bq(dmq(term("b1"))), 15f),
+                boostQ(bq(dmq(term("b2"))), 10f)
+        ));
+        assertThat(expandedQuery.getBoostDownQueries(), contains(
+                boostQ(bq(dmq(term("b1"))), 7f)
+        ));
+
+        assertEquals(1, rewriter.getBoostQueriesMerged());
+    }
+
+    @Test
+    public void testThatDuplicateFilterQueriesAreRemoved() throws Exception {
+
+        ExpandedQuery expandedQuery = new ExpandedQuery(new Query());
+        expandedQuery.addFilterQuery(makeQuery("f1"));
+        expandedQuery.addFilterQuery(new RawQuery(null, "f:x", Occur.MUST, true));
+        expandedQuery.addFilterQuery(makeQuery("f1"));
+        expandedQuery.addFilterQuery(new RawQuery(null, "f:x", Occur.MUST, true));
+        expandedQuery.addFilterQuery(makeQuery("f2"));
+
+        QueryOptimizerRewriter rewriter = new QueryOptimizerRewriter();
+        rewriter.rewrite(expandedQuery);
+
+        assertEquals(3, expandedQuery.getFilterQueries().size());
+        assertEquals(2, rewriter.getFilterQueriesRemoved());
+    }
+
+    @Test
+    public void testEquivalence() throws Exception {
+        assertTrue(QueryOptimizerRewriter.isEquivalent(makeQuery("a"), makeQuery("a")));
+        assertFalse(QueryOptimizerRewriter.isEquivalent(makeQuery("a"), makeQuery("b")));
+
+        Query query1 = new Query();
+        DisjunctionMaxQuery dmq1 = addDmq(query1, Occur.MUST);
+        dmq1.addClause(new Term(dmq1, "a"));
+        Query query2 = new Query();
+        DisjunctionMaxQuery dmq2 = addDmq(query2, Occur.SHOULD);
+        dmq2.addClause(new Term(dmq2, "a"));
+        // equals() ignores occur but isEquivalent mustn't
+        assertFalse(QueryOptimizerRewriter.isEquivalent(query1, query2));
+    }
+
+    Query makeQuery(String value) {
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = addDmq(query, Occur.SHOULD);
+        dmq.addClause(new Term(dmq, value, true));
+        return query;
+    }
+
+    DisjunctionMaxQuery addDmq(BooleanQuery query, Occur occur) {
+        DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, occur, false);
+        query.addClause(dmq);
+        return dmq;
+    }
+
+}
@@ -16,6 +16,9 @@ import querqy.rewrite.commonrules.model.RulesCollectionBuilder;
 import querqy.rewrite.commonrules.model.SynonymInstruction;
 import querqy.rewrite.commonrules.model.TrieMapRulesCollectionBuilder;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static querqy.QuerqyMatchers.*;
 
 /**
@@ -163,6 +166,105 @@ public class ShingleRewriteTest extends AbstractCommonRulesTest {
         );
     }
 
+    @Test
+    public void testTrigramsAndBigrams() {
+        Query query = new Query();
+        addTerm(query, "cde");
+        addTerm(query, "ajk");
+        addTerm(query, "xyz");
+        ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        ShingleRewriter rewriter = new ShingleRewriter(false, 2, 3, null);
+        rewriter.rewrite(expandedQuery);
+
+        assertThat(expandedQuery.getUserQuery(),
+                bq(
+                        dmq(
+                                term("cde"),
+                                term("cdeajk"),
+                                term("cdeajkxyz")
+                        ),
+                        dmq(
+                                term("ajk"),
+                                term("cdeajk"),
+                                term("ajkxyz"),
+                                term("cdeajkxyz")
+                        ),
+                        dmq(
+                                term("xyz"),
+                                term("ajkxyz"),
+                                term("cdeajkxyz")
+                        )
+                )
+        );
+    }
+
+    @Test
+    public void testTrigramsOnly() {
+        Query query = new Query();
+        addTerm(query, "a");
+        addTerm(query, "b");
+        addTerm(query, "c");
+        addTerm(query, "d");
+        ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        ShingleRewriter rewriter = new ShingleRewriter(false, 3, 3, null);
+        rewriter.rewrite(expandedQuery);
+
+        assertThat(expandedQuery.getUserQuery(),
+                bq(
+                        dmq(term("a"), term("abc")),
+                        dmq(term("b"), term("abc"), term("bcd")),
+                        dmq(term("c"), term("abc"), term("bcd")),
+                        dmq(term("d"), term("bcd"))
+                )
+        );
+    }
+
+    @Test
+    public void testThatOnlyShinglesFromDictionaryAreAdded() {
+        Query query = new Query();
+        addTerm(query, "cde");
+        addTerm(query, "ajk");
+        addTerm(query, "xyz");
+        ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        ShingleRewriter rewriter = new ShingleRewriter(false, 2, 3,
+                new WordListShingleDictionary(Arrays.asList("ajkxyz", "cdeajkxyz", "cde")));
+        rewriter.rewrite(expandedQuery);
+
+        assertThat(expandedQuery.getUserQuery(),
+                bq(
+                        dmq(
+                                term("cde"),
+                                term("cdeajkxyz")
+                        ),
+                        dmq(
+                                term("ajk"),
+                                term("ajkxyz"),
+                                term("cdeajkxyz")
+                        ),
+                        dmq(
+                                term("xyz"),
+                                term("ajkxyz"),
+                                term("cdeajkxyz")
+                        )
+                )
+        );
+    }
+
+    @Test
+    public void testReadWordListDictionary() throws Exception {
+        WordListShingleDictionary dictionary = WordListShingleDictionary.read(
+                new java.io.StringReader("# comment\nab\n\n  bc  \n"));
+        assertEquals(2, dictionary.size());
+        assertTrue(dictionary.contains("ab"));
+        assertTrue(dictionary.contains(new StringBuilder("bc")));
+        assertFalse(dictionary.contains("comment"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMinShingleSizeMustNotBeLessThanTwo() {
+        new ShingleRewriter(false, 1, 2, null);
+    }
+
     @Test
     public void testShinglingForThreeTokensWithThreeTokenGenerated() {
         Query query = new Query();
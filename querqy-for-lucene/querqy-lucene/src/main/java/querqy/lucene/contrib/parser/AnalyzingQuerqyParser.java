@@ -1,8 +1,9 @@
 package querqy.lucene.contrib.parser;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -19,6 +20,10 @@ import querqy.parser.QuerqyParser;
  * to lookup synonyms with the synonym analyzer. The tokens remaining in that
  * analyzer are treated as synonyms.
  * 
+ * The analyzers reuse their token streams and readers per thread. The synonyms
+ * of a token can be cached in a {@link SynonymCache} that is shared by the
+ * parsers, so that the synonym analyzer runs only once per token.
+ * 
  * @author Shopping24 GmbH, Torsten Bøgh Köster (@tboeghk)
  */
 public class AnalyzingQuerqyParser implements QuerqyParser {
@@ -32,6 +37,11 @@ public class AnalyzingQuerqyParser implements QuerqyParser {
     */
    private final Analyzer optSynonymAnalyzer;
 
+   /**
+    * Cache for the results of the synonym analyzer.
+    */
+   private final SynonymCache optSynonymCache;
+
    /**
     * Constructor.
     * 
@@ -41,10 +51,26 @@ public class AnalyzingQuerqyParser implements QuerqyParser {
     *           {@link Analyzer} for the synonyms.
     */
    public AnalyzingQuerqyParser(Analyzer queryAnalyzer, Analyzer optSynonymAnalyzer) {
+      this(queryAnalyzer, optSynonymAnalyzer, null);
+   }
+
+   /**
+    * Constructor.
+    * 
+    * @param queryAnalyzer
+    *           {@link Analyzer} for the query.
+    * @param optSynonymAnalyzer
+    *           {@link Analyzer} for the synonyms.
+    * @param optSynonymCache
+    *           {@link SynonymCache} for the synonyms.
+    */
+   public AnalyzingQuerqyParser(Analyzer queryAnalyzer, Analyzer optSynonymAnalyzer,
+         SynonymCache optSynonymCache) {
       checkNotNull(queryAnalyzer);
 
       this.queryAnalyzer = queryAnalyzer;
       this.optSynonymAnalyzer = optSynonymAnalyzer;
+      this.optSynonymCache = optSynonymCache;
    }
 
    /**
@@ -57,7 +83,8 @@ public class AnalyzingQuerqyParser implements QuerqyParser {
    public Query parse(String input) {
       checkNotNull(input);
 
-      try (TokenStream queryTokens = queryAnalyzer.tokenStream("querqy", new CharSequenceReader(input))) {
+      // the String variant reuses the Reader
+      try (TokenStream queryTokens = queryAnalyzer.tokenStream("querqy", input)) {
          Query query = new Query();
 
          queryTokens.reset();
@@ -66,11 +93,12 @@ public class AnalyzingQuerqyParser implements QuerqyParser {
             DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
             // We need to copy "original" per toString() here, because
             // "original" is transient.
-            dmq.addClause(new Term(dmq, original.toString()));
+            String token = original.toString();
+            dmq.addClause(new Term(dmq, token));
             query.addClause(dmq);
 
             if (optSynonymAnalyzer != null) {
-               addSynonyms(dmq, original);
+               addSynonyms(dmq, token);
             }
          }
          queryTokens.end();
@@ -96,19 +124,44 @@ public class AnalyzingQuerqyParser implements QuerqyParser {
     * @param original
     *           Original term to determine synonyms for.
     */
-   private void addSynonyms(DisjunctionMaxQuery dmq, CharSequence original) throws IOException {
-      try (TokenStream synonymTokens = optSynonymAnalyzer.tokenStream("querqy", new CharSequenceReader(original))) {
+   private void addSynonyms(DisjunctionMaxQuery dmq, String original) throws IOException {
+      String[] synonyms = (optSynonymCache != null) ? optSynonymCache.get(optSynonymAnalyzer, original) : null;
+      if (synonyms == null) {
+         synonyms = analyzeSynonyms(original);
+         if (optSynonymCache != null) {
+            optSynonymCache.put(optSynonymAnalyzer, original, synonyms);
+         }
+      }
+      for (String synonym : synonyms) {
+         dmq.addClause(new Term(dmq, synonym, true));
+      }
+   }
+
+   /**
+    * Run the synonym analyzer.
+    * 
+    * @param original
+    *           Original term to determine synonyms for.
+    * @return The synonyms or {@link SynonymCache#NO_SYNONYMS}.
+    */
+   private String[] analyzeSynonyms(String original) throws IOException {
+      List<String> synonyms = null;
+      try (TokenStream synonymTokens = optSynonymAnalyzer.tokenStream("querqy", original)) {
          synonymTokens.reset();
          CharTermAttribute generated = synonymTokens.addAttribute(CharTermAttribute.class);
          while (synonymTokens.incrementToken()) {
+            if (synonyms == null) {
+               synonyms = new ArrayList<>(2);
+            }
             // We need to copy "generated" per toString() here, because
             // "generated" is transient.
-            dmq.addClause(new Term(dmq, generated.toString(), true));
+            synonyms.add(generated.toString());
          }
          synonymTokens.end();
       }
+      return (synonyms == null) ? SynonymCache.NO_SYNONYMS : synonyms.toArray(new String[synonyms.size()]);
    }
-   
+
    public static void checkNotNull(Object obj) {
        if (obj == null) {
            throw new NullPointerException();
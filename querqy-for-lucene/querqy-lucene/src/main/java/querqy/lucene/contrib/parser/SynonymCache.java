@@ -0,0 +1,92 @@
+package querqy.lucene.contrib.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+/**
+ * A bounded cache for the synonyms that a synonym {@link Analyzer} produces for a token, to be shared by the
+ * {@link AnalyzingQuerqyParser}s that use the same analyzer. The cached synonyms belong to a single analyzer
+ * instance. They are discarded as soon as a different analyzer is used, for example after a schema reload. If the
+ * cache is full, it is cleared.
+ */
+public class SynonymCache {
+
+   public static final String[] NO_SYNONYMS = new String[0];
+
+   private final int maxSize;
+
+   private volatile Entries entries = null;
+
+   /**
+    * Constructor.
+    *
+    * @param maxSize
+    *           The maximum number of tokens in the cache.
+    */
+   public SynonymCache(int maxSize) {
+      if (maxSize < 1) {
+         throw new IllegalArgumentException("maxSize must be > 0");
+      }
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Get the cached synonyms.
+    *
+    * @param analyzer
+    *           The synonym analyzer.
+    * @param token
+    *           The token.
+    * @return The synonyms, {@link #NO_SYNONYMS} if the analyzer didn't produce any synonyms or null if the token
+    *         is not cached for this analyzer.
+    */
+   public String[] get(Analyzer analyzer, String token) {
+      Entries current = entries;
+      return (current != null && current.analyzer == analyzer) ? current.synonyms.get(token) : null;
+   }
+
+   /**
+    * Cache synonyms.
+    *
+    * @param analyzer
+    *           The synonym analyzer.
+    * @param token
+    *           The token.
+    * @param synonyms
+    *           The synonyms, {@link #NO_SYNONYMS} if the analyzer didn't produce any synonyms.
+    */
+   public void put(Analyzer analyzer, String token, String[] synonyms) {
+      Entries current = entries;
+      if (current == null || current.analyzer != analyzer) {
+         // parsers that still use the previous analyzer will replace these entries again, but they will never
+         // see each other's synonyms
+         current = new Entries(analyzer);
+         entries = current;
+      }
+      if (current.synonyms.size() >= maxSize) {
+         current.synonyms.clear();
+      }
+      current.synonyms.put(token, synonyms);
+   }
+
+   public int size() {
+      Entries current = entries;
+      return current == null ? 0 : current.synonyms.size();
+   }
+
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   private static class Entries {
+
+      final Analyzer analyzer;
+      final ConcurrentHashMap<String, String[]> synonyms = new ConcurrentHashMap<>();
+
+      Entries(Analyzer analyzer) {
+         this.analyzer = analyzer;
+      }
+   }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * <p>The words that compounds can be made of, kept in an {@link FST} over the code points of the words.</p>
+ *
+ * <p>The FST can be built from a word list when the rewriter is loaded or it can be precompiled and saved using
+ * {@link #save(OutputStream)} or the {@link #main(String[])} method:</p>
+ *
+ * <pre>
+ * java -cp ... querqy.lucene.contrib.rewrite.CompoundDictionary words.txt words.fst [ignoreCase]
+ * </pre>
+ *
+ * <p>The dictionary is immutable and thread-safe. Lookups need an {@link FST.BytesReader} and a scratch arc that
+ * must not be shared between threads.</p>
+ */
+public class CompoundDictionary {
+
+    final FST<Object> fst;
+    final boolean ignoreCase;
+
+    /**
+     *
+     * @param fst The FST, can be null for an empty dictionary
+     * @param ignoreCase If true, lookups are lower-cased. The FST must only contain lower-case words in this case.
+     */
+    public CompoundDictionary(FST<Object> fst, boolean ignoreCase) {
+        this.fst = fst;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Build a dictionary from a collection of words.
+     *
+     * @param words The words
+     * @param ignoreCase If true, the words are lower-cased and lookups will be lower-cased
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static CompoundDictionary build(Collection<? extends CharSequence> words, boolean ignoreCase)
+            throws IOException {
+
+        List<IntsRef> inputs = new ArrayList<>(words.size());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (CharSequence word : words) {
+            String value = ignoreCase ? word.toString().toLowerCase(Locale.ROOT) : word.toString();
+            if (value.length() > 0) {
+                inputs.add(IntsRef.deepCopyOf(Util.toUTF32(value, scratch)));
+            }
+        }
+
+        // the FST builder requires the inputs in code point order
+        Collections.sort(inputs);
+
+        Builder<Object> builder = new Builder<>(FST.INPUT_TYPE.BYTE4, NoOutputs.getSingleton());
+        IntsRef previous = null;
+        for (IntsRef input : inputs) {
+            if (!input.equals(previous)) {
+                builder.add(input, NoOutputs.getSingleton().getNoOutput());
+                previous = input;
+            }
+        }
+
+        return new CompoundDictionary(builder.finish(), ignoreCase);
+    }
+
+    /**
+     * Build a dictionary from a word list with one word per line. Empty lines and lines starting with '#' are
+     * ignored.
+     *
+     * @param reader The word list. It will be closed by this method.
+     * @param ignoreCase If true, the words are lower-cased and lookups will be lower-cased
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static CompoundDictionary readWordList(Reader reader, boolean ignoreCase) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(reader)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && line.charAt(0) != '#') {
+                    words.add(line);
+                }
+            }
+        }
+        return build(words, ignoreCase);
+    }
+
+    /**
+     * Read a precompiled dictionary.
+     *
+     * @param in The stream that was written by {@link #save(OutputStream)}
+     * @param ignoreCase The ignoreCase setting that was used to build the dictionary
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static CompoundDictionary read(InputStream in, boolean ignoreCase) throws IOException {
+        return new CompoundDictionary(new FST<>(new InputStreamDataInput(in), NoOutputs.getSingleton()), ignoreCase);
+    }
+
+    public void save(OutputStream out) throws IOException {
+        if (fst == null) {
+            throw new IllegalStateException("Cannot save an empty dictionary");
+        }
+        fst.save(new OutputStreamDataOutput(out));
+    }
+
+    public FST.BytesReader getBytesReader() {
+        return fst == null ? null : fst.getBytesReader();
+    }
+
+    public boolean isEmpty() {
+        return fst == null;
+    }
+
+    /**
+     * Check whether a part of a char sequence is a word of the dictionary.
+     *
+     * @param value The chars
+     * @param start The start of the part in value
+     * @param end The end of the part in value (exclusive)
+     * @param fstReader A reader for the FST of this dictionary
+     * @param arc A scratch arc
+     * @return true if the part is a word
+     * @throws IOException
+     */
+    public boolean contains(CharSequence value, int start, int end, FST.BytesReader fstReader, FST.Arc<Object> arc)
+            throws IOException {
+        if (fst == null) {
+            return false;
+        }
+        fst.getFirstArc(arc);
+        for (int pos = start; pos < end;) {
+            int codePoint = Character.codePointAt(value, pos);
+            if (fst.findTargetArc(ignoreCase ? Character.toLowerCase(codePoint) : codePoint, arc, arc, fstReader)
+                    == null) {
+                return false;
+            }
+            pos += Character.charCount(codePoint);
+        }
+        return arc.isFinal();
+    }
+
+    /**
+     * Find all words of the dictionary that start at a given position of a char sequence in a single walk through
+     * the FST.
+     *
+     * @param value The chars
+     * @param start The position at which the words start
+     * @param ends Receives the end positions (exclusive) of the words in ascending order. Must have a length of at
+     *             least value.length() - start.
+     * @param fstReader A reader for the FST of this dictionary
+     * @param arc A scratch arc
+     * @return The number of words found
+     * @throws IOException
+     */
+    public int findWords(CharSequence value, int start, int[] ends, FST.BytesReader fstReader, FST.Arc<Object> arc)
+            throws IOException {
+        if (fst == null) {
+            return 0;
+        }
+        int count = 0;
+        fst.getFirstArc(arc);
+        for (int pos = start, len = value.length(); pos < len;) {
+            int codePoint = Character.codePointAt(value, pos);
+            if (fst.findTargetArc(ignoreCase ? Character.toLowerCase(codePoint) : codePoint, arc, arc, fstReader)
+                    == null) {
+                break;
+            }
+            pos += Character.charCount(codePoint);
+            if (arc.isFinal()) {
+                ends[count++] = pos;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compile a word list into an FST file.
+     *
+     * @param args The word list file (UTF-8), the output file and optionally 'ignoreCase'
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompoundDictionary <word list> <fst file> [ignoreCase]");
+            System.exit(1);
+        }
+        boolean ignoreCase = args.length > 2 && "ignoreCase".equalsIgnoreCase(args[2]);
+        CompoundDictionary dictionary = readWordList(
+                new InputStreamReader(Files.newInputStream(Paths.get(args[0])), StandardCharsets.UTF_8), ignoreCase);
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            dictionary.save(out);
+        }
+    }
+
+}
@@ -0,0 +1,303 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.util.fst.FST;
+
+import querqy.CompoundCharSequence;
+import querqy.ComparableCharSequence;
+import querqy.model.AbstractNodeVisitor;
+import querqy.model.BooleanQuery;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Node;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+
+/**
+ * <p>A query rewriter that splits compound words into the words they are made of and that joins adjacent query
+ * terms into compound words, using a {@link CompoundDictionary}.</p>
+ *
+ * <p>Splitting: a term is segmented into dictionary words in a single pass over its characters, preferring the
+ * longest words and backtracking to shorter ones only if the rest of the term cannot be segmented. Linking
+ * morphemes (like the 's' in German 'arbeitsplatz') can be dropped between two parts. The parts are added to the
+ * term's {@link DisjunctionMaxQuery} as a generated {@link BooleanQuery} with one MUST clause per part, so that
+ * 'arbeitsplatz' becomes:</p>
+ * <pre>
+ (arbeitsplatz OR (+arbeit +platz))
+ </pre>
+ * <p>Joining: two adjacent terms of the same field that are both dictionary words are joined into a new term,
+ * which is added as a synonym to both terms, like the {@link querqy.rewrite.contrib.ShingleRewriter} does:</p>
+ * <pre>
+ (arbeit OR arbeitplatz) (platz OR arbeitplatz)
+ </pre>
+ *
+ * <p>Only terms that were not generated by a previous rewriter are split or joined. The rewriter is stateless
+ * and can be used by multiple threads concurrently.</p>
+ */
+public class CompoundRewriter implements QueryRewriter {
+
+    public static final int DEFAULT_MIN_PART_LENGTH = 3;
+    public static final int DEFAULT_MAX_PARTS = 4;
+
+    final CompoundDictionary dictionary;
+    final boolean decompound;
+    final boolean compound;
+    final int minPartLength;
+    final int maxParts;
+    final String[] linkingMorphemes;
+
+    /**
+     *
+     * @param dictionary The words that compounds are made of
+     * @param decompound Split terms into parts
+     * @param compound Join adjacent terms
+     * @param minPartLength The minimum number of characters of a part when splitting a term
+     * @param maxParts The maximum number of parts when splitting a term (at least 2)
+     * @param linkingMorphemes The strings that can be dropped between two parts when splitting, can be null
+     */
+    public CompoundRewriter(CompoundDictionary dictionary, boolean decompound, boolean compound, int minPartLength,
+            int maxParts, String[] linkingMorphemes) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("dictionary must not be null");
+        }
+        if (minPartLength < 1) {
+            throw new IllegalArgumentException("minPartLength must be > 0");
+        }
+        if (maxParts < 2) {
+            throw new IllegalArgumentException("maxParts must be >= 2");
+        }
+        this.dictionary = dictionary;
+        this.decompound = decompound;
+        this.compound = compound;
+        this.minPartLength = minPartLength;
+        this.maxParts = maxParts;
+        if (linkingMorphemes == null) {
+            this.linkingMorphemes = new String[0];
+        } else {
+            this.linkingMorphemes = new String[linkingMorphemes.length];
+            for (int i = 0; i < linkingMorphemes.length; i++) {
+                this.linkingMorphemes[i] = dictionary.ignoreCase
+                        ? linkingMorphemes[i].toLowerCase(Locale.ROOT) : linkingMorphemes[i];
+            }
+        }
+    }
+
+    @Override
+    public ExpandedQuery rewrite(ExpandedQuery query) {
+        Query userQuery = query.getUserQuery();
+        if (userQuery != null && !dictionary.isEmpty()) {
+            new Compounder().rewrite(userQuery);
+        }
+        return query;
+    }
+
+    /**
+     * The state of a single call to {@link CompoundRewriter#rewrite(ExpandedQuery)}
+     */
+    class Compounder extends AbstractNodeVisitor<Node> {
+
+        final FST.BytesReader fstReader = dictionary.getBytesReader();
+        final FST.Arc<Object> scratchArc = new FST.Arc<>();
+
+        final List<DisjunctionMaxQuery> targets = new ArrayList<>();
+        final List<DisjunctionMaxClause> clausesToAdd = new ArrayList<>();
+
+        /**
+         * The previous term in the current BooleanQuery if it can be joined with the next term
+         */
+        Term previousTerm = null;
+
+        // scratch space for the segmentation of the current term
+        int[] partStarts = new int[maxParts];
+        int[] partEnds = new int[maxParts];
+        int numParts = 0;
+        /**
+         * failedBudget[pos] = n: the value cannot be segmented from pos on with n or less parts
+         */
+        int[] failedBudget = new int[16];
+        int[] ends = new int[16];
+
+        void rewrite(Query userQuery) {
+            visit(userQuery);
+            for (int i = 0, len = targets.size(); i < len; i++) {
+                targets.get(i).addClause(clausesToAdd.get(i));
+            }
+        }
+
+        @Override
+        public Node visit(BooleanQuery bq) {
+            previousTerm = null;
+            super.visit(bq);
+            previousTerm = null;
+            return null;
+        }
+
+        @Override
+        public Node visit(DisjunctionMaxQuery dmq) {
+            Term term = null;
+            for (DisjunctionMaxClause clause : dmq.getClauses()) {
+                if (!clause.isGenerated()) {
+                    if (clause instanceof Term) {
+                        if (term == null) {
+                            term = (Term) clause;
+                        }
+                        if (decompound) {
+                            decompound((Term) clause);
+                        }
+                    } else {
+                        clause.accept(this);
+                    }
+                }
+            }
+
+            if (compound) {
+                if (term != null && previousTerm != null && eq(previousTerm.getField(), term.getField())
+                        && isWord(previousTerm.getValue()) && isWord(term.getValue())) {
+                    CharSequence joined = new CompoundCharSequence(null, previousTerm.getValue(), term.getValue());
+                    add(previousTerm.getParent(), new Term(previousTerm.getParent(), term.getField(), joined, true));
+                    add(dmq, new Term(dmq, term.getField(), joined, true));
+                }
+                previousTerm = term;
+            }
+
+            return null;
+        }
+
+        void decompound(Term term) {
+            ComparableCharSequence value = term.getValue();
+            int length = value.length();
+            if (length < 2 * minPartLength) {
+                return;
+            }
+
+            if (failedBudget.length <= length) {
+                failedBudget = new int[length + 1];
+                ends = new int[length + 1];
+            } else {
+                Arrays.fill(failedBudget, 0, length + 1, 0);
+            }
+            numParts = 0;
+
+            if (segment(value, 0)) {
+                DisjunctionMaxQuery dmq = term.getParent();
+                BooleanQuery bq = new BooleanQuery(dmq, Occur.SHOULD, true);
+                for (int i = 0; i < numParts; i++) {
+                    DisjunctionMaxQuery partDmq = new DisjunctionMaxQuery(bq, Occur.MUST, true);
+                    partDmq.addClause(new Term(partDmq, term.getField(),
+                            value.subSequence(partStarts[i], partEnds[i]), true));
+                    bq.addClause(partDmq);
+                }
+                add(dmq, bq);
+            }
+        }
+
+        /**
+         * Segment value[start..] into dictionary words, longest words first. The positions from which no
+         * segmentation is possible are remembered together with the number of parts that were still allowed, so
+         * that each position is evaluated at most once per budget.
+         *
+         * @return true if the rest of the value could be segmented
+         */
+        boolean segment(CharSequence value, int start) {
+
+            int length = value.length();
+            int budget = maxParts - numParts;
+
+            if (budget <= failedBudget[start]) {
+                return false;
+            }
+
+            int count;
+            try {
+                count = dictionary.findWords(value, start, ends, fstReader, scratchArc);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            // copy the candidates as ends will be overwritten in the recursion
+            int[] candidates = new int[count];
+            System.arraycopy(ends, 0, candidates, 0, count);
+
+            for (int i = count - 1; i >= 0; i--) {
+
+                int end = candidates[i];
+                if (end - start < minPartLength) {
+                    break;
+                }
+
+                // the whole term is not a split
+                if (start == 0 && end == length) {
+                    continue;
+                }
+
+                partStarts[numParts] = start;
+                partEnds[numParts] = end;
+                numParts++;
+
+                if (end == length || segment(value, end)) {
+                    return true;
+                }
+
+                for (String morpheme : linkingMorphemes) {
+                    int next = end + morpheme.length();
+                    if (next < length && regionMatches(value, end, morpheme)
+                            && segment(value, next)) {
+                        return true;
+                    }
+                }
+
+                numParts--;
+
+            }
+
+            failedBudget[start] = budget;
+            return false;
+        }
+
+        boolean isWord(CharSequence value) {
+            try {
+                return dictionary.contains(value, 0, value.length(), fstReader, scratchArc);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void add(DisjunctionMaxQuery target, DisjunctionMaxClause clause) {
+            targets.add(target);
+            clausesToAdd.add(clause);
+        }
+
+    }
+
+    boolean regionMatches(CharSequence value, int start, String morpheme) {
+        if (start + morpheme.length() > value.length()) {
+            return false;
+        }
+        for (int i = 0, len = morpheme.length(); i < len; i++) {
+            char ch = value.charAt(start + i);
+            if (dictionary.ignoreCase) {
+                ch = Character.toLowerCase(ch);
+            }
+            if (ch != morpheme.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> boolean eq(T value1, T value2) {
+        return value1 == null && value2 == null || value1 != null && value1.equals(value2);
+    }
+
+}
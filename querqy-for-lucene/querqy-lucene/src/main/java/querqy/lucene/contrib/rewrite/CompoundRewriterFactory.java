@@ -0,0 +1,47 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.util.Map;
+import java.util.Set;
+
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.rewrite.ApplicabilityAwareRewriterFactory;
+import querqy.rewrite.QueryRewriter;
+
+/**
+ * Factory for {@link CompoundRewriter}
+ */
+public class CompoundRewriterFactory implements ApplicabilityAwareRewriterFactory {
+
+    protected final CompoundRewriter rewriter;
+
+    /**
+     * @see CompoundRewriter#CompoundRewriter(CompoundDictionary, boolean, boolean, int, int, String[])
+     */
+    public CompoundRewriterFactory(CompoundDictionary dictionary, boolean decompound, boolean compound,
+            int minPartLength, int maxParts, String[] linkingMorphemes) {
+        // the rewriter is stateless and can be shared by all requests
+        rewriter = new CompoundRewriter(dictionary, decompound, compound, minPartLength, maxParts, linkingMorphemes);
+    }
+
+    @Override
+    public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+        return rewriter;
+    }
+
+    @Override
+    public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+        Query userQuery = query.getUserQuery();
+        return userQuery != null && userQuery.getClauseCount() > 0 && !rewriter.dictionary.isEmpty();
+    }
+
+    @Override
+    public Set<Term> getGenerableTerms() {
+        return QueryRewriter.EMPTY_GENERABLE_TERMS;
+    }
+
+}
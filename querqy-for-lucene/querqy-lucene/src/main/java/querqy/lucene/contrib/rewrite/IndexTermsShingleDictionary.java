@@ -0,0 +1,66 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRefBuilder;
+
+import querqy.rewrite.contrib.ShingleDictionary;
+
+/**
+ * <p>A {@link ShingleDictionary} that contains the terms of an index field. The shingles are looked up as they are,
+ * they are not analyzed. This dictionary thus works best with a field that indexes the terms in the same form
+ * as they are in the query (for example, lower-cased and not stemmed).</p>
+ *
+ * <p>The dictionary re-uses a {@link TermsEnum} and must only be used by one thread. Create a new instance per
+ * request, which is cheap if the {@link Terms} are cached per index reader.</p>
+ */
+public class IndexTermsShingleDictionary implements ShingleDictionary {
+
+    protected final Terms terms;
+    protected TermsEnum termsEnum = null;
+    protected final BytesRefBuilder bytes = new BytesRefBuilder();
+
+    /**
+     *
+     * @param terms The terms of the field, can be null if the field doesn't exist
+     */
+    public IndexTermsShingleDictionary(Terms terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * Create a dictionary for a field of an index.
+     *
+     * @param reader The index reader
+     * @param field The name of the field
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static IndexTermsShingleDictionary forField(IndexReader reader, String field) throws IOException {
+        return new IndexTermsShingleDictionary(MultiFields.getTerms(reader, field));
+    }
+
+    @Override
+    public boolean contains(CharSequence shingle) {
+        if (terms == null) {
+            return false;
+        }
+        try {
+            if (termsEnum == null) {
+                termsEnum = terms.iterator();
+            }
+            bytes.copyChars(shingle);
+            return termsEnum.seekExact(bytes.get());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
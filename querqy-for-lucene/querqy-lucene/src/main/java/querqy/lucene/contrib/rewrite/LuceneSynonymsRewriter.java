@@ -4,12 +4,16 @@
 package querqy.lucene.contrib.rewrite;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.fst.FST;
 
 import querqy.model.AbstractNodeVisitor;
+import querqy.model.BooleanClause;
 import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
 import querqy.model.Node;
@@ -18,17 +22,32 @@ import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 
 /**
+ * <p>A query rewriter that applies the synonyms of a Lucene {@link SynonymMap}.</p>
+ *
+ * <p>This class can be used by multiple threads concurrently. The state of a single rewrite is kept in a visitor
+ * object. Each thread re-uses its visitor, together with the scratch arcs and the sequence arrays held by it, for
+ * all its calls to {@link #rewrite(ExpandedQuery)} of any instance of this class. The visitor is bound to the
+ * synonym FST only for the duration of a call, so that it doesn't keep a rewriter alive after a core reload. The
+ * decoded synonyms are cached by {@link SynonymWords} and shared by all threads.</p>
+ *
  * @author rene
  *
  */
-public class LuceneSynonymsRewriter extends AbstractNodeVisitor<Node> implements QueryRewriter {
+public class LuceneSynonymsRewriter implements QueryRewriter {
 
    final SynonymMap synonymMap;
+   final SynonymWords synonymWords;
 
-   LinkedList<Sequences> sequencesStack = new LinkedList<>();
+   static final ThreadLocal<SynonymsVisitor> VISITORS = new ThreadLocal<SynonymsVisitor>() {
+      @Override
+      protected SynonymsVisitor initialValue() {
+         return new SynonymsVisitor();
+      }
+   };
 
    public LuceneSynonymsRewriter(SynonymMap synonymMap) {
       this.synonymMap = synonymMap;
+      this.synonymWords = new SynonymWords(synonymMap);
    }
 
    /*
@@ -39,51 +58,170 @@ public class LuceneSynonymsRewriter extends AbstractNodeVisitor<Node> implements
    @Override
    public ExpandedQuery rewrite(ExpandedQuery query) {
       Query userQuery = query.getUserQuery();
-      if (userQuery != null) {
-         visit(userQuery);
+      if (userQuery != null && synonymMap.fst != null) {
+         SynonymsVisitor visitor = VISITORS.get();
+         visitor.bind(synonymMap.fst, synonymWords);
+         try {
+            visitor.visit(userQuery);
+         } finally {
+            visitor.reset();
+         }
       }
       return query;
    }
 
-   @Override
-   public Node visit(Query query) {
-      return visit((BooleanQuery) query);
+   /**
+    * Cheap check whether any synonym could match the query. A synonym can only match if the complete value of a
+    * non-generated query term is a path from the root of the synonym FST.
+    *
+    * @param query
+    * @return false if no synonym can match the query
+    */
+   public boolean mightMatch(BooleanQuery query) {
+
+      final FST<BytesRef> fst = synonymMap.fst;
+      if (fst == null) {
+         return false;
+      }
+
+      try {
+         return mightMatch(query, fst, fst.getBytesReader(), VISITORS.get().scratchArc);
+      } catch (IOException e) {
+         throw new RuntimeException(e);
+      }
    }
 
-   @Override
-   public Node visit(DisjunctionMaxQuery disjunctionMaxQuery) {
-      sequencesStack.getLast().nextPosition(disjunctionMaxQuery);
-      return super.visit(disjunctionMaxQuery);
+   protected boolean mightMatch(BooleanQuery query, FST<BytesRef> fst, FST.BytesReader fstReader,
+                                FST.Arc<BytesRef> scratchArc) throws IOException {
+
+      for (int i = 0, len = query.getClauseCount(); i < len; i++) {
+
+         final BooleanClause clause = query.getClause(i);
+
+         if (clause instanceof DisjunctionMaxQuery) {
+
+            final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+            for (int j = 0, numClauses = dmq.getClauseCount(); j < numClauses; j++) {
+
+               final DisjunctionMaxClause dmqClause = dmq.getClause(j);
+
+               if (dmqClause instanceof Term) {
+                  if (!dmqClause.isGenerated() && startsKey((Term) dmqClause, fst, fstReader, scratchArc)) {
+                     return true;
+                  }
+               } else if (mightMatch((BooleanQuery) dmqClause, fst, fstReader, scratchArc)) {
+                  return true;
+               }
+            }
+
+         } else if (mightMatch((BooleanQuery) clause, fst, fstReader, scratchArc)) {
+            return true;
+         }
+      }
+
+      return false;
    }
 
-   @Override
-   public Node visit(Term term) {
-      if (!term.isGenerated()) {
-         try {
-            sequencesStack.getLast().putTerm(term);
-         } catch (IOException e) {
-            throw new RuntimeException(e);
+   protected static boolean startsKey(Term term, FST<BytesRef> fst, FST.BytesReader fstReader,
+                                      FST.Arc<BytesRef> scratchArc) throws IOException {
+
+      fst.getFirstArc(scratchArc);
+
+      final CharSequence termValue = term.getValue();
+      for (int pos = 0, len = termValue.length(); pos < len;) {
+         final int codePoint = Character.codePointAt(termValue, pos);
+         if (fst.findTargetArc(codePoint, scratchArc, scratchArc, fstReader) == null) {
+            return false;
          }
+         pos += Character.charCount(codePoint);
       }
-      return super.visit(term);
+
+      return true;
    }
 
-   @Override
-   public Node visit(BooleanQuery booleanQuery) {
+   /**
+    * The state of a single call to {@link LuceneSynonymsRewriter#rewrite(ExpandedQuery)}. A visitor is bound to a
+    * thread and re-used after {@link #reset()}, which also releases the references to the synonym FST.
+    */
+   static class SynonymsVisitor extends AbstractNodeVisitor<Node> {
+
+      FST<BytesRef> fst = null;
+      FST.BytesReader fstReader = null;
+      SynonymWords synonymWords = null;
+      final FST.Arc<BytesRef> scratchArc = new FST.Arc<>();
+
+      /**
+       * One Sequences object per level of nested BooleanQuerys
+       */
+      final ArrayList<Sequences> sequencesStack = new ArrayList<>();
+      int depth = 0;
+
+      void bind(FST<BytesRef> fst, SynonymWords synonymWords) {
+         this.fst = fst;
+         this.fstReader = fst.getBytesReader();
+         this.synonymWords = synonymWords;
+      }
+
+      void reset() {
+         for (int i = 0; i < depth; i++) {
+            sequencesStack.get(i).reset();
+         }
+         depth = 0;
+         for (Sequences sequences : sequencesStack) {
+            sequences.bind(null, null, null);
+         }
+         fst = null;
+         fstReader = null;
+         synonymWords = null;
+      }
 
-      if ((!sequencesStack.isEmpty()) && booleanQuery.getParent() instanceof BooleanQuery) {
-         // left-hand siblings might be DMQs with Terms - terminate sequences
-         sequencesStack.getLast().apply();
+      @Override
+      public Node visit(Query query) {
+         return visit((BooleanQuery) query);
       }
 
-      // new Sequences object for child DMQ/Term objects
-      sequencesStack.add(new Sequences(synonymMap));
+      @Override
+      public Node visit(DisjunctionMaxQuery disjunctionMaxQuery) {
+         sequencesStack.get(depth - 1).nextPosition(disjunctionMaxQuery);
+         return super.visit(disjunctionMaxQuery);
+      }
+
+      @Override
+      public Node visit(Term term) {
+         if (!term.isGenerated()) {
+            try {
+               sequencesStack.get(depth - 1).putTerm(term);
+            } catch (IOException e) {
+               throw new RuntimeException(e);
+            }
+         }
+         return super.visit(term);
+      }
+
+      @Override
+      public Node visit(BooleanQuery booleanQuery) {
 
-      super.visit(booleanQuery);
+         if (depth > 0 && booleanQuery.getParent() instanceof BooleanQuery) {
+            // left-hand siblings might be DMQs with Terms - terminate sequences
+            sequencesStack.get(depth - 1).apply();
+         }
 
-      sequencesStack.removeLast().apply();
+         // new Sequences object for child DMQ/Term objects
+         if (depth == sequencesStack.size()) {
+            sequencesStack.add(new Sequences());
+         }
+         final Sequences sequences = sequencesStack.get(depth++);
+         sequences.bind(fst, fstReader, synonymWords);
+
+         super.visit(booleanQuery);
+
+         depth--;
+         sequences.apply();
+         sequences.reset();
+
+         return null;
+      }
 
-      return null;
    }
 
 }
@@ -19,22 +19,30 @@ import org.apache.lucene.analysis.synonym.SolrSynonymParser;
 import org.apache.lucene.analysis.synonym.SynonymMap;
 
 import querqy.model.ExpandedQuery;
+import querqy.model.Query;
 import querqy.model.Term;
+import querqy.rewrite.ApplicabilityAwareRewriterFactory;
 import querqy.rewrite.QueryRewriter;
-import querqy.rewrite.RewriterFactory;
 
 /**
  * @author rene
  *
  */
-public class LuceneSynonymsRewriterFactory implements RewriterFactory {
+public class LuceneSynonymsRewriterFactory implements ApplicabilityAwareRewriterFactory {
 
    @Override
    public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
-      return new LuceneSynonymsRewriter(synonymMap);
+      return rewriter;
+   }
+
+   @Override
+   public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+      Query userQuery = query.getUserQuery();
+      return userQuery != null && rewriter.mightMatch(userQuery);
    }
 
    SynonymMap synonymMap = null;
+   LuceneSynonymsRewriter rewriter = null;
    final SolrSynonymParser parser;
 
    public LuceneSynonymsRewriterFactory(boolean expand, final boolean ignoreCase) throws IOException {
@@ -64,6 +72,8 @@ public class LuceneSynonymsRewriterFactory implements RewriterFactory {
 
    public void build() throws IOException {
       synonymMap = parser.build();
+      // the rewriter is stateless and can be shared by all requests
+      rewriter = new LuceneSynonymsRewriter(synonymMap);
    }
 
     @Override
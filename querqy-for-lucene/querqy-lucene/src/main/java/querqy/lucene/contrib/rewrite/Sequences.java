@@ -6,10 +6,10 @@ package querqy.lucene.contrib.rewrite;
 import java.io.IOException;
 import java.util.*;
 
-import org.apache.lucene.analysis.synonym.SynonymMap;
 import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.fst.FST;
 
 import querqy.SimpleComparableCharSequence;
@@ -20,26 +20,70 @@ import querqy.model.Term;
 import querqy.model.Clause.Occur;
 
 /**
+ * <p>The term sequences of the clauses of a BooleanQuery that are a path in the synonym FST.</p>
+ *
+ * <p>A sequence is kept as an entry in a set of parallel arrays: the FST arc after the last term, the accumulated
+ * output, the last term and the index of the entry for the sequence without the last term (or -1). The entries
+ * of a position are contiguous, so that the sequences which can be continued at the current position are the
+ * entries from {@link #prevStart} to {@link #curStart}. The arrays and the arcs in them are re-used after
+ * {@link #reset()}. Instances must only be used by a single thread. They are bound to a synonym FST by
+ * {@link #bind(FST, FST.BytesReader, SynonymWords)}.</p>
+ *
  * @author rene
  *
  */
 class Sequences {
 
-   final FST<BytesRef> fst;
+   static final int cpBlank = Character.codePointAt(new char[] { ' ' }, 0);
+
+   FST<BytesRef> fst;
+   FST.BytesReader fstReader;
+   SynonymWords words;
+
+   final Map<DisjunctionMaxQuery, Set<DisjunctionMaxClause>> addenda = new HashMap<>();
 
-   Map<DisjunctionMaxQuery, Set<DisjunctionMaxClause>> addenda = new HashMap<>();
+   @SuppressWarnings("unchecked")
+   FST.Arc<BytesRef>[] arcs = new FST.Arc[8];
+   BytesRef[] outputs = new BytesRef[8];
+   Term[] terms = new Term[8];
+   int[] parents = new int[8];
+   int size = 0;
 
-   Set<Sequence> sequences = new LinkedHashSet<>();
-   Set<Sequence> addSequences = new LinkedHashSet<>();
+   /**
+    * The first entry of the previous position
+    */
+   int prevStart = 0;
+
+   /**
+    * The first entry of the current position
+    */
+   int curStart = 0;
 
    private DisjunctionMaxQuery currentDmq = null;
-   ByteArrayDataInput bytesReader = new ByteArrayDataInput();
-   private final SynonymMap map;
-   BytesRef scratchBytes = new BytesRef();
+   final ByteArrayDataInput bytesReader = new ByteArrayDataInput();
+   final FST.Arc<BytesRef> scratchArc = new FST.Arc<>();
+   Term[] scratchTerms = new Term[4];
+
+   /**
+    * Use the given synonym FST for the next BooleanQuerys. Pass nulls to release the references to the FST.
+    */
+   void bind(FST<BytesRef> fst, FST.BytesReader fstReader, SynonymWords words) {
+      this.fst = fst;
+      this.fstReader = fstReader;
+      this.words = words;
+   }
 
-   public Sequences(SynonymMap map) {
-      this.fst = map.fst;
-      this.map = map;
+   /**
+    * Prepare this object for the next BooleanQuery. Pending addenda are discarded.
+    */
+   public void reset() {
+      Arrays.fill(terms, 0, size, null);
+      Arrays.fill(outputs, 0, size, null);
+      size = 0;
+      prevStart = 0;
+      curStart = 0;
+      currentDmq = null;
+      addenda.clear();
    }
 
    public void apply() {
@@ -54,26 +98,21 @@ class Sequences {
 
    public void nextPosition(DisjunctionMaxQuery dmq) {
       currentDmq = dmq;
-      sequences = addSequences;
-      addSequences = new LinkedHashSet<>();
+      prevStart = curStart;
+      curStart = size;
    }
 
-   static final int cpBlank = Character.codePointAt(new char[] { ' ' }, 0);
-
    public void appendToSequences(Term term) throws IOException {
 
-      FST.BytesReader fstReader = fst.getBytesReader();
-      FST.Arc<BytesRef> scratchArc = new FST.Arc<>();
-
       boolean ok;
 
-      for (Sequence sequence : sequences) {
+      for (int seq = prevStart; seq < curStart; seq++) {
 
          // try to append a blank after the sequence
-         ok = null != fst.findTargetArc(cpBlank, sequence.arc, scratchArc, fstReader);
+         ok = null != fst.findTargetArc(cpBlank, arcs[seq], scratchArc, fstReader);
          if (ok) {
             // pending contains sequence + ' ' now
-            BytesRef pendingOutput = fst.outputs.add(sequence.output, scratchArc.output);
+            BytesRef pendingOutput = fst.outputs.add(outputs[seq], scratchArc.output);
 
             CharSequence termValue = term.getValue();
 
@@ -91,20 +130,14 @@ class Sequences {
 
             if (ok) {
                // ok means that we could consume the complete term char buffer,
-               // thus,
-               // append it to the sequence
-               List<Term> terms = new LinkedList<>(sequence.terms);
-               terms.add(term);
-               FST.Arc<BytesRef> arc = new FST.Arc<>();
-               Sequence newSequence = new Sequence(arc.copyFrom(scratchArc), terms, pendingOutput);
-               addSequences.add(newSequence);
+               // thus, append it to the sequence
+               int entry = addEntry(scratchArc, term, seq, pendingOutput);
                // however, it might not have consumed the complete dictionary
-               // lookup key (it might
-               // complete at the next term position)
+               // lookup key (it might complete at the next term position)
                if (scratchArc.isFinal()) {
                   // the term completes the lookup key --> output the dictionary
                   // values
-                  newSequence.addOutputs(addenda, map, bytesReader);
+                  addOutputs(entry);
                }
             }
          }
@@ -115,12 +148,9 @@ class Sequences {
 
       appendToSequences(term);
 
-      FST.Arc<BytesRef> scratchArc = new FST.Arc<>();
       fst.getFirstArc(scratchArc);
       BytesRef pendingOutput = fst.outputs.getNoOutput();
 
-      FST.BytesReader fstReader = fst.getBytesReader();
-
       boolean ok = true;
 
       CharSequence termValue = term.getValue();
@@ -137,9 +167,7 @@ class Sequences {
       }
       if (ok) {
 
-         List<Term> terms = Collections.singletonList(term);
-         FST.Arc<BytesRef> arc = new FST.Arc<>();
-         addSequences.add(new Sequence(arc.copyFrom(scratchArc), terms, pendingOutput));
+         addEntry(scratchArc, term, -1, pendingOutput);
 
          if (scratchArc.isFinal()) {
             addOutput(fst.outputs.add(pendingOutput, scratchArc.nextFinalOutput));
@@ -149,6 +177,139 @@ class Sequences {
 
    }
 
+   int addEntry(FST.Arc<BytesRef> arc, Term term, int parent, BytesRef output) {
+      if (size == arcs.length) {
+         int newLength = ArrayUtil.oversize(size + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+         arcs = Arrays.copyOf(arcs, newLength);
+         outputs = Arrays.copyOf(outputs, newLength);
+         terms = Arrays.copyOf(terms, newLength);
+         parents = Arrays.copyOf(parents, newLength);
+      }
+      if (arcs[size] == null) {
+         arcs[size] = new FST.Arc<>();
+      }
+      arcs[size].copyFrom(arc);
+      outputs[size] = output;
+      terms[size] = term;
+      parents[size] = parent;
+      return size++;
+   }
+
+   /**
+    * Copy the terms of the sequence that ends in the given entry into {@link #scratchTerms}
+    *
+    * @return The number of terms
+    */
+   int collectTerms(int entry) {
+      int numTerms = 0;
+      for (int e = entry; e > -1; e = parents[e]) {
+         numTerms++;
+      }
+      if (scratchTerms.length < numTerms) {
+         scratchTerms = new Term[ArrayUtil.oversize(numTerms, RamUsageEstimator.NUM_BYTES_OBJECT_REF)];
+      }
+      int i = numTerms;
+      for (int e = entry; e > -1; e = parents[e]) {
+         scratchTerms[--i] = terms[e];
+      }
+      return numTerms;
+   }
+
+   private Set<DisjunctionMaxClause> getAddenda(DisjunctionMaxQuery dmq) {
+      Set<DisjunctionMaxClause> adds = addenda.get(dmq);
+      if (adds == null) {
+         adds = new LinkedHashSet<>();
+         addenda.put(dmq, adds);
+      }
+      return adds;
+   }
+
+   /**
+    * Add the outputs for a sequence of more than one term. Each term of the sequence gets the replacement in a
+    * BooleanQuery that excludes the sequence.
+    */
+   void addOutputs(int entry) {
+
+      BytesRef finalOutput = fst.outputs.add(outputs[entry], arcs[entry].nextFinalOutput);
+
+      bytesReader.reset(finalOutput.bytes, finalOutput.offset, finalOutput.length);
+
+      final int code = bytesReader.readVInt();
+      // final boolean keepOrig = (code & 0x1) == 0;
+      final int count = code >>> 1;
+
+      final int numTerms = collectTerms(entry);
+
+      // iterate over all possible outputs
+      for (int outputIDX = 0; outputIDX < count; outputIDX++) {
+
+         char[] chars = words.get(bytesReader.readVInt());
+
+         boolean replacementIsMultiTerm = false;
+         // ignore ' ' at beginning and end
+         for (int i = 1; i < chars.length - 1 && !replacementIsMultiTerm; i++) {
+            replacementIsMultiTerm = chars[i] == ' ';
+         }
+
+         // iterate through all input terms
+         for (int t = 0; t < numTerms; t++) {
+
+            DisjunctionMaxQuery termDmq = scratchTerms[t].getParent();
+
+            BooleanQuery add = new BooleanQuery(termDmq, Occur.SHOULD, true);
+
+            if (replacementIsMultiTerm) {
+               BooleanQuery replaceSeq = new BooleanQuery(add, Occur.MUST, true);
+
+               int start = 0;
+               for (int i = 0; i < chars.length; i++) {
+                  if (chars[i] == ' ' && (i > start)) {
+                     DisjunctionMaxQuery newDmq = new DisjunctionMaxQuery(replaceSeq, Occur.MUST, true);
+                     newDmq.addClause(new Term(newDmq, new SimpleComparableCharSequence(chars, start, i - start)));
+                     replaceSeq.addClause(newDmq);
+                     start = i + 1;
+                  }
+               }
+
+               if (start < chars.length) {
+                  DisjunctionMaxQuery newDmq = new DisjunctionMaxQuery(replaceSeq, Occur.MUST, true);
+                  newDmq.addClause(new Term(newDmq, new SimpleComparableCharSequence(chars, start,
+                        chars.length - start)));
+                  replaceSeq.addClause(newDmq);
+               }
+
+               add.addClause(replaceSeq);
+
+            } else {
+
+               DisjunctionMaxQuery replaceDmq = new DisjunctionMaxQuery(add, Occur.MUST, true);
+               replaceDmq.addClause(new Term(replaceDmq, new SimpleComparableCharSequence(chars, 0,
+                     chars.length)));
+               add.addClause(replaceDmq);
+            }
+
+            BooleanQuery neq = new BooleanQuery(add, Occur.MUST_NOT, true);
+
+            for (int n = 0; n < numTerms; n++) {
+               DisjunctionMaxQuery neqDmq = new DisjunctionMaxQuery(neq, Occur.MUST, true);
+               neqDmq.addClause(scratchTerms[n].clone(neqDmq, true));
+               neq.addClause(neqDmq);
+            }
+
+            add.addClause(neq);
+
+            getAddenda(termDmq).add(add);
+
+         }
+
+      }
+
+      Arrays.fill(scratchTerms, 0, numTerms, null);
+   }
+
+   /**
+    * Add the outputs for a single term to the current DMQ
+    */
    private void addOutput(BytesRef bytes) {
 
       bytesReader.reset(bytes.bytes, bytes.offset, bytes.length);
@@ -157,47 +318,38 @@ class Sequences {
       // final boolean keepOrig = (code & 0x1) == 0;
       final int count = code >>> 1;
 
-      Set<DisjunctionMaxClause> adds = addenda.get(currentDmq);
-      if (adds == null) {
-         adds = new LinkedHashSet<>();
-         addenda.put(currentDmq, adds);
-      }
+      Set<DisjunctionMaxClause> adds = getAddenda(currentDmq);
 
       for (int outputIDX = 0; outputIDX < count; outputIDX++) {
 
-         map.words.get(bytesReader.readVInt(), scratchBytes);
-         // not re-using scratchChars globally -> would have to copy to Terms
-         // anyway
-         char[] scratchChars = new char[scratchBytes.length];
-         UnicodeUtil.UTF8toUTF16(scratchBytes, scratchChars);
+         char[] chars = words.get(bytesReader.readVInt());
 
          BooleanQuery add = null;
 
          int start = 0;
-         for (int i = 0; i < scratchChars.length; i++) {
-            if (scratchChars[i] == ' ' && (i > start)) {
+         for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == ' ' && (i > start)) {
                if (add == null) {
                   add = new BooleanQuery(currentDmq, Occur.SHOULD, true);
                }
                DisjunctionMaxQuery newDmq = new DisjunctionMaxQuery(add, Occur.MUST, true);
                newDmq.addClause(new Term(newDmq,
-                     new SimpleComparableCharSequence(scratchChars, start, i - start), true));
+                     new SimpleComparableCharSequence(chars, start, i - start), true));
                add.addClause(newDmq);
                start = i + 1;
             }
          }
 
          if (add != null) {
-            if (start < scratchChars.length) {
+            if (start < chars.length) {
                DisjunctionMaxQuery newDmq = new DisjunctionMaxQuery(add, Occur.MUST, true);
-               newDmq.addClause(new Term(newDmq, new SimpleComparableCharSequence(scratchChars, start,
-                     scratchChars.length - start), true));
+               newDmq.addClause(new Term(newDmq, new SimpleComparableCharSequence(chars, start,
+                     chars.length - start), true));
                add.addClause(newDmq);
             }
             adds.add(add);
          } else {
-            adds.add(new Term(currentDmq, new SimpleComparableCharSequence(scratchChars, 0, scratchChars.length),
-                  true));
+            adds.add(new Term(currentDmq, new SimpleComparableCharSequence(chars, 0, chars.length), true));
          }
 
       }
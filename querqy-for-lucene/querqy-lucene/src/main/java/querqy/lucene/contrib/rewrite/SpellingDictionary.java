@@ -0,0 +1,206 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * <p>The terms of an index field and their document frequencies, kept in a compact in-memory {@link FST} over the
+ * UTF-8 bytes of the terms.</p>
+ *
+ * <p>The dictionary is immutable and thread-safe. It should be built once per index reader.</p>
+ */
+public class SpellingDictionary {
+
+    /**
+     * A term of the dictionary that was found by {@link SpellingDictionary#collect(ByteRunAutomaton, List)}
+     */
+    public static class Entry {
+
+        final String term;
+        final long docFreq;
+
+        public Entry(String term, long docFreq) {
+            this.term = term;
+            this.docFreq = docFreq;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public long getDocFreq() {
+            return docFreq;
+        }
+
+        @Override
+        public String toString() {
+            return term + ":" + docFreq;
+        }
+    }
+
+    final FST<Long> fst;
+
+    /**
+     *
+     * @param fst Maps the UTF-8 bytes of the terms to their document frequency, can be null for an empty dictionary
+     */
+    public SpellingDictionary(FST<Long> fst) {
+        this.fst = fst;
+    }
+
+    /**
+     * Build a dictionary from the terms of an index field.
+     *
+     * @param reader The index reader
+     * @param field The name of the field
+     * @param minDocFreq Only add terms that occur in at least this number of documents
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static SpellingDictionary forField(IndexReader reader, String field, int minDocFreq) throws IOException {
+        return build(MultiFields.getTerms(reader, field), minDocFreq);
+    }
+
+    /**
+     * Build a dictionary from terms.
+     *
+     * @param terms The terms, can be null
+     * @param minDocFreq Only add terms that occur in at least this number of documents
+     * @return The dictionary
+     * @throws IOException
+     */
+    public static SpellingDictionary build(Terms terms, int minDocFreq) throws IOException {
+        if (terms == null) {
+            return new SpellingDictionary(null);
+        }
+
+        Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+
+        // the TermsEnum returns the terms in byte order, which is the order that the FST builder requires
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            int docFreq = termsEnum.docFreq();
+            if (docFreq >= minDocFreq) {
+                builder.add(Util.toIntsRef(term, scratch), (long) docFreq);
+            }
+        }
+
+        return new SpellingDictionary(builder.finish());
+    }
+
+    public boolean isEmpty() {
+        return fst == null;
+    }
+
+    /**
+     *
+     * @param term The term
+     * @return The document frequency of the term, or 0 if the term is not contained in the dictionary
+     */
+    public long getDocFreq(CharSequence term) {
+        if (fst == null) {
+            return 0L;
+        }
+        BytesRefBuilder bytes = new BytesRefBuilder();
+        bytes.copyChars(term);
+        try {
+            Long docFreq = Util.get(fst, bytes.get());
+            return docFreq == null ? 0L : docFreq;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Collect all terms that are accepted by an automaton by intersecting the automaton with the FST. Only the
+     * paths of the FST that the automaton can still accept are followed.
+     *
+     * @param automaton An automaton over UTF-8 bytes
+     * @param entries Receives the terms and their document frequencies
+     */
+    public void collect(ByteRunAutomaton automaton, List<Entry> entries) {
+        if (fst == null) {
+            return;
+        }
+        try {
+            new Intersection(automaton, entries).collect();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The state of a single intersection of an automaton with the FST
+     */
+    class Intersection {
+
+        final ByteRunAutomaton automaton;
+        final List<Entry> entries;
+        final FST.BytesReader fstReader = fst.getBytesReader();
+        final List<FST.Arc<Long>> arcs = new ArrayList<>();
+        final BytesRefBuilder bytes = new BytesRefBuilder();
+
+        Intersection(ByteRunAutomaton automaton, List<Entry> entries) {
+            this.automaton = automaton;
+            this.entries = entries;
+        }
+
+        void collect() throws IOException {
+            FST.Arc<Long> root = fst.getFirstArc(new FST.Arc<Long>());
+            collect(root, automaton.getInitialState(), 0L, 0);
+        }
+
+        void collect(FST.Arc<Long> parent, int state, long output, int depth) throws IOException {
+
+            if (!FST.targetHasArcs(parent)) {
+                return;
+            }
+
+            if (arcs.size() == depth) {
+                arcs.add(new FST.Arc<Long>());
+            }
+            FST.Arc<Long> arc = fst.readFirstTargetArc(parent, arcs.get(depth), fstReader);
+
+            while (true) {
+
+                if (arc.label != FST.END_LABEL) {
+                    int next = automaton.step(state, arc.label);
+                    if (next != -1) {
+                        long arcOutput = output + arc.output;
+                        bytes.setLength(depth);
+                        bytes.append((byte) arc.label);
+                        if (arc.isFinal() && automaton.isAccept(next)) {
+                            entries.add(new Entry(bytes.get().utf8ToString(), arcOutput + arc.nextFinalOutput));
+                        }
+                        collect(arc, next, arcOutput, depth + 1);
+                    }
+                }
+
+                if (arc.isLast()) {
+                    break;
+                }
+                fst.readNextArc(arc, fstReader);
+            }
+        }
+    }
+
+}
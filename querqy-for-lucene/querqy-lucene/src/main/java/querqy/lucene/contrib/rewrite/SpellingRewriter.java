@@ -0,0 +1,199 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+
+import querqy.model.AbstractNodeVisitor;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Node;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+
+/**
+ * <p>A query rewriter that adds spelling corrections for query terms that are not contained in a
+ * {@link SpellingDictionary}.</p>
+ *
+ * <p>The corrections are found by intersecting a Levenshtein automaton of the term with the dictionary, starting
+ * with an edit distance of 1 and only trying larger distances up to maxEdits if nothing was found. Corrections
+ * with the same distance are ranked by their document frequency. The corrections are added to the DMQ of the
+ * misspelled term as generated terms, which makes a second request with a corrected query unnecessary.</p>
+ *
+ * <p>The corrections per term are cached. The cache is bound to the rewriter instance, which should thus be
+ * created per dictionary and shared by all requests. The rewriter is thread-safe.</p>
+ */
+public class SpellingRewriter implements QueryRewriter {
+
+    public static final int DEFAULT_MAX_EDITS = LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE;
+    public static final int DEFAULT_MIN_PREFIX_LENGTH = 1;
+    public static final int DEFAULT_MIN_TERM_LENGTH = 4;
+    public static final int DEFAULT_MAX_CORRECTIONS = 1;
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    static final String[] NO_CORRECTIONS = new String[0];
+
+    static final Comparator<SpellingDictionary.Entry> BY_DOC_FREQ = new Comparator<SpellingDictionary.Entry>() {
+        @Override
+        public int compare(SpellingDictionary.Entry e1, SpellingDictionary.Entry e2) {
+            int c = Long.compare(e2.docFreq, e1.docFreq);
+            return c != 0 ? c : e1.term.compareTo(e2.term);
+        }
+    };
+
+    final SpellingDictionary dictionary;
+    final int maxEdits;
+    final int minPrefixLength;
+    final int minTermLength;
+    final int maxCorrections;
+    final int cacheSize;
+    final ConcurrentMap<String, String[]> cache;
+
+    /**
+     *
+     * @param dictionary The dictionary
+     * @param maxEdits The maximum edit distance between a term and its correction (1 or 2)
+     * @param minPrefixLength The number of leading characters that must not differ between a term and its
+     *                        correction. A larger prefix makes the lookup faster.
+     * @param minTermLength Only correct terms that have at least this number of characters
+     * @param maxCorrections The maximum number of corrections per term
+     * @param cacheSize The maximum number of terms for which the corrections are cached, 0 disables the cache
+     */
+    public SpellingRewriter(SpellingDictionary dictionary, int maxEdits, int minPrefixLength, int minTermLength,
+            int maxCorrections, int cacheSize) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("dictionary must not be null");
+        }
+        if (maxEdits < 1 || maxEdits > LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
+            throw new IllegalArgumentException("maxEdits must be between 1 and "
+                    + LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE);
+        }
+        if (minPrefixLength < 0) {
+            throw new IllegalArgumentException("minPrefixLength must be >= 0");
+        }
+        if (maxCorrections < 1) {
+            throw new IllegalArgumentException("maxCorrections must be > 0");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must be >= 0");
+        }
+        this.dictionary = dictionary;
+        this.maxEdits = maxEdits;
+        this.minPrefixLength = minPrefixLength;
+        this.minTermLength = minTermLength;
+        this.maxCorrections = maxCorrections;
+        this.cacheSize = cacheSize;
+        this.cache = cacheSize > 0 ? new ConcurrentHashMap<String, String[]>() : null;
+    }
+
+    @Override
+    public ExpandedQuery rewrite(ExpandedQuery query) {
+        Query userQuery = query.getUserQuery();
+        if (userQuery != null && !dictionary.isEmpty()) {
+            new Corrector().correct(userQuery);
+        }
+        return query;
+    }
+
+    /**
+     * Get the corrections for a term.
+     *
+     * @param value The term
+     * @return The corrections, best correction first. Empty if the term is contained in the dictionary or if no
+     * correction was found.
+     */
+    public String[] getCorrections(CharSequence value) {
+
+        int length = value.length();
+        if (length < minTermLength || length <= minPrefixLength) {
+            return NO_CORRECTIONS;
+        }
+
+        String term = value.toString();
+
+        if (cache != null) {
+            String[] corrections = cache.get(term);
+            if (corrections != null) {
+                return corrections;
+            }
+        }
+
+        String[] corrections = findCorrections(term);
+
+        if (cache != null) {
+            if (cache.size() >= cacheSize) {
+                // simple but cheap eviction: the cache only needs to absorb the head of the query distribution
+                cache.clear();
+            }
+            cache.put(term, corrections);
+        }
+
+        return corrections;
+    }
+
+    String[] findCorrections(String term) {
+
+        if (dictionary.getDocFreq(term) > 0L) {
+            return NO_CORRECTIONS;
+        }
+
+        int prefixEnd = term.offsetByCodePoints(0, Math.min(minPrefixLength, term.codePointCount(0, term.length())));
+        LevenshteinAutomata levenshteinAutomata = new LevenshteinAutomata(term.substring(prefixEnd), true);
+        String prefix = term.substring(0, prefixEnd);
+
+        List<SpellingDictionary.Entry> entries = new ArrayList<>();
+
+        for (int edits = 1; edits <= maxEdits && entries.isEmpty(); edits++) {
+            dictionary.collect(new ByteRunAutomaton(levenshteinAutomata.toAutomaton(edits, prefix)), entries);
+        }
+
+        if (entries.isEmpty()) {
+            return NO_CORRECTIONS;
+        }
+
+        Collections.sort(entries, BY_DOC_FREQ);
+
+        String[] corrections = new String[Math.min(maxCorrections, entries.size())];
+        for (int i = 0; i < corrections.length; i++) {
+            corrections[i] = entries.get(i).term;
+        }
+        return corrections;
+    }
+
+    /**
+     * The state of a single call to {@link SpellingRewriter#rewrite(ExpandedQuery)}
+     */
+    class Corrector extends AbstractNodeVisitor<Node> {
+
+        final List<Term> termsToAdd = new ArrayList<>();
+
+        void correct(Query userQuery) {
+            visit(userQuery);
+            for (Term term : termsToAdd) {
+                term.getParent().addClause(term);
+            }
+        }
+
+        @Override
+        public Node visit(Term term) {
+            if (!term.isGenerated()) {
+                DisjunctionMaxQuery dmq = term.getParent();
+                for (String correction : getCorrections(term.getValue())) {
+                    termsToAdd.add(new Term(dmq, term.getField(), correction, true));
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.util.Map;
+import java.util.Set;
+
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.RewriterFactory;
+
+/**
+ * Factory for a {@link SpellingRewriter} over a fixed {@link SpellingDictionary}
+ */
+public class SpellingRewriterFactory implements RewriterFactory {
+
+    protected final SpellingRewriter rewriter;
+
+    /**
+     * @see SpellingRewriter#SpellingRewriter(SpellingDictionary, int, int, int, int, int)
+     */
+    public SpellingRewriterFactory(SpellingDictionary dictionary, int maxEdits, int minPrefixLength,
+            int minTermLength, int maxCorrections, int cacheSize) {
+        // the rewriter is thread-safe and shares its correction cache between all requests
+        rewriter = new SpellingRewriter(dictionary, maxEdits, minPrefixLength, minTermLength, maxCorrections,
+                cacheSize);
+    }
+
+    @Override
+    public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+        return rewriter;
+    }
+
+    @Override
+    public Set<Term> getGenerableTerms() {
+        return QueryRewriter.EMPTY_GENERABLE_TERMS;
+    }
+
+}
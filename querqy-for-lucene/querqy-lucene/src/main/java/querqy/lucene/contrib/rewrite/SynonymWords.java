@@ -0,0 +1,46 @@
+/**
+ * 
+ */
+package querqy.lucene.contrib.rewrite;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.UnicodeUtil;
+
+/**
+ * <p>Decodes the output words of a {@link SynonymMap} into chars and caches them by word ord, so that a synonym
+ * that is hit by many queries is only decoded once.</p>
+ *
+ * <p>The cached char arrays are shared by the {@link querqy.model.Term}s created from them and must not be
+ * modified. This class is thread-safe. Concurrent misses for the same ord might decode the word more than once.</p>
+ */
+class SynonymWords {
+
+   final BytesRefHash words;
+   final AtomicReferenceArray<char[]> cache;
+
+   SynonymWords(SynonymMap map) {
+      this.words = map.words;
+      this.cache = new AtomicReferenceArray<>(map.words.size());
+   }
+
+   char[] get(int ord) {
+      char[] chars = cache.get(ord);
+      if (chars == null) {
+         BytesRef bytes = new BytesRef();
+         words.get(ord, bytes);
+         chars = new char[bytes.length];
+         int length = UnicodeUtil.UTF8toUTF16(bytes, chars);
+         if (length < chars.length) {
+            chars = Arrays.copyOf(chars, length);
+         }
+         cache.set(ord, chars);
+      }
+      return chars;
+   }
+
+}
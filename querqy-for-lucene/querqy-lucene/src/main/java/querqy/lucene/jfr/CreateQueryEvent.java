@@ -0,0 +1,24 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creating a Lucene query from the Querqy query model.
+ */
+@Name("querqy.CreateQuery")
+@Label("Querqy Create Lucene Query")
+@Category("Querqy")
+@Description("Creating a Lucene query from the Querqy query model (LuceneQueryBuilder.createQuery)")
+class CreateQueryEvent extends jdk.jfr.Event {
+
+    @Label("Clauses")
+    @Description("The number of top-level clauses of the Querqy query")
+    int clauses;
+
+}
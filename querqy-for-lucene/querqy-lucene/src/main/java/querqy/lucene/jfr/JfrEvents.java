@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+/**
+ * Creates and commits the JFR events. This class must only be loaded if {@link QuerqyEvents#isAvailable()}.
+ */
+class JfrEvents {
+
+    static Object beginParse() {
+        ParseEvent event = new ParseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitParse(Object e, int queryLength, int clauses) {
+        ParseEvent event = (ParseEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.queryLength = queryLength;
+            event.clauses = clauses;
+            event.commit();
+        }
+    }
+
+    static Object beginRewrite() {
+        RewriteEvent event = new RewriteEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitRewrite(Object e, int rewriterIndex, String rewriterFactory, int clausesBefore,
+            int clausesAfter, int actions) {
+        RewriteEvent event = (RewriteEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.rewriterIndex = rewriterIndex;
+            event.rewriterFactory = rewriterFactory;
+            event.clausesBefore = clausesBefore;
+            event.clausesAfter = clausesAfter;
+            event.actions = actions;
+            event.commit();
+        }
+    }
+
+    static Object beginCreateQuery() {
+        CreateQueryEvent event = new CreateQueryEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitCreateQuery(Object e, int clauses) {
+        CreateQueryEvent event = (CreateQueryEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.clauses = clauses;
+            event.commit();
+        }
+    }
+
+    static Object beginTermContexts() {
+        TermContextsEvent event = new TermContextsEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitTermContexts(Object e, int terms, int clauses) {
+        TermContextsEvent event = (TermContextsEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.terms = terms;
+            event.clauses = clauses;
+            event.commit();
+        }
+    }
+
+    static Object beginTermQueryCacheLookup() {
+        TermQueryCacheLookupEvent event = new TermQueryCacheLookupEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitTermQueryCacheLookup(Object e, String field, boolean hit) {
+        TermQueryCacheLookupEvent event = (TermQueryCacheLookupEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.field = field;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import java.util.Map;
+
+import querqy.model.ExpandedQuery;
+import querqy.rewrite.RewriteTracer;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+
+/**
+ * <p>A {@link RewriteTracer} that emits a JFR event per rewriter.</p>
+ *
+ * <p>The in-flight event is kept in the state object that the {@link querqy.rewrite.RewriteChain} passes from
+ * {@link #beforeRewrite(int, RewriterFactory, ExpandedQuery, Map)} to
+ * {@link #afterRewrite(Object, int, RewriterFactory, ExpandedQuery, Map)}. To report the number of actions that
+ * a common rules rewriter applied, the tracer asks for them under {@link CommonRulesRewriter#ACTIONS_CONTEXT_KEY}
+ * in the rewrite context, but only if the caller didn't ask for them itself, and it removes the key again after
+ * the rewriter. The number of actions is not reported if there is no rewrite context.</p>
+ */
+public class JfrRewriteTracer implements RewriteTracer {
+
+    /**
+     * The state between beforeRewrite and afterRewrite
+     */
+    static class State {
+        final Object event;
+        final int clausesBefore;
+        final boolean addedActionsKey;
+
+        State(Object event, int clausesBefore, boolean addedActionsKey) {
+            this.event = event;
+            this.clausesBefore = clausesBefore;
+            this.addedActionsKey = addedActionsKey;
+        }
+    }
+
+    @Override
+    public Object beforeRewrite(int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+            Map<String, Object> context) {
+        Object event = QuerqyEvents.beginRewrite();
+        if (event == null) {
+            return null;
+        }
+        boolean addedActionsKey = false;
+        if (context != null && !context.containsKey(CommonRulesRewriter.ACTIONS_CONTEXT_KEY)) {
+            // ask a common rules rewriter to report the number of applied actions
+            context.put(CommonRulesRewriter.ACTIONS_CONTEXT_KEY, -1);
+            addedActionsKey = true;
+        }
+        return new State(event, QuerqyEvents.countClauses(query.getUserQuery()), addedActionsKey);
+    }
+
+    @Override
+    public void afterRewrite(Object state, int rewriterIndex, RewriterFactory factory, ExpandedQuery query,
+            Map<String, Object> context) {
+
+        if (state == null) {
+            return;
+        }
+
+        State s = (State) state;
+
+        int actions = -1;
+        if (context != null) {
+            Object contextActions = s.addedActionsKey
+                    ? context.remove(CommonRulesRewriter.ACTIONS_CONTEXT_KEY)
+                    : context.get(CommonRulesRewriter.ACTIONS_CONTEXT_KEY);
+            if (contextActions instanceof Integer) {
+                actions = (Integer) contextActions;
+            }
+        }
+
+        QuerqyEvents.commitRewrite(s.event, rewriterIndex, factory.getClass().getName(), s.clausesBefore,
+                QuerqyEvents.countClauses(query.getUserQuery()), actions);
+    }
+
+}
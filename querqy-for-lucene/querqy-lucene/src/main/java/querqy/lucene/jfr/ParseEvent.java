@@ -0,0 +1,27 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Parsing a query string into the Querqy query model.
+ */
+@Name("querqy.Parse")
+@Label("Querqy Parse")
+@Category("Querqy")
+@Description("Parsing the query string into the Querqy query model")
+class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Query Length")
+    int queryLength;
+
+    @Label("Clauses")
+    @Description("The number of top-level clauses of the parsed query")
+    int clauses;
+
+}
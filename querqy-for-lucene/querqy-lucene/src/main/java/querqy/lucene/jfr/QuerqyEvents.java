@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import querqy.model.BooleanQuery;
+import querqy.model.QuerqyQuery;
+
+/**
+ * <p>Emits Java Flight Recorder events for the Querqy query pipeline.</p>
+ *
+ * <p>The begin methods return null if the Java runtime does not support JFR events or if the event is not enabled in
+ * the current recording. The commit methods do nothing for a null event. Callers can thus use the following
+ * pattern, which is close to free if no recording is running:</p>
+ * <pre>
+ *     Object event = QuerqyEvents.beginCreateQuery();
+ *     ... // do the work
+ *     QuerqyEvents.commitCreateQuery(event, clauses);
+ * </pre>
+ *
+ * <p>The JFR event classes are only loaded if the runtime provides the jdk.jfr API, which makes it safe to use this
+ * class on Java versions without JFR events.</p>
+ */
+public final class QuerqyEvents {
+
+    static final boolean AVAILABLE = isJfrAvailable();
+
+    private QuerqyEvents() {
+    }
+
+    static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     *
+     * @return true iff the Java runtime supports JFR events
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static Object beginParse() {
+        return AVAILABLE ? JfrEvents.beginParse() : null;
+    }
+
+    public static void commitParse(Object event, int queryLength, int clauses) {
+        if (event != null) {
+            JfrEvents.commitParse(event, queryLength, clauses);
+        }
+    }
+
+    public static Object beginRewrite() {
+        return AVAILABLE ? JfrEvents.beginRewrite() : null;
+    }
+
+    public static void commitRewrite(Object event, int rewriterIndex, String rewriterFactory, int clausesBefore,
+            int clausesAfter, int actions) {
+        if (event != null) {
+            JfrEvents.commitRewrite(event, rewriterIndex, rewriterFactory, clausesBefore, clausesAfter, actions);
+        }
+    }
+
+    public static Object beginCreateQuery() {
+        return AVAILABLE ? JfrEvents.beginCreateQuery() : null;
+    }
+
+    public static void commitCreateQuery(Object event, int clauses) {
+        if (event != null) {
+            JfrEvents.commitCreateQuery(event, clauses);
+        }
+    }
+
+    public static Object beginTermContexts() {
+        return AVAILABLE ? JfrEvents.beginTermContexts() : null;
+    }
+
+    public static void commitTermContexts(Object event, int terms, int clauses) {
+        if (event != null) {
+            JfrEvents.commitTermContexts(event, terms, clauses);
+        }
+    }
+
+    public static Object beginTermQueryCacheLookup() {
+        return AVAILABLE ? JfrEvents.beginTermQueryCacheLookup() : null;
+    }
+
+    public static void commitTermQueryCacheLookup(Object event, String field, boolean hit) {
+        if (event != null) {
+            JfrEvents.commitTermQueryCacheLookup(event, field, hit);
+        }
+    }
+
+    /**
+     *
+     * @param query A query
+     * @return The number of top-level clauses if the query is a {@link BooleanQuery}, 1 for other queries, 0 for null
+     */
+    public static int countClauses(QuerqyQuery<?> query) {
+        if (query == null) {
+            return 0;
+        }
+        return (query instanceof BooleanQuery) ? ((BooleanQuery) query).getClauses().size() : 1;
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creating a rewriter and rewriting the query with it.
+ */
+@Name("querqy.Rewrite")
+@Label("Querqy Rewrite")
+@Category("Querqy")
+@Description("Creating a rewriter of the rewrite chain and rewriting the query with it")
+class RewriteEvent extends jdk.jfr.Event {
+
+    @Label("Rewriter Index")
+    int rewriterIndex;
+
+    @Label("Rewriter Factory")
+    String rewriterFactory;
+
+    @Label("Clauses Before")
+    @Description("The number of top-level clauses of the user query before rewriting")
+    int clausesBefore;
+
+    @Label("Clauses After")
+    @Description("The number of top-level clauses of the user query after rewriting")
+    int clausesAfter;
+
+    @Label("Rule Actions")
+    @Description("The number of rule actions that were applied by a common rules rewriter, -1 for other rewriters")
+    int actions;
+
+}
@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Calculating the document frequencies and term contexts for the document frequency correction.
+ */
+@Name("querqy.TermContexts")
+@Label("Querqy Document Frequency Correction")
+@Category("Querqy")
+@Description("Looking up the document frequencies and term contexts of all query terms")
+class TermContextsEvent extends jdk.jfr.Event {
+
+    @Label("Terms")
+    int terms;
+
+    @Label("Clauses")
+    int clauses;
+
+}
@@ -0,0 +1,24 @@
+/**
+ *
+ */
+package querqy.lucene.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A lookup in the term query cache.
+ */
+@Name("querqy.TermQueryCacheLookup")
+@Label("Querqy Term Query Cache Lookup")
+@Category("Querqy")
+class TermQueryCacheLookupEvent extends jdk.jfr.Event {
+
+    @Label("Field")
+    String field;
+
+    @Label("Hit")
+    boolean hit;
+
+}
@@ -8,11 +8,20 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import querqy.lucene.jfr.QuerqyEvents;
+import querqy.rewrite.RewriteMetrics;
+
 /**
  * Created by rene on 10/09/2016.
  */
 public abstract class AbstractDocumentFrequencyAndTermContextProvider implements DocumentFrequencyAndTermContextProvider {
 
+    /**
+     * The name of the phase under which the time for calculating the term contexts is recorded
+     * (see {@link #setMetrics(RewriteMetrics)})
+     */
+    public static final String PHASE_TERM_CONTEXTS = "dfc";
+
     final List<Term> terms = new ArrayList<>(16);
     enum Status {
         USER_QUERY, OTHER_QUERY
@@ -25,6 +34,7 @@ public abstract class AbstractDocumentFrequencyAndTermContextProvider implements
     protected int maxInClause = -1;
     protected int maxInUserQuery = -1;
     int termIndex = -1;
+    protected RewriteMetrics metrics = null;
 
 
     protected abstract TermStats doCalculateTermContexts(IndexSearcher searcher) throws IOException;
@@ -65,8 +75,30 @@ public abstract class AbstractDocumentFrequencyAndTermContextProvider implements
 
     protected TermStats calculateTermContexts(IndexSearcher searcher) throws IOException {
 
-        return setTermStats(doCalculateTermContexts(searcher));
+        final Object event = QuerqyEvents.beginTermContexts();
+
+        final TermStats ts;
+        if (metrics == null) {
+            ts = setTermStats(doCalculateTermContexts(searcher));
+        } else {
+            final long startNanos = System.nanoTime();
+            ts = setTermStats(doCalculateTermContexts(searcher));
+            metrics.recordPhaseLatency(PHASE_TERM_CONTEXTS, System.nanoTime() - startNanos);
+        }
 
+        QuerqyEvents.commitTermContexts(event, terms.size(), clauseOffsets.size());
+
+        return ts;
+
+    }
+
+    /**
+     * Record the time for calculating the term contexts under {@link #PHASE_TERM_CONTEXTS}.
+     *
+     * @param metrics The metrics or null to disable recording
+     */
+    public void setMetrics(RewriteMetrics metrics) {
+        this.metrics = metrics;
     }
 
     private synchronized TermStats setTermStats(final TermStats ts) {
@@ -11,6 +11,7 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.Query;
 
 import querqy.CompoundCharSequence;
+import querqy.lucene.jfr.QuerqyEvents;
 import querqy.lucene.rewrite.BooleanQueryFactory.Clause;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.model.AbstractNodeVisitor;
@@ -98,11 +99,17 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
    
    public Query createQuery(querqy.model.Query query) throws IOException {
 
+       final Object event = QuerqyEvents.beginCreateQuery();
+
        LuceneQueryFactory<?> factory = visit(query);
 
        factory.prepareDocumentFrequencyCorrection(dftcp, false);
 
-       return factory.createQuery(null, dmqTieBreakerMultiplier, dftcp);
+       final Query luceneQuery = factory.createQuery(null, dmqTieBreakerMultiplier, dftcp);
+
+       QuerqyEvents.commitCreateQuery(event, QuerqyEvents.countClauses(query));
+
+       return luceneQuery;
    }
 
    @Override
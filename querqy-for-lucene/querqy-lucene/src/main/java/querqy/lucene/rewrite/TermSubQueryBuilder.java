@@ -16,6 +16,7 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.util.BytesRef;
 
+import querqy.lucene.jfr.QuerqyEvents;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
@@ -48,7 +49,9 @@ public class TermSubQueryBuilder {
             
             cacheKey = new CacheKey(fieldname, sourceTerm);
            
+            final Object event = QuerqyEvents.beginTermQueryCacheLookup();
             TermQueryCacheValue cacheValue = termQueryCache.get(cacheKey);
+            QuerqyEvents.commitTermQueryCacheLookup(event, fieldname, cacheValue != null);
             if (cacheValue != null) {
                 // The cache references factories with pre-analyzed terms, or cache entries without a
                 // query factory if the term does not exist in the index. cacheValue.hasQuery() returns
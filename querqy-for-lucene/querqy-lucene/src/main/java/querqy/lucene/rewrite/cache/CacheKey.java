@@ -5,6 +5,7 @@ package querqy.lucene.rewrite.cache;
 
 import querqy.CharSequenceUtil;
 import querqy.ComparableCharSequence;
+import querqy.CompoundCharSequence;
 import querqy.model.Term;
 
 /**
@@ -16,21 +17,27 @@ public class CacheKey {
     public final String fieldname;
    // public final Term term;
     protected final ComparableCharSequence value;
+    private final int hashCode;
     
     public CacheKey(String fieldname, Term term) {
         this.fieldname = fieldname;
        // this.term = term;
-        value = term.getValue();
-    }
-
-    @Override
-    public int hashCode() {
+        ComparableCharSequence termValue = term.getValue();
+        // keys are hashed and compared many times, avoid looking up the parts of a compound value each time
+        value = (termValue instanceof CompoundCharSequence)
+                ? ((CompoundCharSequence) termValue).flatten() : termValue;
+        
         final int prime = 31;
         int result = 1;
         result = prime * result
                 + ((fieldname == null) ? 0 : fieldname.hashCode());
         result = prime * result + ((value == null) ? 0 : CharSequenceUtil.hashCode(value));
-        return result;
+        hashCode = result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
     }
 
     @Override
@@ -42,6 +49,8 @@ public class CacheKey {
         if (getClass() != obj.getClass())
             return false;
         CacheKey other = (CacheKey) obj;
+        if (hashCode != other.hashCode)
+            return false;
         if (fieldname == null) {
             if (other.fieldname != null)
                 return false;
@@ -4,7 +4,9 @@ import static querqy.QuerqyMatchers.bq;
 import static querqy.QuerqyMatchers.dmq;
 import static querqy.QuerqyMatchers.term;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.MockTokenizer;
@@ -36,6 +38,11 @@ public class AnalyzingQuerqyParserTest extends LuceneTestCase {
     */
    private Analyzer synonymAnalyzer;
 
+   /**
+    * Number of runs of the synonym analyzer.
+    */
+   private final AtomicInteger synonymAnalyzerRuns = new AtomicInteger();
+
    @Before
    public void createAnalyzers() throws Exception {
       queryAnalyzer = new Analyzer() {
@@ -51,11 +58,21 @@ public class AnalyzingQuerqyParserTest extends LuceneTestCase {
       builder.add(new CharsRef("test"), new CharsRef("synonym2"), false);
       final SynonymMap synonyms = builder.build();
 
-      synonymAnalyzer = new Analyzer() {
+      synonymAnalyzer = createSynonymAnalyzer(synonyms);
+   }
+
+   private Analyzer createSynonymAnalyzer(final SynonymMap synonyms) {
+      return new Analyzer() {
          @Override
          protected TokenStreamComponents createComponents(String fieldName) {
             // White space tokenizer, to lower case tokenizer.
-            MockTokenizer tokenizer = new MockTokenizer();
+            MockTokenizer tokenizer = new MockTokenizer() {
+               @Override
+               public void reset() throws IOException {
+                  super.reset();
+                  synonymAnalyzerRuns.incrementAndGet();
+               }
+            };
             // Filter for adding synonyms
             TokenStream result = new SynonymFilter(tokenizer, synonyms, true);
             // Filter all non-synonyms, because the synonym filter outputs the
@@ -90,4 +107,61 @@ public class AnalyzingQuerqyParserTest extends LuceneTestCase {
       // defined for it.
       assertThat(query, bq(dmq(term("test"), term("synonym1"), term("synonym2")), dmq(term("dummy"))));
    }
+
+   /**
+    * Test for {@link AnalyzingQuerqyParser#parse(String)} with cached synonyms.
+    */
+   @Test
+   public void parse_withSynonymCache() {
+      SynonymCache cache = new SynonymCache(100);
+
+      Query query = new AnalyzingQuerqyParser(queryAnalyzer, synonymAnalyzer, cache).parse("test dummy test");
+      assertThat(query, bq(dmq(term("test"), term("synonym1"), term("synonym2")), dmq(term("dummy")),
+            dmq(term("test"), term("synonym1"), term("synonym2"))));
+      assertEquals(2, synonymAnalyzerRuns.get());
+      assertEquals(2, cache.size());
+
+      query = new AnalyzingQuerqyParser(queryAnalyzer, synonymAnalyzer, cache).parse("dummy test");
+      assertThat(query, bq(dmq(term("dummy")), dmq(term("test"), term("synonym1"), term("synonym2"))));
+      assertEquals(2, synonymAnalyzerRuns.get());
+   }
+
+   /**
+    * Test that {@link SynonymCache} doesn't return synonyms of a previous analyzer.
+    */
+   @Test
+   public void parse_withSynonymCacheAfterAnalyzerChange() throws Exception {
+      SynonymCache cache = new SynonymCache(100);
+
+      new AnalyzingQuerqyParser(queryAnalyzer, synonymAnalyzer, cache).parse("test");
+      assertEquals(1, synonymAnalyzerRuns.get());
+
+      SynonymMap.Builder builder = new SynonymMap.Builder(true);
+      builder.add(new CharsRef("test"), new CharsRef("synonym3"), false);
+      Analyzer newSynonymAnalyzer = createSynonymAnalyzer(builder.build());
+
+      Query query = new AnalyzingQuerqyParser(queryAnalyzer, newSynonymAnalyzer, cache).parse("test");
+      assertThat(query, bq(dmq(term("test"), term("synonym3"))));
+      assertEquals(2, synonymAnalyzerRuns.get());
+      assertNull(cache.get(synonymAnalyzer, "test"));
+
+      newSynonymAnalyzer.close();
+   }
+
+   /**
+    * Test that {@link SynonymCache} is bounded.
+    */
+   @Test
+   public void synonymCache_isBounded() {
+      SynonymCache cache = new SynonymCache(2);
+      cache.put(synonymAnalyzer, "a", SynonymCache.NO_SYNONYMS);
+      cache.put(synonymAnalyzer, "b", new String[] { "c" });
+      assertEquals(2, cache.size());
+      assertArrayEquals(new String[] { "c" }, cache.get(synonymAnalyzer, "b"));
+
+      cache.put(synonymAnalyzer, "d", SynonymCache.NO_SYNONYMS);
+      assertEquals(1, cache.size());
+      assertNull(cache.get(synonymAnalyzer, "a"));
+      assertSame(SynonymCache.NO_SYNONYMS, cache.get(synonymAnalyzer, "d"));
+   }
 }
@@ -0,0 +1,268 @@
+package querqy.lucene.contrib.rewrite;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.util.fst.FST;
+import org.junit.Before;
+import org.junit.Test;
+
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.QueryRewriter;
+
+public class CompoundRewriterTest {
+
+    CompoundDictionary dictionary;
+
+    @Before
+    public void setUp() throws Exception {
+        dictionary = CompoundDictionary.readWordList(
+                new StringReader("# test words\nArbeit\nplatz\nplatzierung\nhaus\nhaustür\ntür\nschloss\nbau\ndruck\ndrucker\nerzeugnis\n"),
+                true);
+    }
+
+    protected ExpandedQuery makeQuery(String input) {
+        return new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(input));
+    }
+
+    protected QueryRewriter rewriter(boolean decompound, boolean compound, String... linkingMorphemes) {
+        return new CompoundRewriterFactory(dictionary, decompound, compound, CompoundRewriter.DEFAULT_MIN_PART_LENGTH,
+                CompoundRewriter.DEFAULT_MAX_PARTS, linkingMorphemes).createRewriter(null, null);
+    }
+
+    @Test
+    public void testDictionaryLookup() throws Exception {
+        FST.BytesReader reader = dictionary.getBytesReader();
+        FST.Arc<Object> arc = new FST.Arc<>();
+        assertTrue(dictionary.contains("arbeit", 0, 6, reader, arc));
+        assertTrue(dictionary.contains("ARBEIT", 0, 6, reader, arc));
+        assertTrue(dictionary.contains("xhaustür", 1, 8, reader, arc));
+        assertFalse(dictionary.contains("arbei", 0, 5, reader, arc));
+        assertFalse(dictionary.contains("arbeiten", 0, 8, reader, arc));
+
+        int[] ends = new int[16];
+        assertEquals(2, dictionary.findWords("haustürschloss", 0, ends, reader, arc));
+        assertEquals(4, ends[0]);
+        assertEquals(7, ends[1]);
+    }
+
+    @Test
+    public void testThatPrecompiledDictionaryCanBeRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dictionary.save(out);
+        CompoundDictionary read = CompoundDictionary.read(new ByteArrayInputStream(out.toByteArray()), true);
+        assertTrue(read.contains("platz", 0, 5, read.getBytesReader(), new FST.Arc<Object>()));
+    }
+
+    @Test
+    public void testDecompoundTwoParts() {
+        assertThat(rewriter(true, false).rewrite(makeQuery("haustür")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haustür", false),
+                        bq(
+                            dmq(must(), term("haus", true)),
+                            dmq(must(), term("tür", true))
+                        )
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatLongestMatchIsPreferred() {
+        assertThat(rewriter(true, false).rewrite(makeQuery("haustürschloss")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haustürschloss", false),
+                        bq(
+                            dmq(must(), term("haustür", true)),
+                            dmq(must(), term("schloss", true))
+                        )
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatSegmentationBacktracksToShorterWords() {
+        // 'drucker' is the longest prefix but 'zeugnis' is not a word
+        assertThat(rewriter(true, false).rewrite(makeQuery("Druckerzeugnis")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("Druckerzeugnis", false),
+                        bq(
+                            dmq(must(), term("Druck", true)),
+                            dmq(must(), term("erzeugnis", true))
+                        )
+                    )
+                ));
+    }
+
+    @Test
+    public void testMoreThanTwoParts() {
+        assertThat(rewriter(true, false).rewrite(makeQuery("Arbeitplatzhaus")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("Arbeitplatzhaus", false),
+                        bq(
+                            dmq(must(), term("Arbeit", true)),
+                            dmq(must(), term("platz", true)),
+                            dmq(must(), term("haus", true))
+                        )
+                    )
+                ));
+    }
+
+    @Test
+    public void testLinkingMorpheme() {
+        assertThat(rewriter(true, false).rewrite(makeQuery("arbeitsplatz")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("arbeitsplatz", false)
+                    )
+                ));
+
+        assertThat(rewriter(true, false, "s").rewrite(makeQuery("arbeitsplatz")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("arbeitsplatz", false),
+                        bq(
+                            dmq(must(), term("arbeit", true)),
+                            dmq(must(), term("platz", true))
+                        )
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatDictionaryWordIsNotSplitIntoItself() {
+        assertThat(rewriter(true, false).rewrite(makeQuery("platz")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("platz", false)
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatMaxPartsIsApplied() {
+        QueryRewriter rewriter = new CompoundRewriter(dictionary, true, false, 3, 2, null);
+        assertThat(rewriter.rewrite(makeQuery("arbeitplatzhaus")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("arbeitplatzhaus", false)
+                    )
+                ));
+    }
+
+    @Test
+    public void testCompound() {
+        assertThat(rewriter(false, true).rewrite(makeQuery("haus bau xyz tür")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haus", false),
+                        term("hausbau", true)
+                    ),
+                    dmq(
+                        term("bau", false),
+                        term("hausbau", true)
+                    ),
+                    dmq(
+                        term("xyz", false)
+                    ),
+                    dmq(
+                        term("tür", false)
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatTermsOfDifferentFieldsAreNotJoined() {
+        Query query = new Query();
+        DisjunctionMaxQuery dmq1 = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq1);
+        dmq1.addClause(new Term(dmq1, "f1", "haus"));
+        DisjunctionMaxQuery dmq2 = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq2);
+        dmq2.addClause(new Term(dmq2, "f2", "bau"));
+
+        assertThat(rewriter(false, true).rewrite(new ExpandedQuery(query)).getUserQuery(),
+                bq(
+                    dmq(
+                        term("f1", "haus", false)
+                    ),
+                    dmq(
+                        term("f2", "bau", false)
+                    )
+                ));
+    }
+
+    @Test
+    public void testDecompoundAndCompound() {
+        assertThat(rewriter(true, true).rewrite(makeQuery("haus haustür")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haus", false),
+                        term("haushaustür", true)
+                    ),
+                    dmq(
+                        term("haustür", false),
+                        bq(
+                            dmq(must(), term("haus", true)),
+                            dmq(must(), term("tür", true))
+                        ),
+                        term("haushaustür", true)
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatGeneratedTermsAreIgnored() {
+        Query query = new Query();
+        DisjunctionMaxQuery dmq1 = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq1);
+        dmq1.addClause(new Term(dmq1, "haus", true));
+        DisjunctionMaxQuery dmq2 = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq2);
+        dmq2.addClause(new Term(dmq2, "haustür", true));
+
+        assertThat(rewriter(true, true).rewrite(new ExpandedQuery(query)).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haus", true)
+                    ),
+                    dmq(
+                        term("haustür", true)
+                    )
+                ));
+    }
+
+    @Test
+    public void testEmptyDictionary() throws Exception {
+        CompoundDictionary empty = CompoundDictionary.build(Collections.<String>emptyList(), true);
+        CompoundRewriterFactory factory = new CompoundRewriterFactory(empty, true, true, 3, 4, null);
+        assertFalse(factory.isApplicable(makeQuery("haustür"), null));
+        assertThat(factory.createRewriter(null, null).rewrite(makeQuery("haustür")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("haustür", false)
+                    )
+                ));
+        assertTrue(new CompoundRewriterFactory(CompoundDictionary.build(Arrays.asList("a"), true), true, true, 3, 4,
+                null).isApplicable(makeQuery("haustür"), null));
+    }
+
+}
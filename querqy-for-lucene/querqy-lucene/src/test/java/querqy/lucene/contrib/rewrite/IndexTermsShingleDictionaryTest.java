@@ -0,0 +1,46 @@
+package querqy.lucene.contrib.rewrite;
+
+import static querqy.lucene.rewrite.TestUtil.addNumDocs;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+public class IndexTermsShingleDictionaryTest extends LuceneTestCase {
+
+    @Test
+    public void testThatOnlyIndexTermsAreContained() throws Exception {
+
+        Analyzer analyzer = new KeywordAnalyzer();
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        addNumDocs("f1", "ab", indexWriter, 1);
+        addNumDocs("f1", "abc", indexWriter, 2);
+        addNumDocs("f2", "bc", indexWriter, 1);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+
+        IndexTermsShingleDictionary dictionary = IndexTermsShingleDictionary.forField(indexReader, "f1");
+        assertTrue(dictionary.contains("ab"));
+        assertTrue(dictionary.contains(new StringBuilder("abc")));
+        assertFalse(dictionary.contains("bc"));
+        assertFalse(dictionary.contains("a"));
+
+        assertFalse(IndexTermsShingleDictionary.forField(indexReader, "f3").contains("ab"));
+
+        indexReader.close();
+        directory.close();
+        analyzer.close();
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package querqy.lucene.contrib.rewrite;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+
+/**
+ * <p>Compares time and heap allocation per query of the {@link LuceneSynonymsRewriter} and the Common Rules
+ * rewriter for the same synonyms. The synonyms are generated unless the path of a synonym file in the Solr format
+ * is passed as an argument. This is not a unit test and it is not run by the build. Run it from the test
+ * classpath:</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=querqy.lucene.contrib.rewrite.LuceneSynonymsRewriterBenchmark \
+ *     -Dexec.classpathScope=test [-Dexec.args=synonyms.txt]
+ * </pre>
+ *
+ * <p>Allocation is measured using com.sun.management.ThreadMXBean and thus requires a HotSpot-based JVM.</p>
+ */
+public class LuceneSynonymsRewriterBenchmark {
+
+    static final int NUM_SYNONYMS = 2000;
+    static final int WARM_UP_ROUNDS = 20000;
+    static final int ROUNDS = 50000;
+
+    static final String[] QUERIES = {
+        "w1 w2 w3",
+        "w10 w11 w12 w13 w14 w15",
+        "w100 x1 w101 x2",
+        "a b c d e f g h",
+        "w5 w6",
+        "w7",
+        "notinrules alsonot w1999 w1998 w1997"
+    };
+
+    public static void main(final String[] args) throws IOException {
+
+        final String synonyms = args.length > 0
+                ? new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8)
+                : createSynonyms(NUM_SYNONYMS);
+
+        final LuceneSynonymsRewriterFactory luceneFactory = new LuceneSynonymsRewriterFactory(true, true);
+        luceneFactory.addResource(new ByteArrayInputStream(synonyms.getBytes(StandardCharsets.UTF_8)));
+        luceneFactory.build();
+
+        final RewriterFactory commonRulesFactory = new SimpleCommonRulesRewriterFactory(
+                new StringReader(toCommonRules(synonyms)), new WhiteSpaceQuerqyParserFactory(), true);
+
+        final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+
+        final long blackHole = measure("lucene synonyms", luceneFactory, parser)
+                + measure("common rules", commonRulesFactory, parser);
+
+        System.out.printf("(%d)%n", blackHole);
+
+    }
+
+    static long measure(final String name, final RewriterFactory factory, final WhiteSpaceQuerqyParser parser) {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(factory));
+
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long blackHole = run(chain, parser, WARM_UP_ROUNDS, true);
+
+        long bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long timeBefore = System.nanoTime();
+        blackHole += run(chain, parser, ROUNDS, false);
+        final long parseBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        final long parseTime = System.nanoTime() - timeBefore;
+
+        bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        timeBefore = System.nanoTime();
+        blackHole += run(chain, parser, ROUNDS, true);
+        final long totalBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        final long totalTime = System.nanoTime() - timeBefore;
+
+        final long numQueries = (long) ROUNDS * QUERIES.length;
+
+        System.out.printf("%s%n", name);
+        System.out.printf("  rewrite     bytes/query:   %d%n", (totalBytes - parseBytes) / numQueries);
+        System.out.printf("  rewrite     ns/query:      %d%n", (totalTime - parseTime) / numQueries);
+
+        return blackHole;
+    }
+
+    static long run(final RewriteChain chain, final WhiteSpaceQuerqyParser parser, final int rounds,
+                    final boolean rewrite) {
+        long result = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (final String query : QUERIES) {
+                ExpandedQuery expandedQuery = new ExpandedQuery(parser.parse(query));
+                if (rewrite) {
+                    final Map<String, Object> context = new HashMap<>();
+                    expandedQuery = chain.rewrite(expandedQuery, context);
+                }
+                result += expandedQuery.getUserQuery().getClauses().size();
+            }
+        }
+        return result;
+    }
+
+    static String createSynonyms(final int numSynonyms) {
+        final StringBuilder synonyms = new StringBuilder();
+        for (int i = 0; i < numSynonyms; i++) {
+            synonyms.append('w').append(i).append(" => s").append(i).append('\n');
+            if (i % 2 == 0) {
+                synonyms.append('w').append(i).append(" w").append(i + 1)
+                    .append(" => s").append(i).append(" s").append(i + 1).append('\n');
+            }
+        }
+        for (char ch = 'a'; ch < 'h'; ch++) {
+            synonyms.append(ch).append(' ').append((char) (ch + 1))
+                .append(" => ").append(ch).append((char) (ch + 1)).append('\n');
+        }
+        return synonyms.toString();
+    }
+
+    /**
+     * Convert synonyms in the Solr format into equivalent SYNONYM rules
+     */
+    static String toCommonRules(final String synonyms) {
+        final StringBuilder rules = new StringBuilder();
+        for (String line : synonyms.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final int pos = line.indexOf("=>");
+            if (pos > -1) {
+                final String[] inputs = line.substring(0, pos).split(",");
+                final String[] outputs = line.substring(pos + 2).split(",");
+                for (final String input : inputs) {
+                    rules.append(input.trim()).append(" =>\n");
+                    for (final String output : outputs) {
+                        rules.append("  SYNONYM: ").append(output.trim()).append('\n');
+                    }
+                }
+            } else {
+                final String[] terms = line.split(",");
+                for (final String input : terms) {
+                    rules.append(input.trim()).append(" =>\n");
+                    for (final String output : terms) {
+                        if (output != input) {
+                            rules.append("  SYNONYM: ").append(output.trim()).append('\n');
+                        }
+                    }
+                }
+            }
+        }
+        return rules.toString();
+    }
+
+}
@@ -1,10 +1,15 @@
 package querqy.lucene.contrib.rewrite;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static querqy.QuerqyMatchers.*;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRef;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -21,12 +26,13 @@ import querqy.rewrite.QueryRewriter;
 
 public class LuceneSynonymsRewriterTest {
 
+   LuceneSynonymsRewriterFactory factory;
    QueryRewriter rewriter;
 
    @Before
    public void setUp() throws Exception {
 
-      LuceneSynonymsRewriterFactory factory = new LuceneSynonymsRewriterFactory(true, true);
+      factory = new LuceneSynonymsRewriterFactory(true, true);
       factory.addResource(getClass().getClassLoader().getResourceAsStream("synonyms-test.txt"));
       factory.build();
 
@@ -42,6 +48,14 @@ public class LuceneSynonymsRewriterTest {
       return new ExpandedQuery((Query) t.accept(new QueryTransformerVisitor(input.toCharArray())));
    }
 
+   @Test
+   public void testIsApplicable() {
+      assertTrue(factory.isApplicable(makeQuery("q a"), null));
+      assertTrue(factory.isApplicable(makeQuery("bb"), null));
+      assertFalse(factory.isApplicable(makeQuery("c d"), null));
+      assertFalse(factory.isApplicable(makeQuery("x y"), null));
+   }
+
    @Test
    public void testSingleClauseExpansion() {
       ExpandedQuery q = makeQuery("a");
@@ -75,6 +89,49 @@ public class LuceneSynonymsRewriterTest {
 
    }
 
+   @Test
+   public void testThatNonAsciiSynonymsHaveNoTrailingChars() throws Exception {
+      SynonymMap.Builder builder = new SynonymMap.Builder(true);
+      builder.add(new CharsRef("fahrrad"), new CharsRef("fahrr\u00e4der"), true);
+      builder.add(new CharsRef("fahrrad"), new CharsRef("\u81ea\u884c\u8f66 rad"), true);
+
+      assertThat(new LuceneSynonymsRewriter(builder.build()).rewrite(makeQuery("fahrrad")).getUserQuery(),
+            bq(
+                  dmq(
+                        term("fahrrad"),
+                        term("fahrr\u00e4der"),
+                        bq(
+                              dmq(must(), term("\u81ea\u884c\u8f66")),
+                              dmq(must(), term("rad"))
+                        )
+                  )
+            ));
+   }
+
+   @Test
+   public void testThatVisitorDoesNotKeepSynonymMap() throws Exception {
+      rewriter.rewrite(makeQuery("a b"));
+
+      LuceneSynonymsRewriter.SynonymsVisitor visitor = LuceneSynonymsRewriter.VISITORS.get();
+      assertNull(visitor.fst);
+      assertNull(visitor.synonymWords);
+      for (Sequences sequences : visitor.sequencesStack) {
+         assertNull(sequences.fst);
+         assertNull(sequences.words);
+      }
+
+      // the visitor of this thread can be used by another rewriter
+      SynonymMap.Builder builder = new SynonymMap.Builder(true);
+      builder.add(new CharsRef("a"), new CharsRef("s"), true);
+      assertThat(new LuceneSynonymsRewriter(builder.build()).rewrite(makeQuery("a")).getUserQuery(),
+            bq(
+                  dmq(
+                        term("a"),
+                        term("s")
+                  )
+            ));
+   }
+
    @Test
    public void testSingleClauseExpansionWithMultiCharWords() {
       ExpandedQuery q = makeQuery("abc");
@@ -0,0 +1,172 @@
+package querqy.lucene.contrib.rewrite;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static querqy.QuerqyMatchers.*;
+import static querqy.lucene.rewrite.TestUtil.addNumDocs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+public class SpellingRewriterTest extends LuceneTestCase {
+
+    Analyzer analyzer;
+    Directory directory;
+    IndexReader indexReader;
+    SpellingDictionary dictionary;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        analyzer = new KeywordAnalyzer();
+        directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        addNumDocs("f1", "laptop", indexWriter, 5);
+        addNumDocs("f1", "lapdog", indexWriter, 1);
+        addNumDocs("f1", "notebook", indexWriter, 3);
+        addNumDocs("f1", "notebooks", indexWriter, 2);
+        addNumDocs("f1", "tablet", indexWriter, 1);
+        addNumDocs("f1", "tablets", indexWriter, 4);
+        addNumDocs("f2", "laptops", indexWriter, 1);
+
+        indexWriter.close();
+
+        indexReader = DirectoryReader.open(directory);
+        dictionary = SpellingDictionary.forField(indexReader, "f1", 1);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        indexReader.close();
+        directory.close();
+        analyzer.close();
+        super.tearDown();
+    }
+
+    protected ExpandedQuery makeQuery(String input) {
+        return new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(input));
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        assertEquals(5L, dictionary.getDocFreq("laptop"));
+        assertEquals(4L, dictionary.getDocFreq("tablets"));
+        assertEquals(0L, dictionary.getDocFreq("laptops"));
+        assertEquals(0L, dictionary.getDocFreq("lap"));
+
+        List<SpellingDictionary.Entry> entries = new ArrayList<>();
+        dictionary.collect(new ByteRunAutomaton(new LevenshteinAutomata("tablet", true).toAutomaton(1)), entries);
+        assertEquals(2, entries.size());
+        assertEquals("tablet", entries.get(0).getTerm());
+        assertEquals(1L, entries.get(0).getDocFreq());
+        assertEquals("tablets", entries.get(1).getTerm());
+        assertEquals(4L, entries.get(1).getDocFreq());
+
+        assertTrue(SpellingDictionary.forField(indexReader, "f3", 1).isEmpty());
+        assertEquals(0L, SpellingDictionary.forField(indexReader, "f1", 2).getDocFreq("tablet"));
+    }
+
+    @Test
+    public void testThatCorrectionIsAdded() throws Exception {
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 2, 1, 4, 1, 100);
+        assertThat(rewriter.rewrite(makeQuery("lapotp tablets")).getUserQuery(),
+                bq(
+                    dmq(
+                        term("lapotp", false),
+                        term("laptop", true)
+                    ),
+                    dmq(
+                        term("tablets", false)
+                    )
+                ));
+    }
+
+    @Test
+    public void testThatCorrectionsAreRankedByDocFreq() throws Exception {
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 1, 1, 4, 3, 100);
+        assertArrayEquals(new String[] {"tablets", "tablet"}, rewriter.getCorrections("tabletz"));
+        assertArrayEquals(new String[] {"notebook", "notebooks"}, rewriter.getCorrections("notebookx"));
+    }
+
+    @Test
+    public void testThatSmallerDistanceIsPreferred() throws Exception {
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 2, 1, 4, 3, 100);
+        // 'laptop' has a higher df but needs two edits
+        assertArrayEquals(new String[] {"lapdog"}, rewriter.getCorrections("lapdot"));
+    }
+
+    @Test
+    public void testThatMaxEditsIsApplied() throws Exception {
+        assertArrayEquals(new String[0], new SpellingRewriter(dictionary, 1, 1, 4, 1, 100).getCorrections("lpatpo"));
+        assertArrayEquals(new String[] {"laptop"},
+                new SpellingRewriter(dictionary, 2, 1, 4, 1, 100).getCorrections("lpatpo"));
+    }
+
+    @Test
+    public void testThatPrefixIsNotCorrected() throws Exception {
+        assertArrayEquals(new String[0], new SpellingRewriter(dictionary, 1, 1, 4, 1, 100).getCorrections("kaptop"));
+        assertArrayEquals(new String[] {"laptop"},
+                new SpellingRewriter(dictionary, 1, 0, 4, 1, 100).getCorrections("kaptop"));
+    }
+
+    @Test
+    public void testThatKnownAndShortTermsAreNotCorrected() throws Exception {
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 2, 0, 4, 1, 100);
+        assertArrayEquals(new String[0], rewriter.getCorrections("tablet"));
+        assertArrayEquals(new String[0], rewriter.getCorrections("tab"));
+    }
+
+    @Test
+    public void testThatCorrectionsAreCached() throws Exception {
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 2, 1, 4, 1, 2);
+        String[] corrections = rewriter.getCorrections("lapotp");
+        assertSame(corrections, rewriter.getCorrections("lapotp"));
+        rewriter.getCorrections("tabletz");
+        assertEquals(2, rewriter.cache.size());
+        // the cache is full and gets cleared
+        rewriter.getCorrections("notebookx");
+        assertEquals(1, rewriter.cache.size());
+
+        assertNull(new SpellingRewriter(dictionary, 2, 1, 4, 1, 0).cache);
+    }
+
+    @Test
+    public void testThatGeneratedTermsAreNotCorrected() throws Exception {
+        Query query = new Query();
+        DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, Occur.SHOULD, false);
+        query.addClause(dmq);
+        dmq.addClause(new Term(dmq, "lapotp", true));
+
+        SpellingRewriter rewriter = new SpellingRewriter(dictionary, 2, 1, 4, 1, 100);
+        assertThat(rewriter.rewrite(new ExpandedQuery(query)).getUserQuery(),
+                bq(
+                    dmq(
+                        term("lapotp", true)
+                    )
+                ));
+    }
+
+}
@@ -0,0 +1,126 @@
+package querqy.lucene.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import querqy.lucene.rewrite.DocumentFrequencyCorrection;
+import querqy.lucene.rewrite.LuceneQueryBuilder;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.parser.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+
+public class QuerqyEventsTest {
+
+    @Test
+    public void testThatEventsAreNotCreatedWithoutRecording() throws Exception {
+        assertNull(QuerqyEvents.beginCreateQuery());
+        QuerqyEvents.commitCreateQuery(null, 1);
+    }
+
+    @Test
+    public void testThatEventsAreRecorded() throws Exception {
+
+        assumeTrue(QuerqyEvents.isAvailable());
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory>asList(
+                new SimpleCommonRulesRewriterFactory(new StringReader("a =>\n SYNONYM: b\nc =>\n SYNONYM: d"),
+                        new WhiteSpaceQuerqyParserFactory(), true)));
+        chain.setTracer(new JfrRewriteTracer());
+
+        Map<String, Float> fields = Collections.singletonMap("f1", 1f);
+        LuceneQueryBuilder builder = new LuceneQueryBuilder(new DocumentFrequencyCorrection(), new KeywordAnalyzer(),
+                new SearchFieldsAndBoosting(FieldBoostModel.FIXED, fields, fields, 0.8f), 0.1f, null);
+
+        List<RecordedEvent> events = new ArrayList<>();
+        Path file = Files.createTempFile("querqy", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("querqy.Rewrite").withThreshold(Duration.ZERO);
+            recording.enable("querqy.CreateQuery").withThreshold(Duration.ZERO);
+            recording.start();
+
+            ExpandedQuery query = chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a c x")),
+                    new HashMap<String, Object>());
+            builder.createQuery((querqy.model.Query) query.getUserQuery());
+
+            recording.stop();
+            recording.dump(file);
+            events.addAll(RecordingFile.readAllEvents(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        RecordedEvent rewriteEvent = null;
+        RecordedEvent createQueryEvent = null;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if ("querqy.Rewrite".equals(name)) {
+                rewriteEvent = event;
+            } else if ("querqy.CreateQuery".equals(name)) {
+                createQueryEvent = event;
+            }
+        }
+
+        assertTrue(rewriteEvent != null);
+        assertEquals(0, rewriteEvent.getInt("rewriterIndex"));
+        assertEquals(SimpleCommonRulesRewriterFactory.class.getName(), rewriteEvent.getString("rewriterFactory"));
+        assertEquals(3, rewriteEvent.getInt("clausesBefore"));
+        assertEquals(2, rewriteEvent.getInt("actions"));
+
+        assertTrue(createQueryEvent != null);
+        assertEquals(3, createQueryEvent.getInt("clauses"));
+    }
+
+    @Test
+    public void testThatTracerHandlesNullAndCallerContext() throws Exception {
+
+        assumeTrue(QuerqyEvents.isAvailable());
+
+        RewriteChain chain = new RewriteChain(Arrays.<RewriterFactory>asList(
+                new SimpleCommonRulesRewriterFactory(new StringReader("a =>\n SYNONYM: b"),
+                        new WhiteSpaceQuerqyParserFactory(), true)));
+        chain.setTracer(new JfrRewriteTracer());
+
+        try (Recording recording = new Recording()) {
+            recording.enable("querqy.Rewrite").withThreshold(Duration.ZERO);
+            recording.start();
+
+            chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a")), null);
+
+            Map<String, Object> context = new HashMap<>();
+            chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a")), context);
+            assertTrue(context.isEmpty());
+
+            context.put(CommonRulesRewriter.ACTIONS_CONTEXT_KEY, -1);
+            chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a")), context);
+            assertEquals(1, context.get(CommonRulesRewriter.ACTIONS_CONTEXT_KEY));
+
+            recording.stop();
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package querqy.lucene.rewrite.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+/**
+ * <p>Measures the time per lookup of a term query cache key in a map that holds the keys for all terms of a
+ * vocabulary in all query fields, like the preloaded term query cache does, and the time per lookup of query terms
+ * in a set of terms, like the Common Rules instructions do. The query terms are parsed by the
+ * {@link WhiteSpaceQuerqyParser}, a part of them has a field name. This is not a unit test and it is not run by
+ * the build. Run it from the test classpath:</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=querqy.lucene.rewrite.cache.CacheKeyBenchmark \
+ *     -Dexec.classpathScope=test
+ * </pre>
+ */
+public class CacheKeyBenchmark {
+
+    static final int VOCABULARY_SIZE = 20000;
+    static final String[] FIELDS = {"title", "brand", "category", "description", "color"};
+    static final int NUM_QUERIES = 10000;
+    static final int WARM_UP_ROUNDS = 20;
+    static final int ROUNDS = 50;
+
+    static long hits = 0;
+
+    public static void main(final String[] args) {
+
+        final Random random = new Random(42L);
+
+        final List<String> vocabulary = new ArrayList<>(VOCABULARY_SIZE);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary.add(createWord(random));
+        }
+
+        final Map<CacheKey, Object> cache = new HashMap<>();
+        final Set<Term> termSet = new HashSet<>();
+        for (final Term term : parse(vocabulary)) {
+            for (final String field : FIELDS) {
+                cache.put(new CacheKey(field, term), term);
+            }
+            termSet.add(term);
+            termSet.add(new Term(null, FIELDS[0], term.getValue()));
+        }
+
+        final List<List<Term>> queries = new ArrayList<>(NUM_QUERIES);
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            final List<String> words = new ArrayList<>();
+            for (int j = 0, len = 1 + random.nextInt(5); j < len; j++) {
+                // one in ten words is not in the vocabulary
+                words.add(random.nextInt(10) == 0
+                        ? createWord(random) : vocabulary.get(random.nextInt(VOCABULARY_SIZE)));
+            }
+            final List<Term> terms = parse(words);
+            // one in five terms has a field name
+            for (int j = 0; j < terms.size(); j++) {
+                if (random.nextInt(5) == 0) {
+                    terms.set(j, new Term(null, FIELDS[0], terms.get(j).getValue()));
+                }
+            }
+            queries.add(terms);
+        }
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            lookUpCacheKeys(cache, queries);
+            lookUpTerms(termSet, queries);
+        }
+
+        long timeBefore = System.nanoTime();
+        long lookups = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            lookups += lookUpCacheKeys(cache, queries);
+        }
+        final long cacheKeyTime = System.nanoTime() - timeBefore;
+
+        timeBefore = System.nanoTime();
+        long termLookups = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            termLookups += lookUpTerms(termSet, queries);
+        }
+        final long termTime = System.nanoTime() - timeBefore;
+
+        System.out.printf("cache key   ns/lookup:     %d (%d keys)%n", cacheKeyTime / lookups, cache.size());
+        System.out.printf("term set    ns/lookup:     %d (%d terms)%n", termTime / termLookups, termSet.size());
+        System.out.printf("(%d)%n", hits);
+    }
+
+    /**
+     * Create a key per query term and field and look it up, like the TermSubQueryBuilder does for each query
+     */
+    static long lookUpCacheKeys(final Map<CacheKey, Object> cache, final List<List<Term>> queries) {
+        long count = 0;
+        for (final List<Term> terms : queries) {
+            for (final Term term : terms) {
+                for (final String field : FIELDS) {
+                    if (cache.get(new CacheKey(field, term)) != null) {
+                        hits++;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Look up the same query terms repeatedly, like the instructions of several rules do
+     */
+    static long lookUpTerms(final Set<Term> termSet, final List<List<Term>> queries) {
+        long count = 0;
+        for (final List<Term> terms : queries) {
+            for (int i = 0; i < 4; i++) {
+                for (final Term term : terms) {
+                    if (termSet.contains(term)) {
+                        hits++;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static List<Term> parse(final List<String> words) {
+        final StringBuilder sb = new StringBuilder();
+        for (final String word : words) {
+            sb.append(word).append(' ');
+        }
+        final Query query = WhiteSpaceQuerqyParser.INSTANCE.parse(sb.toString());
+        final List<Term> terms = new ArrayList<>(words.size());
+        for (final DisjunctionMaxQuery dmq : query.getClauses(DisjunctionMaxQuery.class)) {
+            terms.add(dmq.getClauses(Term.class).get(0));
+        }
+        return terms;
+    }
+
+    static String createWord(final Random random) {
+        final char[] chars = new char[3 + random.nextInt(10)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+}
@@ -1,13 +1,14 @@
 package querqy.solr;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QParserPlugin;
@@ -15,11 +16,17 @@ import org.apache.solr.search.SolrCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import querqy.lucene.jfr.JfrRewriteTracer;
+import querqy.lucene.jfr.QuerqyEvents;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
+import querqy.parser.ParsedQueryCache;
 import querqy.parser.QuerqyParser;
+import querqy.rewrite.HistogramRewriteMetrics;
+import querqy.rewrite.LatencyHistogram;
 import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteMetrics;
 import querqy.rewrite.RewriterFactory;
 
 /**
@@ -29,6 +36,14 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
     
     public static final String CONF_CACHE_NAME = "termQueryCache.name";
     public static final String CONF_CACHE_UPDATE = "termQueryCache.update";
+    public static final String CONF_LATENCY_METRICS = "latencyMetrics";
+    public static final String CONF_JFR_EVENTS = "jfrEvents";
+    public static final String CONF_SLOW_LOG_THRESHOLD = "slowLog.thresholdMs";
+    public static final String CONF_SLOW_LOG_SIZE = "slowLog.size";
+    public static final String CONF_SLOW_LOG_SAMPLE_RATE = "slowLog.sampleRate";
+    public static final String CONF_PARSED_QUERY_CACHE_SIZE = "parsedQueryCache.size";
+
+    public static final int DEFAULT_SLOW_LOG_SIZE = 100;
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
     
@@ -38,6 +53,7 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
     protected SolrQuerqyParserFactory querqyParserFactory = null;
     protected String termQueryCacheName = null;
     protected boolean ignoreTermQueryCacheUpdates = true; 
+    protected SlowRewriteLog slowRewriteLog = null;
     
     public abstract QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req, TermQueryCache termQueryCache);
 
@@ -62,7 +78,27 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
         SolrQuerqyParserFactory factory = loader.newInstance(className, SolrQuerqyParserFactory.class);
         factory.init(parserConfig, loader);
 
+        Object parsedQueryCacheSize = initArgs.get(CONF_PARSED_QUERY_CACHE_SIZE);
+        if (parsedQueryCacheSize != null) {
+            try {
+                factory = new CachingSolrQuerqyParserFactory(factory,
+                        Integer.parseInt(parsedQueryCacheSize.toString().trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid parsed query cache configuration: " + e.getMessage(), e);
+            }
+        }
+
         rewriteChain = loadRewriteChain(loader);
+
+        Boolean latencyMetrics = initArgs.getBooleanArg(CONF_LATENCY_METRICS);
+        if (latencyMetrics != null && latencyMetrics) {
+            rewriteChain.setMetrics(new HistogramRewriteMetrics(rewriteChain.getRewriterFactories().size()));
+        }
+
+        Boolean jfrEvents = initArgs.getBooleanArg(CONF_JFR_EVENTS);
+        if ((jfrEvents == null || jfrEvents) && QuerqyEvents.isAvailable()) {
+            rewriteChain.setTracer(new JfrRewriteTracer());
+        }
       
         termQueryCacheName = (String) initArgs.get(CONF_CACHE_NAME);
         
@@ -72,6 +108,8 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
         }
 
         ignoreTermQueryCacheUpdates = (updateCache != null) && !updateCache;
+
+        slowRewriteLog = loadSlowRewriteLog();
         
         this.querqyParserFactory = factory;
     }
@@ -83,7 +121,7 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
    private RewriteChain loadRewriteChain(ResourceLoader loader) throws IOException {
 
       NamedList<?> chainConfig = (NamedList<?>) initArgs.get("rewriteChain");
-      List<RewriterFactory> factories = new LinkedList<>();
+      List<RewriterFactory> factories = new ArrayList<>();
 
       if (chainConfig != null) {
 
@@ -102,6 +140,25 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
       
    }
 
+   protected SlowRewriteLog loadSlowRewriteLog() throws IOException {
+
+       Object threshold = initArgs.get(CONF_SLOW_LOG_THRESHOLD);
+       if (threshold == null) {
+           return null;
+       }
+
+       Object size = initArgs.get(CONF_SLOW_LOG_SIZE);
+       Object sampleRate = initArgs.get(CONF_SLOW_LOG_SAMPLE_RATE);
+       try {
+           return new SlowRewriteLog(
+                   Long.parseLong(threshold.toString().trim()),
+                   size == null ? DEFAULT_SLOW_LOG_SIZE : Integer.parseInt(size.toString().trim()),
+                   sampleRate == null ? 1.0 : Double.parseDouble(sampleRate.toString().trim()));
+       } catch (IllegalArgumentException e) {
+           throw new IOException("Invalid slow log configuration: " + e.getMessage(), e);
+       }
+   }
+
    protected QuerqyParser createQuerqyParser(String qstr, SolrParams localParams, SolrParams params,
          SolrQueryRequest req) {
       return querqyParserFactory.createParser(qstr, localParams, params, req);
@@ -110,20 +167,28 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
    @Override
    public final QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req) {
        
+       final QParser parser;
+       
        if (termQueryCacheName == null) {
-           return createParser(qstr, localParams, params, req, null);
+           parser = createParser(qstr, localParams, params, req, null);
        } else {
        
            @SuppressWarnings("unchecked")
            SolrCache<CacheKey, TermQueryCacheValue> solrCache = req.getSearcher().getCache(termQueryCacheName);
            if (solrCache == null) {
                logger.warn("Missing Solr cache {}", termQueryCacheName);
-               return createParser(qstr, localParams, params, req, null);
+               parser = createParser(qstr, localParams, params, req, null);
            } else {
-               return createParser(qstr, localParams, params, req, new SolrTermQueryCacheAdapter(ignoreTermQueryCacheUpdates, solrCache));
+               parser = createParser(qstr, localParams, params, req, new SolrTermQueryCacheAdapter(ignoreTermQueryCacheUpdates, solrCache));
            }
            
        }
+       
+       if (slowRewriteLog != null && parser instanceof QuerqyDismaxQParser) {
+           ((QuerqyDismaxQParser) parser).setSlowRewriteLog(slowRewriteLog);
+       }
+       
+       return parser;
    }
    
 
@@ -132,4 +197,69 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
        return rewriteChain;
    }
 
+
+   /**
+    * 
+    * @return The slow rewrite log or null if it is not configured
+    */
+   public SlowRewriteLog getSlowRewriteLog() {
+       return slowRewriteLog;
+   }
+
+   /**
+    * Reports the ratio of requests for which a rewriter was skipped because its factory found that it could not
+    * change the query (see {@link querqy.rewrite.ApplicabilityAwareRewriterFactory}) and, if
+    * {@link #CONF_LATENCY_METRICS} is enabled, the latencies per rewriter and per processing phase in microseconds.
+    * Also reports the hit statistics of the parsed query cache if {@link #CONF_PARSED_QUERY_CACHE_SIZE} is set.
+    */
+   @Override
+   public NamedList<Object> getStatistics() {
+       if (rewriteChain == null) {
+           return null;
+       }
+       NamedList<Object> stats = new SimpleOrderedMap<>();
+       List<RewriterFactory> factories = rewriteChain.getRewriterFactories();
+       for (int i = 0, len = factories.size(); i < len; i++) {
+           String prefix = "rewriter." + i + "." + factories.get(i).getClass().getSimpleName();
+           stats.add(prefix + ".skips", rewriteChain.getSkipCount(i));
+           stats.add(prefix + ".skipRatio", rewriteChain.getSkipRatio(i));
+       }
+
+       RewriteMetrics metrics = rewriteChain.getMetrics();
+       if (metrics instanceof HistogramRewriteMetrics) {
+           HistogramRewriteMetrics histogramMetrics = (HistogramRewriteMetrics) metrics;
+           for (int i = 0, len = Math.min(factories.size(), histogramMetrics.getNumRewriters()); i < len; i++) {
+               addLatencyStatistics(stats, "rewriter." + i + "." + factories.get(i).getClass().getSimpleName(),
+                       histogramMetrics.getRewriterLatency(i));
+           }
+           for (String phase : histogramMetrics.getPhases()) {
+               addLatencyStatistics(stats, "phase." + phase, histogramMetrics.getPhaseLatency(phase));
+           }
+       }
+
+       if (slowRewriteLog != null) {
+           stats.add("slowLog.slowQueries", slowRewriteLog.getSlowQueryCount());
+       }
+
+       if (querqyParserFactory instanceof CachingSolrQuerqyParserFactory) {
+           ParsedQueryCache cache = ((CachingSolrQuerqyParserFactory) querqyParserFactory).getCache();
+           stats.add("parsedQueryCache.size", cache.size());
+           stats.add("parsedQueryCache.hits", cache.getHits());
+           stats.add("parsedQueryCache.misses", cache.getMisses());
+           stats.add("parsedQueryCache.hitRatio", cache.getHitRatio());
+           stats.add("parsedQueryCache.evictions", cache.getEvictions());
+       }
+
+       return stats;
+   }
+
+   protected void addLatencyStatistics(NamedList<Object> stats, String prefix, LatencyHistogram histogram) {
+       stats.add(prefix + ".latency.count", histogram.getCount());
+       stats.add(prefix + ".latency.meanMicros", histogram.getMean() / 1000.0);
+       stats.add(prefix + ".latency.p50Micros", histogram.getValueAtPercentile(50.0) / 1000L);
+       stats.add(prefix + ".latency.p95Micros", histogram.getValueAtPercentile(95.0) / 1000L);
+       stats.add(prefix + ".latency.p99Micros", histogram.getValueAtPercentile(99.0) / 1000L);
+       stats.add(prefix + ".latency.maxMicros", histogram.getMax() / 1000L);
+   }
+
 }
@@ -0,0 +1,73 @@
+/**
+ * 
+ */
+package querqy.solr;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+
+import querqy.model.Query;
+import querqy.parser.CachingQuerqyParserFactory;
+import querqy.parser.ParsedQueryCache;
+import querqy.parser.QuerqyParser;
+import querqy.parser.QuerqyParserFactory;
+
+/**
+ * <p>Decorates a {@link SolrQuerqyParserFactory} with a {@link ParsedQueryCache}, so that frequent queries skip
+ * parsing and analysis. This factory is set up by {@link AbstractQuerqyDismaxQParserPlugin} if
+ * {@link AbstractQuerqyDismaxQParserPlugin#CONF_PARSED_QUERY_CACHE_SIZE} is configured.</p>
+ *
+ * <p>The cache key is the query string only. The decorated factory must thus create parsers that produce the same
+ * query for the same query string, regardless of the other request parameters.</p>
+ */
+public class CachingSolrQuerqyParserFactory implements SolrQuerqyParserFactory {
+
+    protected final SolrQuerqyParserFactory delegate;
+    protected final ParsedQueryCache cache;
+
+    public CachingSolrQuerqyParserFactory(SolrQuerqyParserFactory delegate, int maxSize) {
+        this.delegate = delegate;
+        this.cache = new ParsedQueryCache(maxSize);
+    }
+
+    /**
+     * The decorated factory must have been initialized already
+     */
+    @Override
+    public void init(@SuppressWarnings("rawtypes") NamedList parserConfig, ResourceLoader loader)
+            throws IOException, SolrException {
+    }
+
+    @Override
+    public QuerqyParser createParser(final String qstr, final SolrParams localParams, final SolrParams params,
+            final SolrQueryRequest req) {
+
+        final QuerqyParserFactory delegateFactory = new QuerqyParserFactory() {
+            @Override
+            public QuerqyParser createParser() {
+                return delegate.createParser(qstr, localParams, params, req);
+            }
+        };
+
+        return new QuerqyParser() {
+            @Override
+            public Query parse(String input) {
+                return CachingQuerqyParserFactory.parse(input, cache, delegateFactory);
+            }
+        };
+    }
+
+    public SolrQuerqyParserFactory getDelegate() {
+        return delegate;
+    }
+
+    public ParsedQueryCache getCache() {
+        return cache;
+    }
+
+}
@@ -15,6 +15,7 @@ import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
 
 import org.apache.lucene.util.QueryBuilder;
@@ -22,6 +23,7 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.IndexSchema;
@@ -32,6 +34,7 @@ import org.apache.solr.search.*;
 import org.apache.solr.util.SolrPluginUtils;
 
 import querqy.lucene.LuceneQueryUtil;
+import querqy.lucene.jfr.QuerqyEvents;
 import querqy.ComparableCharSequence;
 import querqy.lucene.rewrite.*;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
@@ -40,11 +43,17 @@ import querqy.model.BoostQuery;
 import querqy.model.DisjunctionMaxClause;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
+import querqy.model.Fingerprint;
 import querqy.model.QuerqyQuery;
 import querqy.model.RawQuery;
 import querqy.model.Term;
 import querqy.parser.QuerqyParser;
+import querqy.rewrite.RewriteBudget;
 import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteMetrics;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.CommonRulesRewriter;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
 
 /**
  * @author rene
@@ -166,6 +175,67 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
 
     public static final String QBOOST_FIELD_BOOST_DEFAULT = QBOOST_FIELD_BOOST_ON;
 
+    /**
+     * The maximum number of generated terms in the user query. Generated terms that exceed this limit are removed
+     * from the query in query order. See {@link RewriteBudget}.
+     */
+    public static final String QBUDGET_GENERATED_TERMS = "qbudget.generatedTerms";
+
+    /**
+     * The maximum number of Querqy boost queries per direction (up/down)
+     */
+    public static final String QBUDGET_BOOST_QUERIES = "qbudget.boostQueries";
+
+    /**
+     * The maximum number of Querqy filter queries. Note that dropping filter queries widens the result set.
+     */
+    public static final String QBUDGET_FILTER_QUERIES = "qbudget.filterQueries";
+
+    /**
+     * The maximum time in milliseconds for rewriting. Rewriters are skipped once this time is exceeded.
+     */
+    public static final String QBUDGET_TIME = "qbudget.timeMs";
+
+    /**
+     * The maximum number of Lucene clauses that the user query may be expanded to. Each non-generated term creates
+     * a clause per field in {@link DisMaxParams#QF} and each generated term a clause per field in {@link #GQF}.
+     * This limit is translated into a limit of the number of generated terms.
+     */
+    public static final String QBUDGET_CLAUSES = "qbudget.clauses";
+
+    /**
+     * The key under which the names of the exceeded rewrite budget limits are added to the debug output
+     */
+    public static final String DEBUG_BUDGET_EXCEEDED = "querqy.budget.exceeded";
+
+    /**
+     * The name of the phase in which the query string is parsed into the Querqy query model
+     * (see {@link RewriteMetrics})
+     */
+    public static final String PHASE_PARSE = "parse";
+
+    /**
+     * The name of the phase in which the query is rewritten by the rewrite chain
+     */
+    public static final String PHASE_REWRITE = "rewrite";
+
+    /**
+     * The name of the phase in which the Lucene queries are created from the Querqy query model
+     */
+    public static final String PHASE_BUILD = "build";
+
+    /**
+     * If true, calculate the {@link Fingerprint} of the rewritten query and its decorations
+     * (see {@link #getFingerprint()}). Default: false
+     */
+    public static final String QFINGERPRINT = "qfingerprint";
+
+    /**
+     * The key under which it is added to the debug output that the search was skipped by a rule
+     * (see {@link CommonRulesRewriter#SKIP_SEARCH_CONTEXT_KEY})
+     */
+    public static final String DEBUG_SEARCH_SKIPPED = "querqy.searchSkipped";
+
     public static final float DEFAULT_GQF_VALUE = Float.MIN_VALUE;
 
     static final String MATCH_ALL = "*:*";
@@ -199,6 +269,17 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
 
     protected final float qpfTie;
 
+    protected final RewriteBudget rewriteBudget;
+    protected final int maxClauses;
+
+    protected final RewriteMetrics metrics;
+
+    protected SlowRewriteLog slowRewriteLog = null;
+
+    protected final boolean calculateFingerprint;
+    protected Fingerprint fingerprint = null;
+    protected boolean searchSkipped = false;
+
     public QuerqyDismaxQParser(String qstr, SolrParams localParams, SolrParams params,
          SolrQueryRequest req, RewriteChain rewriteChain, QuerqyParser querqyParser, TermQueryCache termQueryCache)
          throws SyntaxError {
@@ -239,6 +320,10 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
             }
         }
         dfc = new DocumentFrequencyCorrection();
+        metrics = rewriteChain == null ? null : rewriteChain.getMetrics();
+        if (metrics != null) {
+            dfc.setMetrics(metrics);
+        }
 
         useReRankForBoostQueries = QBOOST_METHOD_RERANK.equals(solrParams.get(QBOOST_METHOD, QBOOST_METHOD_DEFAULT));
         if (useReRankForBoostQueries) {
@@ -278,6 +363,63 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
 
         qpfTie = solrParams.getFloat(QPF_TIE, config.getTieBreaker());
 
+        maxClauses = solrParams.getInt(QBUDGET_CLAUSES, RewriteBudget.UNLIMITED);
+        rewriteBudget = makeRewriteBudget(solrParams, maxClauses);
+
+        calculateFingerprint = solrParams.getBool(QFINGERPRINT, false);
+
+    }
+
+    /**
+     * Create the rewrite budget from the request parameters.
+     *
+     * @param solrParams The request parameters
+     * @param maxClauses The value of {@link #QBUDGET_CLAUSES}
+     * @return The budget or null if no budget was requested
+     */
+    protected RewriteBudget makeRewriteBudget(SolrParams solrParams, int maxClauses) {
+
+        final int maxGeneratedTerms = solrParams.getInt(QBUDGET_GENERATED_TERMS, RewriteBudget.UNLIMITED);
+        final int maxBoostQueries = solrParams.getInt(QBUDGET_BOOST_QUERIES, RewriteBudget.UNLIMITED);
+        final int maxFilterQueries = solrParams.getInt(QBUDGET_FILTER_QUERIES, RewriteBudget.UNLIMITED);
+        final long maxTimeMillis = solrParams.getLong(QBUDGET_TIME, RewriteBudget.UNLIMITED);
+
+        if (maxGeneratedTerms < 0 && maxBoostQueries < 0 && maxFilterQueries < 0 && maxTimeMillis < 0
+                && maxClauses < 0) {
+            return null;
+        }
+
+        return new RewriteBudget(maxGeneratedTerms, maxBoostQueries, maxFilterQueries, maxTimeMillis);
+    }
+
+    /**
+     * Get the budget for rewriting the given query. If {@link #QBUDGET_CLAUSES} is set, the number of generated
+     * terms is limited so that the user query does not expand to more Lucene clauses.
+     *
+     * @param expandedQuery The query before rewriting
+     * @return The budget or null if no budget was requested
+     */
+    protected RewriteBudget getRewriteBudget(ExpandedQuery expandedQuery) {
+
+        if (rewriteBudget == null || maxClauses < 0) {
+            return rewriteBudget;
+        }
+
+        int userTerms = 0;
+        final querqy.model.Query userQuery = expandedQuery.getUserQuery();
+        if (userQuery != null) {
+            for (final DisjunctionMaxQuery dmq : userQuery.getClauses(DisjunctionMaxQuery.class)) {
+                userTerms += dmq.getClauseCount();
+            }
+        }
+
+        final int generatedClausesPerTerm = Math.max(1, generatedQueryFields.size());
+        final int maxGeneratedTerms = Math.max(0, maxClauses - userTerms * userQueryFields.size())
+                / generatedClausesPerTerm;
+
+        final int configuredMax = rewriteBudget.getMaxGeneratedTerms();
+        return rewriteBudget.withMaxGeneratedTerms(configuredMax < 0
+                ? maxGeneratedTerms : Math.min(configuredMax, maxGeneratedTerms));
     }
    
    protected FieldBoostModel getFieldBoostModelFromParam(SolrParams solrParams) {
@@ -322,6 +464,11 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
          throw new SyntaxError("query string is empty");
       }
 
+      final SlowRewriteLog slowLog = slowRewriteLog;
+      final long slowLogStartNanos = slowLog != null ? System.nanoTime() : 0L;
+      long[] rewriterTimings = null;
+      List<String> matchedRules = null;
+
       Query mainQuery;
       ExpandedQuery expandedQuery = null;
       List<Query> querqyBoostQueries = null;
@@ -332,10 +479,58 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
           dfc.finishedUserQuery();
           phraseFieldQuery = null;
       } else {
+          final RewriteMetrics rewriteMetrics = metrics;
+          final long parseStartNanos = rewriteMetrics != null ? System.nanoTime() : 0L;
+
+          final Object parseEvent = QuerqyEvents.beginParse();
+
           expandedQuery = makeExpandedQuery();
+
+          QuerqyEvents.commitParse(parseEvent, userQuery.length(),
+                  QuerqyEvents.countClauses(expandedQuery.getUserQuery()));
+
+          final long parseEndNanos = rewriteMetrics != null ? System.nanoTime() : 0L;
+
           phraseFieldQuery = makePhraseFieldQueries(expandedQuery.getUserQuery());
           context = new HashMap<>();
+          final RewriteBudget budget = getRewriteBudget(expandedQuery);
+          if (budget != null) {
+              context.put(RewriteBudget.CONTEXT_KEY, budget);
+          }
+          if (slowLog != null) {
+              rewriterTimings = new long[rewriteChain.getRewriterFactories().size()];
+              matchedRules = new ArrayList<>();
+              context.put(RewriteChain.TIMINGS_CONTEXT_KEY, rewriterTimings);
+              context.put(CommonRulesRewriter.MATCHED_RULES_CONTEXT_KEY, matchedRules);
+          }
+
+          final long rewriteStartNanos = rewriteMetrics != null ? System.nanoTime() : 0L;
+
           expandedQuery = rewriteChain.rewrite(expandedQuery, context);
+
+          if (calculateFingerprint) {
+              fingerprint = Fingerprint.of(expandedQuery,
+                      (Collection<?>) context.get(DecorateInstruction.CONTEXT_KEY));
+          }
+
+          final long buildStartNanos = rewriteMetrics != null ? System.nanoTime() : 0L;
+
+          if (Boolean.TRUE.equals(context.get(CommonRulesRewriter.SKIP_SEARCH_CONTEXT_KEY))) {
+              // a rule handles the query completely (for example by a redirect decoration): don't build the
+              // Lucene query, QuerqyQueryComponent won't execute the search
+              searchSkipped = true;
+              dfc.finishedUserQuery();
+              if (rewriteMetrics != null) {
+                  rewriteMetrics.recordPhaseLatency(PHASE_PARSE, parseEndNanos - parseStartNanos);
+                  rewriteMetrics.recordPhaseLatency(PHASE_REWRITE, buildStartNanos - rewriteStartNanos);
+              }
+              mainQuery = new MatchNoDocsQuery();
+              if (slowLog != null) {
+                  recordSlowRewrite(slowLog, userQuery, System.nanoTime() - slowLogStartNanos, rewriterTimings,
+                          matchedRules, mainQuery);
+              }
+              return mainQuery;
+          }
          
           mainQuery = makeMainQuery(expandedQuery);
          
@@ -344,6 +539,14 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
           applyFilterQueries(expandedQuery);
           querqyBoostQueries = getQuerqyBoostQueries(expandedQuery);
 
+          if (rewriteMetrics != null) {
+              // building the phrase field queries is accounted to the build phase
+              final long buildNanos = (rewriteStartNanos - parseEndNanos) + (System.nanoTime() - buildStartNanos);
+              rewriteMetrics.recordPhaseLatency(PHASE_PARSE, parseEndNanos - parseStartNanos);
+              rewriteMetrics.recordPhaseLatency(PHASE_REWRITE, buildStartNanos - rewriteStartNanos);
+              rewriteMetrics.recordPhaseLatency(PHASE_BUILD, buildNanos);
+          }
+
       }
 
       boostQueries = getBoostQueries();
@@ -417,10 +620,61 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
           mainQuery = new QuerqyReRankQuery(mainQuery, builder.build(), reRankNumDocs, 1.0);
       }
 
+      if (slowLog != null) {
+          recordSlowRewrite(slowLog, userQuery, System.nanoTime() - slowLogStartNanos, rewriterTimings,
+                  matchedRules, mainQuery);
+      }
+
       return mainQuery;
 
    }
 
+    /**
+     * Add an entry to the slow rewrite log if the query took longer than the threshold of the log.
+     *
+     * @param slowLog The slow rewrite log
+     * @param input The query string
+     * @param nanos The time for parsing, rewriting and creating the Lucene queries
+     * @param rewriterTimings The nanoseconds per rewriter or null if the query was not rewritten
+     * @param matchedRules The ids of the applied rules or null if the query was not rewritten
+     * @param mainQuery The resulting main query
+     */
+    protected void recordSlowRewrite(final SlowRewriteLog slowLog, final String input, final long nanos,
+                                     final long[] rewriterTimings, final List<String> matchedRules,
+                                     final Query mainQuery) {
+
+        if (!slowLog.shouldRecord(nanos)) {
+            return;
+        }
+
+        final List<String> timings = new ArrayList<>();
+        if (rewriterTimings != null) {
+            final List<RewriterFactory> factories = rewriteChain.getRewriterFactories();
+            for (int i = 0; i < rewriterTimings.length; i++) {
+                timings.add(i + ":" + factories.get(i).getClass().getSimpleName() + ":" + (rewriterTimings[i] / 1000L));
+            }
+        }
+
+        int luceneClauses = SlowRewriteLog.countLeafQueries(mainQuery);
+        if (filterQueries != null) {
+            for (final Query filterQuery : filterQueries) {
+                luceneClauses += SlowRewriteLog.countLeafQueries(filterQuery);
+            }
+        }
+
+        slowLog.add(new SlowRewriteLog.Entry(System.currentTimeMillis(), input, nanos / 1000L, timings,
+                matchedRules == null ? Collections.<String>emptyList() : matchedRules, luceneClauses));
+    }
+
+    /**
+     * Record queries that take longer than the threshold of the log.
+     *
+     * @param slowRewriteLog The log or null to disable logging
+     */
+    public void setSlowRewriteLog(final SlowRewriteLog slowRewriteLog) {
+        this.slowRewriteLog = slowRewriteLog;
+    }
+
    protected List<Query> getQuerqyBoostQueries(ExpandedQuery expandedQuery) throws SyntaxError {
 
       List<Query> result = transformBoostQueries(expandedQuery.getBoostUpQueries(), 1f);
@@ -765,6 +1019,40 @@ public class QuerqyDismaxQParser extends ExtendedDismaxQParser {
        return context;
    }
 
+   /**
+    *
+    * The fingerprint doesn't include request parameters like qf, pf or mm.
+    *
+    * @return The fingerprint of the rewritten query or null if {@link #QFINGERPRINT} was not set or if the
+    * query was not rewritten
+    */
+   public Fingerprint getFingerprint() {
+       return fingerprint;
+   }
+
+   /**
+    *
+    * @return true if a rule with the '@skipSearch' property was applied. The query returned by {@link #parse()}
+    * matches no documents in this case and the search doesn't have to be executed.
+    */
+   public boolean isSearchSkipped() {
+       return searchSkipped;
+   }
+
+   @Override
+   public void addDebugInfo(NamedList<Object> debugInfo) {
+       super.addDebugInfo(debugInfo);
+       if (context != null) {
+           final Object exceeded = context.get(RewriteBudget.EXCEEDED_CONTEXT_KEY);
+           if (exceeded != null) {
+               debugInfo.add(DEBUG_BUDGET_EXCEEDED, new ArrayList<>((Collection<?>) exceeded));
+           }
+       }
+       if (searchSkipped) {
+           debugInfo.add(DEBUG_SEARCH_SKIPPED, true);
+       }
+   }
+
    /**
     * Copied from DisMaxQParser
     * 
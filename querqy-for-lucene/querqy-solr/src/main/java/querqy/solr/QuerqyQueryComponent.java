@@ -11,8 +11,13 @@ import java.util.Set;
 import org.apache.lucene.search.Query;
 import org.apache.solr.handler.component.QueryComponent;
 import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.response.BasicResultContext;
+import org.apache.solr.search.DocListAndSet;
+import org.apache.solr.search.DocSlice;
 import org.apache.solr.search.QParser;
+import org.apache.solr.search.SortedIntDocSet;
 
+import querqy.model.Fingerprint;
 import querqy.rewrite.commonrules.model.DecorateInstruction;
 
 /**
@@ -52,11 +57,20 @@ public class QuerqyQueryComponent extends QueryComponent {
     @Override
     public void process(ResponseBuilder rb) throws IOException {
         
-        super.process(rb);
-        
         QParser parser = rb.getQparser();
         
+        if ((parser instanceof QuerqyDismaxQParser) && ((QuerqyDismaxQParser) parser).isSearchSkipped()) {
+            addEmptyResults(rb);
+        } else {
+            super.process(rb);
+        }
+        
         if (parser instanceof QuerqyDismaxQParser) {
+
+            Fingerprint fingerprint = ((QuerqyDismaxQParser) parser).getFingerprint();
+            if (fingerprint != null) {
+                rb.rsp.add("querqy_fingerprint", fingerprint.toHexString());
+            }
             
             Map<String, Object> context = ((QuerqyDismaxQParser) parser).getContext();
             if (context != null) {
@@ -72,6 +86,26 @@ public class QuerqyQueryComponent extends QueryComponent {
 
     }
 
+    /**
+     * Set an empty result instead of executing the search. This is used if a rule with the '@skipSearch' property
+     * was applied to the query.
+     * 
+     * @param rb The response builder
+     */
+    protected void addEmptyResults(ResponseBuilder rb) {
+        
+        DocListAndSet results = new DocListAndSet();
+        results.docList = new DocSlice(0, 0, new int[0], null, 0, 0f);
+        if (rb.isNeedDocSet()) {
+            results.docSet = new SortedIntDocSet(new int[0]);
+        }
+        rb.setResults(results);
+        
+        rb.rsp.addResponse(new BasicResultContext(rb));
+        rb.rsp.getToLog().add("hits", 0);
+        
+    }
+
     /* (non-Javadoc)
      * @see org.apache.solr.handler.component.SearchComponent#getDescription()
      */
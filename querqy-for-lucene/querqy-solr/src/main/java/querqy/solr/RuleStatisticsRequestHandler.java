@@ -0,0 +1,147 @@
+/**
+ *
+ */
+package querqy.solr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.QParserPlugin;
+
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.model.RuleStatistics;
+
+/**
+ * <p>Reports how often the rules of the common rules rewriters matched and what they contributed to the queries.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ *     <li>qparser: the name of the Querqy query parser plugin (default: querqy)</li>
+ *     <li>sort: one of matches, generatedTerms, boostQueries, filterQueries. Rules are sorted by this counter in
+ *     descending order. Rules are sorted by id if this parameter is not set.</li>
+ *     <li>reset: set all counters to 0 after reporting them if true (default: false)</li>
+ * </ul>
+ *
+ * <p>The generatedTerms, boostQueries and filterQueries counters are only reported for rewriters that have
+ * 'ruleContributionStatistics' enabled.</p>
+ */
+public class RuleStatisticsRequestHandler extends RequestHandlerBase {
+
+    public static final String PARAM_QPARSER = "qparser";
+    public static final String PARAM_SORT = "sort";
+    public static final String PARAM_RESET = "reset";
+
+    public static final String DEFAULT_QPARSER = "querqy";
+
+    public static final String MATCHES = "matches";
+    public static final String GENERATED_TERMS = "generatedTerms";
+    public static final String BOOST_QUERIES = "boostQueries";
+    public static final String FILTER_QUERIES = "filterQueries";
+
+    @Override
+    public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+
+        SolrParams params = req.getParams();
+        String qparserName = params.get(PARAM_QPARSER, DEFAULT_QPARSER);
+
+        QParserPlugin plugin = req.getCore().getQueryPlugin(qparserName);
+        if (!(plugin instanceof AbstractQuerqyDismaxQParserPlugin)) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Not a Querqy query parser: " + qparserName);
+        }
+
+        String sort = params.get(PARAM_SORT);
+        Comparator<Map.Entry<String, RuleStatistics>> comparator = sort == null ? null : makeComparator(sort);
+        boolean reset = params.getBool(PARAM_RESET, false);
+
+        RewriteChain rewriteChain = ((AbstractQuerqyDismaxQParserPlugin) plugin).getRewriteChain();
+
+        NamedList<Object> rewriters = new SimpleOrderedMap<>();
+
+        List<RewriterFactory> factories = rewriteChain.getRewriterFactories();
+        for (int i = 0, len = factories.size(); i < len; i++) {
+
+            RewriterFactory factory = factories.get(i);
+            if (factory instanceof querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory) {
+
+                querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory rulesFactory =
+                        (querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory) factory;
+
+                List<Map.Entry<String, RuleStatistics>> entries =
+                        new ArrayList<>(rulesFactory.getRuleStatistics().entrySet());
+                if (comparator != null) {
+                    Collections.sort(entries, comparator);
+                }
+
+                NamedList<Object> rules = new SimpleOrderedMap<>();
+                for (Map.Entry<String, RuleStatistics> entry : entries) {
+                    RuleStatistics statistics = entry.getValue();
+                    NamedList<Object> ruleStats = new SimpleOrderedMap<>();
+                    ruleStats.add(MATCHES, statistics.getMatches());
+                    if (rulesFactory.isRecordingRuleContributions()) {
+                        ruleStats.add(GENERATED_TERMS, statistics.getGeneratedTerms());
+                        ruleStats.add(BOOST_QUERIES, statistics.getBoostQueries());
+                        ruleStats.add(FILTER_QUERIES, statistics.getFilterQueries());
+                    }
+                    rules.add(entry.getKey(), ruleStats);
+                }
+
+                rewriters.add("rewriter." + i, rules);
+
+                if (reset) {
+                    rulesFactory.resetRuleStatistics();
+                }
+            }
+        }
+
+        rsp.add("rewriters", rewriters);
+
+    }
+
+    protected Comparator<Map.Entry<String, RuleStatistics>> makeComparator(final String sort) {
+
+        switch (sort) {
+        case MATCHES:
+        case GENERATED_TERMS:
+        case BOOST_QUERIES:
+        case FILTER_QUERIES:
+            break;
+        default:
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Cannot sort by " + sort);
+        }
+
+        return new Comparator<Map.Entry<String, RuleStatistics>>() {
+
+            @Override
+            public int compare(Map.Entry<String, RuleStatistics> o1, Map.Entry<String, RuleStatistics> o2) {
+                int c = Long.compare(value(o2.getValue()), value(o1.getValue()));
+                return c != 0 ? c : o1.getKey().compareTo(o2.getKey());
+            }
+
+            long value(RuleStatistics statistics) {
+                switch (sort) {
+                case MATCHES: return statistics.getMatches();
+                case GENERATED_TERMS: return statistics.getGeneratedTerms();
+                case BOOST_QUERIES: return statistics.getBoostQueries();
+                default: return statistics.getFilterQueries();
+                }
+            }
+        };
+    }
+
+    @Override
+    public String getDescription() {
+        return "Querqy rule statistics";
+    }
+
+}
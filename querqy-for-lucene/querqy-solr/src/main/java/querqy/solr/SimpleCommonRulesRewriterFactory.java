@@ -34,6 +34,9 @@ public class SimpleCommonRulesRewriterFactory implements RewriterFactoryAdapter
       }
       
       Boolean ignoreCase = args.getBooleanArg("ignoreCase");
+      
+      // count the generated terms, boost and filter queries per rule in the rule statistics
+      Boolean recordRuleContributions = args.getBooleanArg("ruleContributionStatistics");
 
       // querqy parser for queries that are part of the instructions in the
       // rules
@@ -47,7 +50,8 @@ public class SimpleCommonRulesRewriterFactory implements RewriterFactoryAdapter
       }
       
       return new querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory(
-            new InputStreamReader(resourceLoader.openResource(rulesResourceName), "UTF-8"), querqyParser, ignoreCase != null && ignoreCase);
+            new InputStreamReader(resourceLoader.openResource(rulesResourceName), "UTF-8"), querqyParser, ignoreCase != null && ignoreCase,
+            recordRuleContributions != null && recordRuleContributions);
    }
 
 }
@@ -4,6 +4,7 @@
 package querqy.solr;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.solr.common.SolrException;
@@ -12,18 +13,27 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.request.SolrQueryRequest;
 
 import querqy.parser.QuerqyParser;
+import querqy.parser.WhiteSpaceQuerqyParser;
 
 /**
  * This is a generic {@link SolrQuerqyParserFactory} which creates {@link QuerqyParser} objects for 
  * the configured class name (the fully specified class name is expected as the value of configuration
  * parameter &quot;class&quot;.
  * 
+ * A new parser is created per request, except for the stateless {@link WhiteSpaceQuerqyParser}, for which the
+ * shared instance is returned.
+ * 
+ * Parsers that build internal state lazily from their input (like the ANTLR-based parser's prediction DFA)
+ * can be warmed up by listing sample queries in an &lt;arr name=&quot;warmUpQueries&quot;&gt; of strings, which
+ * will be parsed once when the factory is initialised.
+ * 
  * @author René Kriegler, @renekrie
  *
  */
 public class SimpleQuerqyQParserFactory implements SolrQuerqyParserFactory {
 
    protected Class<? extends QuerqyParser> querqyParserClass;
+   protected QuerqyParser sharedParser = null;
 
    /*
     * (non-Javadoc)
@@ -42,6 +52,15 @@ public class SimpleQuerqyQParserFactory implements SolrQuerqyParserFactory {
       }
 
       querqyParserClass = loader.findClass(className, QuerqyParser.class);
+      sharedParser = (querqyParserClass == WhiteSpaceQuerqyParser.class) ? WhiteSpaceQuerqyParser.INSTANCE : null;
+
+      List<?> warmUpQueries = (List<?>) parserConfig.get("warmUpQueries");
+      if (warmUpQueries != null && !warmUpQueries.isEmpty()) {
+         QuerqyParser parser = createParser(null, null, null, null);
+         for (Object query : warmUpQueries) {
+            parser.parse((String) query);
+         }
+      }
 
    }
 
@@ -56,6 +75,9 @@ public class SimpleQuerqyQParserFactory implements SolrQuerqyParserFactory {
    @Override
    public QuerqyParser createParser(String qstr, SolrParams localParams,
          SolrParams params, SolrQueryRequest req) {
+      if (sharedParser != null) {
+         return sharedParser;
+      }
       try {
          return querqyParserClass.newInstance();
       } catch (InstantiationException | IllegalAccessException e) {
@@ -0,0 +1,224 @@
+/**
+ *
+ */
+package querqy.solr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.queries.function.BoostedQuery;
+import org.apache.solr.search.WrappedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Keeps the most recent queries for which the Querqy part of {@link QuerqyDismaxQParser#parse()} took longer
+ * than a threshold.</p>
+ *
+ * <p>Each entry contains the query string, the total time, the time per rewriter, the ids of the rules that were
+ * applied and the number of leaf clauses of the resulting Lucene query. At most {@link #getCapacity()} entries are
+ * kept and only a sample of the slow queries is recorded if the sample rate is below 1. Recorded entries are also
+ * logged at WARN level.</p>
+ */
+public class SlowRewriteLog {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(SlowRewriteLog.class);
+
+    /**
+     * A slow query
+     */
+    public static class Entry {
+
+        final long timestamp;
+        final String input;
+        final long totalMicros;
+        final List<String> rewriterTimings;
+        final Collection<String> matchedRules;
+        final int luceneClauses;
+
+        public Entry(long timestamp, String input, long totalMicros, List<String> rewriterTimings,
+                     Collection<String> matchedRules, int luceneClauses) {
+            this.timestamp = timestamp;
+            this.input = input;
+            this.totalMicros = totalMicros;
+            this.rewriterTimings = rewriterTimings;
+            this.matchedRules = matchedRules;
+            this.luceneClauses = luceneClauses;
+        }
+
+        /**
+         *
+         * @return The time when the entry was recorded in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        public long getTotalMicros() {
+            return totalMicros;
+        }
+
+        /**
+         *
+         * @return One element per rewriter: 'index:factory class name:micros'
+         */
+        public List<String> getRewriterTimings() {
+            return rewriterTimings;
+        }
+
+        public Collection<String> getMatchedRules() {
+            return matchedRules;
+        }
+
+        public int getLuceneClauses() {
+            return luceneClauses;
+        }
+
+        @Override
+        public String toString() {
+            return "input=" + input + ", totalMicros=" + totalMicros + ", rewriterTimings=" + rewriterTimings
+                    + ", matchedRules=" + matchedRules + ", luceneClauses=" + luceneClauses;
+        }
+    }
+
+    protected final long thresholdNanos;
+    protected final int capacity;
+    protected final double sampleRate;
+    protected final ArrayDeque<Entry> entries;
+    protected final AtomicLong slowQueries = new AtomicLong();
+
+    /**
+     *
+     * @param thresholdMillis Queries that take longer than this are considered slow
+     * @param capacity The maximum number of entries to keep
+     * @param sampleRate The fraction of slow queries to record (0 - 1)
+     */
+    public SlowRewriteLog(long thresholdMillis, int capacity, double sampleRate) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("thresholdMillis must be >= 0");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("sampleRate must be in [0, 1]");
+        }
+        this.thresholdNanos = thresholdMillis * 1000000L;
+        this.capacity = capacity;
+        this.sampleRate = sampleRate;
+        this.entries = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     *
+     * @param nanos The time for processing a query
+     * @return true if the query is slow and was selected by sampling
+     */
+    public boolean shouldRecord(long nanos) {
+        if (nanos <= thresholdNanos) {
+            return false;
+        }
+        slowQueries.incrementAndGet();
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public void add(Entry entry) {
+        synchronized (entries) {
+            if (entries.size() == capacity) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+        LOG.warn("Slow Querqy rewrite: {}", entry);
+    }
+
+    /**
+     *
+     * @return The recorded entries, the most recent entry last
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     *
+     * @return The number of queries above the threshold, including the ones that were not sampled
+     */
+    public long getSlowQueryCount() {
+        return slowQueries.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1000000L;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Count the leaf queries of a Lucene query.
+     *
+     * @param query The query
+     * @return The number of leaf queries
+     */
+    public static int countLeafQueries(Query query) {
+        if (query == null) {
+            return 0;
+        }
+        if (query instanceof BooleanQuery) {
+            int count = 0;
+            for (final BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                count += countLeafQueries(clause.getQuery());
+            }
+            return count;
+        }
+        if (query instanceof DisjunctionMaxQuery) {
+            int count = 0;
+            for (final Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+                count += countLeafQueries(disjunct);
+            }
+            return count;
+        }
+        if (query instanceof BoostQuery) {
+            return countLeafQueries(((BoostQuery) query).getQuery());
+        }
+        if (query instanceof WrappedQuery) {
+            return countLeafQueries(((WrappedQuery) query).getWrappedQuery());
+        }
+        if (query instanceof BoostedQuery) {
+            return countLeafQueries(((BoostedQuery) query).getQuery());
+        }
+        if (query instanceof QuerqyReRankQuery) {
+            QuerqyReRankQuery reRankQuery = (QuerqyReRankQuery) query;
+            return countLeafQueries(reRankQuery.mainQuery) + countLeafQueries(reRankQuery.reRankQuery);
+        }
+        return 1;
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package querqy.solr;
+
+import java.util.ArrayList;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.QParserPlugin;
+
+/**
+ * <p>Returns the entries of the {@link SlowRewriteLog} of a Querqy query parser.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ *     <li>qparser: the name of the Querqy query parser plugin (default: querqy)</li>
+ *     <li>clear: remove all entries after reporting them if true (default: false)</li>
+ * </ul>
+ */
+public class SlowRewriteLogRequestHandler extends RequestHandlerBase {
+
+    public static final String PARAM_QPARSER = "qparser";
+    public static final String PARAM_CLEAR = "clear";
+
+    public static final String DEFAULT_QPARSER = "querqy";
+
+    @Override
+    public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+
+        SolrParams params = req.getParams();
+        String qparserName = params.get(PARAM_QPARSER, DEFAULT_QPARSER);
+
+        QParserPlugin plugin = req.getCore().getQueryPlugin(qparserName);
+        if (!(plugin instanceof AbstractQuerqyDismaxQParserPlugin)) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Not a Querqy query parser: " + qparserName);
+        }
+
+        SlowRewriteLog slowLog = ((AbstractQuerqyDismaxQParserPlugin) plugin).getSlowRewriteLog();
+        if (slowLog == null) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                    "No slow log configured for query parser " + qparserName);
+        }
+
+        rsp.add("thresholdMs", slowLog.getThresholdMillis());
+        rsp.add("slowQueries", slowLog.getSlowQueryCount());
+
+        ArrayList<NamedList<Object>> entries = new ArrayList<>();
+        for (SlowRewriteLog.Entry entry : slowLog.getEntries()) {
+            NamedList<Object> item = new SimpleOrderedMap<>();
+            item.add("timestamp", entry.getTimestamp());
+            item.add("input", entry.getInput());
+            item.add("totalMicros", entry.getTotalMicros());
+            item.add("rewriterTimings", entry.getRewriterTimings());
+            item.add("matchedRules", new ArrayList<>(entry.getMatchedRules()));
+            item.add("luceneClauses", entry.getLuceneClauses());
+            entries.add(item);
+        }
+        rsp.add("entries", entries);
+
+        if (params.getBool(PARAM_CLEAR, false)) {
+            slowLog.clear();
+        }
+
+    }
+
+    @Override
+    public String getDescription() {
+        return "Querqy slow rewrite log";
+    }
+
+}
@@ -21,6 +21,7 @@ import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
 import querqy.model.Query;
 import querqy.model.Term;
+import querqy.rewrite.ApplicabilityAwareRewriterFactory;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.commonrules.CommonRulesRewriter;
@@ -180,18 +181,26 @@ public class SynonymFormatCommonRulesRewriterFactory implements
 
    }
 
-   public static class RulesRewriterFactory implements RewriterFactory {
+   public static class RulesRewriterFactory implements ApplicabilityAwareRewriterFactory {
 
       final RulesCollection rules;
+      final CommonRulesRewriter rewriter;
 
       public RulesRewriterFactory(RulesCollection rules) {
          this.rules = rules;
+         this.rewriter = new CommonRulesRewriter(rules);
       }
 
       @Override
       public QueryRewriter createRewriter(ExpandedQuery input,
             Map<String, ?> context) {
-         return new CommonRulesRewriter(rules);
+         return rewriter;
+      }
+
+      @Override
+      public boolean isApplicable(ExpandedQuery query, Map<String, ?> context) {
+         Query userQuery = query.getUserQuery();
+         return userQuery != null && rules.mightMatch(userQuery);
       }
 
     @Override
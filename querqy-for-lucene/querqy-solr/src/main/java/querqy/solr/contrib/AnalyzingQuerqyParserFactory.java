@@ -16,10 +16,15 @@ import org.apache.solr.schema.IndexSchema;
 import com.google.common.base.Preconditions;
 
 import querqy.lucene.contrib.parser.AnalyzingQuerqyParser;
+import querqy.lucene.contrib.parser.SynonymCache;
 import querqy.parser.QuerqyParser;
 import querqy.solr.SolrQuerqyParserFactory;
 
 /**
+ * Creates {@link AnalyzingQuerqyParser}s for the analyzers of the configured field types. The synonyms of the
+ * tokens are cached across requests, configure the number of cached tokens using &quot;synonymCacheSize&quot;
+ * (default: {@value #DEFAULT_SYNONYM_CACHE_SIZE}, 0 disables the cache).
+ * 
  * @author René Kriegler, @renekrie
  * 
  */
@@ -29,6 +34,10 @@ public class AnalyzingQuerqyParserFactory implements SolrQuerqyParserFactory {
 
    protected String queryParsingFieldType = null;
 
+   public static final int DEFAULT_SYNONYM_CACHE_SIZE = 10000;
+
+   protected SynonymCache synonymCache = null;
+
    /*
     * (non-Javadoc)
     * 
@@ -46,6 +55,12 @@ public class AnalyzingQuerqyParserFactory implements SolrQuerqyParserFactory {
       Preconditions.checkNotNull(queryParsingFieldType,
             "queryParsingFieldType configuration missing");
 
+      Integer synonymCacheSize = (Integer) parserConfig.get("synonymCacheSize");
+      if (synonymCacheSize == null) {
+         synonymCacheSize = DEFAULT_SYNONYM_CACHE_SIZE;
+      }
+      synonymCache = (synonymsfieldType != null && synonymCacheSize > 0) ? new SynonymCache(synonymCacheSize) : null;
+
    }
 
    /*
@@ -67,7 +82,8 @@ public class AnalyzingQuerqyParserFactory implements SolrQuerqyParserFactory {
       Analyzer synonymAnalyzer = (synonymsfieldType != null) ? schema.getFieldTypeByName(synonymsfieldType)
             .getQueryAnalyzer() : null;
 
-      return new AnalyzingQuerqyParser(rewriteAnalyzer, synonymAnalyzer);
+      // the cache notices if the schema and thus the analyzer has changed
+      return new AnalyzingQuerqyParser(rewriteAnalyzer, synonymAnalyzer, synonymCache);
    }
 
 }
@@ -0,0 +1,85 @@
+/**
+ * 
+ */
+package querqy.solr.contrib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.common.util.NamedList;
+
+import querqy.lucene.contrib.rewrite.CompoundDictionary;
+import querqy.lucene.contrib.rewrite.CompoundRewriter;
+import querqy.rewrite.RewriterFactory;
+import querqy.solr.RewriterFactoryAdapter;
+
+/**
+ * <p>FactoryAdapter for {@link querqy.lucene.contrib.rewrite.CompoundRewriterFactory}</p>
+ *
+ * <p>Configuration:</p>
+ * <ul>
+ *     <li>dictionary: a word list resource (one word per line), or</li>
+ *     <li>fst: a dictionary resource that was precompiled using {@link CompoundDictionary#main(String[])}</li>
+ *     <li>ignoreCase: lower-case the dictionary and the query terms for lookups (default: true)</li>
+ *     <li>decompound: split terms into dictionary words (default: true)</li>
+ *     <li>compound: join adjacent dictionary words (default: true)</li>
+ *     <li>minPartLength: the minimum length of a part when splitting (default: 3)</li>
+ *     <li>maxParts: the maximum number of parts when splitting (default: 4)</li>
+ *     <li>linkingMorphemes: comma-separated strings that can occur between two parts, like 's' (default: none)</li>
+ * </ul>
+ */
+public class CompoundRewriterFactory implements RewriterFactoryAdapter {
+
+    @Override
+    public RewriterFactory createRewriterFactory(NamedList<?> args, ResourceLoader resourceLoader) throws IOException {
+
+        Boolean ignoreCase = args.getBooleanArg("ignoreCase");
+        boolean ic = (ignoreCase == null) ? true : ignoreCase;
+
+        Boolean decompound = args.getBooleanArg("decompound");
+        Boolean compound = args.getBooleanArg("compound");
+
+        Integer minPartLength = (Integer) args.get("minPartLength");
+        Integer maxParts = (Integer) args.get("maxParts");
+
+        String dictionaryResource = (String) args.get("dictionary");
+        String fstResource = (String) args.get("fst");
+
+        if ((dictionaryResource == null) == (fstResource == null)) {
+            throw new IllegalArgumentException("Exactly one of 'dictionary' and 'fst' must be configured");
+        }
+
+        CompoundDictionary dictionary;
+        if (fstResource != null) {
+            try (InputStream in = resourceLoader.openResource(fstResource.trim())) {
+                dictionary = CompoundDictionary.read(in, ic);
+            }
+        } else {
+            dictionary = CompoundDictionary.readWordList(
+                    new InputStreamReader(resourceLoader.openResource(dictionaryResource.trim()), "UTF-8"), ic);
+        }
+
+        List<String> linkingMorphemes = new ArrayList<>();
+        String morphemes = (String) args.get("linkingMorphemes");
+        if (morphemes != null) {
+            for (String morpheme : morphemes.split(",")) {
+                morpheme = morpheme.trim();
+                if (morpheme.length() > 0) {
+                    linkingMorphemes.add(morpheme);
+                }
+            }
+        }
+
+        return new querqy.lucene.contrib.rewrite.CompoundRewriterFactory(dictionary,
+                (decompound == null) ? true : decompound,
+                (compound == null) ? true : compound,
+                (minPartLength == null) ? CompoundRewriter.DEFAULT_MIN_PART_LENGTH : minPartLength,
+                (maxParts == null) ? CompoundRewriter.DEFAULT_MAX_PARTS : maxParts,
+                linkingMorphemes.toArray(new String[linkingMorphemes.size()]));
+    }
+
+}
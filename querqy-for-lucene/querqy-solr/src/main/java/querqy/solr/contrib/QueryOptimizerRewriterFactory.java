@@ -0,0 +1,20 @@
+package querqy.solr.contrib;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.common.util.NamedList;
+
+import querqy.rewrite.RewriterFactory;
+import querqy.solr.RewriterFactoryAdapter;
+
+import java.io.IOException;
+
+/**
+ * FactoryAdapter for {@link querqy.rewrite.contrib.QueryOptimizerRewriterFactory}
+ */
+public class QueryOptimizerRewriterFactory implements RewriterFactoryAdapter {
+
+    @Override
+    public RewriterFactory createRewriterFactory(NamedList<?> args, ResourceLoader resourceLoader) throws IOException {
+        return new querqy.rewrite.contrib.QueryOptimizerRewriterFactory();
+    }
+}
@@ -2,14 +2,33 @@ package querqy.solr.contrib;
 
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.search.SolrIndexSearcher;
 
+import querqy.lucene.contrib.rewrite.IndexTermsShingleDictionary;
+import querqy.model.ExpandedQuery;
+import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.contrib.ShingleDictionary;
+import querqy.rewrite.contrib.ShingleRewriter;
+import querqy.rewrite.contrib.WordListShingleDictionary;
 import querqy.solr.RewriterFactoryAdapter;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
 
 /**
- * FactoryAdapter for {@link ShingleRewriterFactory}
+ * <p>FactoryAdapter for {@link ShingleRewriterFactory}</p>
+ *
+ * <p>Configuration:</p>
+ * <ul>
+ *     <li>acceptGeneratedTerms: join generated terms into shingles (default: false)</li>
+ *     <li>minShingleSize: the minimum number of terms in a shingle (default: 2)</li>
+ *     <li>maxShingleSize: the maximum number of terms in a shingle (default: 2)</li>
+ *     <li>dictionaryField: only add shingles that exist as a term in this index field</li>
+ *     <li>dictionary: only add shingles that are contained in this word list resource (one word per line)</li>
+ * </ul>
  */
 public class ShingleRewriterFactory implements RewriterFactoryAdapter {
 
@@ -17,6 +36,66 @@ public class ShingleRewriterFactory implements RewriterFactoryAdapter {
     public RewriterFactory createRewriterFactory(NamedList<?> args, ResourceLoader resourceLoader) throws IOException {
         Boolean acceptGeneratedTerms = args.getBooleanArg("acceptGeneratedTerms");
         boolean t = (acceptGeneratedTerms == null) ? false : acceptGeneratedTerms;
-        return new querqy.rewrite.contrib.ShingleRewriterFactory(t);
+
+        Integer minShingleSize = (Integer) args.get("minShingleSize");
+        int min = (minShingleSize == null) ? ShingleRewriter.DEFAULT_MIN_SHINGLE_SIZE : minShingleSize;
+        Integer maxShingleSize = (Integer) args.get("maxShingleSize");
+        int max = (maxShingleSize == null) ? Math.max(min, ShingleRewriter.DEFAULT_MAX_SHINGLE_SIZE) : maxShingleSize;
+
+        String dictionaryField = (String) args.get("dictionaryField");
+        String dictionaryResource = (String) args.get("dictionary");
+
+        if (dictionaryField != null && dictionaryResource != null) {
+            throw new IllegalArgumentException("Only one of 'dictionaryField' and 'dictionary' can be configured");
+        }
+
+        if (dictionaryField != null) {
+            return new IndexTermsShingleRewriterFactory(t, min, max, dictionaryField.trim());
+        }
+
+        ShingleDictionary dictionary = null;
+        if (dictionaryResource != null) {
+            dictionary = WordListShingleDictionary.read(
+                    new InputStreamReader(resourceLoader.openResource(dictionaryResource.trim()), "UTF-8"));
+        }
+
+        return new querqy.rewrite.contrib.ShingleRewriterFactory(t, min, max, dictionary);
+    }
+
+    /**
+     * Creates a {@link ShingleRewriter} per request that only adds shingles which exist in an index field of the
+     * current searcher. The terms of the field are cached by the searcher's leaf reader.
+     */
+    public static class IndexTermsShingleRewriterFactory extends querqy.rewrite.contrib.ShingleRewriterFactory {
+
+        protected final String dictionaryField;
+
+        public IndexTermsShingleRewriterFactory(boolean acceptGeneratedTerms, int minShingleSize,
+                int maxShingleSize, String dictionaryField) {
+            super(acceptGeneratedTerms, minShingleSize, maxShingleSize, null);
+            this.dictionaryField = dictionaryField;
+        }
+
+        /**
+         * Falls back to adding all shingles if there is no current Solr request
+         */
+        @Override
+        public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+            SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+            if (requestInfo == null) {
+                return rewriter;
+            }
+            SolrIndexSearcher searcher = requestInfo.getReq().getSearcher();
+            try {
+                return new ShingleRewriter(acceptGeneratedTerms, minShingleSize, maxShingleSize,
+                        new IndexTermsShingleDictionary(searcher.getLeafReader().terms(dictionaryField)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public String getDictionaryField() {
+            return dictionaryField;
+        }
     }
 }
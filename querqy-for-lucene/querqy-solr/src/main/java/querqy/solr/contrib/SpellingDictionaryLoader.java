@@ -0,0 +1,78 @@
+/**
+ * 
+ */
+package querqy.solr.contrib;
+
+import java.io.IOException;
+
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.solr.AbstractQuerqyDismaxQParserPlugin;
+import querqy.solr.contrib.SpellingRewriterFactory.IndexSpellingRewriterFactory;
+
+/**
+ * <p>Builds the dictionaries of the {@link SpellingRewriterFactory} rewriters of a Querqy query parser while Solr
+ * warms a new searcher, so that the dictionaries don't have to be built while serving requests. Configure it for
+ * the firstSearcher and newSearcher events:</p>
+ *
+ * <pre>
+ * &lt;listener event="newSearcher" class="querqy.solr.contrib.SpellingDictionaryLoader"&gt;
+ *     &lt;str name="qParserPlugin"&gt;querqy&lt;/str&gt;
+ * &lt;/listener&gt;
+ * </pre>
+ */
+public class SpellingDictionaryLoader extends AbstractSolrEventListener {
+
+    static final Logger LOG = LoggerFactory.getLogger(SpellingDictionaryLoader.class);
+
+    public static final String CONF_Q_PARSER_PLUGIN = "qParserPlugin";
+
+    public SpellingDictionaryLoader(SolrCore core) {
+        super(core);
+    }
+
+    protected AbstractQuerqyDismaxQParserPlugin getQParserPlugin() {
+        String parserName = (String) getArgs().get(CONF_Q_PARSER_PLUGIN);
+        if (parserName == null) {
+            throw new RuntimeException("Missing configuration property: " + CONF_Q_PARSER_PLUGIN);
+        }
+        QParserPlugin qParserPlugin = getCore().getQueryPlugin(parserName);
+        if (!(qParserPlugin instanceof AbstractQuerqyDismaxQParserPlugin)) {
+            throw new RuntimeException("No Querqy query parser plugin for name '" + parserName + "'");
+        }
+        return (AbstractQuerqyDismaxQParserPlugin) qParserPlugin;
+    }
+
+    @Override
+    public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+
+        RewriteChain rewriteChain = getQParserPlugin().getRewriteChain();
+        if (rewriteChain == null) {
+            return;
+        }
+
+        for (RewriterFactory factory : rewriteChain.getRewriterFactories()) {
+            if (factory instanceof IndexSpellingRewriterFactory) {
+                IndexSpellingRewriterFactory spellingFactory = (IndexSpellingRewriterFactory) factory;
+                long t1 = System.currentTimeMillis();
+                try {
+                    spellingFactory.load(newSearcher.getLeafReader());
+                } catch (IOException e) {
+                    LOG.error("Error loading spelling dictionary for field " + spellingFactory.getField(), e);
+                }
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Loaded spelling dictionary for field {} after {}ms", spellingFactory.getField(),
+                            System.currentTimeMillis() - t1);
+                }
+            }
+        }
+    }
+
+}
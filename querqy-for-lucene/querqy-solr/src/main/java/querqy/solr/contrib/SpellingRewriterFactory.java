@@ -0,0 +1,188 @@
+/**
+ * 
+ */
+package querqy.solr.contrib;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrRequestInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import querqy.lucene.contrib.rewrite.SpellingDictionary;
+import querqy.lucene.contrib.rewrite.SpellingRewriter;
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.RewriterFactory;
+import querqy.solr.RewriterFactoryAdapter;
+
+/**
+ * <p>FactoryAdapter for a {@link SpellingRewriter} that corrects query terms using the terms of an index field.</p>
+ *
+ * <p>Configuration:</p>
+ * <ul>
+ *     <li>field: the index field that provides the dictionary (required)</li>
+ *     <li>minDocFreq: only use terms that occur in at least this number of documents as corrections (default: 1)</li>
+ *     <li>maxEdits: the maximum edit distance between a term and its correction, 1 or 2 (default: 2)</li>
+ *     <li>minPrefixLength: the number of leading characters that must not be corrected (default: 1)</li>
+ *     <li>minTermLength: only correct terms of at least this length (default: 4)</li>
+ *     <li>maxCorrections: the maximum number of corrections per term (default: 1)</li>
+ *     <li>cacheSize: the maximum number of cached terms per searcher, 0 disables the cache (default: 10000)</li>
+ * </ul>
+ *
+ * <p>Configure a {@link SpellingDictionaryLoader} for the firstSearcher and newSearcher events to build the
+ * dictionary while Solr warms a new searcher.</p>
+ */
+public class SpellingRewriterFactory implements RewriterFactoryAdapter {
+
+    @Override
+    public RewriterFactory createRewriterFactory(NamedList<?> args, ResourceLoader resourceLoader) throws IOException {
+
+        String field = (String) args.get("field");
+        if (field == null) {
+            throw new IllegalArgumentException("Property 'field' not configured");
+        }
+
+        Integer minDocFreq = (Integer) args.get("minDocFreq");
+        Integer maxEdits = (Integer) args.get("maxEdits");
+        Integer minPrefixLength = (Integer) args.get("minPrefixLength");
+        Integer minTermLength = (Integer) args.get("minTermLength");
+        Integer maxCorrections = (Integer) args.get("maxCorrections");
+        Integer cacheSize = (Integer) args.get("cacheSize");
+
+        return new IndexSpellingRewriterFactory(field.trim(),
+                (minDocFreq == null) ? 1 : minDocFreq,
+                (maxEdits == null) ? SpellingRewriter.DEFAULT_MAX_EDITS : maxEdits,
+                (minPrefixLength == null) ? SpellingRewriter.DEFAULT_MIN_PREFIX_LENGTH : minPrefixLength,
+                (minTermLength == null) ? SpellingRewriter.DEFAULT_MIN_TERM_LENGTH : minTermLength,
+                (maxCorrections == null) ? SpellingRewriter.DEFAULT_MAX_CORRECTIONS : maxCorrections,
+                (cacheSize == null) ? SpellingRewriter.DEFAULT_CACHE_SIZE : cacheSize);
+    }
+
+    /**
+     * <p>Keeps one {@link SpellingRewriter}, and thus one {@link SpellingDictionary} and correction cache, per index
+     * reader. The rewriters are kept in a weak map keyed by the core cache key of the reader, so that old and new
+     * searchers can be used at the same time and rewriters are discarded together with their readers.</p>
+     *
+     * <p>The dictionary is built from the terms of the index field by {@link SpellingDictionaryLoader} while Solr
+     * warms a new searcher. It is never built on the request thread: if there is no dictionary for the searcher of a
+     * request, for example because no loader is configured, the dictionary is built in the background and the
+     * request is rewritten using the dictionary of the most recently loaded reader (or not corrected at all if there
+     * is none yet).</p>
+     */
+    public static class IndexSpellingRewriterFactory implements RewriterFactory {
+
+        static final Logger LOG = LoggerFactory.getLogger(IndexSpellingRewriterFactory.class);
+
+        protected final String field;
+        protected final int minDocFreq;
+        protected final int maxEdits;
+        protected final int minPrefixLength;
+        protected final int minTermLength;
+        protected final int maxCorrections;
+        protected final int cacheSize;
+
+        private final Map<Object, SpellingRewriter> rewriters =
+                Collections.synchronizedMap(new WeakHashMap<Object, SpellingRewriter>());
+        private final Set<Object> pendingLoads =
+                Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<Object, Boolean>()));
+        private final SpellingRewriter noCorrections;
+
+        private volatile SpellingRewriter latest = null;
+
+        public IndexSpellingRewriterFactory(String field, int minDocFreq, int maxEdits, int minPrefixLength,
+                int minTermLength, int maxCorrections, int cacheSize) {
+            this.field = field;
+            this.minDocFreq = minDocFreq;
+            this.maxEdits = maxEdits;
+            this.minPrefixLength = minPrefixLength;
+            this.minTermLength = minTermLength;
+            this.maxCorrections = maxCorrections;
+            this.cacheSize = cacheSize;
+            // also validates the settings early
+            noCorrections = newRewriter(new SpellingDictionary(null));
+        }
+
+        /**
+         * Returns a rewriter that doesn't correct anything if there is no current Solr request
+         */
+        @Override
+        public QueryRewriter createRewriter(ExpandedQuery input, Map<String, ?> context) {
+            SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+            if (requestInfo == null) {
+                return noCorrections;
+            }
+            LeafReader reader = requestInfo.getReq().getSearcher().getLeafReader();
+
+            SpellingRewriter rewriter = rewriters.get(reader.getCoreCacheKey());
+            if (rewriter != null) {
+                return rewriter;
+            }
+
+            SpellingRewriter fallback = latest;
+            loadInBackground(reader);
+            return fallback != null ? fallback : noCorrections;
+        }
+
+        /**
+         * Build the dictionary for the reader unless it has already been built. This method is meant to be called
+         * while warming a new searcher.
+         *
+         * @param reader The reader of the searcher
+         * @throws IOException
+         */
+        public void load(LeafReader reader) throws IOException {
+            Object readerKey = reader.getCoreCacheKey();
+            if (!rewriters.containsKey(readerKey)) {
+                SpellingRewriter rewriter = newRewriter(SpellingDictionary.build(reader.terms(field), minDocFreq));
+                rewriters.put(readerKey, rewriter);
+                latest = rewriter;
+            }
+        }
+
+        protected void loadInBackground(final LeafReader reader) {
+            final Object readerKey = reader.getCoreCacheKey();
+            if (pendingLoads.add(readerKey)) {
+                // loads are rare (at most once per reader), a thread per load doesn't linger after the core is closed
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            load(reader);
+                        } catch (Exception e) {
+                            // the reader might have been closed in the meantime
+                            LOG.warn("Could not load spelling dictionary for field " + field, e);
+                        } finally {
+                            pendingLoads.remove(readerKey);
+                        }
+                    }
+                }, "querqy-spelling-dictionary-loader");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        protected SpellingRewriter newRewriter(SpellingDictionary dictionary) {
+            return new SpellingRewriter(dictionary, maxEdits, minPrefixLength, minTermLength, maxCorrections,
+                    cacheSize);
+        }
+
+        @Override
+        public Set<Term> getGenerableTerms() {
+            return QueryRewriter.EMPTY_GENERABLE_TERMS;
+        }
+
+        public String getField() {
+            return field;
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package querqy.solr;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.DisMaxParams;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.QueryParsing;
 import org.junit.Before;
@@ -76,6 +80,30 @@ public class DefaultQuerqyDismaxQParserWithCommonRulesTest extends SolrTestCaseJ
         
     }
     
+    @Test
+    public void testThatFilterQueryIsDroppedWhenBudgetIsExceeded() {
+
+        String q = "a k";
+
+        SolrQueryRequest req = req("q", q,
+              DisMaxParams.QF, "f1 f2 f3",
+              DisMaxParams.MM, "1",
+              QueryParsing.OP, "OR",
+              QuerqyDismaxQParser.QBUDGET_FILTER_QUERIES, "0",
+              "defType", "querqy",
+              "debugQuery", "on"
+              );
+
+        assertQ("Budget not applied to filter query",
+              req,
+              "//result[@name='response' and @numFound='5']",
+              "//arr[@name='" + QuerqyDismaxQParser.DEBUG_BUDGET_EXCEEDED + "']/str[text()='filterQueries']"
+        );
+
+        req.close();
+
+    }
+
     @Test
     public void testThatDownRuleIsApplied() throws Exception {
         String q = "m b";
@@ -229,6 +257,90 @@ public class DefaultQuerqyDismaxQParserWithCommonRulesTest extends SolrTestCaseJ
         
     }
     
+    @Test
+    public void testThatSearchIsSkippedForSkipSearchRule() throws Exception {
+
+        SolrQueryRequest req = req("q", "a faq",
+              DisMaxParams.QF, "f1 f2",
+              DisMaxParams.MM, "1",
+              "defType", "querqy",
+              "debugQuery", "on"
+              );
+
+        assertQ("Search not skipped",
+                req,
+                "//result[@name='response' and @numFound='0']",
+                "//arr[@name='querqy_decorations']/str[text()='redirect, /service/faq']",
+                "//lst[@name='debug']/bool[@name='" + QuerqyDismaxQParser.DEBUG_SEARCH_SKIPPED + "'][text()='true']"
+        );
+
+        req.close();
+
+        req = req("q", "a d1",
+              DisMaxParams.QF, "f1 f2",
+              DisMaxParams.MM, "1",
+              "defType", "querqy"
+              );
+
+        assertQ("Search skipped without skipSearch rule",
+                req,
+                "//result[@name='response' and @numFound!='0']",
+                "//arr[@name='querqy_decorations']/str[text()='deco 1']"
+        );
+
+        req.close();
+
+    }
+
+    @Test
+    public void testThatFingerprintDependsOnTermOrder() throws Exception {
+
+        String fingerprint1 = getFingerprint("a d2 d1");
+        String fingerprint2 = getFingerprint("a d2 d1");
+        String fingerprint3 = getFingerprint("d1 a d2");
+        String fingerprint4 = getFingerprint("a d1");
+
+        assertEquals(32, fingerprint1.length());
+        assertEquals(fingerprint1, fingerprint2);
+        assertFalse(fingerprint1.equals(fingerprint3));
+        assertFalse(fingerprint1.equals(fingerprint4));
+
+    }
+
+    String getParsedQuery(String q) throws Exception {
+
+        SolrQueryRequest req = req("q", q,
+              DisMaxParams.QF, "f1",
+              "defType", "querqy",
+              "debugQuery", "on"
+              );
+
+        String response = h.query(req);
+        req.close();
+
+        Matcher matcher = Pattern.compile("<str name=\"parsedquery\">([^<]+)</str>").matcher(response);
+        assertTrue(response, matcher.find());
+        return matcher.group(1);
+    }
+
+    String getFingerprint(String q) throws Exception {
+
+        SolrQueryRequest req = req("q", q,
+              DisMaxParams.QF, "f1 f2",
+              DisMaxParams.MM, "2",
+              QuerqyDismaxQParser.QFINGERPRINT, "true",
+              "defType", "querqy"
+              );
+
+        String response = h.query(req);
+        req.close();
+
+        Matcher matcher = Pattern.compile("<str name=\"querqy_fingerprint\">([0-9a-f]+)</str>").matcher(response);
+        assertTrue(response, matcher.find());
+        return matcher.group(1);
+
+    }
+
     @Test
     public void testThatMultipleDecorationsAreApplied() throws Exception {
         
@@ -341,4 +453,98 @@ public class DefaultQuerqyDismaxQParserWithCommonRulesTest extends SolrTestCaseJ
         req.close();
     }
 
+    @Test
+    public void testThatRuleStatisticsAreReported() throws Exception {
+
+        SolrQueryRequest resetReq = req("qt", "/querqy/rules", "reset", "true");
+        h.query(resetReq);
+        resetReq.close();
+
+        SolrQueryRequest req = req("q", "qup",
+                DisMaxParams.QF, "f1 f2 f3",
+                "defType", "querqy"
+        );
+        h.query(req);
+        req.close();
+
+        SolrQueryRequest statsReq = req("qt", "/querqy/rules", "sort", "matches");
+
+        assertQ("Rule statistics not reported",
+                statsReq,
+                "//lst[@name='rewriters']/lst[@name='rewriter.0']/lst[1][@name='qup']/long[@name='matches'][text()='1']",
+                "//lst[@name='rewriters']/lst[@name='rewriter.0']/lst[@name='qup']/long[@name='boostQueries'][text()='1']",
+                "//lst[@name='rewriters']/lst[@name='rewriter.0']/lst[@name='a']/long[@name='matches'][text()='0']"
+        );
+
+        statsReq.close();
+    }
+
+    @Test
+    public void testThatLatencyStatisticsAreReported() throws Exception {
+
+        SolrQueryRequest req = req("q", "qup",
+                DisMaxParams.QF, "f1 f2 f3",
+                "defType", "querqy"
+        );
+
+        assertQ("Query fails", req, "//result[@name='response']");
+        req.close();
+
+        NamedList<?> stats = h.getCore().getQueryPlugin("querqy").getStatistics();
+        String prefix = "rewriter.0." + querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory.class.getSimpleName();
+        assertTrue(((Number) stats.get(prefix + ".latency.count")).longValue() > 0L);
+        assertNotNull(stats.get(prefix + ".latency.p99Micros"));
+        assertTrue(((Number) stats.get("phase." + QuerqyDismaxQParser.PHASE_PARSE + ".latency.count")).longValue() > 0L);
+        assertTrue(((Number) stats.get("phase." + QuerqyDismaxQParser.PHASE_REWRITE + ".latency.count")).longValue() > 0L);
+        assertTrue(((Number) stats.get("phase." + QuerqyDismaxQParser.PHASE_BUILD + ".latency.count")).longValue() > 0L);
+        assertTrue(((Number) stats.get("phase.dfc.latency.count")).longValue() > 0L);
+    }
+
+    @Test
+    public void testThatParsedQueriesAreCached() throws Exception {
+
+        NamedList<?> statsBefore = h.getCore().getQueryPlugin("querqy").getStatistics();
+        long hitsBefore = ((Number) statsBefore.get("parsedQueryCache.hits")).longValue();
+
+        String parsedQuery1 = getParsedQuery("pz parsedquerycache");
+        String parsedQuery2 = getParsedQuery("pz parsedquerycache");
+
+        // the synonym rule must not have changed the cached query
+        assertTrue(parsedQuery1, parsedQuery1.contains("f1:z"));
+        assertEquals(parsedQuery1, parsedQuery2);
+
+        NamedList<?> stats = h.getCore().getQueryPlugin("querqy").getStatistics();
+        assertTrue(((Number) stats.get("parsedQueryCache.hits")).longValue() > hitsBefore);
+        assertTrue(((Number) stats.get("parsedQueryCache.size")).intValue() > 0);
+    }
+
+    @Test
+    public void testThatSlowRewritesAreLogged() throws Exception {
+
+        SolrQueryRequest clearReq = req("qt", "/querqy/slowlog", "clear", "true");
+        h.query(clearReq);
+        clearReq.close();
+
+        SolrQueryRequest req = req("q", "qup x",
+                DisMaxParams.QF, "f1 f2 f3",
+                "defType", "querqy"
+        );
+        h.query(req);
+        req.close();
+
+        SolrQueryRequest logReq = req("qt", "/querqy/slowlog");
+
+        assertQ("Slow rewrite not logged",
+                logReq,
+                "count(//arr[@name='entries']/lst)=1",
+                "//arr[@name='entries']/lst/str[@name='input'][text()='qup x']",
+                "//arr[@name='entries']/lst/arr[@name='matchedRules']/str[text()='qup']",
+                "//arr[@name='entries']/lst/arr[@name='rewriterTimings']/str[starts-with(text(), '0:SimpleCommonRulesRewriterFactory:')]",
+                // 2 user query terms in 3 fields + 1 boost query term in 3 fields
+                "//arr[@name='entries']/lst/int[@name='luceneClauses'][text()='9']"
+        );
+
+        logReq.close();
+    }
+
 }
@@ -0,0 +1,50 @@
+package querqy.solr.contrib;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.DisMaxParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SolrTestCaseJ4.SuppressSSL
+public class CompoundRewriterTest extends SolrTestCaseJ4 {
+
+    @BeforeClass
+    public static void beforeTests() throws Exception {
+        initCore("contrib/solrconfig-shingles-and-commonrules.xml", "schema.xml");
+    }
+
+    @Test
+    public void testDecompound() {
+        SolrQueryRequest req = req("q", "arbeitsplatz",
+                DisMaxParams.QF, "f1",
+                "defType", "querqy_compound",
+                "debugQuery", "on"
+        );
+
+        assertQ("Missing compound parts",
+                req,
+                "//str[@name='parsedquery'][contains(.,'f1:arbeitsplatz')]",
+                "//str[@name='parsedquery'][contains(.,'+f1:arbeit +f1:platz')]"
+        );
+
+        req.close();
+    }
+
+    @Test
+    public void testCompound() {
+        SolrQueryRequest req = req("q", "haus bau",
+                DisMaxParams.QF, "f1",
+                "defType", "querqy_compound",
+                "debugQuery", "on"
+        );
+
+        assertQ("Missing compound",
+                req,
+                "//str[@name='parsedquery'][contains(.,'f1:hausbau')]"
+        );
+
+        req.close();
+    }
+
+}
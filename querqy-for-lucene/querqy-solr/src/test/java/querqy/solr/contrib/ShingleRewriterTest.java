@@ -75,4 +75,34 @@ public class ShingleRewriterTest extends SolrTestCaseJ4 {
         req.close();    
     }
 
+    @Test
+    public void testThatOnlyShinglesFromDictionaryFieldAreAdded() throws Exception {
+
+        assertU(adoc("id", "1", "f1", "ab"));
+        assertU(adoc("id", "2", "f1", "abc"));
+        assertU(commit());
+
+        try {
+
+            SolrQueryRequest req = req("q", "a b c",
+                  DisMaxParams.QF, "f1",
+                  "defType", "querqy_dict",
+                  "debugQuery", "on"
+                  );
+
+            assertQ("Dictionary not applied to shingles",
+                  req,
+                  "//str[@name='parsedquery'][contains(.,'f1:ab ')]",
+                  "//str[@name='parsedquery'][contains(.,'f1:abc')]",
+                  "//str[@name='parsedquery'][not(contains(.,'f1:bc'))]"
+            );
+
+            req.close();
+
+        } finally {
+            clearIndex();
+            assertU(commit());
+        }
+    }
+
 }
@@ -0,0 +1,96 @@
+package querqy.solr.contrib;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.DisMaxParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SolrTestCaseJ4.SuppressSSL
+public class SpellingRewriterTest extends SolrTestCaseJ4 {
+
+    @BeforeClass
+    public static void beforeTests() throws Exception {
+        initCore("contrib/solrconfig-shingles-and-commonrules.xml", "schema.xml");
+    }
+
+    @Test
+    public void testThatCorrectionIsSearchedInSameRequest() throws Exception {
+
+        assertU(adoc("id", "1", "f1", "laptop"));
+        assertU(adoc("id", "2", "f1", "tablet"));
+        assertU(commit());
+
+        try {
+
+            SolrQueryRequest req = req("q", "lpatop",
+                    DisMaxParams.QF, "f1",
+                    "defType", "querqy_spelling",
+                    "debugQuery", "on"
+            );
+
+            assertQ("Missing correction",
+                    req,
+                    "//result[@name='response' and @numFound='1']",
+                    "//str[@name='parsedquery'][contains(.,'f1:laptop')]"
+            );
+
+            req.close();
+
+            // a new searcher gets a new dictionary
+            assertU(adoc("id", "3", "f1", "notebook"));
+            assertU(commit());
+
+            req = req("q", "notebok",
+                    DisMaxParams.QF, "f1",
+                    "defType", "querqy_spelling",
+                    "debugQuery", "on"
+            );
+
+            assertQ("Missing correction from new searcher",
+                    req,
+                    "//result[@name='response' and @numFound='1']",
+                    "//str[@name='parsedquery'][contains(.,'f1:notebook')]"
+            );
+
+            req.close();
+
+        } finally {
+            clearIndex();
+            assertU(commit());
+        }
+    }
+
+    @Test
+    public void testThatDictionaryIsLoadedInBackgroundWithoutLoader() throws Exception {
+
+        assertU(adoc("id", "1", "f1", "laptop"));
+        assertU(commit());
+
+        try {
+
+            // the first requests are not corrected until the dictionary has been loaded
+            String response = null;
+            for (int i = 0; i < 100; i++) {
+                SolrQueryRequest req = req("q", "lpatop",
+                        DisMaxParams.QF, "f1",
+                        "defType", "querqy_spelling_background",
+                        "debugQuery", "on"
+                );
+                response = h.query(req);
+                req.close();
+                if (response.contains("f1:laptop")) {
+                    break;
+                }
+                Thread.sleep(50L);
+            }
+
+            assertTrue("Dictionary not loaded", response.contains("f1:laptop"));
+
+        } finally {
+            clearIndex();
+            assertU(commit());
+        }
+    }
+
+}